@@ -1,6 +1,7 @@
 package dev.sanda.apifi.annotations;
 
 import dev.sanda.apifi.code_generator.entity.operation_types_enums.CRUDEndpoints;
+import dev.sanda.apifi.code_generator.entity.operation_types_enums.PaginationMode;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -11,6 +12,21 @@ import java.lang.annotation.Target;
 public @interface WithCRUDEndpoints {
   CRUDEndpoints[] value();
 
+  /**
+   * {@code KEYSET} replaces the offset based {@code PageRequest} input of the
+   * generated paginated endpoints with relay style {@code first / after}
+   * connections, which seek past an opaque cursor rather than skipping rows.
+   */
+  PaginationMode pagination() default PaginationMode.OFFSET;
+
+  /**
+   * Allows concurrent {@code CREATE} and {@code UPDATE} mutations to be
+   * coalesced into batches when {@code apifi.write-coalescing.enabled} is set.
+   * Their endpoints then only support, rather than require, a transaction, and
+   * each batch (or uncoalesced write) is written in a transaction of its own.
+   */
+  boolean coalesceWrites() default false;
+
   String secured() default "";
 
   String[] rolesAllowed() default "";
@@ -2,16 +2,23 @@ package dev.sanda.apifi.code_generator;
 
 import com.squareup.javapoet.*;
 import dev.sanda.apifi.code_generator.entity.CustomEndpointsAggregator;
+import dev.sanda.apifi.service.graphql_config.CachingPreparsedDocumentProvider;
+import dev.sanda.apifi.service.graphql_config.DataLoaderRegistryFactory;
 import dev.sanda.apifi.service.graphql_config.GraphQLInstanceFactory;
 import dev.sanda.apifi.service.graphql_config.GraphQLSubscriptionSupport;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryService;
+import dev.sanda.apifi.service.graphql_config.QueryCostCalculator;
+import dev.sanda.apifi.service.graphql_config.SelectionSetInstrumentation;
+import dev.sanda.apifi.service.metrics.TracingInstrumentation;
 import graphql.GraphQL;
 import graphql.analysis.MaxQueryDepthInstrumentation;
 import graphql.execution.AsyncExecutionStrategy;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.Instrumentation;
 import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
 import io.leangen.graphql.GraphQLSchemaGenerator;
-import lombok.Getter;
 import lombok.val;
-import org.dataloader.DataLoader;
+import org.dataloader.BatchLoaderWithContext;
 import org.dataloader.DataLoaderRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,6 +30,7 @@ import javax.annotation.processing.RoundEnvironment;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static dev.sanda.apifi.utils.ApifiStaticUtils.toSimpleCamelcaseName;
@@ -55,7 +63,8 @@ public class GraphQLServiceImplementationFactory {
       .addMethod(genGraphQLServiceConstructor(services))
       .addFields(genGraphQLServiceFields(services))
       .addMethod(genGraphQLServiceInit(services))
-      .addMethod(graphQLInstanceGetter());
+      .addMethod(graphQLInstanceGetter())
+      .addMethod(dataLoaderRegistryFactoryMethod());
     return controller.build();
   }
 
@@ -64,7 +73,18 @@ public class GraphQLServiceImplementationFactory {
       .methodBuilder("getGraphQLInstance")
       .addModifiers(PUBLIC)
       .returns(ClassName.get(GraphQL.class))
-      .addStatement("return graphQLInstanceBuilder.build()")
+      .addStatement("return graphQLInstance")
+      .build();
+  }
+
+  private MethodSpec dataLoaderRegistryFactoryMethod() {
+    return MethodSpec
+      .methodBuilder("newDataLoaderRegistry")
+      .addModifiers(PUBLIC)
+      .returns(ClassName.get(DataLoaderRegistry.class))
+      .addStatement(
+        "return dataLoaderRegistryFactory.newDataLoaderRegistry(batchLoaders)"
+      )
       .build();
   }
 
@@ -109,37 +129,61 @@ public class GraphQLServiceImplementationFactory {
     }
     code.append("\t\t.generateExecutable();\n");
 
-    // Add code to initialize DataLoaderRegistry
-    code.append("this.dataLoaderRegistry = new $T();\n");
-    args.add(DataLoaderRegistry.class);
-    code.append(
-      "schema.getBatchLoaders().forEach((loaderName, batchLoader) -> {\n"
-    );
-    code.append(
-      "\tthis.dataLoaderRegistry.register(loaderName, $T.newDataLoader(batchLoader));\n"
-    );
-    code.append("});\n");
-    args.add(DataLoader.class);
+    // Keep the batch loaders, a fresh DataLoaderRegistry is created from them per execution
+    code.append("this.batchLoaders = schema.getBatchLoaders();\n");
 
     val schemaInit = CodeBlock
       .builder()
       .add(code.toString(), args.toArray())
       .build();
+    // GraphQL.Builder#instrumentation replaces rather than adds, so all instrumentations are chained
+    val instrumentationsInit = CodeBlock
+      .builder()
+      .addStatement(
+        "$T<$T> instrumentations = new $T<>()",
+        List.class,
+        Instrumentation.class,
+        ArrayList.class
+      )
+      .addStatement(
+        "instrumentations.add(new $T())",
+        DataLoaderDispatcherInstrumentation.class
+      )
+      .addStatement(
+        "instrumentations.add(new $T(maxQueryDepth))", // to prevent DOS attacks via GraphQL queries with high depth
+        MaxQueryDepthInstrumentation.class
+      )
+      .addStatement(
+        "if (queryCostCalculator.isEnabled()) instrumentations.add(queryCostCalculator.newInstrumentation())" // reject queries over the configured cost budget before execution
+      )
+      .addStatement(
+        "if (tracingInstrumentation.isEnabled()) instrumentations.add(tracingInstrumentation)" // per operation & per resolver latencies
+      )
+      .addStatement(
+        "if (selectionSetInstrumentation.isEnabled()) instrumentations.add(selectionSetInstrumentation)" // expose selection sets to the service layer's fetch graphs
+      )
+      .build();
     val graphQlInstanceInit = CodeBlock
       .builder()
       .add(
-        "graphQLInstanceBuilder = $T\n\t" +
-        ".newGraphQL(schema.getSchema())\n\t" +
+        "graphQLInstance = $T\n\t" +
+        ".newGraphQL($T.withIncrementalDeliveryDirectives(schema.getSchema()))\n\t" + // Declare @defer
         ".queryExecutionStrategy(new $T())\n\t" +
-        ".instrumentation(new $T())\n\t" + // Use DataLoaderDispatcherInstrumentation
-        ".instrumentation(new $T(maxQueryDepth));\n", // Use MaxQueryDepthInstrumentation
+        ".instrumentation(new $T(instrumentations))\n\t" +
+        ".preparsedDocumentProvider(preparsedDocumentProvider)\n\t" + // Skip re-parsing & re-validating repeated queries
+        ".build();\n",
         GraphQL.class,
+        IncrementalDeliveryService.class,
         AsyncExecutionStrategy.class, // Use AsyncExecutionStrategy
-        DataLoaderDispatcherInstrumentation.class, // Use DataLoaderDispatcherInstrumentation
-        MaxQueryDepthInstrumentation.class // Use MaxQueryDepthInstrumentation (to prevent DOS attacks via GraphQL queries with high depth)
+        ChainedInstrumentation.class
       )
       .build();
-    return CodeBlock.builder().add(schemaInit).add(graphQlInstanceInit).build();
+    return CodeBlock
+      .builder()
+      .add(schemaInit)
+      .add(instrumentationsInit)
+      .add(graphQlInstanceInit)
+      .build();
   }
 
   private MethodSpec genGraphQLServiceConstructor(List<String> services) {
@@ -186,9 +230,6 @@ public class GraphQLServiceImplementationFactory {
         .build()
     );
 
-    constructorBuilder.addStatement(
-      "this.graphQLInstanceBuilder = graphQLInstanceBuilder"
-    );
     for (val service : services) {
       constructorBuilder.addStatement(
         "this." +
@@ -204,16 +245,72 @@ public class GraphQLServiceImplementationFactory {
     }
     constructorBuilder.addStatement("this.maxQueryDepth = maxQueryDepth");
 
+    constructorBuilder.addParameter(
+      ParameterSpec
+        .builder(
+          CachingPreparsedDocumentProvider.class,
+          "preparsedDocumentProvider"
+        )
+        .build()
+    );
+
     constructorBuilder.addStatement(
       "this.hasSubscriptionsSupport = hasSubscriptionsSupport"
     );
 
+    constructorBuilder.addParameter(
+      ParameterSpec
+        .builder(DataLoaderRegistryFactory.class, "dataLoaderRegistryFactory")
+        .build()
+    );
+
+    constructorBuilder.addStatement(
+      "this.preparsedDocumentProvider = preparsedDocumentProvider"
+    );
+
+    constructorBuilder.addStatement(
+      "this.dataLoaderRegistryFactory = dataLoaderRegistryFactory"
+    );
+
+    constructorBuilder.addParameter(
+      ParameterSpec
+        .builder(QueryCostCalculator.class, "queryCostCalculator")
+        .build()
+    );
+
+    constructorBuilder.addStatement(
+      "this.queryCostCalculator = queryCostCalculator"
+    );
+
+    constructorBuilder.addParameter(
+      ParameterSpec
+        .builder(TracingInstrumentation.class, "tracingInstrumentation")
+        .build()
+    );
+
+    constructorBuilder.addStatement(
+      "this.tracingInstrumentation = tracingInstrumentation"
+    );
+
+    constructorBuilder.addParameter(
+      ParameterSpec
+        .builder(
+          SelectionSetInstrumentation.class,
+          "selectionSetInstrumentation"
+        )
+        .build()
+    );
+
+    constructorBuilder.addStatement(
+      "this.selectionSetInstrumentation = selectionSetInstrumentation"
+    );
+
     return constructorBuilder.build();
   }
 
   private List<FieldSpec> genGraphQLServiceFields(List<String> services) {
-    val graphQLInstanceBuilderField = FieldSpec
-      .builder(GraphQL.Builder.class, "graphQLInstanceBuilder", PRIVATE)
+    val graphQLInstanceField = FieldSpec
+      .builder(GraphQL.class, "graphQLInstance", PRIVATE)
       .build();
     List<FieldSpec> fieldSpecs = new ArrayList<>();
     for (val service : services) {
@@ -239,15 +336,63 @@ public class GraphQLServiceImplementationFactory {
       )
       .build();
 
-    val dataLoaderRegistryField = FieldSpec
-      .builder(DataLoaderRegistry.class, "dataLoaderRegistry", PRIVATE)
-      .addAnnotation(Getter.class)
+    val preparsedDocumentProviderField = FieldSpec
+      .builder(
+        CachingPreparsedDocumentProvider.class,
+        "preparsedDocumentProvider",
+        PRIVATE
+      )
+      .build();
+
+    val dataLoaderRegistryFactoryField = FieldSpec
+      .builder(
+        DataLoaderRegistryFactory.class,
+        "dataLoaderRegistryFactory",
+        PRIVATE
+      )
+      .build();
+
+    val queryCostCalculatorField = FieldSpec
+      .builder(QueryCostCalculator.class, "queryCostCalculator", PRIVATE)
+      .build();
+
+    val tracingInstrumentationField = FieldSpec
+      .builder(TracingInstrumentation.class, "tracingInstrumentation", PRIVATE)
+      .build();
+
+    val selectionSetInstrumentationField = FieldSpec
+      .builder(
+        SelectionSetInstrumentation.class,
+        "selectionSetInstrumentation",
+        PRIVATE
+      )
+      .build();
+
+    val batchLoadersField = FieldSpec
+      .builder(
+        ParameterizedTypeName.get(
+          ClassName.get(Map.class),
+          ClassName.get(String.class),
+          ParameterizedTypeName.get(
+            ClassName.get(BatchLoaderWithContext.class),
+            WildcardTypeName.subtypeOf(Object.class),
+            WildcardTypeName.subtypeOf(Object.class)
+          )
+        ),
+        "batchLoaders",
+        PRIVATE
+      )
       .build();
 
-    fieldSpecs.add(graphQLInstanceBuilderField);
+    fieldSpecs.add(graphQLInstanceField);
     fieldSpecs.add(maxQueryDepthField);
     fieldSpecs.add(hasSubscriptionsSupportField);
-    fieldSpecs.add(dataLoaderRegistryField);
+    fieldSpecs.add(preparsedDocumentProviderField);
+    fieldSpecs.add(dataLoaderRegistryFactoryField);
+    fieldSpecs.add(queryCostCalculatorField);
+    fieldSpecs.add(tracingInstrumentationField);
+    fieldSpecs.add(selectionSetInstrumentationField);
+    fieldSpecs.add(batchLoadersField);
     return fieldSpecs;
   }
 }
@@ -1,5 +1,6 @@
 package dev.sanda.apifi.code_generator.client;
 
+import static dev.sanda.apifi.code_generator.client.GraphQLQueryType.QUERY;
 import static dev.sanda.apifi.code_generator.client.GraphQLQueryType.SUBSCRIPTION;
 
 import java.nio.file.Files;
@@ -42,12 +43,17 @@ public class ApifiClientFactory {
       builder.append("let apiSseUrl = apiUrl + '/sse';\n");
     }
     builder.append("let includeCredentials = false;\n");
+    builder.append("let persistedQueriesEnabled = false;\n");
+    builder.append("let batchingEnabled = false;\n");
+    builder.append("let maxBatchSize = 20;\n");
     builder.append(
       String.format(
         "let bearerToken%s;\n\n",
         isTypescriptMode ? ": string" : ""
       )
     );
+    builder.append(persistedQueriesTransport());
+    builder.append(batchingTransport());
     builder.append("\n\n// project specific client side API calls\n");
     builder.append("\nexport default{\n");
     builder
@@ -82,6 +88,24 @@ public class ApifiClientFactory {
       .append(")")
       .append(isTypescriptMode ? ": void" : "")
       .append("{\n\t\tincludeCredentials = value;\n\t},\n");
+    builder
+      .append("\n\tsetPersistedQueriesEnabled(value")
+      .append(isTypescriptMode ? ": boolean" : "")
+      .append(")")
+      .append(isTypescriptMode ? ": void" : "")
+      .append("{\n\t\tpersistedQueriesEnabled = value;\n\t},\n");
+    builder
+      .append("\n\tsetBatchingEnabled(value")
+      .append(isTypescriptMode ? ": boolean" : "")
+      .append(")")
+      .append(isTypescriptMode ? ": void" : "")
+      .append("{\n\t\tbatchingEnabled = value;\n\t},\n");
+    builder
+      .append("\n\tsetMaxBatchSize(value")
+      .append(isTypescriptMode ? ": number" : "")
+      .append(")")
+      .append(isTypescriptMode ? ": void" : "")
+      .append("{\n\t\tmaxBatchSize = value;\n\t},\n");
     builder.append(queryFetchersBuilder);
     builder.append("\n}");
     if (isTypescriptMode) builder.append(
@@ -165,21 +189,172 @@ public class ApifiClientFactory {
       "\t\t\tlet requestHeaders = { \"Content-Type\": \"application/json\" }\n" +
       "\t\t\tif(customHeaders) requestHeaders = Object.assign({}, requestHeaders, customHeaders);\n" +
       "\t\t\tif(bearerToken) requestHeaders[\"Authorization\"] = bearerToken;\n" +
-      "\t\t\tconst requestInit" +
-      (isTypescriptMode ? ": RequestInit" : "") +
-      " = {\n" +
-      "\t\t\t\tmethod: \"POST\",\n" +
-      "\t\t\t\tcredentials: !!includeCredentials ? 'include' : 'omit',\n" +
-      "\t\t\t\theaders: requestHeaders,\n" +
-      "\t\t\t\tbody: JSON.stringify({" +
+      "\t\t\tconst requestBody = {" +
       query.buildQueryString() +
-      "\t})" +
-      "\n\t\t\t};\n" +
-      "\t\t\treturn await (await fetch(apiUrl, requestInit)).json();" +
+      "\t};\n" +
+      "\t\t\treturn await executeRequest(requestBody, requestHeaders, " +
+      query.getQueryType().equals(QUERY) +
+      ");" +
       "\n\t},\n"
     );
   }
 
+  // automatic persisted queries: send the sha-256 hash of the query first (over GET for read only queries),
+  // and fall back to sending the full query text if the server does not recognize the hash
+  private String persistedQueriesTransport() {
+    val any = isTypescriptMode ? ": any" : "";
+    return (
+      "\nasync function sha256Hex(text" +
+      (isTypescriptMode ? ": string" : "") +
+      ")" +
+      (isTypescriptMode ? ": Promise<string>" : "") +
+      "{\n" +
+      "\tconst digest = await crypto.subtle.digest('SHA-256', new TextEncoder().encode(text));\n" +
+      "\treturn Array.from(new Uint8Array(digest)).map(b => b.toString(16).padStart(2, '0')).join('');\n" +
+      "}\n" +
+      "\nasync function sendRequest(requestBody" +
+      any +
+      ", requestHeaders" +
+      any +
+      ", useGet" +
+      (isTypescriptMode ? ": boolean" : "") +
+      ")" +
+      (isTypescriptMode ? ": Promise<any>" : "") +
+      "{\n" +
+      "\tconst requestInit" +
+      (isTypescriptMode ? ": RequestInit" : "") +
+      " = {\n" +
+      "\t\tmethod: useGet ? \"GET\" : \"POST\",\n" +
+      "\t\tcredentials: !!includeCredentials ? 'include' : 'omit',\n" +
+      "\t\theaders: requestHeaders\n" +
+      "\t};\n" +
+      "\tif(!useGet) {\n" +
+      "\t\trequestInit.body = JSON.stringify(requestBody);\n" +
+      "\t\treturn await (await fetch(apiUrl, requestInit)).json();\n" +
+      "\t}\n" +
+      "\tconst params = Object.keys(requestBody)\n" +
+      "\t\t.filter(key => requestBody[key] !== undefined)\n" +
+      "\t\t.map(key => `${key}=${encodeURIComponent(typeof requestBody[key] === 'string' ? requestBody[key] : JSON.stringify(requestBody[key]))}`)\n" +
+      "\t\t.join('&');\n" +
+      "\treturn await (await fetch(`${apiUrl}?${params}`, requestInit)).json();\n" +
+      "}\n" +
+      "\nasync function executeRequest(requestBody" +
+      any +
+      ", requestHeaders" +
+      any +
+      ", isQuery" +
+      (isTypescriptMode ? ": boolean" : "") +
+      ")" +
+      (isTypescriptMode ? ": Promise<any>" : "") +
+      "{\n" +
+      "\tif(batchingEnabled && isQuery)\n" +
+      "\t\treturn await enqueueBatchedRequest(requestBody, requestHeaders);\n" +
+      "\treturn await executeUnbatchedRequest(requestBody, requestHeaders, isQuery);\n" +
+      "}\n" +
+      "\nasync function executeUnbatchedRequest(requestBody" +
+      any +
+      ", requestHeaders" +
+      any +
+      ", isQuery" +
+      (isTypescriptMode ? ": boolean" : "") +
+      ")" +
+      (isTypescriptMode ? ": Promise<any>" : "") +
+      "{\n" +
+      "\tif(!persistedQueriesEnabled || typeof crypto === 'undefined' || !crypto.subtle)\n" +
+      "\t\treturn await sendRequest(requestBody, requestHeaders, false);\n" +
+      "\tconst extensions = { persistedQuery: { version: 1, sha256Hash: await sha256Hex(requestBody.query) } };\n" +
+      "\tconst hashOnlyHeaders = Object.assign({}, requestHeaders);\n" +
+      "\tif(isQuery) delete hashOnlyHeaders[\"Content-Type\"];\n" +
+      "\tconst result = await sendRequest({ variables: requestBody.variables, extensions }, hashOnlyHeaders, isQuery);\n" +
+      "\tconst hasErrorCode = (code" +
+      (isTypescriptMode ? ": string" : "") +
+      ") => result && result.errors && result.errors.some(\n" +
+      "\t\t(error" +
+      any +
+      ") => error.extensions && error.extensions.code === code\n" +
+      "\t);\n" +
+      "\tif(hasErrorCode('PERSISTED_QUERY_NOT_SUPPORTED')) {\n" +
+      "\t\tpersistedQueriesEnabled = false;\n" +
+      "\t\treturn await sendRequest(requestBody, requestHeaders, false);\n" +
+      "\t}\n" +
+      "\tif(!hasErrorCode('PERSISTED_QUERY_NOT_FOUND')) return result;\n" +
+      "\treturn await sendRequest(Object.assign({}, requestBody, { extensions }), requestHeaders, false);\n" +
+      "}\n"
+    );
+  }
+
+  // opt-in request batching: queries issued within the same tick (and with the same headers)
+  // are coalesced into http requests of up to maxBatchSize queries each, whose bodies are JSON
+  // arrays of the individual requests. Queries sent in batches of more than one do not use
+  // persisted queries, since a hash unknown to the server would fail its query alone.
+  private String batchingTransport() {
+    val any = isTypescriptMode ? ": any" : "";
+    return (
+      "\nlet pendingBatches" +
+      (isTypescriptMode ? ": { [headers: string]: any }" : "") +
+      " = {};\n" +
+      "\nfunction enqueueBatchedRequest(requestBody" +
+      any +
+      ", requestHeaders" +
+      any +
+      ")" +
+      (isTypescriptMode ? ": Promise<any>" : "") +
+      "{\n" +
+      "\tconst batchKey = JSON.stringify(requestHeaders);\n" +
+      "\treturn new Promise((resolve, reject) => {\n" +
+      "\t\tif(!pendingBatches[batchKey]) {\n" +
+      "\t\t\tpendingBatches[batchKey] = { requestHeaders, entries: [] };\n" +
+      "\t\t\tsetTimeout(() => flushBatch(batchKey), 0);\n" +
+      "\t\t}\n" +
+      "\t\tpendingBatches[batchKey].entries.push({ requestBody, resolve, reject });\n" +
+      "\t});\n" +
+      "}\n" +
+      "\nasync function flushBatch(batchKey" +
+      (isTypescriptMode ? ": string" : "") +
+      ")" +
+      (isTypescriptMode ? ": Promise<void>" : "") +
+      "{\n" +
+      "\tconst batch = pendingBatches[batchKey];\n" +
+      "\tdelete pendingBatches[batchKey];\n" +
+      "\tconst chunkSize = Math.max(1, maxBatchSize);\n" +
+      "\tconst chunks = [];\n" +
+      "\tfor(let i = 0; i < batch.entries.length; i += chunkSize)\n" +
+      "\t\tchunks.push(batch.entries.slice(i, i + chunkSize));\n" +
+      "\tawait Promise.all(chunks.map((entries" +
+      any +
+      ") => sendBatch(entries, batch.requestHeaders)));\n" +
+      "}\n" +
+      "\nasync function sendBatch(entries" +
+      any +
+      ", requestHeaders" +
+      any +
+      ")" +
+      (isTypescriptMode ? ": Promise<void>" : "") +
+      "{\n" +
+      "\ttry {\n" +
+      "\t\tif(entries.length === 1) {\n" +
+      "\t\t\tentries[0].resolve(await executeUnbatchedRequest(entries[0].requestBody, requestHeaders, true));\n" +
+      "\t\t\treturn;\n" +
+      "\t\t}\n" +
+      "\t\tconst results = await sendRequest(entries.map((entry" +
+      any +
+      ") => entry.requestBody), requestHeaders, false);\n" +
+      "\t\tif(!Array.isArray(results) || results.length !== entries.length)\n" +
+      "\t\t\tthrow new Error(`Batched request failed: ${JSON.stringify(results)}`);\n" +
+      "\t\tentries.forEach((entry" +
+      any +
+      ", index" +
+      (isTypescriptMode ? ": number" : "") +
+      ") => entry.resolve(results[index]));\n" +
+      "\t} catch (error) {\n" +
+      "\t\tentries.forEach((entry" +
+      any +
+      ") => entry.reject(error));\n" +
+      "\t}\n" +
+      "}\n"
+    );
+  }
+
   private String queryOrMutationFetcherReturnType(GraphQLQueryBuilder query) {
     return isTypescriptMode
       ? ": Promise<ExecutionResult<" + resolveQueryPromiseType(query) + ">>"
@@ -191,6 +366,8 @@ public class ApifiClientFactory {
     switch (query.getClientSideReturnType()) {
       case PAGE:
         return String.format("Page<%s>", returnType);
+      case CONNECTION:
+        return String.format("Connection<%s>", returnType);
       case NUMBER:
         return "number";
       case INSTANCE:
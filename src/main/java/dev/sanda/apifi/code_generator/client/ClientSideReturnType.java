@@ -2,6 +2,7 @@ package dev.sanda.apifi.code_generator.client;
 
 public enum ClientSideReturnType {
   PAGE,
+  CONNECTION,
   NUMBER,
   INSTANCE,
   ARRAY,
@@ -3,6 +3,7 @@ package dev.sanda.apifi.code_generator.client;
 import static dev.sanda.apifi.code_generator.client.GraphQLQueryType.SUBSCRIPTION;
 import static dev.sanda.apifi.code_generator.client.SubscriptionObservableType.COLLECTION_OWNER;
 import static dev.sanda.apifi.code_generator.client.SubscriptionObservableType.LIST_TO_OBSERVE;
+import static dev.sanda.apifi.code_generator.client.SubscriptionObservableType.PAGE_REQUEST;
 import static dev.sanda.apifi.utils.ApifiStaticUtils.inQuotes;
 
 import java.util.Collection;
@@ -30,6 +31,7 @@ public class GraphQLQueryBuilder {
         .collect(Collectors.toCollection(HashSet::new));
     entityTypes.add("PageRequestInput");
     entityTypes.add("FreeTextSearchPageRequestInput");
+    entityTypes.add("ConnectionRequestInput");
   }
 
   private HashSet<String> entityTypes;
@@ -85,6 +87,12 @@ public class GraphQLQueryBuilder {
           ": BaseSubscriptionRequestInput<Array<%s>>",
           entityReturnType
         );
+      case PAGE_REQUEST:
+        return String.format(
+          ": StreamSubscriptionRequestInput<%s, %s>",
+          entityReturnType,
+          isFreeTextSearchQuery() ? "FreeTextSearchPageRequest" : "PageRequest"
+        );
     }
     throw new RuntimeException("This should not have happened...");
   }
@@ -102,6 +110,8 @@ public class GraphQLQueryBuilder {
               : "PageRequest"
           )
         );
+      case CONNECTION:
+        return ": ConnectionRequest";
       case NUMBER:
         return "";
       case INSTANCE:
@@ -152,6 +162,9 @@ public class GraphQLQueryBuilder {
       case COLLECTION_OWNER:
         builder.append("$owner: ").append(ownerEntityType).append(", ");
         break;
+      case PAGE_REQUEST:
+        // streamed chunks are read on demand, so there is no back pressure strategy to choose
+        return "($input: " + resolveVarType(vars.get("input")) + ")";
     }
     builder.append("$backPressureStrategy: OverflowStrategy");
     return "(" + builder + ")";
@@ -194,6 +207,8 @@ public class GraphQLQueryBuilder {
       case COLLECTION_OWNER:
         builder.append("owner: $owner, ");
         break;
+      case PAGE_REQUEST:
+        return "(input: $input)";
     }
     builder.append("backPressureStrategy: $backPressureStrategy");
     return "(" + builder + ")";
@@ -223,6 +238,14 @@ public class GraphQLQueryBuilder {
   }
 
   private String subscriptionVarsVals() {
+    if (subscriptionObservableType.equals(PAGE_REQUEST)) return (
+      "\n\t\t\t\t\t" +
+      "variables" +
+      ": {\n\t\t\t\t\t\t" +
+      inQuotes("input") +
+      ": input.request" +
+      "\n\t\t\t\t\t}"
+    );
     val builder = new StringBuilder();
     if (subscriptionObservableType.equals(LIST_TO_OBSERVE)) builder
       .append("\t")
@@ -4,4 +4,5 @@ public enum SubscriptionObservableType {
   LIST_TO_OBSERVE,
   COLLECTION_OWNER,
   ENTITY_TYPE,
+  PAGE_REQUEST,
 }
@@ -178,6 +178,18 @@ public class TypescriptModelFactory {
       SORT_DIRECTION_ENUM_TYPE +
       NEW_LINE +
       NEW_LINE +
+      CURSOR_TYPE +
+      NEW_LINE +
+      NEW_LINE +
+      CONNECTION_TYPE +
+      NEW_LINE +
+      NEW_LINE +
+      CONNECTION_REQUEST_TYPE +
+      NEW_LINE +
+      NEW_LINE +
+      CONNECTION_HELPERS +
+      NEW_LINE +
+      NEW_LINE +
       EXECUTION_RESULT_TYPE +
       NEW_LINE +
       NEW_LINE +
@@ -209,6 +221,9 @@ public class TypescriptModelFactory {
       SUBSCRIPTION_REQUEST_INPUT_TYPE +
       NEW_LINE +
       NEW_LINE +
+      STREAM_SUBSCRIPTION_REQUEST_INPUT_TYPE +
+      NEW_LINE +
+      NEW_LINE +
       ENTITY_COLLECTION_SUBSCRIPTION_REQUEST_INPUT_TYPE
     );
   }
@@ -267,6 +282,79 @@ public class TypescriptModelFactory {
     NEW_LINE +
     "}";
 
+  private static final String CURSOR_TYPE =
+    "// opaque keyset pagination cursor, only ever obtained from a Connection" +
+    NEW_LINE +
+    "export type Cursor = string & { readonly __apifiCursor: true };";
+
+  private static final String CONNECTION_TYPE =
+    "// represents a keyset paginated subset of the overall data, following the cursor it was requested after" +
+    NEW_LINE +
+    "export interface Connection<T>{" +
+    NEW_LINE +
+    "   edges?: Array<Edge<T>>;" +
+    NEW_LINE +
+    "   pageInfo?: PageInfo;" +
+    NEW_LINE +
+    "}" +
+    NEW_LINE +
+    NEW_LINE +
+    "export interface Edge<T>{" +
+    NEW_LINE +
+    "   node?: T;" +
+    NEW_LINE +
+    "   cursor?: Cursor;" +
+    NEW_LINE +
+    "}" +
+    NEW_LINE +
+    NEW_LINE +
+    "export interface PageInfo{" +
+    NEW_LINE +
+    "   hasNextPage?: boolean;" +
+    NEW_LINE +
+    "   startCursor?: Cursor;" +
+    NEW_LINE +
+    "   endCursor?: Cursor;" +
+    NEW_LINE +
+    "}";
+
+  private static final String CONNECTION_REQUEST_TYPE =
+    "// input to specify desired keyset pagination parameters" +
+    NEW_LINE +
+    "export interface ConnectionRequest{" +
+    NEW_LINE +
+    "   first?: number;" +
+    NEW_LINE +
+    "   after?: Cursor;" +
+    NEW_LINE +
+    "   sortBy?: string;" +
+    NEW_LINE +
+    "   sortDirection?: SortDirection;" +
+    NEW_LINE +
+    "}";
+
+  private static final String CONNECTION_HELPERS =
+    "// keyset pagination helpers - the selection graph must include pageInfo { hasNextPage endCursor }" +
+    NEW_LINE +
+    "export function nodesOf<T>(connection: Connection<T>): Array<T> {" +
+    NEW_LINE +
+    "   return (connection.edges || []).map(edge => edge.node as T);" +
+    NEW_LINE +
+    "}" +
+    NEW_LINE +
+    NEW_LINE +
+    "export function nextConnectionRequest<T>(connection: Connection<T>, request: ConnectionRequest = {}): ConnectionRequest | null {" +
+    NEW_LINE +
+    "   const pageInfo = connection.pageInfo;" +
+    NEW_LINE +
+    "   return pageInfo && pageInfo.hasNextPage && pageInfo.endCursor" +
+    NEW_LINE +
+    "      ? { ...request, after: pageInfo.endCursor }" +
+    NEW_LINE +
+    "      : null;" +
+    NEW_LINE +
+    "}";
+
   private static final String FLUX_SINK_OVERFLOW_STRATEGY_ENUM_TYPE =
     "// for GraphQLSubscriptions only - denotes the server side backpressure strategy to be employed by reactive publisher" +
     NEW_LINE +
@@ -345,6 +433,17 @@ public class TypescriptModelFactory {
     NEW_LINE +
     "}";
 
+  private static final String STREAM_SUBSCRIPTION_REQUEST_INPUT_TYPE =
+    "// GraphQLSubscription: streams all matching instances in chunks, in the order specified by the request." +
+    NEW_LINE +
+    "// pageNumber and pageSize are ignored." +
+    NEW_LINE +
+    "export interface StreamSubscriptionRequestInput<T, R> extends BaseSubscriptionRequestInput<Array<T>>{" +
+    NEW_LINE +
+    "   request: R;" +
+    NEW_LINE +
+    "}";
+
   public static String subscriptionEmitterType(boolean isTypeScriptMode) {
     Function<String, String> ifTSMode = s -> isTypeScriptMode ? s : "";
 
@@ -4,6 +4,7 @@ import static dev.sanda.datafi.DatafiStaticUtils.*;
 
 import dev.sanda.apifi.annotations.*;
 import dev.sanda.apifi.code_generator.entity.operation_types_enums.CRUDEndpoints;
+import dev.sanda.apifi.code_generator.entity.operation_types_enums.PaginationMode;
 import dev.sanda.apifi.service.graphql_subcriptions.SubscriptionEndpoints;
 import dev.sanda.datafi.code_generator.annotated_element_specs.AnnotatedElementSpec;
 import java.lang.annotation.Annotation;
@@ -25,6 +26,12 @@ public class EntityGraphQLApiSpec extends AnnotatedElementSpec<TypeElement> {
   @Getter
   private List<SubscriptionEndpoints> mergedSubscriptionEndpoints;
 
+  @Getter
+  private PaginationMode paginationMode;
+
+  @Getter
+  private boolean coalesceWrites;
+
   public EntityGraphQLApiSpec(
     TypeElement entity,
     TypeElement apiSpecExtension
@@ -76,6 +83,24 @@ public class EntityGraphQLApiSpec extends AnnotatedElementSpec<TypeElement> {
       Arrays.asList(apiSpecExtensionCrudEndpoints.value())
     );
     this.mergedCrudEndpoints = new ArrayList<>(crudEndpoints);
+    final boolean isKeyset =
+      (
+        entityCrudEndpoints != null &&
+        entityCrudEndpoints.pagination() == PaginationMode.KEYSET
+      ) ||
+      (
+        apiSpecExtensionCrudEndpoints != null &&
+        apiSpecExtensionCrudEndpoints.pagination() == PaginationMode.KEYSET
+      );
+    this.paginationMode = isKeyset
+      ? PaginationMode.KEYSET
+      : PaginationMode.OFFSET;
+    this.coalesceWrites =
+      (entityCrudEndpoints != null && entityCrudEndpoints.coalesceWrites()) ||
+      (
+        apiSpecExtensionCrudEndpoints != null &&
+        apiSpecExtensionCrudEndpoints.coalesceWrites()
+      );
   }
 
   private void setFieldGraphQlApiSpecs(
@@ -117,6 +117,28 @@ public class GraphQLApiBuilder {
         testableServiceBuilder.addMethod(methodSpec);
       });
 
+    // Generate bulk import methods, which are only served by the service itself
+    val bulkImportEndpointsFactory = new BulkImportEndpointsFactory(params);
+    if (bulkImportEndpointsFactory.isImportable()) {
+      serviceBuilder.addSuperinterface(
+        bulkImportEndpointsFactory.entityImporterInterface()
+      );
+      bulkImportEndpointsFactory
+        .getBulkImportMethods()
+        .forEach(serviceBuilder::addMethod);
+    }
+
+    // Generate bulk export methods, which are only served by the service itself
+    val bulkExportEndpointsFactory = new BulkExportEndpointsFactory(params);
+    if (bulkExportEndpointsFactory.isExportable()) {
+      serviceBuilder.addSuperinterface(
+        bulkExportEndpointsFactory.entityExporterInterface()
+      );
+      bulkExportEndpointsFactory
+        .getBulkExportMethods()
+        .forEach(serviceBuilder::addMethod);
+    }
+
     // Return the built GraphQL service and testable service
     return new ServiceAndTestableService(
       serviceBuilder.build(),
@@ -0,0 +1,107 @@
+package dev.sanda.apifi.code_generator.entity.graphql_api_builder.factories;
+
+import static dev.sanda.apifi.code_generator.entity.operation_types_enums.CRUDEndpoints.GET_PAGINATED_BATCH;
+import static javax.lang.model.element.Modifier.PUBLIC;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import dev.sanda.apifi.code_generator.entity.graphql_api_builder.GraphQLApiBuilderParams;
+import dev.sanda.apifi.service.bulk_export.EntityExporter;
+import dev.sanda.apifi.service.bulk_export.ExportFormat;
+import dev.sanda.datafi.dto.PageRequest;
+import jakarta.transaction.Transactional;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.TypeElement;
+import lombok.Getter;
+import lombok.val;
+
+/**
+ * Makes the service of an entity with a paginated batch endpoint an
+ * {@link EntityExporter}, through which the export endpoint reads its output.
+ * The export is subject to the same security annotations as the paginated
+ * batch endpoint, and runs outside of the service's transaction so that rows
+ * are streamed within a read only transaction of their own.
+ */
+public class BulkExportEndpointsFactory {
+
+  private final GraphQLApiBuilderParams params;
+  private final TypeElement entity;
+
+  @Getter
+  private final List<MethodSpec> bulkExportMethods;
+
+  public BulkExportEndpointsFactory(GraphQLApiBuilderParams params) {
+    this.params = params;
+    this.entity = params.getApiSpec().getElement();
+    this.bulkExportMethods = new ArrayList<>();
+    if (isExportable()) {
+      bulkExportMethods.add(genGetExportedType());
+      bulkExportMethods.add(genExportAll());
+    }
+  }
+
+  public boolean isExportable() {
+    return params.getCrudResolvers().containsKey(GET_PAGINATED_BATCH);
+  }
+
+  public TypeName entityExporterInterface() {
+    return ParameterizedTypeName.get(
+      ClassName.get(EntityExporter.class),
+      ClassName.get(entity)
+    );
+  }
+
+  private MethodSpec genGetExportedType() {
+    return MethodSpec
+      .methodBuilder("getExportedType")
+      .addAnnotation(Override.class)
+      .addModifiers(PUBLIC)
+      .addStatement("return $T.class", ClassName.get(entity))
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(Class.class),
+          ClassName.get(entity)
+        )
+      )
+      .build();
+  }
+
+  private MethodSpec genExportAll() {
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder("exportAll")
+      .addAnnotation(Override.class)
+      .addAnnotation(
+        AnnotationSpec
+          .builder(Transactional.class)
+          .addMember("value", "$T.NOT_SUPPORTED", Transactional.TxType.class)
+          .build()
+      )
+      .addModifiers(PUBLIC)
+      .addParameter(OutputStream.class, "output")
+      .addParameter(ExportFormat.class, "format")
+      .addParameter(
+        ParameterizedTypeName.get(
+          ClassName.get(List.class),
+          ClassName.get(String.class)
+        ),
+        "fields"
+      )
+      .addParameter(PageRequest.class, "request")
+      .addStatement(
+        "return apiLogic.exportAll(output, format, fields, request)"
+      )
+      .returns(long.class);
+    val methodLevelSecuritiesMap = params.getMethodLevelSecuritiesMap();
+    if (
+      methodLevelSecuritiesMap.containsKey(GET_PAGINATED_BATCH.toString())
+    ) builder.addAnnotations(
+      methodLevelSecuritiesMap.get(GET_PAGINATED_BATCH.toString())
+    );
+    return builder.build();
+  }
+}
@@ -0,0 +1,98 @@
+package dev.sanda.apifi.code_generator.entity.graphql_api_builder.factories;
+
+import static dev.sanda.apifi.code_generator.entity.operation_types_enums.CRUDEndpoints.BATCH_CREATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import dev.sanda.apifi.code_generator.entity.graphql_api_builder.GraphQLApiBuilderParams;
+import dev.sanda.apifi.dto.ImportProgress;
+import dev.sanda.apifi.service.bulk_import.EntityImporter;
+import dev.sanda.apifi.service.bulk_import.ImportFormat;
+import jakarta.transaction.Transactional;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.TypeElement;
+import lombok.Getter;
+import lombok.val;
+
+/**
+ * Makes the service of an entity with a batch create endpoint an
+ * {@link EntityImporter}, through which the import endpoint writes its input.
+ * The import is subject to the same security annotations as the batch create
+ * endpoint, and runs outside of the service's transaction so that each chunk
+ * is committed in its own.
+ */
+public class BulkImportEndpointsFactory {
+
+  private final GraphQLApiBuilderParams params;
+  private final TypeElement entity;
+
+  @Getter
+  private final List<MethodSpec> bulkImportMethods;
+
+  public BulkImportEndpointsFactory(GraphQLApiBuilderParams params) {
+    this.params = params;
+    this.entity = params.getApiSpec().getElement();
+    this.bulkImportMethods = new ArrayList<>();
+    if (isImportable()) {
+      bulkImportMethods.add(genGetImportedType());
+      bulkImportMethods.add(genImportAll());
+    }
+  }
+
+  public boolean isImportable() {
+    return params.getCrudResolvers().containsKey(BATCH_CREATE);
+  }
+
+  public TypeName entityImporterInterface() {
+    return ParameterizedTypeName.get(
+      ClassName.get(EntityImporter.class),
+      ClassName.get(entity)
+    );
+  }
+
+  private MethodSpec genGetImportedType() {
+    return MethodSpec
+      .methodBuilder("getImportedType")
+      .addAnnotation(Override.class)
+      .addModifiers(PUBLIC)
+      .addStatement("return $T.class", ClassName.get(entity))
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(Class.class),
+          ClassName.get(entity)
+        )
+      )
+      .build();
+  }
+
+  private MethodSpec genImportAll() {
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder("importAll")
+      .addAnnotation(Override.class)
+      .addAnnotation(
+        AnnotationSpec
+          .builder(Transactional.class)
+          .addMember("value", "$T.NOT_SUPPORTED", Transactional.TxType.class)
+          .build()
+      )
+      .addModifiers(PUBLIC)
+      .addParameter(InputStream.class, "input")
+      .addParameter(ImportFormat.class, "format")
+      .addParameter(String.class, "importId")
+      .addStatement("return apiLogic.importAll(input, format, importId)")
+      .returns(ImportProgress.class);
+    val methodLevelSecuritiesMap = params.getMethodLevelSecuritiesMap();
+    if (
+      methodLevelSecuritiesMap.containsKey(BATCH_CREATE.toString())
+    ) builder.addAnnotations(
+      methodLevelSecuritiesMap.get(BATCH_CREATE.toString())
+    );
+    return builder.build();
+  }
+}
@@ -3,6 +3,7 @@ package dev.sanda.apifi.code_generator.entity.graphql_api_builder.factories;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import dev.sanda.apifi.annotations.ElementCollectionApi;
 import dev.sanda.apifi.annotations.MapElementCollectionApi;
 import dev.sanda.apifi.code_generator.client.ApifiClientFactory;
@@ -17,6 +18,8 @@ import dev.sanda.apifi.service.api_hooks.NullElementCollectionApiHooks;
 import dev.sanda.apifi.service.api_hooks.NullMapElementCollectionApiHooks;
 import dev.sanda.datafi.dto.FreeTextSearchPageRequest;
 import dev.sanda.datafi.dto.PageRequest;
+import io.leangen.graphql.annotations.Batched;
+import io.leangen.graphql.annotations.GraphQLContext;
 import jakarta.persistence.ElementCollection;
 import lombok.Getter;
 import lombok.val;
@@ -163,6 +166,11 @@ public class ElementCollectionEndpointsFactory {
       elementCollectionApiEndpoints.add(freeTextSearchInElementCollection);
       clientFactory.addQuery(clientQueryBuilder);
     }
+    if (endpoints.contains(ElementCollectionEndpointType.COUNT)) {
+      elementCollectionApiEndpoints.add(
+        genElementCollectionCount(elemCollectionSpec.getElement())
+      );
+    }
   }
 
   private void generateMapElementCollectionMethods(
@@ -229,6 +237,36 @@ public class ElementCollectionEndpointsFactory {
     }
   }
 
+  private MethodSpec genElementCollectionCount(VariableElement elemCollection) {
+    val config = elemCollection.getAnnotation(ElementCollectionApi.class);
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder(camelcaseNameOf(elemCollection) + "Count")
+      .addModifiers(PUBLIC)
+      .addAnnotation(Batched.class)
+      .addAnnotation(graphqlQueryAnnotation())
+      .addParameter(asParamList(apiSpec.getElement(), GraphQLContext.class))
+      .addStatement(
+        "return apiLogic.getCollectionCounts(input, $S, null)",
+        camelcaseNameOf(elemCollection)
+      )
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(List.class),
+          ClassName.get(Long.class)
+        )
+      );
+    if (
+      SecurityAnnotationsFactory.areSecurityAnnotationsPresent(
+        config,
+        "",
+        "GetPaginated"
+      )
+    ) builder.addAnnotations(
+      SecurityAnnotationsFactory.of(config, "", "GetPaginated")
+    );
+    return builder.build();
+  }
+
   private MethodSpec genAddToElementCollection(
     VariableElement elemCollection,
     GraphQLQueryBuilder clientQueryBuilder
@@ -1,6 +1,7 @@
 package dev.sanda.apifi.code_generator.entity.graphql_api_builder.factories;
 
 import static dev.sanda.apifi.code_generator.client.ClientSideReturnType.ARRAY;
+import static dev.sanda.apifi.code_generator.client.ClientSideReturnType.CONNECTION;
 import static dev.sanda.apifi.code_generator.client.ClientSideReturnType.PAGE;
 import static dev.sanda.apifi.code_generator.client.GraphQLQueryType.*;
 import static dev.sanda.apifi.code_generator.client.SubscriptionObservableType.COLLECTION_OWNER;
@@ -10,6 +11,7 @@ import static dev.sanda.apifi.service.graphql_subcriptions.EntityCollectionSubsc
 import static dev.sanda.apifi.service.graphql_subcriptions.EntityCollectionSubscriptionEndpoints.ON_REMOVE_FROM;
 import static dev.sanda.apifi.utils.ApifiStaticUtils.*;
 import static dev.sanda.apifi.utils.ApifiStaticUtils.getCollectionTypeSimpleName;
+import static dev.sanda.datafi.DatafiStaticUtils.getIdFieldName;
 import static dev.sanda.datafi.DatafiStaticUtils.logCompilationError;
 import static dev.sanda.datafi.DatafiStaticUtils.toPascalCase;
 import static javax.lang.model.element.Modifier.*;
@@ -21,6 +23,8 @@ import dev.sanda.apifi.code_generator.entity.element_api_spec.EntityGraphQLApiSp
 import dev.sanda.apifi.code_generator.entity.element_api_spec.FieldGraphQLApiSpec;
 import dev.sanda.apifi.code_generator.entity.graphql_api_builder.GraphQLApiBuilderParams;
 import dev.sanda.apifi.code_generator.entity.operation_types_enums.EntityCollectionEndpointType;
+import dev.sanda.apifi.code_generator.entity.operation_types_enums.PaginationMode;
+import dev.sanda.apifi.dto.ConnectionRequest;
 import dev.sanda.apifi.security.SecurityAnnotationsFactory;
 import dev.sanda.apifi.service.api_hooks.NullEntityCollectionApiHooks;
 import dev.sanda.apifi.service.api_logic.SubscriptionsLogicService;
@@ -132,7 +136,7 @@ public class ForeignKeyEntityEndpointsFactory {
           if (resolvers.contains(GET_PAGINATED__BATCH)) {
             val clientQueryBuilder = new GraphQLQueryBuilder(
               entitiesMap.values(),
-              PAGE,
+              isKeysetPaginated() ? CONNECTION : PAGE,
               fkTargetType
             );
             clientQueryBuilder.setOwnerEntityType(entityName);
@@ -161,6 +165,23 @@ public class ForeignKeyEntityEndpointsFactory {
             );
             clientFactory.addQuery(clientQueryBuilder);
           }
+          if (resolvers.contains(BATCHED__GET_PAGINATED__BATCH)) {
+            entityCollectionEndpoints.add(
+              genBatchedGetPaginatedBatchInEntityCollection(fieldApiSpec)
+            );
+          }
+          if (resolvers.contains(BATCHED__PAGINATED__FREE_TEXT_SEARCH)) {
+            entityCollectionEndpoints.add(
+              genBatchedGetPaginatedFreeTextSearchInEntityCollection(
+                fieldApiSpec
+              )
+            );
+          }
+          if (resolvers.contains(COUNT)) {
+            entityCollectionEndpoints.add(
+              genEntityCollectionCount(fieldElement)
+            );
+          }
 
           val subscriptions = config != null
             ? Arrays.asList(config.subscriptions())
@@ -241,6 +262,37 @@ public class ForeignKeyEntityEndpointsFactory {
     return builder.build();
   }
 
+  private MethodSpec genEntityCollectionCount(
+    VariableElement entityCollectionField
+  ) {
+    val config = entityCollectionField.getAnnotation(EntityCollectionApi.class);
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder(camelcaseNameOf(entityCollectionField) + "Count")
+      .addModifiers(PUBLIC)
+      .addAnnotation(io.leangen.graphql.annotations.Batched.class)
+      .addAnnotation(graphqlQueryAnnotation())
+      .addParameter(asParamList(apiSpec.getElement(), GraphQLContext.class))
+      .addStatement(
+        "return apiLogic.getCollectionCounts(input, $S, $L)",
+        camelcaseNameOf(entityCollectionField),
+        dataManagerName(entityCollectionField)
+      )
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(List.class),
+          ClassName.get(Long.class)
+        )
+      );
+    if (
+      SecurityAnnotationsFactory.areSecurityAnnotationsPresent(
+        config,
+        "",
+        "Get"
+      )
+    ) builder.addAnnotations(SecurityAnnotationsFactory.of(config, "", "Get"));
+    return builder.build();
+  }
+
   private MethodSpec genAssociateWithEntityCollection(
     FieldGraphQLApiSpec fkSpec,
     GraphQLQueryBuilder clientQueryBuilder
@@ -360,6 +412,10 @@ public class ForeignKeyEntityEndpointsFactory {
     return builder.build();
   }
 
+  private boolean isKeysetPaginated() {
+    return apiSpec.getPaginationMode() == PaginationMode.KEYSET;
+  }
+
   private MethodSpec genGetPaginatedBatchInEntityCollection(
     FieldGraphQLApiSpec fkSpec,
     GraphQLQueryBuilder clientQueryBuilder
@@ -370,7 +426,12 @@ public class ForeignKeyEntityEndpointsFactory {
       pascalCaseNameOf(apiSpec.getElement());
     val config = fkSpec.getAnnotation(EntityCollectionApi.class);
     ParameterSpec input = ParameterSpec
-      .builder(TypeName.get(PageRequest.class), "input")
+      .builder(
+        TypeName.get(
+          isKeysetPaginated() ? ConnectionRequest.class : PageRequest.class
+        ),
+        "input"
+      )
       .build();
     MethodSpec.Builder builder = MethodSpec
       .methodBuilder(queryName)
@@ -381,7 +442,17 @@ public class ForeignKeyEntityEndpointsFactory {
           .builder(ClassName.get(apiSpec.getElement()), "owner")
           .build()
       )
-      .addParameter(input)
+      .addParameter(input);
+    if (isKeysetPaginated()) builder
+      .addStatement(
+        "return apiLogic.getKeysetPaginatedBatchInEntityCollection(owner, input, $S, $L, $L)",
+        camelcaseNameOf(fkSpec.getElement()),
+        dataManagerName(fkSpec.getElement()),
+        isCustomEntityCollectionApiHooks(config)
+          ? entityCollectionApiHooksName(fkSpec.getElement())
+          : "null"
+      )
+      .returns(connectionType(fkSpec.getElement())); else builder
       .addCode(
         initSortByIfNull(
           params.getEntitiesMap().get(getCollectionType(fkSpec.getElement()))
@@ -412,7 +483,10 @@ public class ForeignKeyEntityEndpointsFactory {
       new LinkedHashMap<String, String>() {
         {
           put("owner", apiSpec.getSimpleName() + "Input");
-          put("input", "PageRequestInput");
+          put(
+            "input",
+            isKeysetPaginated() ? "ConnectionRequestInput" : "PageRequestInput"
+          );
         }
       }
     );
@@ -496,6 +570,108 @@ public class ForeignKeyEntityEndpointsFactory {
     return builder.build();
   }
 
+  private MethodSpec genBatchedGetPaginatedBatchInEntityCollection(
+    FieldGraphQLApiSpec fkSpec
+  ) {
+    String queryName = camelcaseNameOf(fkSpec.getElement()) + "Page";
+    val config = fkSpec.getAnnotation(EntityCollectionApi.class);
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder(queryName)
+      .addModifiers(PUBLIC)
+      .addAnnotation(io.leangen.graphql.annotations.Batched.class)
+      .addAnnotation(graphqlQueryAnnotation())
+      .addParameter(asParamList(apiSpec.getElement(), GraphQLContext.class))
+      .addParameter(
+        ParameterSpec
+          .builder(TypeName.get(PageRequest.class), "pageRequest")
+          .build()
+      )
+      .addCode(initPageRequestSortByIfNull(fkSpec))
+      .addStatement(
+        "return apiLogic.getPaginatedBatchInEntityCollections(input, pageRequest, $S, $L, $L)",
+        camelcaseNameOf(fkSpec.getElement()),
+        dataManagerName(fkSpec.getElement()),
+        isCustomEntityCollectionApiHooks(config)
+          ? entityCollectionApiHooksName(fkSpec.getElement())
+          : "null"
+      )
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(List.class),
+          pageType(fkSpec.getElement())
+        )
+      );
+    if (
+      SecurityAnnotationsFactory.areSecurityAnnotationsPresent(
+        config,
+        "",
+        "GetPaginated"
+      )
+    ) builder.addAnnotations(
+      SecurityAnnotationsFactory.of(config, "", "GetPaginated")
+    );
+    return builder.build();
+  }
+
+  private MethodSpec genBatchedGetPaginatedFreeTextSearchInEntityCollection(
+    FieldGraphQLApiSpec fkSpec
+  ) {
+    String queryName =
+      camelcaseNameOf(fkSpec.getElement()) + "FreeTextSearch";
+    val config = fkSpec.getAnnotation(EntityCollectionApi.class);
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder(queryName)
+      .addModifiers(PUBLIC)
+      .addAnnotation(io.leangen.graphql.annotations.Batched.class)
+      .addAnnotation(graphqlQueryAnnotation())
+      .addParameter(asParamList(apiSpec.getElement(), GraphQLContext.class))
+      .addParameter(
+        ParameterSpec
+          .builder(TypeName.get(FreeTextSearchPageRequest.class), "pageRequest")
+          .build()
+      )
+      .addCode(initPageRequestSortByIfNull(fkSpec))
+      .addStatement(
+        "return apiLogic.paginatedFreeTextSearchInEntityCollections(input, pageRequest, $S, $L, $L)",
+        camelcaseNameOf(fkSpec.getElement()),
+        dataManagerName(fkSpec.getElement()),
+        isCustomEntityCollectionApiHooks(config)
+          ? entityCollectionApiHooksName(fkSpec.getElement())
+          : "null"
+      )
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(List.class),
+          pageType(fkSpec.getElement())
+        )
+      );
+    if (
+      SecurityAnnotationsFactory.areSecurityAnnotationsPresent(
+        config,
+        "",
+        "PaginatedFreeTextSearch"
+      )
+    ) builder.addAnnotations(
+      SecurityAnnotationsFactory.of(config, "", "PaginatedFreeTextSearch")
+    );
+    return builder.build();
+  }
+
+  // the owners list is bound to "input", so the page request is named "pageRequest"
+  private CodeBlock initPageRequestSortByIfNull(FieldGraphQLApiSpec fkSpec) {
+    return CodeBlock
+      .builder()
+      .beginControlFlow("if(pageRequest.getSortBy() == null)")
+      .addStatement(
+        "pageRequest.setSortBy($S)",
+        getIdFieldName(
+          params.getEntitiesMap().get(getCollectionType(fkSpec.getElement()))
+        )
+      )
+      .endControlFlow()
+      .build();
+  }
+
   private MethodSpec genOnAssociateWithSubscription(
     FieldGraphQLApiSpec fieldApiSpec,
     GraphQLQueryBuilder clientQueryBuilder
@@ -609,6 +785,7 @@ public class ForeignKeyEntityEndpointsFactory {
     MethodSpec.Builder builder = MethodSpec
       .methodBuilder(queryName)
       .addModifiers(Modifier.PUBLIC)
+      .addAnnotation(io.leangen.graphql.annotations.Batched.class) // resolve all owners in the request via one DataLoader batch
       .addAnnotation(graphqlQueryAnnotation())
       .addParameter(input)
       .addStatement(
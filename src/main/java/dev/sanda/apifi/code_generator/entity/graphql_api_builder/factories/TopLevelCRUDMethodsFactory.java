@@ -7,11 +7,14 @@ import dev.sanda.apifi.code_generator.client.GraphQLQueryBuilder;
 import dev.sanda.apifi.code_generator.entity.element_api_spec.EntityGraphQLApiSpec;
 import dev.sanda.apifi.code_generator.entity.graphql_api_builder.GraphQLApiBuilderParams;
 import dev.sanda.apifi.code_generator.entity.operation_types_enums.CRUDEndpoints;
+import dev.sanda.apifi.code_generator.entity.operation_types_enums.PaginationMode;
+import dev.sanda.apifi.dto.ConnectionRequest;
 import dev.sanda.apifi.security.SecurityAnnotationsFactory;
 import dev.sanda.datafi.dto.FreeTextSearchPageRequest;
 import dev.sanda.datafi.dto.PageRequest;
 import io.leangen.graphql.annotations.GraphQLMutation;
 import io.leangen.graphql.annotations.GraphQLQuery;
+import jakarta.transaction.Transactional;
 import lombok.val;
 
 import javax.annotation.processing.ProcessingEnvironment;
@@ -145,7 +148,7 @@ public class TopLevelCRUDMethodsFactory {
     switch (endpoint) {
       case GET_PAGINATED_BATCH:
       case GET_ARCHIVED_PAGINATED_BATCH:
-        return PAGE;
+        return isKeysetPaginated() ? CONNECTION : PAGE;
       case GET_TOTAL_COUNT:
       case GET_TOTAL_ARCHIVED_COUNT:
         return NUMBER;
@@ -173,16 +176,20 @@ public class TopLevelCRUDMethodsFactory {
     GraphQLQueryBuilder clientQueryBuilder
   ) {
     final String name = toPlural(camelcaseNameOf(apiSpec.getElement()));
-    MethodSpec.Builder builder = MethodSpec
-      .methodBuilder(name)
-      .addModifiers(PUBLIC)
-      .addAnnotation(graphqlQueryAnnotation())
-      .addParameter(
-        ParameterSpec.builder(ClassName.get(PageRequest.class), "input").build()
-      )
-      .addCode(initSortByIfNull(apiSpec.getElement()))
-      .addStatement("return apiLogic.getPaginatedBatch(input)")
-      .returns(pageType(apiSpec.getElement()));
+    MethodSpec.Builder builder = isKeysetPaginated()
+      ? keysetPaginatedMethodBuilder(name, "getKeysetPaginatedBatch")
+      : MethodSpec
+        .methodBuilder(name)
+        .addModifiers(PUBLIC)
+        .addAnnotation(graphqlQueryAnnotation())
+        .addParameter(
+          ParameterSpec
+            .builder(ClassName.get(PageRequest.class), "input")
+            .build()
+        )
+        .addCode(initSortByIfNull(apiSpec.getElement()))
+        .addStatement("return apiLogic.getPaginatedBatch(input)")
+        .returns(pageType(apiSpec.getElement()));
     if (
       methodLevelSecuritiesMap.containsKey(GET_PAGINATED_BATCH.toString())
     ) builder.addAnnotations(
@@ -193,13 +200,38 @@ public class TopLevelCRUDMethodsFactory {
     clientQueryBuilder.setVars(
       new LinkedHashMap<String, String>() {
         {
-          put("input", "PageRequestInput");
+          put("input", paginatedInputTypeName());
         }
       }
     );
     return builder.build();
   }
 
+  private boolean isKeysetPaginated() {
+    return apiSpec.getPaginationMode() == PaginationMode.KEYSET;
+  }
+
+  private String paginatedInputTypeName() {
+    return isKeysetPaginated() ? "ConnectionRequestInput" : "PageRequestInput";
+  }
+
+  private MethodSpec.Builder keysetPaginatedMethodBuilder(
+    String name,
+    String apiLogicMethodName
+  ) {
+    return MethodSpec
+      .methodBuilder(name)
+      .addModifiers(PUBLIC)
+      .addAnnotation(graphqlQueryAnnotation())
+      .addParameter(
+        ParameterSpec
+          .builder(ClassName.get(ConnectionRequest.class), "input")
+          .build()
+      )
+      .addStatement("return apiLogic.$L(input)", apiLogicMethodName)
+      .returns(connectionType(apiSpec.getElement()));
+  }
+
   private MethodSpec genGetTotalNonArchivedCount(
     GraphQLQueryBuilder clientQueryBuilder
   ) {
@@ -317,6 +349,9 @@ public class TopLevelCRUDMethodsFactory {
       .addParameter(parameterizeType(apiSpec.getElement()))
       .addStatement("return apiLogic.create(input)")
       .returns(TypeName.get(apiSpec.getElement().asType()));
+    if (apiSpec.isCoalesceWrites()) builder.addAnnotation(
+      supportsTransactionAnnotation()
+    );
     if (
       methodLevelSecuritiesMap.containsKey(CREATE.toString())
     ) builder.addAnnotations(methodLevelSecuritiesMap.get(CREATE.toString()));
@@ -368,6 +403,9 @@ public class TopLevelCRUDMethodsFactory {
       .addParameter(parameterizeType(apiSpec.getElement()))
       .addStatement("return apiLogic.update(input)")
       .returns(TypeName.get(apiSpec.getElement().asType()));
+    if (apiSpec.isCoalesceWrites()) builder.addAnnotation(
+      supportsTransactionAnnotation()
+    );
     if (
       methodLevelSecuritiesMap.containsKey(UPDATE.toString())
     ) builder.addAnnotations(methodLevelSecuritiesMap.get(UPDATE.toString()));
@@ -570,16 +608,20 @@ public class TopLevelCRUDMethodsFactory {
   ) {
     final String name =
       "archived" + toPlural(pascalCaseNameOf(apiSpec.getElement()));
-    MethodSpec.Builder builder = MethodSpec
-      .methodBuilder(name)
-      .addModifiers(PUBLIC)
-      .addAnnotation(graphqlQueryAnnotation())
-      .addParameter(
-        ParameterSpec.builder(ClassName.get(PageRequest.class), "input").build()
-      )
-      .addCode(initSortByIfNull(apiSpec.getElement()))
-      .addStatement("return apiLogic.getArchivedPaginatedBatch(input)")
-      .returns(pageType(apiSpec.getElement()));
+    MethodSpec.Builder builder = isKeysetPaginated()
+      ? keysetPaginatedMethodBuilder(name, "getArchivedKeysetPaginatedBatch")
+      : MethodSpec
+        .methodBuilder(name)
+        .addModifiers(PUBLIC)
+        .addAnnotation(graphqlQueryAnnotation())
+        .addParameter(
+          ParameterSpec
+            .builder(ClassName.get(PageRequest.class), "input")
+            .build()
+        )
+        .addCode(initSortByIfNull(apiSpec.getElement()))
+        .addStatement("return apiLogic.getArchivedPaginatedBatch(input)")
+        .returns(pageType(apiSpec.getElement()));
     if (
       methodLevelSecuritiesMap.containsKey(
         GET_ARCHIVED_PAGINATED_BATCH.toString()
@@ -592,7 +634,7 @@ public class TopLevelCRUDMethodsFactory {
     clientQueryBuilder.setVars(
       new LinkedHashMap<String, String>() {
         {
-          put("input", "PageRequestInput");
+          put("input", paginatedInputTypeName());
         }
       }
     );
@@ -689,4 +731,17 @@ public class TopLevelCRUDMethodsFactory {
   private AnnotationSpec graphqlMutationAnnotation() {
     return AnnotationSpec.builder(GraphQLMutation.class).build();
   }
+
+  /**
+   * Creates and updates of entities which opt into write coalescing may be
+   * coalesced into batches, which are written in transactions of their own,
+   * so their endpoints join the caller's transaction if there is one, rather
+   * than always starting one.
+   */
+  private AnnotationSpec supportsTransactionAnnotation() {
+    return AnnotationSpec
+      .builder(Transactional.class)
+      .addMember("value", "$T.SUPPORTS", Transactional.TxType.class)
+      .build();
+  }
 }
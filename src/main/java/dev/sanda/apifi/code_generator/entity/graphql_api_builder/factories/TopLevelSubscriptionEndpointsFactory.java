@@ -1,13 +1,18 @@
 package dev.sanda.apifi.code_generator.entity.graphql_api_builder.factories;
 
 import com.squareup.javapoet.*;
+import dev.sanda.apifi.annotations.WithApiFreeTextSearchByFields;
 import dev.sanda.apifi.annotations.WithSubscriptionEndpoints;
 import dev.sanda.apifi.code_generator.client.ApifiClientFactory;
 import dev.sanda.apifi.code_generator.client.GraphQLQueryBuilder;
 import dev.sanda.apifi.code_generator.client.SubscriptionObservableType;
 import dev.sanda.apifi.code_generator.entity.element_api_spec.EntityGraphQLApiSpec;
 import dev.sanda.apifi.code_generator.entity.graphql_api_builder.GraphQLApiBuilderParams;
+import dev.sanda.apifi.dto.ImportProgress;
+import dev.sanda.apifi.security.SecurityAnnotationsFactory;
 import dev.sanda.apifi.service.graphql_subcriptions.SubscriptionEndpoints;
+import dev.sanda.datafi.dto.FreeTextSearchPageRequest;
+import dev.sanda.datafi.dto.PageRequest;
 import io.leangen.graphql.annotations.GraphQLArgument;
 import io.leangen.graphql.annotations.GraphQLSubscription;
 import lombok.val;
@@ -22,7 +27,10 @@ import static dev.sanda.apifi.code_generator.client.ClientSideReturnType.INSTANC
 import static dev.sanda.apifi.code_generator.client.GraphQLQueryType.SUBSCRIPTION;
 import static dev.sanda.apifi.code_generator.client.SubscriptionObservableType.ENTITY_TYPE;
 import static dev.sanda.apifi.code_generator.client.SubscriptionObservableType.LIST_TO_OBSERVE;
+import static dev.sanda.apifi.code_generator.client.SubscriptionObservableType.PAGE_REQUEST;
+import static dev.sanda.apifi.code_generator.entity.operation_types_enums.CRUDEndpoints.BATCH_CREATE;
 import static dev.sanda.apifi.service.graphql_subcriptions.SubscriptionEndpoints.*;
+import static dev.sanda.apifi.utils.ApifiStaticUtils.initSortByIfNull;
 import static dev.sanda.apifi.utils.ApifiStaticUtils.listOf;
 import static dev.sanda.datafi.DatafiStaticUtils.toPlural;
 import static javax.lang.model.element.Modifier.PUBLIC;
@@ -59,6 +67,13 @@ public class TopLevelSubscriptionEndpointsFactory {
     String entityName = this.entityName;
 
     for (SubscriptionEndpoints endpointType : subscriptionEndpointsSet) {
+      // import progress is not entity typed, so it has no client side query
+      if (endpointType == IMPORT_PROGRESS) {
+        if (
+          params.getCrudResolvers().containsKey(BATCH_CREATE)
+        ) result.add(genImportProgressSubscription());
+        continue;
+      }
       GraphQLQueryBuilder clientQueryBuilder = new GraphQLQueryBuilder(
         entitiesMap.values(),
         INSTANCE,
@@ -74,6 +89,18 @@ public class TopLevelSubscriptionEndpointsFactory {
       );
       result.add(subscriptionMethod);
       clientFactory.addQuery(clientQueryBuilder);
+      if (
+        endpointType == STREAM_ALL &&
+        apiSpec.getAnnotation(WithApiFreeTextSearchByFields.class) != null
+      ) {
+        GraphQLQueryBuilder freeTextSearchQueryBuilder =
+          new GraphQLQueryBuilder(entitiesMap.values(), INSTANCE, entityName);
+        freeTextSearchQueryBuilder.setSubscriptionObservableType(PAGE_REQUEST);
+        result.add(
+          genStreamFreeTextSearchSubscription(freeTextSearchQueryBuilder)
+        );
+        clientFactory.addQuery(freeTextSearchQueryBuilder);
+      }
     }
 
     return result;
@@ -94,6 +121,8 @@ public class TopLevelSubscriptionEndpointsFactory {
         return genOnArchiveSubscription(clientQueryBuilder);
       case ON_DE_ARCHIVE:
         return genOnDeArchiveSubscription(clientQueryBuilder);
+      case STREAM_ALL:
+        return genStreamAllSubscription(clientQueryBuilder);
       default:
         throw new IllegalArgumentException(
           "Unsupported endpoint type: " + endpointType
@@ -104,9 +133,120 @@ public class TopLevelSubscriptionEndpointsFactory {
   private SubscriptionObservableType getObservableType(
     SubscriptionEndpoints endpointType
   ) {
+    if (endpointType == STREAM_ALL) return PAGE_REQUEST;
     return endpointType == ON_CREATE ? ENTITY_TYPE : LIST_TO_OBSERVE;
   }
 
+  // streams all non archived instances in chunks, which are read as they are requested by the subscriber
+  private MethodSpec genStreamAllSubscription(
+    GraphQLQueryBuilder clientQueryBuilder
+  ) {
+    val subscriptionName = "stream" + toPlural(entityName);
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder(subscriptionName)
+      .addModifiers(PUBLIC)
+      .addAnnotation(GraphQLSubscription.class)
+      .addParameter(
+        ParameterSpec.builder(ClassName.get(PageRequest.class), "input").build()
+      )
+      .addCode(initSortByIfNull(apiSpec.getElement()))
+      .addStatement("return apiLogic.streamAll(input)")
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(Flux.class),
+          listOf(apiSpec.getElement())
+        )
+      );
+    if (
+      methodLevelSecuritiesMap.containsKey(STREAM_ALL.toString())
+    ) builder.addAnnotations(
+      methodLevelSecuritiesMap.get(STREAM_ALL.toString())
+    );
+    clientQueryBuilder.setQueryType(SUBSCRIPTION);
+    clientQueryBuilder.setQueryName(subscriptionName);
+    clientQueryBuilder.setVars(
+      new LinkedHashMap<String, String>() {
+        {
+          put("input", "PageRequestInput");
+        }
+      }
+    );
+    return builder.build();
+  }
+
+  private MethodSpec genStreamFreeTextSearchSubscription(
+    GraphQLQueryBuilder clientQueryBuilder
+  ) {
+    val subscriptionName = "stream" + toPlural(entityName) + "FreeTextSearch";
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder(subscriptionName)
+      .addModifiers(PUBLIC)
+      .addAnnotation(GraphQLSubscription.class)
+      .addParameter(
+        ParameterSpec
+          .builder(ClassName.get(FreeTextSearchPageRequest.class), "input")
+          .build()
+      )
+      .addCode(initSortByIfNull(apiSpec.getElement()))
+      .addStatement("return apiLogic.streamFreeTextSearch(input)")
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(Flux.class),
+          listOf(apiSpec.getElement())
+        )
+      );
+    val textSearchBySecurity = apiSpec.getAnnotation(
+      WithApiFreeTextSearchByFields.class
+    );
+    if (
+      methodLevelSecuritiesMap.containsKey(STREAM_ALL.toString())
+    ) builder.addAnnotations(
+      methodLevelSecuritiesMap.get(STREAM_ALL.toString())
+    ); else if (
+      SecurityAnnotationsFactory.areSecurityAnnotationsPresent(
+        textSearchBySecurity,
+        ""
+      )
+    ) builder.addAnnotations(
+      SecurityAnnotationsFactory.of(textSearchBySecurity, "")
+    );
+    clientQueryBuilder.setQueryType(SUBSCRIPTION);
+    clientQueryBuilder.setQueryName(subscriptionName);
+    clientQueryBuilder.setVars(
+      new LinkedHashMap<String, String>() {
+        {
+          put("input", "FreeTextSearchPageRequestInput");
+        }
+      }
+    );
+    return builder.build();
+  }
+
+  // observes the progress of an import, until it completes or fails
+  private MethodSpec genImportProgressSubscription() {
+    val subscriptionName = "on" + toPlural(entityName) + "ImportProgress";
+    MethodSpec.Builder builder = MethodSpec
+      .methodBuilder(subscriptionName)
+      .addModifiers(PUBLIC)
+      .addAnnotation(GraphQLSubscription.class)
+      .addParameter(
+        ParameterSpec.builder(ClassName.get(String.class), "importId").build()
+      )
+      .addStatement("return apiLogic.onImportProgressSubscription(importId)")
+      .returns(
+        ParameterizedTypeName.get(
+          ClassName.get(Flux.class),
+          ClassName.get(ImportProgress.class)
+        )
+      );
+    if (
+      methodLevelSecuritiesMap.containsKey(IMPORT_PROGRESS.toString())
+    ) builder.addAnnotations(
+      methodLevelSecuritiesMap.get(IMPORT_PROGRESS.toString())
+    );
+    return builder.build();
+  }
+
   private MethodSpec genOnCreateSubscription(
     GraphQLQueryBuilder clientQueryBuilder
   ) {
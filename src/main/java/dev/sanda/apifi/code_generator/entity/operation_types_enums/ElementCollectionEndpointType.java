@@ -5,4 +5,5 @@ public enum ElementCollectionEndpointType {
   REMOVE__FROM,
   PAGINATED__BATCH_,
   PAGINATED__FREE__TEXT_SEARCH,
+  COUNT,
 }
@@ -5,4 +5,7 @@ public enum EntityCollectionEndpointType {
   REMOVE_FROM,
   GET_PAGINATED__BATCH,
   PAGINATED__FREE_TEXT_SEARCH,
+  BATCHED__GET_PAGINATED__BATCH,
+  BATCHED__PAGINATED__FREE_TEXT_SEARCH,
+  COUNT,
 }
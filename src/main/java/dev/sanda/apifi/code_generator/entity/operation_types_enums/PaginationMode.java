@@ -0,0 +1,6 @@
+package dev.sanda.apifi.code_generator.entity.operation_types_enums;
+
+public enum PaginationMode {
+  OFFSET,
+  KEYSET,
+}
@@ -0,0 +1,16 @@
+package dev.sanda.apifi.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Connection<T> {
+
+  private List<Edge<T>> edges = new ArrayList<>();
+  private PageInfo pageInfo = new PageInfo();
+}
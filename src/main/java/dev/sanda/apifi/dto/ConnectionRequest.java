@@ -0,0 +1,17 @@
+package dev.sanda.apifi.dto;
+
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Input of keyset paginated endpoints, requesting the {@code first} items
+ * following the {@code after} cursor (or the start of the sort order, if null).
+ */
+@Data
+public class ConnectionRequest {
+
+  private Integer first = 25;
+  private String after;
+  private String sortBy;
+  private Sort.Direction sortDirection = Sort.Direction.ASC;
+}
@@ -5,9 +5,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import lombok.Data;
-
+import java.util.Collections;
 import java.util.Map;
+import lombok.Data;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
 @Data
 public class GraphQLRequest {
@@ -15,26 +17,50 @@ public class GraphQLRequest {
   private String query;
   private final String operationName;
   private final Map<String, Object> variables;
+  private final Map<String, Object> extensions;
 
   private static final ObjectMapper mapper = new ObjectMapper();
   private static final TypeReference<Map<String, Object>> variablesTypeRef =
     new TypeReference<Map<String, Object>>() {};
 
+  public GraphQLRequest(
+    String query,
+    String operationName,
+    Map<String, Object> variables
+  ) {
+    this(query, operationName, variables, null);
+  }
+
   @JsonCreator
   public GraphQLRequest(
     @JsonProperty("query") String query,
     @JsonProperty("operationName") String operationName,
-    @JsonProperty("variables") Map<String, Object> variables
+    @JsonProperty("variables") Map<String, Object> variables,
+    @JsonProperty("extensions") Map<String, Object> extensions
   ) {
     this.query = query;
     this.operationName = operationName;
     this.variables = variables;
+    this.extensions = extensions;
+  }
+
+  public boolean hasPersistedQueryExtension() {
+    return extensions != null && extensions.get("persistedQuery") instanceof Map;
   }
 
   public static GraphQLRequest fromObjectNode(ObjectNode objectNode) {
     final String query = objectNode.path("query").textValue();
-    if (query == null || query.isBlank()) {
-        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing field \"query\"");
+    final Map<String, Object> extensions =
+      objectNode.hasNonNull("extensions")
+        ? mapper.convertValue(objectNode.get("extensions"), variablesTypeRef)
+        : null;
+    final boolean isPersistedQuery =
+      extensions != null && extensions.containsKey("persistedQuery");
+    if ((query == null || query.isBlank()) && !isPersistedQuery) {
+      throw new ResponseStatusException(
+        HttpStatus.BAD_REQUEST,
+        "Missing field \"query\""
+      );
     }
     final String operationName =
       objectNode.hasNonNull("operationName")
@@ -44,6 +70,6 @@ public class GraphQLRequest {
       objectNode.hasNonNull("variables")
         ? mapper.convertValue(objectNode.get("variables"), variablesTypeRef)
         : Collections.emptyMap();
-    return new GraphQLRequest(query, operationName, variables);
+    return new GraphQLRequest(query, operationName, variables, extensions);
   }
 }
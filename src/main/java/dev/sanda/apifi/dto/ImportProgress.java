@@ -0,0 +1,21 @@
+package dev.sanda.apifi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The progress of a streaming import, as reported after each imported chunk
+ * and once the import has completed or failed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgress {
+
+  private String importId;
+  private String entityName;
+  private ImportStatus status;
+  private Long imported;
+  private String error;
+}
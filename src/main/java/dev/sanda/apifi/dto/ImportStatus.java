@@ -0,0 +1,7 @@
+package dev.sanda.apifi.dto;
+
+public enum ImportStatus {
+  RUNNING,
+  COMPLETED,
+  FAILED,
+}
@@ -0,0 +1,15 @@
+package dev.sanda.apifi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageInfo {
+
+  private boolean hasNextPage;
+  private String startCursor;
+  private String endCursor;
+}
@@ -1,113 +1,92 @@
 package dev.sanda.apifi.service.api_logic;
 
 import static dev.sanda.apifi.utils.ApifiStaticUtils.isClazzArchivable;
+import static dev.sanda.datafi.DatafiStaticUtils.getId;
 
-import dev.sanda.apifi.annotations.WithApiFreeTextSearchByFields;
 import dev.sanda.apifi.service.api_hooks.ApiHooks;
-import dev.sanda.datafi.code_generator.FreeTextSearchMethodsFactory;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.Operation;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.QueryKey;
+import dev.sanda.apifi.service.free_text_search.FreeTextSearchEngine;
 import dev.sanda.datafi.dto.FreeTextSearchPageRequest;
 import dev.sanda.datafi.dto.Page;
 import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
 import dev.sanda.datafi.service.DataManager;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.stream.Collectors;
 import lombok.val;
 
 public class ApiFreeTextSearchByImpl {
 
-  private static final Map<Class<?>, String> contentQueryCache = new ConcurrentHashMap<>();
-  private static final Map<Class<?>, String> countQueryCache = new ConcurrentHashMap<>();
-
-  private static <T> String contentQueryOf(
-    Class<T> clazz,
-    String clazzSimpleName,
-    boolean isArchivable,
-    String sortBy
-  ) {
-    if (contentQueryCache.containsKey(clazz)) return contentQueryCache.get(
-      clazz
-    );
-    val searchFieldNames = Arrays.asList(
-      clazz.getAnnotation(WithApiFreeTextSearchByFields.class).value()
-    );
-    val query =
-      FreeTextSearchMethodsFactory.freeTextSearchQuery(
-        clazzSimpleName,
-        searchFieldNames,
-        isArchivable,
-        false
-      ) +
-      " ORDER BY " +
-      sortBy;
-    contentQueryCache.putIfAbsent(clazz, query);
-    return query;
-  }
-
-  private static <T> String countQueryOf(
-    Class<T> clazz,
-    String clazzSimpleName,
-    boolean isArchivable
-  ) {
-    if (countQueryCache.containsKey(clazz)) return countQueryCache.get(clazz);
-    val searchFieldNames = Arrays.asList(
-      clazz.getAnnotation(WithApiFreeTextSearchByFields.class).value()
-    );
-    val query = FreeTextSearchMethodsFactory.freeTextSearchQuery(
-      clazzSimpleName,
-      searchFieldNames,
-      isArchivable,
-      true
-    );
-    countQueryCache.putIfAbsent(clazz, query);
-    return query;
-  }
-
   public static <T> Page<T> freeTextSearch(
     DataManager<T> dataManager,
     FreeTextSearchPageRequest request,
     ApiHooks<T> apiHooks,
-    ReflectionCache reflectionCache
+    ReflectionCache reflectionCache,
+    PaginatedQueryExecutor paginatedQueryExecutor,
+    JpqlQueryCache jpqlQueryCache,
+    FreeTextSearchEngine freeTextSearchEngine
   ) {
     if (apiHooks != null) apiHooks.preFreeTextSearch(
       request.getSearchTerm(),
       dataManager
     );
 
+    // the index orders matches by relevance, so explicitly sorted searches are served by the database
+    if (
+      request.getSortBy() == null &&
+      freeTextSearchEngine.isSearchable(dataManager.getClazz())
+    ) {
+      val returnValue = indexedFreeTextSearch(
+        dataManager,
+        request,
+        reflectionCache,
+        jpqlQueryCache,
+        freeTextSearchEngine
+      );
+      if (apiHooks != null) apiHooks.postFreeTextSearch(
+        request.getSearchTerm(),
+        returnValue.getContent(),
+        dataManager
+      );
+      return returnValue;
+    }
+
     val isClazzArchivable = isClazzArchivable(
       dataManager.getClazz(),
       reflectionCache
     );
-    val contentQueryString = contentQueryOf(
-      dataManager.getClazz(),
+    val contentQueryKey = QueryKey.sorted(
       dataManager.getClazzSimpleName(),
-      isClazzArchivable,
-      request.getSortBy()
+      Operation.FREE_TEXT_SEARCH,
+      null,
+      request.getSortBy(),
+      request.getSortDirection(),
+      isClazzArchivable
     );
-    val content = dataManager
-      .entityManager()
-      .createQuery(contentQueryString)
-      .setParameter("searchTerm", request.getSearchTerm())
-      .setFirstResult(request.getPageNumber() * request.getPageSize())
-      .setMaxResults(request.getPageSize())
-      .getResultList();
-
-    val countQueryString = countQueryOf(
-      dataManager.getClazz(),
+    val countQueryKey = QueryKey.of(
       dataManager.getClazzSimpleName(),
+      Operation.FREE_TEXT_SEARCH_COUNT,
+      null,
       isClazzArchivable
     );
-    val totalRecords = (long) dataManager
-      .entityManager()
-      .createQuery(countQueryString)
-      .setParameter("searchTerm", request.getSearchTerm())
-      .getSingleResult();
-    val totalPages = Math.ceil((double) totalRecords / request.getPageSize());
-    val returnValue = new dev.sanda.datafi.dto.Page<T>();
-
-    returnValue.setContent(content);
-    returnValue.setTotalPagesCount((long) totalPages);
-    returnValue.setTotalItemsCount(totalRecords);
+    val returnValue = paginatedQueryExecutor.<T>fetchPage(
+      request.getPageNumber(),
+      request.getPageSize(),
+      () ->
+        jpqlQueryCache
+          .createQuery(dataManager.entityManager(), contentQueryKey)
+          .setParameter("searchTerm", request.getSearchTerm())
+          .setFirstResult(request.getPageNumber() * request.getPageSize())
+          .setMaxResults(request.getPageSize())
+          .getResultList(),
+      () ->
+        jpqlQueryCache
+          .createQuery(dataManager.entityManager(), countQueryKey, Long.class)
+          .setParameter("searchTerm", request.getSearchTerm())
+          .getSingleResult()
+    );
 
     if (apiHooks != null) apiHooks.postFreeTextSearch(
       request.getSearchTerm(),
@@ -117,4 +96,59 @@ public class ApiFreeTextSearchByImpl {
 
     return returnValue;
   }
+
+  /**
+   * Selects the requested page of ids from the search engine, and loads the
+   * corresponding instances in the same order. Since the index may lag
+   * behind the database, instances which have since been archived are
+   * filtered out by the loading query.
+   */
+  private static <T> Page<T> indexedFreeTextSearch(
+    DataManager<T> dataManager,
+    FreeTextSearchPageRequest request,
+    ReflectionCache reflectionCache,
+    JpqlQueryCache jpqlQueryCache,
+    FreeTextSearchEngine freeTextSearchEngine
+  ) {
+    val hits = freeTextSearchEngine.search(
+      dataManager.getClazz(),
+      request.getSearchTerm(),
+      request.getPageNumber() * request.getPageSize(),
+      request.getPageSize()
+    );
+    final Map<Object, T> instancesById = new HashMap<>();
+    if (!hits.getIds().isEmpty()) jpqlQueryCache
+      .createQuery(
+        dataManager.entityManager(),
+        QueryKey.of(
+          dataManager.getClazzSimpleName(),
+          Operation.NON_ARCHIVED_BY_IDS,
+          null,
+          isClazzArchivable(dataManager.getClazz(), reflectionCache)
+        ),
+        dataManager.getClazz()
+      )
+      .setParameter("ids", hits.getIds())
+      .getResultList()
+      .forEach(instance ->
+        instancesById.put(getId(instance, reflectionCache), instance)
+      );
+    val page = new Page<T>();
+    page.setContent(
+      hits
+        .getIds()
+        .stream()
+        .map(instancesById::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList())
+    );
+    page.setPageNumber(request.getPageNumber());
+    page.setTotalItemsCount(hits.getTotalHits());
+    page.setTotalPagesCount(
+      request.getPageSize() > 0
+        ? (long) Math.ceil((double) hits.getTotalHits() / request.getPageSize())
+        : 1L
+    );
+    return page;
+  }
 }
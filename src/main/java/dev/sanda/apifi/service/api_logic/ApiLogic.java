@@ -1,9 +1,19 @@
 package dev.sanda.apifi.service.api_logic;
 
+import dev.sanda.apifi.dto.Connection;
+import dev.sanda.apifi.dto.ConnectionRequest;
+import dev.sanda.apifi.dto.ImportProgress;
 import dev.sanda.apifi.service.api_hooks.ApiHooks;
 import dev.sanda.apifi.service.api_hooks.ElementCollectionApiHooks;
 import dev.sanda.apifi.service.api_hooks.EntityCollectionApiHooks;
 import dev.sanda.apifi.service.api_hooks.MapElementCollectionApiHooks;
+import dev.sanda.apifi.service.bulk_export.BulkExportService;
+import dev.sanda.apifi.service.bulk_export.ExportFormat;
+import dev.sanda.apifi.service.bulk_import.BulkImportService;
+import dev.sanda.apifi.service.bulk_import.ImportFormat;
+import dev.sanda.apifi.service.metrics.MetricType;
+import dev.sanda.apifi.service.metrics.MetricsRecorder;
+import dev.sanda.apifi.service.metrics.TimedApiHooks;
 import dev.sanda.apifi.utils.ConfigValues;
 import dev.sanda.datafi.dto.FreeTextSearchPageRequest;
 import dev.sanda.datafi.dto.Page;
@@ -17,8 +27,11 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @Service
 @Scope("prototype")
@@ -33,15 +46,30 @@ public final class ApiLogic<T> {
 
     private final CollectionsCrudService<T> collectionsCrudService;
 
+    private final WriteCoalescer<T> writeCoalescer;
+
+    private final MetricsRecorder metricsRecorder;
+
+    private final BulkImportService bulkImportService;
+
+    private final BulkExportService bulkExportService;
+
+    private DataManager<T> dataManager;
+
     private SubscriptionsLogicService<T> subscriptionsLogicService;
 
+    private String entityName;
+
     public void init(
             DataManager<T> dataManager,
             ApiHooks<T> apiHooks,
             SubscriptionsLogicService<T> subscriptionsLogicService
     ) {
         val datafiLoggingEnabled = configValues.getDatafiLoggingEnabled();
+        this.dataManager = dataManager;
         this.subscriptionsLogicService = subscriptionsLogicService;
+        this.entityName = dataManager.getClazzSimpleName();
+        apiHooks = TimedApiHooks.wrap(apiHooks, entityName, metricsRecorder);
         this.crudService.init(
                 dataManager,
                 apiHooks,
@@ -60,88 +88,135 @@ public final class ApiLogic<T> {
                 datafiLoggingEnabled,
                 subscriptionsLogicService
         );
+        this.writeCoalescer.init(crudService, batchedCrudService);
     }
 
     public Page<T> getPaginatedBatch(dev.sanda.datafi.dto.PageRequest request) {
-        return batchedCrudService.getPaginatedBatchImpl(request);
+        return timed("getPaginatedBatch", () -> batchedCrudService.getPaginatedBatchImpl(request));
     }
 
     public Long getTotalNonArchivedCount() {
-        return batchedCrudService.getTotalNonArchivedCountImpl();
+        return timed("getTotalNonArchivedCount", () -> batchedCrudService.getTotalNonArchivedCountImpl());
     }
 
     public Long getTotalArchivedCount() {
-        return batchedCrudService.getTotalArchivedCountImpl();
+        return timed("getTotalArchivedCount", () -> batchedCrudService.getTotalArchivedCountImpl());
     }
 
     public Page<T> getArchivedPaginatedBatch(
             dev.sanda.datafi.dto.PageRequest request
     ) {
-        return batchedCrudService.getArchivedPaginatedBatchImpl(request);
+        return timed("getArchivedPaginatedBatch", () -> batchedCrudService.getArchivedPaginatedBatchImpl(request));
+    }
+
+    public Connection<T> getKeysetPaginatedBatch(ConnectionRequest request) {
+        return timed("getKeysetPaginatedBatch", () -> batchedCrudService.getKeysetPaginatedBatchImpl(request));
+    }
+
+    public Connection<T> getArchivedKeysetPaginatedBatch(ConnectionRequest request) {
+        return timed("getArchivedKeysetPaginatedBatch", () -> batchedCrudService.getArchivedKeysetPaginatedBatchImpl(request));
     }
 
     public Page<T> freeTextSearch(FreeTextSearchPageRequest request) {
-        return batchedCrudService.freeTextSearchImpl(request);
+        return timed("freeTextSearch", () -> batchedCrudService.freeTextSearchImpl(request));
+    }
+
+    public Flux<List<T>> streamAll(dev.sanda.datafi.dto.PageRequest request) {
+        return timed("streamAll", () -> batchedCrudService.streamAllImpl(request));
+    }
+
+    public Flux<List<T>> streamFreeTextSearch(FreeTextSearchPageRequest request) {
+        return timed("streamFreeTextSearch", () -> batchedCrudService.streamFreeTextSearchImpl(request));
     }
 
     public T getById(Object id) {
-        return crudService.getByIdImpl(id);
+        return timed("getById", () -> crudService.getByIdImpl(id));
     }
 
     public T apiFindByUnique(String fieldName, Object fieldValue) {
-        return crudService.apiFindByUniqueImpl(fieldName, fieldValue);
+        return timed("apiFindByUnique", () -> crudService.apiFindByUniqueImpl(fieldName, fieldValue));
     }
 
     public List<T> apiFindBy(String fieldName, Object argument) {
-        return batchedCrudService.apiFindByImpl(fieldName, argument);
+        return timed("apiFindBy", () -> batchedCrudService.apiFindByImpl(fieldName, argument));
     }
 
     public List<T> apiFindAllBy(String fieldName, List<?> arguments) {
-        return batchedCrudService.apiFindAllByImpl(fieldName, arguments);
+        return timed("apiFindAllBy", () -> batchedCrudService.apiFindAllByImpl(fieldName, arguments));
     }
 
     public T create(T input) {
-        return crudService.createImpl(input);
+        return timed("create", () -> writeCoalescer.create(input));
     }
 
     public T update(T input) {
-        return crudService.updateImpl(input);
+        return timed("update", () -> writeCoalescer.update(input));
     }
 
     public T delete(T input) {
-        return crudService.deleteImpl(input);
+        return timed("delete", () -> crudService.deleteImpl(input));
     }
 
     public <A extends Archivable> T archive(A input) {
-        return crudService.archiveImpl(input);
+        return timed("archive", () -> crudService.archiveImpl(input));
     }
 
     public <A extends Archivable> T deArchive(A input) {
-        return crudService.deArchiveImpl(input);
+        return timed("deArchive", () -> crudService.deArchiveImpl(input));
     }
 
     public <A extends Archivable> List<T> batchArchive(List<A> input) {
-        return batchedCrudService.batchArchiveImpl(input);
+        return timed("batchArchive", () -> batchedCrudService.batchArchiveImpl(input));
     }
 
     public <A extends Archivable> List<T> batchDeArchive(List<A> input) {
-        return batchedCrudService.batchDeArchiveImpl(input);
+        return timed("batchDeArchive", () -> batchedCrudService.batchDeArchiveImpl(input));
     }
 
     public List<T> getBatchByIds(List<?> ids) {
-        return batchedCrudService.getBatchByIdsImpl(ids);
+        return timed("getBatchByIds", () -> batchedCrudService.getBatchByIdsImpl(ids));
     }
 
     public List<T> batchCreate(List<T> input) {
-        return batchedCrudService.batchCreateImpl(input);
+        return timed("batchCreate", () -> batchedCrudService.batchCreateImpl(input));
     }
 
     public List<T> batchUpdate(List<T> input) {
-        return batchedCrudService.batchUpdateImpl(input);
+        return timed("batchUpdate", () -> batchedCrudService.batchUpdateImpl(input));
     }
 
     public List<T> batchDelete(List<T> input) {
-        return batchedCrudService.batchDeleteImpl(input);
+        return timed("batchDelete", () -> batchedCrudService.batchDeleteImpl(input));
+    }
+
+    public ImportProgress importAll(InputStream input, ImportFormat format, String importId) {
+        if (!bulkImportService.isEnabled())
+            throw new UnsupportedOperationException("Imports are not enabled, see apifi.import.enabled");
+        return timed(
+                "importAll",
+                () -> bulkImportService.importAll(
+                        dataManager,
+                        input,
+                        format,
+                        importId,
+                        batchedCrudService::batchCreateImpl
+                )
+        );
+    }
+
+    public long exportAll(OutputStream output, ExportFormat format, List<String> fields, dev.sanda.datafi.dto.PageRequest request) {
+        if (!bulkExportService.isEnabled())
+            throw new UnsupportedOperationException("Exports are not enabled, see apifi.export.enabled");
+        return timed(
+                "exportAll",
+                () -> bulkExportService.exportAll(
+                        dataManager.getClazz(),
+                        output,
+                        format,
+                        fields,
+                        chunkConsumer -> batchedCrudService.exportAllImpl(request, chunkConsumer)
+                )
+        );
     }
 
     public <TCollection, E extends EntityCollectionApiHooks<TCollection, T>> List<List<TCollection>> getEntityCollection(
@@ -150,11 +225,14 @@ public final class ApiLogic<T> {
             E collectionApiHooks,
             DataManager<TCollection> collectionDataManager
     ) {
-        return collectionsCrudService.getEntityCollectionImpl(
-                input,
-                collectionFieldName,
-                collectionApiHooks,
-                collectionDataManager
+        return timed(
+                "getEntityCollection",
+                () -> collectionsCrudService.getEntityCollectionImpl(
+                        input,
+                        collectionFieldName,
+                        collectionApiHooks,
+                        collectionDataManager
+                )
         );
     }
 
@@ -164,25 +242,46 @@ public final class ApiLogic<T> {
             String fieldName,
             DataManager<TCollection> collectionDataManager
     ) {
-        return collectionsCrudService.getForeignKeyEntityImpl(
-                input,
-                fieldName,
-                collectionDataManager
+        return timed(
+                "getForeignKeyEntity",
+                () -> collectionsCrudService.getForeignKeyEntityImpl(
+                        input,
+                        fieldName,
+                        collectionDataManager
+                )
         );
     }
 
 
+    public List<Long> getCollectionCounts(
+            List<T> owners,
+            String fieldName,
+            DataManager<?> collectionDataManager
+    ) {
+        return timed(
+                "getCollectionCounts",
+                () -> collectionsCrudService.getCollectionCountsImpl(
+                        owners,
+                        fieldName,
+                        collectionDataManager
+                )
+        );
+    }
+
     public <TCollection, E extends ElementCollectionApiHooks<TCollection, T>> List<TCollection> addToElementCollection(
             T input,
             String fieldName,
             List<TCollection> toAdd,
             E elementCollectionApiHooks
     ) {
-        return collectionsCrudService.addToElementCollectionImpl(
-                input,
-                fieldName,
-                toAdd,
-                elementCollectionApiHooks
+        return timed(
+                "addToElementCollection",
+                () -> collectionsCrudService.addToElementCollectionImpl(
+                        input,
+                        fieldName,
+                        toAdd,
+                        elementCollectionApiHooks
+                )
         );
     }
 
@@ -192,11 +291,14 @@ public final class ApiLogic<T> {
             List<TCollection> toRemove,
             E elementCollectionApiHooks
     ) {
-        return collectionsCrudService.removeFromElementCollectionImpl(
-                input,
-                fieldName,
-                toRemove,
-                elementCollectionApiHooks
+        return timed(
+                "removeFromElementCollection",
+                () -> collectionsCrudService.removeFromElementCollectionImpl(
+                        input,
+                        fieldName,
+                        toRemove,
+                        elementCollectionApiHooks
+                )
         );
     }
 
@@ -206,11 +308,14 @@ public final class ApiLogic<T> {
             String fieldName,
             E elementCollectionApiHooks
     ) {
-        return collectionsCrudService.getPaginatedBatchInElementCollectionImpl(
-                owner,
-                input,
-                fieldName,
-                elementCollectionApiHooks
+        return timed(
+                "getPaginatedBatchInElementCollection",
+                () -> collectionsCrudService.getPaginatedBatchInElementCollectionImpl(
+                        owner,
+                        input,
+                        fieldName,
+                        elementCollectionApiHooks
+                )
         );
     }
 
@@ -220,11 +325,14 @@ public final class ApiLogic<T> {
             String fieldName,
             E elementCollectionApiHooks
     ) {
-        return collectionsCrudService.getFreeTextSearchPaginatedBatchInElementCollectionImpl(
-                owner,
-                input,
-                fieldName,
-                elementCollectionApiHooks
+        return timed(
+                "getFreeTextSearchPaginatedBatchInElementCollection",
+                () -> collectionsCrudService.getFreeTextSearchPaginatedBatchInElementCollectionImpl(
+                        owner,
+                        input,
+                        fieldName,
+                        elementCollectionApiHooks
+                )
         );
     }
 
@@ -234,11 +342,14 @@ public final class ApiLogic<T> {
             Map<TMapKey, TMapValue> toPut,
             E apiHooks
     ) {
-        return collectionsCrudService.addToMapElementCollectionImpl(
-                input,
-                fieldName,
-                toPut,
-                apiHooks
+        return timed(
+                "addToMapElementCollection",
+                () -> collectionsCrudService.addToMapElementCollectionImpl(
+                        input,
+                        fieldName,
+                        toPut,
+                        apiHooks
+                )
         );
     }
 
@@ -248,11 +359,14 @@ public final class ApiLogic<T> {
             List<TMapKey> toRemove,
             E elementCollectionApiHooks
     ) {
-        return collectionsCrudService.removeFromMapElementCollectionImpl(
-                input,
-                fieldName,
-                toRemove,
-                elementCollectionApiHooks
+        return timed(
+                "removeFromMapElementCollection",
+                () -> collectionsCrudService.removeFromMapElementCollectionImpl(
+                        input,
+                        fieldName,
+                        toRemove,
+                        elementCollectionApiHooks
+                )
         );
     }
 
@@ -262,11 +376,14 @@ public final class ApiLogic<T> {
             String fieldName,
             E apiHooks
     ) {
-        return collectionsCrudService.getPaginatedBatchInMapElementCollectionImpl(
-                owner,
-                input,
-                fieldName,
-                apiHooks
+        return timed(
+                "getPaginatedBatchInMapElementCollection",
+                () -> collectionsCrudService.getPaginatedBatchInMapElementCollectionImpl(
+                        owner,
+                        input,
+                        fieldName,
+                        apiHooks
+                )
         );
     }
 
@@ -278,13 +395,16 @@ public final class ApiLogic<T> {
             E entityCollectionApiHooks,
             SubscriptionsLogicService<TCollection> collectionSubscriptionsLogicService
     ) {
-        return collectionsCrudService.associateWithEntityCollectionImpl(
-                input,
-                fieldName,
-                toAssociate,
-                collectionDataManager,
-                entityCollectionApiHooks,
-                collectionSubscriptionsLogicService
+        return timed(
+                "associateWithEntityCollection",
+                () -> collectionsCrudService.associateWithEntityCollectionImpl(
+                        input,
+                        fieldName,
+                        toAssociate,
+                        collectionDataManager,
+                        entityCollectionApiHooks,
+                        collectionSubscriptionsLogicService
+                )
         );
     }
 
@@ -295,12 +415,15 @@ public final class ApiLogic<T> {
             DataManager<TCollection> collectionDataManager,
             E entityCollectionApiHooks
     ) {
-        return collectionsCrudService.paginatedFreeTextSearchInEntityCollectionImpl(
-                owner,
-                input,
-                fieldName,
-                collectionDataManager,
-                entityCollectionApiHooks
+        return timed(
+                "paginatedFreeTextSearchInEntityCollection",
+                () -> collectionsCrudService.paginatedFreeTextSearchInEntityCollectionImpl(
+                        owner,
+                        input,
+                        fieldName,
+                        collectionDataManager,
+                        entityCollectionApiHooks
+                )
         );
     }
 
@@ -311,12 +434,72 @@ public final class ApiLogic<T> {
             DataManager<TCollection> collectionDataManager,
             E entityCollectionApiHooks
     ) {
-        return collectionsCrudService.getPaginatedBatchInEntityCollectionImpl(
-                owner,
-                input,
-                fieldName,
-                collectionDataManager,
-                entityCollectionApiHooks
+        return timed(
+                "getPaginatedBatchInEntityCollection",
+                () -> collectionsCrudService.getPaginatedBatchInEntityCollectionImpl(
+                        owner,
+                        input,
+                        fieldName,
+                        collectionDataManager,
+                        entityCollectionApiHooks
+                )
+        );
+    }
+
+    public <TCollection, E extends EntityCollectionApiHooks<TCollection, T>> Connection<TCollection> getKeysetPaginatedBatchInEntityCollection(
+            T owner,
+            ConnectionRequest input,
+            String fieldName,
+            DataManager<TCollection> collectionDataManager,
+            E entityCollectionApiHooks
+    ) {
+        return timed(
+                "getKeysetPaginatedBatchInEntityCollection",
+                () -> collectionsCrudService.getKeysetPaginatedBatchInEntityCollectionImpl(
+                        owner,
+                        input,
+                        fieldName,
+                        collectionDataManager,
+                        entityCollectionApiHooks
+                )
+        );
+    }
+
+    public <TCollection, E extends EntityCollectionApiHooks<TCollection, T>> List<Page<TCollection>> getPaginatedBatchInEntityCollections(
+            List<T> owners,
+            dev.sanda.datafi.dto.PageRequest input,
+            String fieldName,
+            DataManager<TCollection> collectionDataManager,
+            E entityCollectionApiHooks
+    ) {
+        return timed(
+                "getPaginatedBatchInEntityCollections",
+                () -> collectionsCrudService.getPaginatedBatchInEntityCollectionsImpl(
+                        owners,
+                        input,
+                        fieldName,
+                        collectionDataManager,
+                        entityCollectionApiHooks
+                )
+        );
+    }
+
+    public <TCollection, E extends EntityCollectionApiHooks<TCollection, T>> List<Page<TCollection>> paginatedFreeTextSearchInEntityCollections(
+            List<T> owners,
+            dev.sanda.datafi.dto.FreeTextSearchPageRequest input,
+            String fieldName,
+            DataManager<TCollection> collectionDataManager,
+            E entityCollectionApiHooks
+    ) {
+        return timed(
+                "paginatedFreeTextSearchInEntityCollections",
+                () -> collectionsCrudService.paginatedFreeTextSearchInEntityCollectionsImpl(
+                        owners,
+                        input,
+                        fieldName,
+                        collectionDataManager,
+                        entityCollectionApiHooks
+                )
         );
     }
 
@@ -328,13 +511,16 @@ public final class ApiLogic<T> {
             E entityCollectionApiHooks,
             SubscriptionsLogicService<TCollection> collectionSubscriptionsLogicService
     ) {
-        return collectionsCrudService.associatePreExistingWithEntityCollectionImpl(
-                input,
-                embeddedFieldName,
-                toAssociate,
-                collectionDataManager,
-                entityCollectionApiHooks,
-                collectionSubscriptionsLogicService
+        return timed(
+                "associatePreExistingWithEntityCollection",
+                () -> collectionsCrudService.associatePreExistingWithEntityCollectionImpl(
+                        input,
+                        embeddedFieldName,
+                        toAssociate,
+                        collectionDataManager,
+                        entityCollectionApiHooks,
+                        collectionSubscriptionsLogicService
+                )
         );
     }
 
@@ -345,17 +531,38 @@ public final class ApiLogic<T> {
             DataManager<TCollection> collectionDataManager,
             EntityCollectionApiHooks<TCollection, T> entityCollectionApiHooks
     ) {
-        return collectionsCrudService.removeFromEntityCollectionImpl(
-                owner,
-                toRemoveFieldName,
-                toRemove,
-                collectionDataManager,
-                entityCollectionApiHooks
+        return timed(
+                "removeFromEntityCollection",
+                () -> collectionsCrudService.removeFromEntityCollectionImpl(
+                        owner,
+                        toRemoveFieldName,
+                        toRemove,
+                        collectionDataManager,
+                        entityCollectionApiHooks
+                )
         );
     }
 
+    private <R> R timed(String methodName, Supplier<R> logic) {
+        if (!metricsRecorder.isEnabled()) return logic.get();
+        val start = System.nanoTime();
+        try {
+            return logic.get();
+        } finally {
+            metricsRecorder.recordLatency(
+                    MetricType.API_LOGIC_LATENCY,
+                    entityName + "." + methodName,
+                    System.nanoTime() - start
+            );
+        }
+    }
+
     // subscriptions
 
+    public Flux<ImportProgress> onImportProgressSubscription(String importId) {
+        return bulkImportService.progressOf(entityName, importId);
+    }
+
     public Flux<List<T>> onCreateSubscription(
             FluxSink.OverflowStrategy backPressureStrategy
     ) {
@@ -3,17 +3,34 @@ package dev.sanda.apifi.service.api_logic;
 import dev.sanda.apifi.service.api_hooks.ApiHooks;
 import dev.sanda.apifi.service.graphql_config.GraphQLSubscriptionSupport;
 import dev.sanda.apifi.service.graphql_subcriptions.pubsub.AsyncExecutorService;
+import dev.sanda.apifi.service.metrics.TimedApiHooks;
 import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
 import dev.sanda.datafi.service.DataManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.util.ClassUtils;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static dev.sanda.apifi.utils.ApifiStaticUtils.runAfterCommit;
 import static dev.sanda.datafi.DatafiStaticUtils.getId;
 
 @Slf4j
 @RequiredArgsConstructor
 public abstract class BaseCrudService<T> {
 
+  private static final Map<Class<?>, Set<String>> overriddenApiHooks =
+    new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<Boolean> isCoalescedWrite = new ThreadLocal<>();
+
   protected final ReflectionCache reflectionCache;
 
   protected final AsyncExecutorService asyncExecutorService;
@@ -59,16 +76,59 @@ public abstract class BaseCrudService<T> {
     throw exception;
   }
 
+  /**
+   * @return whether the api hooks implementation overrides any of the given
+   * {@link ApiHooks} methods, rather than inheriting their no-op defaults.
+   */
+  protected boolean overridesAnyApiHook(String... hookNames) {
+    if (apiHooks == null) return false;
+    val overridden = overriddenApiHooks.computeIfAbsent(
+      ClassUtils.getUserClass(TimedApiHooks.unwrap(apiHooks)),
+      hooksClass ->
+        Arrays
+          .stream(hooksClass.getMethods())
+          .filter(method -> method.getDeclaringClass() != ApiHooks.class)
+          .map(Method::getName)
+          .collect(Collectors.toSet())
+    );
+    return Arrays.stream(hookNames).anyMatch(overridden::contains);
+  }
+
+  protected boolean hasSubscriptions() {
+    return Boolean.TRUE.equals(
+      graphQLSubscriptionSupport.getHasSubscriptions()
+    );
+  }
+
   private void runAsync(Runnable runnable) {
     asyncExecutorService.executeAsync(runnable);
   }
 
+  /**
+   * The events of coalesced writes are only fired once the batch's
+   * transaction commits, since a failed batch is retried input by input.
+   */
   protected void fireSubscriptionEvent(Runnable runnable) {
-    if (graphQLSubscriptionSupport.getHasSubscriptions()) runAsync(runnable);
+    if (!graphQLSubscriptionSupport.getHasSubscriptions()) return;
+    if (Boolean.TRUE.equals(isCoalescedWrite.get())) runAfterCommit(() ->
+      runAsync(runnable)
+    ); else runAsync(runnable);
+  }
+
+  /**
+   * Runs a write on behalf of the {@link WriteCoalescer}.
+   */
+  static <R> R asCoalescedWrite(Supplier<R> write) {
+    isCoalescedWrite.set(true);
+    try {
+      return write.get();
+    } finally {
+      isCoalescedWrite.remove();
+    }
   }
 
   private void log(String msg, boolean isError, Object... args) {
-    runAsync(
+    asyncExecutorService.logAsync(
       () -> {
         if (isError) log.error(msg, args); else log.info(msg, args);
       }
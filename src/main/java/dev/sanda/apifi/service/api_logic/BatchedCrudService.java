@@ -1,6 +1,12 @@
 package dev.sanda.apifi.service.api_logic;
 
+import dev.sanda.apifi.dto.Connection;
+import dev.sanda.apifi.dto.ConnectionRequest;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.Operation;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.QueryKey;
+import dev.sanda.apifi.service.free_text_search.FreeTextSearchEngine;
 import dev.sanda.apifi.service.graphql_config.GraphQLSubscriptionSupport;
+import dev.sanda.apifi.service.graphql_config.SelectionSetInstrumentation;
 import dev.sanda.apifi.service.graphql_subcriptions.pubsub.AsyncExecutorService;
 import dev.sanda.datafi.dto.FreeTextSearchPageRequest;
 import dev.sanda.datafi.dto.Page;
@@ -8,12 +14,20 @@ import dev.sanda.datafi.dto.PageRequest;
 import dev.sanda.datafi.persistence.Archivable;
 import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
 import lombok.val;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.publisher.Flux;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static dev.sanda.apifi.utils.ApifiStaticUtils.isClazzArchivable;
@@ -23,16 +37,45 @@ import static dev.sanda.datafi.DatafiStaticUtils.*;
 @Scope("prototype")
 public class BatchedCrudService<T> extends BaseCrudService<T> {
 
+  private final EntityGraphFactory entityGraphFactory;
+  private final EntityCountersService entityCountersService;
+  private final PaginatedQueryExecutor paginatedQueryExecutor;
+  private final EntityStreamingService entityStreamingService;
+  private final JpqlQueryCache jpqlQueryCache;
+  private final FreeTextSearchEngine freeTextSearchEngine;
+  private final BulkWriteService bulkWriteService;
+
   @Autowired
   public BatchedCrudService(
     ReflectionCache reflectionCache,
     AsyncExecutorService asyncExecutorService,
-    GraphQLSubscriptionSupport graphQLSubscriptionSupport
+    GraphQLSubscriptionSupport graphQLSubscriptionSupport,
+    EntityGraphFactory entityGraphFactory,
+    EntityCountersService entityCountersService,
+    PaginatedQueryExecutor paginatedQueryExecutor,
+    EntityStreamingService entityStreamingService,
+    JpqlQueryCache jpqlQueryCache,
+    FreeTextSearchEngine freeTextSearchEngine,
+    BulkWriteService bulkWriteService
   ) {
     super(reflectionCache, asyncExecutorService, graphQLSubscriptionSupport);
+    this.entityGraphFactory = entityGraphFactory;
+    this.entityCountersService = entityCountersService;
+    this.paginatedQueryExecutor = paginatedQueryExecutor;
+    this.entityStreamingService = entityStreamingService;
+    this.jpqlQueryCache = jpqlQueryCache;
+    this.freeTextSearchEngine = freeTextSearchEngine;
+    this.bulkWriteService = bulkWriteService;
   }
 
   public Long getTotalNonArchivedCountImpl() {
+    return entityCountersService.getNonArchivedCount(
+      dataManager.getClazz(),
+      this::countNonArchived
+    );
+  }
+
+  private Long countNonArchived() {
     if (
       !reflectionCache
         .getEntitiesCache()
@@ -52,11 +95,15 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
         .getEntitiesCache()
         .get(dataManager.getClazzSimpleName())
         .isArchivable()
-    ) return dataManager.count(
-      (
-        (Specification<T>) (root, query, cb) ->
-          cb.isTrue(root.get("isArchived"))
-      )
+    ) return entityCountersService.getArchivedCount(
+      dataManager.getClazz(),
+      () ->
+        dataManager.count(
+          (
+            (Specification<T>) (root, query, cb) ->
+              cb.isTrue(root.get("isArchived"))
+          )
+        )
     ); else throw new RuntimeException(
       "Entity " +
       dataManager.getClazzSimpleName() +
@@ -71,19 +118,12 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
       reflectionCache
     );
     if (apiHooks != null) apiHooks.preGetPaginatedBatch(request, dataManager);
-    org.springframework.data.domain.Page result;
     if (request.getFetchAll()) request.setPageNumber(0);
-    val pageRequest = generatePageRequest(
+    val pageResult = fetchPage(
       request,
-      getTotalNonArchivedCountImpl()
+      Operation.PAGE,
+      this::getTotalNonArchivedCountImpl
     );
-    if (isClazzArchivable(dataManager.getClazz(), reflectionCache)) result =
-      dataManager.findAll(
-        (Specification<T>) (root, query, cb) ->
-          cb.isFalse(root.get("isArchived")),
-        pageRequest
-      ); else result = dataManager.findAll(pageRequest);
-    val pageResult = new Page<>(result);
     if (apiHooks != null) apiHooks.postGetPaginatedBatch(
       request,
       pageResult,
@@ -91,7 +131,7 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
     );
     logInfo(
       "getPaginatedBatch: Got {} {}",
-      result.getContent().size(),
+      pageResult.getContent().size(),
       toPlural(dataManager.getClazzSimpleName())
     );
     return pageResult;
@@ -108,15 +148,11 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
       request,
       dataManager
     );
-    org.springframework.data.domain.Page<T> result;
-    val pageRequest = generatePageRequest(request, getTotalArchivedCountImpl());
-    if (isClazzArchivable(dataManager.getClazz(), reflectionCache)) result =
-      dataManager.findAll(
-        (Specification<T>) (root, query, cb) ->
-          cb.isTrue(root.get("isArchived")),
-        pageRequest
-      ); else result = dataManager.findAll(pageRequest);
-    val pageResult = new Page<>(result);
+    val pageResult = fetchPage(
+      request,
+      Operation.ARCHIVED_PAGE,
+      this::getTotalArchivedCountImpl
+    );
     if (apiHooks != null) apiHooks.postGetArchivedPaginatedBatch(
       request,
       pageResult,
@@ -124,12 +160,264 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
     );
     logInfo(
       "getArchivedPaginatedBatch: Got {} {}",
-      result.getContent().size(),
+      pageResult.getContent().size(),
       toPlural(dataManager.getClazzSimpleName())
     );
     return pageResult;
   }
 
+  /**
+   * Selects the requested page, counting the total number of items only if
+   * selected. Requests to fetch all items are served by a single unbounded
+   * query, and counted by the number of results.
+   */
+  private Page<T> fetchPage(
+    PageRequest request,
+    Operation operation,
+    Supplier<Long> countQuery
+  ) {
+    val fetchGraphHints = entityGraphFactory.fetchGraphHints(
+      dataManager.entityManager(),
+      dataManager.getClazz()
+    );
+    if (request.getFetchAll()) {
+      val page = new Page<T>();
+      page.setContent(
+        findPageContent(operation, request, false, fetchGraphHints)
+      );
+      page.setPageNumber(0);
+      page.setTotalItemsCount((long) page.getContent().size());
+      page.setTotalPagesCount(1L);
+      return page;
+    }
+    return paginatedQueryExecutor.fetchPage(
+      request.getPageNumber(),
+      request.getPageSize(),
+      () -> findPageContent(operation, request, true, fetchGraphHints),
+      countQuery
+    );
+  }
+
+  /**
+   * Streams all non archived instances in chunks, rather than loading them
+   * into a single page as paginated batches requested with {@code fetchAll}
+   * do. Only the pre paginated batch hook is invoked.
+   */
+  public Flux<List<T>> streamAllImpl(PageRequest request) {
+    validateSortByIfNonNull(
+      dataManager.getClazz(),
+      request.getSortBy(),
+      reflectionCache
+    );
+    if (apiHooks != null) apiHooks.preGetPaginatedBatch(request, dataManager);
+    val queryKey = pageQueryKey(Operation.PAGE, request);
+    logInfo("streamAll: streaming {}", toPlural(entityName));
+    return entityStreamingService.publish(chunkConsumer ->
+      entityStreamingService.stream(
+        dataManager.entityManager(),
+        () ->
+          jpqlQueryCache.createQuery(
+            dataManager.entityManager(),
+            queryKey,
+            dataManager.getClazz()
+          ),
+        chunkConsumer
+      )
+    );
+  }
+
+  /**
+   * Streams all non archived instances to the chunk consumer on the calling
+   * thread, as exports do. Each chunk is passed to the post paginated batch
+   * hook as a page of its own before it is consumed, and is detached once the
+   * consumer returns.
+   *
+   * @return the number of exported instances.
+   */
+  public long exportAllImpl(
+    PageRequest request,
+    Consumer<List<T>> chunkConsumer
+  ) {
+    validateSortByIfNonNull(
+      dataManager.getClazz(),
+      request.getSortBy(),
+      reflectionCache
+    );
+    if (apiHooks != null) apiHooks.preGetPaginatedBatch(request, dataManager);
+    val queryKey = pageQueryKey(Operation.PAGE, request);
+    logInfo("exportAll: exporting {}", toPlural(entityName));
+    return entityStreamingService.stream(
+      dataManager.entityManager(),
+      () ->
+        jpqlQueryCache.createQuery(
+          dataManager.entityManager(),
+          queryKey,
+          dataManager.getClazz()
+        ),
+      chunk -> {
+        if (apiHooks == null) {
+          chunkConsumer.accept(chunk);
+          return;
+        }
+        val page = new Page<T>();
+        page.setContent(chunk);
+        apiHooks.postGetPaginatedBatch(request, page, dataManager);
+        chunkConsumer.accept(page.getContent());
+      }
+    );
+  }
+
+  /**
+   * Streaming counterpart of {@link #freeTextSearchImpl}. Custom free text
+   * searches provided by api hooks return a single page, and are therefore not
+   * consulted.
+   */
+  public Flux<List<T>> streamFreeTextSearchImpl(
+    FreeTextSearchPageRequest request
+  ) {
+    if (
+      request.getSearchTerm() == null || request.getSearchTerm().equals("")
+    ) throw new IllegalArgumentException(
+      "Illegal attempt to search for " +
+      toPlural(entityName) +
+      " with null or blank string"
+    );
+    validateSortByIfNonNull(
+      dataManager.getClazz(),
+      request.getSortBy(),
+      reflectionCache
+    );
+    if (apiHooks != null) apiHooks.preFreeTextSearch(
+      request.getSearchTerm(),
+      dataManager
+    );
+    val queryKey = QueryKey.sorted(
+      entityName,
+      Operation.FREE_TEXT_SEARCH,
+      null,
+      request.getSortBy(),
+      request.getSortDirection(),
+      isClazzArchivable(dataManager.getClazz(), reflectionCache)
+    );
+    logInfo(
+      "streamFreeTextSearch: streaming {} by searchTerm '{}'",
+      toPlural(entityName),
+      request.getSearchTerm()
+    );
+    return entityStreamingService.publish(chunkConsumer ->
+      entityStreamingService.stream(
+        dataManager.entityManager(),
+        () ->
+          jpqlQueryCache
+            .createQuery(
+              dataManager.entityManager(),
+              queryKey,
+              dataManager.getClazz()
+            )
+            .setParameter("searchTerm", request.getSearchTerm()),
+        chunkConsumer
+      )
+    );
+  }
+
+  /**
+   * Keyset paginated counterpart of {@link #getPaginatedBatchImpl}. Api hooks
+   * are passed the equivalent {@link PageRequest} and {@link Page}, and no
+   * total count is selected.
+   */
+  public Connection<T> getKeysetPaginatedBatchImpl(ConnectionRequest request) {
+    val pageRequest = KeysetPagination.toPageRequest(request);
+    if (apiHooks != null) apiHooks.preGetPaginatedBatch(
+      pageRequest,
+      dataManager
+    );
+    val keyset = new KeysetPagination(
+      dataManager.getClazz(),
+      request,
+      reflectionCache
+    );
+    val rows = findConnectionRows(
+      keyset,
+      isClazzArchivable(dataManager.getClazz(), reflectionCache)
+        ? "e.isArchived = false"
+        : null
+    );
+    val page = new Page<T>();
+    page.setContent(keyset.nodesOf(rows));
+    if (apiHooks != null) apiHooks.postGetPaginatedBatch(
+      pageRequest,
+      page,
+      dataManager
+    );
+    logInfo(
+      "getKeysetPaginatedBatch: Got {} {}",
+      page.getContent().size(),
+      toPlural(dataManager.getClazzSimpleName())
+    );
+    return keyset.toConnection(page.getContent(), keyset.hasNextPage(rows));
+  }
+
+  public Connection<T> getArchivedKeysetPaginatedBatchImpl(
+    ConnectionRequest request
+  ) {
+    if (
+      !isClazzArchivable(dataManager.getClazz(), reflectionCache)
+    ) throw new RuntimeException(
+      "Entity " +
+      dataManager.getClazzSimpleName() +
+      " does not implement Archivable"
+    );
+    val pageRequest = KeysetPagination.toPageRequest(request);
+    if (apiHooks != null) apiHooks.preGetArchivedPaginatedBatch(
+      pageRequest,
+      dataManager
+    );
+    val keyset = new KeysetPagination(
+      dataManager.getClazz(),
+      request,
+      reflectionCache
+    );
+    val rows = findConnectionRows(keyset, "e.isArchived = true");
+    val page = new Page<T>();
+    page.setContent(keyset.nodesOf(rows));
+    if (apiHooks != null) apiHooks.postGetArchivedPaginatedBatch(
+      pageRequest,
+      page,
+      dataManager
+    );
+    logInfo(
+      "getArchivedKeysetPaginatedBatch: Got {} {}",
+      page.getContent().size(),
+      toPlural(dataManager.getClazzSimpleName())
+    );
+    return keyset.toConnection(page.getContent(), keyset.hasNextPage(rows));
+  }
+
+  private List<T> findConnectionRows(
+    KeysetPagination keyset,
+    String condition
+  ) {
+    val seekPredicate = keyset.seekPredicate("e");
+    val conditions = new StringBuilder();
+    if (condition != null) conditions.append(condition);
+    if (seekPredicate != null) conditions
+      .append(conditions.length() > 0 ? " AND " : "")
+      .append(seekPredicate);
+    val queryString = String.format(
+      "SELECT e FROM %s e %s%s",
+      entityName,
+      conditions.length() > 0 ? "WHERE " + conditions + " " : "",
+      keyset.orderByClause("e")
+    );
+    val query = keyset.bind(
+      dataManager.entityManager().createQuery(queryString, dataManager.getClazz())
+    );
+    entityGraphFactory
+      .fetchGraphHints(dataManager.entityManager(), dataManager.getClazz())
+      .forEach(query::setHint);
+    return query.getResultList();
+  }
+
   public Page<T> freeTextSearchImpl(FreeTextSearchPageRequest request) {
     try {
       String clazzSimpleNamePlural = toPlural(dataManager.getClazzSimpleName());
@@ -161,12 +449,15 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
           dataManager,
           request,
           apiHooks,
-          reflectionCache
+          reflectionCache,
+          paginatedQueryExecutor,
+          jpqlQueryCache,
+          freeTextSearchEngine
         );
       logInfo(
         "freeTextSearchBy(String searchTerm)",
         "found {} {} by searchTerm '{}'",
-        result.getTotalItemsCount(),
+        result.getContent().size(),
         toPlural(dataManager.getClazzSimpleName()),
         request.getSearchTerm()
       );
@@ -227,19 +518,33 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
 
   public <A extends Archivable> List<T> batchArchiveImpl(List<A> input) {
     val ids = getIdList(input, reflectionCache);
-    val entitiesToArchive = (List<A>) getBatchByIdsImpl(ids);
-    if (apiHooks != null) apiHooks.preBatchArchive(
-      (List<T>) input,
-      (List<T>) entitiesToArchive,
-      dataManager
-    );
-    entitiesToArchive.forEach(entity -> entity.setIsArchived(true));
-    List<T> result = dataManager.saveAll((List<T>) entitiesToArchive);
-    if (apiHooks != null) apiHooks.postBatchArchive(
-      (List<T>) input,
-      result,
-      dataManager
-    );
+    final List<T> result;
+    if (isSetBasedWrite("preBatchArchive", "postBatchArchive")) {
+      result = setArchivedById(ids, true);
+    } else {
+      val entitiesToArchive = (List<A>) getBatchByIdsImpl(ids);
+      if (apiHooks != null) apiHooks.preBatchArchive(
+        (List<T>) input,
+        (List<T>) entitiesToArchive,
+        dataManager
+      );
+      val previouslyArchived = entitiesToArchive
+        .stream()
+        .filter(entityCountersService::isArchived)
+        .count();
+      entitiesToArchive.forEach(entity -> entity.setIsArchived(true));
+      result = dataManager.saveAll((List<T>) entitiesToArchive);
+      entityCountersService.onArchivedStateChanged(
+        dataManager.getClazz(),
+        entitiesToArchive.size() - previouslyArchived
+      );
+      freeTextSearchEngine.onSaved(dataManager.getClazz(), result);
+      if (apiHooks != null) apiHooks.postBatchArchive(
+        (List<T>) input,
+        result,
+        dataManager
+      );
+    }
     logInfo(
       "batchArchive: Batch archived {} with ids: [{}]",
       toPlural(dataManager.getClazzSimpleName()),
@@ -252,19 +557,33 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
 
   public <A extends Archivable> List<T> batchDeArchiveImpl(List<A> input) {
     val ids = getIdList(input, reflectionCache);
-    val entitiesToDeArchive = (List<A>) getBatchByIdsImpl(ids);
-    if (apiHooks != null) apiHooks.preBatchDeArchive(
-      (List<T>) input,
-      (List<T>) entitiesToDeArchive,
-      dataManager
-    );
-    entitiesToDeArchive.forEach(entity -> entity.setIsArchived(false));
-    List<T> result = dataManager.saveAll((List<T>) entitiesToDeArchive);
-    if (apiHooks != null) apiHooks.postBatchDeArchive(
-      (List<T>) input,
-      result,
-      dataManager
-    );
+    final List<T> result;
+    if (isSetBasedWrite("preBatchDeArchive", "postBatchDeArchive")) {
+      result = setArchivedById(ids, false);
+    } else {
+      val entitiesToDeArchive = (List<A>) getBatchByIdsImpl(ids);
+      if (apiHooks != null) apiHooks.preBatchDeArchive(
+        (List<T>) input,
+        (List<T>) entitiesToDeArchive,
+        dataManager
+      );
+      val previouslyArchived = entitiesToDeArchive
+        .stream()
+        .filter(entityCountersService::isArchived)
+        .count();
+      entitiesToDeArchive.forEach(entity -> entity.setIsArchived(false));
+      result = dataManager.saveAll((List<T>) entitiesToDeArchive);
+      entityCountersService.onArchivedStateChanged(
+        dataManager.getClazz(),
+        -previouslyArchived
+      );
+      freeTextSearchEngine.onSaved(dataManager.getClazz(), result);
+      if (apiHooks != null) apiHooks.postBatchDeArchive(
+        (List<T>) input,
+        result,
+        dataManager
+      );
+    }
     logInfo(
       "batchDeArchive: Batch de-archived {} with ids [{}]",
       toPlural(dataManager.getClazzSimpleName()),
@@ -276,9 +595,108 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
     return result;
   }
 
+  /**
+   * Set based writes update or delete instances by id with a statement per
+   * chunk of ids, and are therefore only used if neither subscriptions nor the
+   * operation's api hooks (including those invoked when loading by id) need
+   * the instances' state from before the write.
+   */
+  private boolean isSetBasedWrite(String... hookNames) {
+    return (
+      bulkWriteService.isSetBasedWritesEnabled() &&
+      !hasSubscriptions() &&
+      !overridesAnyApiHook("preGetBatchByIds", "postGetBatchByIds") &&
+      !overridesAnyApiHook(hookNames)
+    );
+  }
+
+  /**
+   * The updated instances are only loaded if the resolver selects more than
+   * their ids and archived state, or if they are to be re-indexed for free
+   * text search. Otherwise, instances carrying just those are returned.
+   */
+  private List<T> setArchivedById(List<?> ids, boolean isArchived) {
+    val changed = bulkWriteService.setArchivedById(
+      dataManager,
+      ids,
+      isArchived
+    );
+    entityCountersService.onArchivedStateChanged(
+      dataManager.getClazz(),
+      isArchived ? changed : -changed
+    );
+    if (isArchived) {
+      freeTextSearchEngine.onRemoved(dataManager.getClazz(), ids);
+      return selectsOnly(idFieldName(), "isArchived")
+        ? instancesOf(ids, true)
+        : getBatchByIdsImpl(ids);
+    }
+    if (
+      selectsOnly(idFieldName(), "isArchived") &&
+      !freeTextSearchEngine.isIndexed(dataManager.getClazz())
+    ) return instancesOf(ids, false);
+    val result = getBatchByIdsImpl(ids);
+    freeTextSearchEngine.onSaved(dataManager.getClazz(), result);
+    return result;
+  }
+
+  /**
+   * @return whether the selection set of the resolver being executed reads
+   * nothing but the given fields. If there is no resolver environment, as
+   * with {@code @Batched} resolvers or direct calls, false is returned.
+   */
+  private static boolean selectsOnly(String... fieldNames) {
+    val environment = SelectionSetInstrumentation.currentEnvironment();
+    if (environment == null) return false;
+    val selectable = new HashSet<>(Arrays.asList(fieldNames));
+    selectable.add("__typename");
+    return environment
+      .getSelectionSet()
+      .getImmediateFields()
+      .stream()
+      .allMatch(field -> selectable.contains(field.getName()));
+  }
+
+  private String idFieldName() {
+    return reflectionCache
+      .getEntitiesCache()
+      .get(entityName)
+      .getIdField()
+      .getName();
+  }
+
+  /**
+   * @return new, unmanaged instances carrying just the given ids and, unless
+   * null, archived state.
+   */
+  private List<T> instancesOf(List<?> ids, Boolean isArchived) {
+    val idField = reflectionCache
+      .getEntitiesCache()
+      .get(entityName)
+      .getIdField();
+    ReflectionUtils.makeAccessible(idField);
+    return ids
+      .stream()
+      .map(id -> {
+        val instance = BeanUtils.instantiateClass(dataManager.getClazz());
+        ReflectionUtils.setField(idField, instance, id);
+        if (isArchived != null) ((Archivable) instance).setIsArchived(
+            isArchived
+          );
+        return instance;
+      })
+      .collect(Collectors.toList());
+  }
+
   public List<T> getBatchByIdsImpl(List<?> ids) {
     if (apiHooks != null) apiHooks.preGetBatchByIds(ids, dataManager);
-    List<T> result = dataManager.findAllById(ids);
+    val fetchGraphHints = entityGraphFactory.fetchGraphHints(
+      dataManager.entityManager(),
+      dataManager.getClazz()
+    );
+    List<T> result = fetchGraphHints.isEmpty()
+      ? dataManager.findAllById(ids)
+      : findAllByIdWithFetchGraph(ids, fetchGraphHints);
     if (result.size() != ids.size()) throw new IllegalArgumentException(
       "Could not find " +
       ids.size() +
@@ -292,9 +710,62 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
     return result;
   }
 
+  private QueryKey pageQueryKey(Operation operation, PageRequest request) {
+    return QueryKey.sorted(
+      entityName,
+      operation,
+      null,
+      request.getSortBy() != null ? request.getSortBy() : idFieldName,
+      request.getSortDirection(),
+      isClazzArchivable(dataManager.getClazz(), reflectionCache)
+    );
+  }
+
+  private List<T> findPageContent(
+    Operation operation,
+    PageRequest request,
+    boolean isLimited,
+    Map<String, Object> fetchGraphHints
+  ) {
+    val query = jpqlQueryCache.createQuery(
+      dataManager.entityManager(),
+      pageQueryKey(operation, request),
+      dataManager.getClazz()
+    );
+    if (isLimited) query
+      .setFirstResult(request.getPageNumber() * request.getPageSize())
+      .setMaxResults(request.getPageSize());
+    fetchGraphHints.forEach(query::setHint);
+    return query.getResultList();
+  }
+
+  private List<T> findAllByIdWithFetchGraph(
+    List<?> ids,
+    Map<String, Object> fetchGraphHints
+  ) {
+    val query = jpqlQueryCache
+      .createQuery(
+        dataManager.entityManager(),
+        QueryKey.of(
+          entityName,
+          Operation.BATCH_BY_IDS,
+          null,
+          isClazzArchivable(dataManager.getClazz(), reflectionCache)
+        ),
+        dataManager.getClazz()
+      )
+      .setParameter("ids", ids);
+    fetchGraphHints.forEach(query::setHint);
+    return query.getResultList();
+  }
+
   public List<T> batchCreateImpl(List<T> input) {
     if (apiHooks != null) apiHooks.preBatchCreate(input, dataManager);
-    val result = dataManager.saveAll(input);
+    val result = bulkWriteService.isBulkWrite(input)
+      ? bulkWriteService.createAll(dataManager, input)
+      : dataManager.saveAll(input);
+    entityCountersService.onCreated(dataManager.getClazz(), result);
+    freeTextSearchEngine.onSaved(dataManager.getClazz(), result);
     if (apiHooks != null) apiHooks.postBatchCreate(input, result, dataManager);
     logInfo(
       "batchCreate: created {} new {} with ids [{}]",
@@ -311,9 +782,18 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
   }
 
   public List<T> batchUpdateImpl(List<T> input) {
-    List<T> toUpdate = getBatchByIdsImpl(getIdList(input, reflectionCache));
-    if (apiHooks != null) apiHooks.preBatchUpdate(input, toUpdate, dataManager);
-    List<T> result = dataManager.cascadeUpdateCollection(toUpdate, input);
+    final List<T> result;
+    if (bulkWriteService.isBulkWrite(input)) result =
+      bulkWriteUpdate(input); else {
+      List<T> toUpdate = getBatchByIdsImpl(getIdList(input, reflectionCache));
+      if (apiHooks != null) apiHooks.preBatchUpdate(
+        input,
+        toUpdate,
+        dataManager
+      );
+      result = dataManager.cascadeUpdateCollection(toUpdate, input);
+    }
+    freeTextSearchEngine.onSaved(dataManager.getClazz(), result);
     if (apiHooks != null) apiHooks.postBatchUpdate(input, result, dataManager);
     logInfo(
       "batchUpdate: Updated {} {} with ids [{}]",
@@ -329,19 +809,69 @@ public class BatchedCrudService<T> extends BaseCrudService<T> {
     return result;
   }
 
-  public List<T> batchDeleteImpl(List<T> input) {
-    List<T> toDelete = getBatchByIdsImpl(getIdList(input, reflectionCache));
-    if (apiHooks != null) apiHooks.preDeleteEntities(
-      input,
-      toDelete,
-      dataManager
-    );
-    dataManager.deleteInBatch(input);
-    if (apiHooks != null) apiHooks.postDeleteEntities(
+  /**
+   * Applies the updates chunk by chunk, so the pre batch update hook is
+   * invoked once per chunk rather than once for the entire input.
+   */
+  private List<T> bulkWriteUpdate(List<T> input) {
+    return bulkWriteService.updateAll(
+      dataManager,
       input,
-      toDelete,
-      dataManager
+      (inputChunk, toUpdate) -> {
+        if (apiHooks != null) apiHooks.preBatchUpdate(
+          inputChunk,
+          toUpdate,
+          dataManager
+        );
+        for (int i = 0; i < toUpdate.size(); i++) dataManager.cascadeUpdate(
+          toUpdate.get(i),
+          inputChunk.get(i)
+        );
+      }
     );
+  }
+
+  public List<T> batchDeleteImpl(List<T> input) {
+    val ids = getIdList(input, reflectionCache);
+    final List<T> toDelete;
+    if (
+      isSetBasedWrite("preDeleteEntities", "postDeleteEntities") &&
+      selectsOnly(idFieldName())
+    ) {
+      val archivedCount = bulkWriteService.deleteAllById(
+        dataManager,
+        ids,
+        entityCountersService.isEnabled() &&
+        isClazzArchivable(dataManager.getClazz(), reflectionCache)
+      );
+      toDelete = instancesOf(ids, null);
+      entityCountersService.onDeleted(
+        dataManager.getClazz(),
+        new HashSet<>(ids).size(),
+        archivedCount
+      );
+      freeTextSearchEngine.onRemoved(dataManager.getClazz(), ids);
+    } else if (isSetBasedWrite("preDeleteEntities", "postDeleteEntities")) {
+      toDelete = getBatchByIdsImpl(ids);
+      bulkWriteService.deleteAll(dataManager, toDelete);
+      entityCountersService.onDeleted(dataManager.getClazz(), toDelete);
+      freeTextSearchEngine.onDeleted(dataManager.getClazz(), toDelete);
+    } else {
+      toDelete = getBatchByIdsImpl(ids);
+      if (apiHooks != null) apiHooks.preDeleteEntities(
+        input,
+        toDelete,
+        dataManager
+      );
+      dataManager.deleteInBatch(input);
+      entityCountersService.onDeleted(dataManager.getClazz(), toDelete);
+      freeTextSearchEngine.onDeleted(dataManager.getClazz(), toDelete);
+      if (apiHooks != null) apiHooks.postDeleteEntities(
+        input,
+        toDelete,
+        dataManager
+      );
+    }
     logInfo(
       "batchDelete: Deleted {} {} with ids [{}]",
       toDelete.size(),
@@ -0,0 +1,48 @@
+package dev.sanda.apifi.service.api_logic;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configures Hibernate to group the statements issued by
+ * {@link BulkWriteService} into JDBC batches, unless the application has
+ * configured these properties itself. Inserts and updates are ordered by
+ * entity type so that consecutive statements can share a batch, and pooled
+ * sequence optimizers allocate blocks of ids rather than selecting the next
+ * value of the sequence for every insert.
+ */
+@Component
+public class BulkWriteHibernatePropertiesCustomizer
+  implements HibernatePropertiesCustomizer {
+
+  public static final String JDBC_BATCH_SIZE = "hibernate.jdbc.batch_size";
+  public static final String ORDER_INSERTS = "hibernate.order_inserts";
+  public static final String ORDER_UPDATES = "hibernate.order_updates";
+  public static final String BATCH_VERSIONED_DATA =
+    "hibernate.jdbc.batch_versioned_data";
+  public static final String PREFERRED_POOLED_OPTIMIZER =
+    "hibernate.id.optimizer.pooled.preferred";
+
+  private final ConfigValues configValues;
+
+  @Autowired
+  public BulkWriteHibernatePropertiesCustomizer(ConfigValues configValues) {
+    this.configValues = configValues;
+  }
+
+  @Override
+  public void customize(Map<String, Object> hibernateProperties) {
+    if (!configValues.getBulkWritesEnabled()) return;
+    hibernateProperties.putIfAbsent(
+      JDBC_BATCH_SIZE,
+      String.valueOf(Math.max(1, configValues.getBulkWritesBatchSize()))
+    );
+    hibernateProperties.putIfAbsent(ORDER_INSERTS, "true");
+    hibernateProperties.putIfAbsent(ORDER_UPDATES, "true");
+    hibernateProperties.putIfAbsent(BATCH_VERSIONED_DATA, "true");
+    hibernateProperties.putIfAbsent(PREFERRED_POOLED_OPTIMIZER, "pooled-lo");
+  }
+}
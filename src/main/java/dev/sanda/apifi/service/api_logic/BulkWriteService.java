@@ -0,0 +1,366 @@
+package dev.sanda.apifi.service.api_logic;
+
+import static dev.sanda.datafi.DatafiStaticUtils.getId;
+import static dev.sanda.datafi.DatafiStaticUtils.toPlural;
+
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.Operation;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.QueryKey;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import dev.sanda.datafi.service.DataManager;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes large batches of instances within a single transaction, in chunks of
+ * the configured batch size. The persistence context is flushed after each
+ * chunk, so that its statements are sent to the database as a JDBC batch (see
+ * {@link BulkWriteHibernatePropertiesCustomizer}), and the chunk's instances
+ * are then detached, so that the number of managed instances - and the cost
+ * of dirty checking them - does not grow with the size of the input. The
+ * whole persistence context is only cleared if the batch runs in its own
+ * transaction, since clearing it within a caller's transaction would detach
+ * the caller's instances as well. Instances returned by this service are
+ * therefore detached.
+ * <p>
+ * Also archives, de-archives and deletes instances by id with set based
+ * statements, rather than an update or delete statement per instance.
+ */
+@Slf4j
+@Service
+public class BulkWriteService {
+
+  private final TransactionTemplate transactionTemplate;
+  private final ReflectionCache reflectionCache;
+  private final JpqlQueryCache jpqlQueryCache;
+  private final boolean enabled;
+  private final int batchSize;
+  private final int threshold;
+  private final boolean setBasedWritesEnabled;
+  private final int maxInClauseSize;
+
+  @Autowired
+  public BulkWriteService(
+    PlatformTransactionManager transactionManager,
+    ReflectionCache reflectionCache,
+    JpqlQueryCache jpqlQueryCache,
+    ConfigValues configValues
+  ) {
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.reflectionCache = reflectionCache;
+    this.jpqlQueryCache = jpqlQueryCache;
+    this.enabled = configValues.getBulkWritesEnabled();
+    this.batchSize = Math.max(1, configValues.getBulkWritesBatchSize());
+    this.threshold = configValues.getBulkWritesThreshold();
+    this.setBasedWritesEnabled = configValues.getSetBasedWritesEnabled();
+    this.maxInClauseSize = configValues.getMaxInClauseSize();
+  }
+
+  /**
+   * Hibernate cannot batch inserts of entities whose ids are generated by
+   * identity columns, since it must execute each insert in order to learn the
+   * generated id.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    if (!enabled) return;
+    for (val cachedEntity : reflectionCache.getEntitiesCache().values()) {
+      val generatedValue = cachedEntity
+        .getIdField()
+        .getAnnotation(GeneratedValue.class);
+      if (
+        generatedValue != null &&
+        generatedValue.strategy() == GenerationType.IDENTITY
+      ) log.warn(
+        "{} ids are generated by an identity column, so bulk inserts of {} cannot be batched. Consider a sequence generator instead.",
+        cachedEntity.getClazz().getSimpleName(),
+        toPlural(cachedEntity.getClazz().getSimpleName())
+      );
+    }
+  }
+
+  public boolean isBulkWrite(List<?> input) {
+    return enabled && input.size() >= threshold;
+  }
+
+  public boolean isSetBasedWritesEnabled() {
+    return setBasedWritesEnabled;
+  }
+
+  /**
+   * Persists new instances, and merges those which already have an id.
+   *
+   * @return the written instances, in the same order as the input.
+   */
+  public <T> List<T> createAll(DataManager<T> dataManager, List<T> input) {
+    return transactionTemplate.execute(status -> {
+      val entityManager = dataManager.entityManager();
+      final List<T> result = new ArrayList<>(input.size());
+      for (int i = 0; i < input.size(); i += batchSize) {
+        for (val instance : input.subList(
+          i,
+          Math.min(i + batchSize, input.size())
+        )) {
+          if (getId(instance, reflectionCache) == null) {
+            entityManager.persist(instance);
+            result.add(instance);
+          } else result.add(entityManager.merge(instance));
+        }
+        flushAndDetach(
+          entityManager,
+          status,
+          result.subList(i, result.size())
+        );
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Loads the instances to update chunk by chunk, passes each chunk of inputs
+   * along with the corresponding instances (in the same order) to the
+   * updater, and flushes the changes it makes.
+   *
+   * @return the updated instances, in the same order as the input.
+   */
+  public <T> List<T> updateAll(
+    DataManager<T> dataManager,
+    List<T> input,
+    BiConsumer<List<T>, List<T>> updater
+  ) {
+    val queryKey = QueryKey.of(
+      dataManager.getClazzSimpleName(),
+      Operation.BATCH_BY_IDS,
+      null,
+      reflectionCache
+        .getEntitiesCache()
+        .get(dataManager.getClazzSimpleName())
+        .isArchivable()
+    );
+    return transactionTemplate.execute(status -> {
+      val entityManager = dataManager.entityManager();
+      final List<T> result = new ArrayList<>(input.size());
+      for (int i = 0; i < input.size(); i += batchSize) {
+        val inputChunk = input.subList(
+          i,
+          Math.min(i + batchSize, input.size())
+        );
+        val ids = inputChunk
+          .stream()
+          .map(instance -> getId(instance, reflectionCache))
+          .collect(Collectors.toList());
+        final Map<Object, T> loadedById = new HashMap<>();
+        jpqlQueryCache
+          .createQuery(entityManager, queryKey, dataManager.getClazz())
+          .setParameter("ids", ids)
+          .getResultList()
+          .forEach(instance ->
+            loadedById.put(getId(instance, reflectionCache), instance)
+          );
+        final List<T> toUpdate = new ArrayList<>(inputChunk.size());
+        for (val id : ids) {
+          val instance = loadedById.get(id);
+          if (instance == null) throw new RuntimeException(
+            "Cannot find Entity " +
+            dataManager.getClazzSimpleName() +
+            " with id " +
+            id
+          );
+          toUpdate.add(instance);
+        }
+        updater.accept(inputChunk, toUpdate);
+        flushAndDetach(entityManager, status, toUpdate);
+        result.addAll(toUpdate);
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Flushes the chunk's writes, and then detaches its instances - or clears
+   * the persistence context altogether if the batch owns the transaction.
+   */
+  private static void flushAndDetach(
+    EntityManager entityManager,
+    TransactionStatus status,
+    List<?> chunk
+  ) {
+    entityManager.flush();
+    if (status.isNewTransaction()) entityManager.clear();
+    else chunk.forEach(entityManager::detach);
+  }
+
+  /**
+   * Sets the archived state of the instances with the given ids, with an
+   * update statement per chunk of ids. Only the instances whose archived state
+   * changes are updated, and versioned ones have their versions incremented.
+   * Since the update bypasses the persistence context, any of the instances
+   * which are already managed are refreshed - no others are loaded.
+   *
+   * @return the number of instances whose archived state was changed.
+   */
+  public long setArchivedById(
+    DataManager<?> dataManager,
+    List<?> ids,
+    boolean isArchived
+  ) {
+    val updateQueryKey = QueryKey.of(
+      dataManager.getClazzSimpleName(),
+      Operation.SET_ARCHIVED_BY_IDS,
+      null,
+      true
+    );
+    return transactionTemplate.execute(status -> {
+      val entityManager = dataManager.entityManager();
+      entityManager.flush();
+      long changed = 0;
+      for (val chunk : chunksOf(ids)) changed +=
+        jpqlQueryCache
+          .createQuery(entityManager, updateQueryKey)
+          .setParameter("isArchived", isArchived)
+          .setParameter("ids", chunk)
+          .executeUpdate();
+      syncManaged(entityManager, dataManager.getClazz(), ids, true);
+      return changed;
+    });
+  }
+
+  /**
+   * Deletes the instances with the given ids, with a delete statement per
+   * chunk of ids, and detaches any of them which are managed. As with
+   * {@link DataManager#deleteInBatch}, deletes are not cascaded.
+   *
+   * @param countArchived whether to count the deleted instances which were
+   * archived, at the cost of a second delete statement per chunk.
+   * @return the number of deleted instances which were archived, or 0 if not
+   * counted.
+   */
+  public long deleteAllById(
+    DataManager<?> dataManager,
+    List<?> ids,
+    boolean countArchived
+  ) {
+    val entityName = dataManager.getClazzSimpleName();
+    val deleteQueryKey = QueryKey.of(
+      entityName,
+      Operation.DELETE_BY_IDS,
+      null,
+      reflectionCache.getEntitiesCache().get(entityName).isArchivable()
+    );
+    val deleteArchivedQueryKey = QueryKey.of(
+      entityName,
+      Operation.DELETE_ARCHIVED_BY_IDS,
+      null,
+      true
+    );
+    return transactionTemplate.execute(status -> {
+      val entityManager = dataManager.entityManager();
+      entityManager.flush();
+      long archived = 0;
+      for (val chunk : chunksOf(ids)) {
+        val deletedArchived = countArchived
+          ? jpqlQueryCache
+            .createQuery(entityManager, deleteArchivedQueryKey)
+            .setParameter("ids", chunk)
+            .executeUpdate()
+          : 0;
+        val deleted = jpqlQueryCache
+          .createQuery(entityManager, deleteQueryKey)
+          .setParameter("ids", chunk)
+          .executeUpdate();
+        verifyAllFound(entityName, chunk, deletedArchived + deleted);
+        archived += deletedArchived;
+      }
+      syncManaged(entityManager, dataManager.getClazz(), ids, false);
+      return archived;
+    });
+  }
+
+  /**
+   * Deletes the given loaded instances, with a delete statement per chunk of
+   * ids, and then detaches them. As with {@link DataManager#deleteInBatch},
+   * deletes are not cascaded.
+   */
+  public <T> void deleteAll(DataManager<T> dataManager, List<T> instances) {
+    deleteAllById(
+      dataManager,
+      instances
+        .stream()
+        .map(instance -> getId(instance, reflectionCache))
+        .collect(Collectors.toList()),
+      false
+    );
+  }
+
+  /**
+   * References are used to find the managed instances with the given ids,
+   * since they resolve to the managed instance if there is one, and to an
+   * uninitialized proxy - which is detached again - otherwise.
+   *
+   * @param refresh whether to refresh the managed instances, rather than
+   * detach them.
+   */
+  private static void syncManaged(
+    EntityManager entityManager,
+    Class<?> clazz,
+    List<?> ids,
+    boolean refresh
+  ) {
+    val persistenceUnitUtil = entityManager
+      .getEntityManagerFactory()
+      .getPersistenceUnitUtil();
+    for (val id : new LinkedHashSet<>(ids)) {
+      val reference = entityManager.getReference(clazz, id);
+      if (refresh && persistenceUnitUtil.isLoaded(reference)) {
+        entityManager.refresh(reference);
+      } else entityManager.detach(reference);
+    }
+  }
+
+  private List<List<?>> chunksOf(List<?> ids) {
+    final List<?> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    final List<List<?>> chunks = new ArrayList<>();
+    for (int i = 0; i < distinctIds.size(); i += maxInClauseSize) chunks.add(
+      distinctIds.subList(i, Math.min(i + maxInClauseSize, distinctIds.size()))
+    );
+    return chunks;
+  }
+
+  /**
+   * Throws if any of the ids was not found, which rolls back the transaction.
+   */
+  private static void verifyAllFound(
+    String entityName,
+    List<?> ids,
+    int affectedRows
+  ) {
+    if (affectedRows != ids.size()) throw new IllegalArgumentException(
+      "Could not find " +
+      (ids.size() - affectedRows) +
+      " of " +
+      ids.size() +
+      " " +
+      toPlural(entityName) +
+      " with ids [" +
+      ids.stream().map(Object::toString).collect(Collectors.joining(", ")) +
+      "]"
+    );
+  }
+}
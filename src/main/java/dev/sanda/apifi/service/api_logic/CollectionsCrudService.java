@@ -1,17 +1,24 @@
 package dev.sanda.apifi.service.api_logic;
 
-import dev.sanda.apifi.annotations.EntityCollectionApi;
+import dev.sanda.apifi.dto.Connection;
+import dev.sanda.apifi.dto.ConnectionRequest;
 import dev.sanda.apifi.dto.KeyAndValue;
 import dev.sanda.apifi.service.api_hooks.ElementCollectionApiHooks;
 import dev.sanda.apifi.service.api_hooks.EntityCollectionApiHooks;
 import dev.sanda.apifi.service.api_hooks.MapElementCollectionApiHooks;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.Operation;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.QueryKey;
+import dev.sanda.apifi.service.free_text_search.FreeTextSearchEngine;
 import dev.sanda.apifi.service.graphql_config.GraphQLSubscriptionSupport;
 import dev.sanda.apifi.service.graphql_subcriptions.pubsub.AsyncExecutorService;
+import dev.sanda.apifi.utils.ConfigValues;
 import dev.sanda.datafi.dto.Page;
 import dev.sanda.datafi.reflection.runtime_services.CollectionInstantiator;
 import dev.sanda.datafi.reflection.runtime_services.CollectionsTypeResolver;
 import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
 import dev.sanda.datafi.service.DataManager;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
 import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
@@ -31,6 +38,11 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
 
   private final CollectionInstantiator collectionInstantiator;
   private final CollectionsTypeResolver collectionsTypeResolver;
+  private final ConfigValues configValues;
+  private final PaginatedQueryExecutor paginatedQueryExecutor;
+  private final JpqlQueryCache jpqlQueryCache;
+  private final EntityCountersService entityCountersService;
+  private final FreeTextSearchEngine freeTextSearchEngine;
 
   @Autowired
   public CollectionsCrudService(
@@ -38,11 +50,21 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
     AsyncExecutorService asyncExecutorService,
     GraphQLSubscriptionSupport graphQLSubscriptionSupport,
     CollectionInstantiator collectionInstantiator,
-    CollectionsTypeResolver collectionsTypeResolver
+    CollectionsTypeResolver collectionsTypeResolver,
+    ConfigValues configValues,
+    PaginatedQueryExecutor paginatedQueryExecutor,
+    JpqlQueryCache jpqlQueryCache,
+    EntityCountersService entityCountersService,
+    FreeTextSearchEngine freeTextSearchEngine
   ) {
     super(reflectionCache, asyncExecutorService, graphQLSubscriptionSupport);
     this.collectionInstantiator = collectionInstantiator;
     this.collectionsTypeResolver = collectionsTypeResolver;
+    this.configValues = configValues;
+    this.paginatedQueryExecutor = paginatedQueryExecutor;
+    this.jpqlQueryCache = jpqlQueryCache;
+    this.entityCountersService = entityCountersService;
+    this.freeTextSearchEngine = freeTextSearchEngine;
   }
 
   @SuppressWarnings({"unchecked", "rawtypes"})
@@ -61,21 +83,14 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
                             collectionDataManager
                     )
     );
-    val rawQueryResults = (List) dataManager
-            .entityManager()
+    val rawQueryResults = (List) jpqlQueryCache
             .createQuery(
-                    String.format(
-                            "SELECT owner, entityCollection " +
-                                    "FROM %s owner " +
-                                    "JOIN owner.%s entityCollection " +
-                                    "WHERE owner.%s IN :ownerIds",
-                            dataManager.getClazzSimpleName(),
+                    dataManager.entityManager(),
+                    QueryKey.of(
+                            entityName,
+                            Operation.ENTITY_COLLECTION_FETCH,
                             collectionFieldName,
-                            reflectionCache
-                                    .getEntitiesCache()
-                                    .get(dataManager.getClazzSimpleName())
-                                    .getIdField()
-                                    .getName()
+                            false
                     )
             )
             .setParameter("ownerIds", getIdList(input, reflectionCache))
@@ -121,36 +136,88 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
   }
 
 
+  /**
+   * Resolves a foreign key field for a batch of owners. Owners are deduplicated
+   * by id, and the ids are queried in chunks which respect the configured IN
+   * clause limit, so that each chunk is a single lookup by primary key.
+   */
+  @SuppressWarnings("unchecked")
   public <TCollection> List<TCollection> getForeignKeyEntityImpl(
           List<T> input,
           String fieldName,
           DataManager<TCollection> collectionDataManager
   ) {
-    val queryString = String.format(
-            "SELECT new dev.sanda.apifi.dto.KeyAndValue(owner, owner.%s) FROM %s owner WHERE owner.%s IN :ids " +
-                    "ORDER BY owner.%s",
-            fieldName,
+    val ids = new ArrayList<Object>(
+            new LinkedHashSet<>(getIdList(input, reflectionCache))
+    );
+    val queryKey = QueryKey.of(
             entityName,
-            idFieldName,
-            idFieldName
-    );
-    @SuppressWarnings("unchecked")
-    final Map<T, TCollection> resultMap = (Map<T, TCollection>) dataManager
-            .entityManager()
-            .createQuery(queryString)
-            .setParameter("ids", getIdList(input, reflectionCache))
-            .getResultStream()
-            .collect(
-                    Collectors.toMap(
-                            KeyAndValue::getKey,
-                            KeyAndValue::getValue,
-                            (first, second) -> first
-                    )
-            );
-    return input.stream().map(resultMap::get).collect(Collectors.toList());
+            Operation.FOREIGN_KEY_FETCH,
+            fieldName,
+            false
+    );
+    val maxInClauseSize = configValues.getMaxInClauseSize();
+    final Map<Object, TCollection> resultsById = new HashMap<>();
+    for (int i = 0; i < ids.size(); i += maxInClauseSize) {
+      final List<Object[]> rows = jpqlQueryCache
+              .createQuery(dataManager.entityManager(), queryKey)
+              .setParameter(
+                      "ids",
+                      ids.subList(i, Math.min(i + maxInClauseSize, ids.size()))
+              )
+              .getResultList();
+      for (val row : rows) resultsById.put(row[0], (TCollection) row[1]);
+    }
+    return input
+            .stream()
+            .map(owner -> resultsById.get(getId(owner, reflectionCache)))
+            .collect(Collectors.toList());
   }
 
 
+  /**
+   * Counts the items in the given collection field of every owner in the
+   * batch, using a single grouped query per IN clause chunk of owner ids.
+   *
+   * @param collectionDataManager the data manager of the collection's entity type, or
+   *                              null for element collections. Used to exclude archived items.
+   */
+  @SuppressWarnings("unchecked")
+  public List<Long> getCollectionCountsImpl(
+    List<T> owners,
+    String fieldName,
+    DataManager<?> collectionDataManager
+  ) {
+    val countQueryKey = QueryKey.of(
+      entityName,
+      Operation.COLLECTION_COUNTS,
+      fieldName,
+      collectionDataManager != null &&
+      isClazzArchivable(collectionDataManager.getClazz(), reflectionCache)
+    );
+    val ownerIds = new ArrayList<Object>(
+      new LinkedHashSet<>(getIdList(owners, reflectionCache))
+    );
+    final Map<Object, Long> countsByOwnerId = new HashMap<>();
+    val maxInClauseSize = configValues.getMaxInClauseSize();
+    for (int i = 0; i < ownerIds.size(); i += maxInClauseSize) {
+      final List<Object[]> rows = jpqlQueryCache
+        .createQuery(dataManager.entityManager(), countQueryKey)
+        .setParameter(
+          "ownerIds",
+          ownerIds.subList(i, Math.min(i + maxInClauseSize, ownerIds.size()))
+        )
+        .getResultList();
+      for (val row : rows) countsByOwnerId.put(row[0], (Long) row[1]);
+    }
+    return owners
+      .stream()
+      .map(owner ->
+        countsByOwnerId.getOrDefault(getId(owner, reflectionCache), 0L)
+      )
+      .collect(Collectors.toList());
+  }
+
   public <
     TCollection, E extends ElementCollectionApiHooks<TCollection, T>
   > List<TCollection> addToElementCollectionImpl(
@@ -264,41 +331,36 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
       fieldName,
       dataManager
     );
-    Page<TCollection> returnValue = new Page<>();
-    val contentQueryString = String.format(
-      "SELECT collection FROM %s owner " +
-      "JOIN owner.%s collection " +
-      "WHERE owner.%s = :ownerId",
-      dataManager.getClazzSimpleName(),
+    val contentQueryKey = QueryKey.of(
+      entityName,
+      Operation.ELEMENT_COLLECTION_PAGE,
       fieldName,
-      idFieldName
+      false
     );
-    val countQueryString = String.format(
-      "SELECT COUNT(collection) FROM %s owner " +
-      "JOIN owner.%s collection " +
-      "WHERE owner.%s = :ownerId",
-      dataManager.getClazzSimpleName(),
+    val countQueryKey = QueryKey.of(
+      entityName,
+      Operation.ELEMENT_COLLECTION_COUNT,
       fieldName,
-      idFieldName
+      false
     );
     Object ownerId = getId(temp, reflectionCache);
-    val content = dataManager
-      .entityManager()
-      .createQuery(contentQueryString)
-      .setParameter("ownerId", ownerId)
-      .setFirstResult(input.getPageNumber() * input.getPageSize())
-      .setMaxResults(input.getPageSize())
-      .getResultList();
-    val totalRecords = (long) dataManager
-      .entityManager()
-      .createQuery(countQueryString)
-      .setParameter("ownerId", ownerId)
-      .getSingleResult();
-    val totalPages = Math.ceil((double) totalRecords / input.getPageSize());
-    returnValue.setContent(content);
-    returnValue.setTotalPagesCount((long) totalPages);
-    returnValue.setTotalItemsCount(totalRecords);
-    returnValue.setPageNumber(input.getPageNumber());
+    val returnValue =
+      paginatedQueryExecutor.<TCollection>fetchPage(
+        input.getPageNumber(),
+        input.getPageSize(),
+        () ->
+          jpqlQueryCache
+            .createQuery(dataManager.entityManager(), contentQueryKey)
+            .setParameter("ownerId", ownerId)
+            .setFirstResult(input.getPageNumber() * input.getPageSize())
+            .setMaxResults(input.getPageSize())
+            .getResultList(),
+        () ->
+          (Long) jpqlQueryCache
+            .createQuery(dataManager.entityManager(), countQueryKey)
+            .setParameter("ownerId", ownerId)
+            .getSingleResult()
+      );
     if (
       elementCollectionApiHooks != null
     ) elementCollectionApiHooks.postGetPaginatedBatch(
@@ -346,47 +408,40 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
       dataManager
     );
 
-    returnValue = new Page<>();
-    val contentQueryString = String.format(
-      "SELECT collection FROM %s owner " +
-      "JOIN owner.%s collection " +
-      "WHERE owner.%s = :ownerId AND " +
-      "LOWER(collection) LIKE LOWER(CONCAT('%%', :searchTerm, '%%')) " +
-      "ORDER BY collection %s",
-      dataManager.getClazzSimpleName(),
+    val contentQueryKey = QueryKey.sorted(
+      entityName,
+      Operation.ELEMENT_COLLECTION_SEARCH,
       fieldName,
-      idFieldName,
-      input.getSortDirection()
+      null,
+      input.getSortDirection(),
+      false
     );
-    val countQueryString = String.format(
-      "SELECT COUNT(collection) FROM %s owner " +
-      "JOIN owner.%s collection " +
-      "WHERE owner.%s = :ownerId AND " +
-      "LOWER(collection) LIKE LOWER(CONCAT('%%', :searchTerm, '%%'))",
-      dataManager.getClazzSimpleName(),
+    val countQueryKey = QueryKey.of(
+      entityName,
+      Operation.ELEMENT_COLLECTION_SEARCH_COUNT,
       fieldName,
-      idFieldName
+      false
     );
     Object ownerId = getId(owner, reflectionCache);
-    val content = dataManager
-      .entityManager()
-      .createQuery(contentQueryString)
-      .setParameter("ownerId", ownerId)
-      .setParameter("searchTerm", input.getSearchTerm())
-      .setFirstResult(input.getPageNumber() * input.getPageSize())
-      .setMaxResults(input.getPageSize())
-      .getResultList();
-    val totalRecords = (long) dataManager
-      .entityManager()
-      .createQuery(countQueryString)
-      .setParameter("ownerId", ownerId)
-      .setParameter("searchTerm", input.getSearchTerm())
-      .getSingleResult();
-    val totalPages = Math.ceil((double) totalRecords / input.getPageSize());
-    returnValue.setContent(content);
-    returnValue.setTotalPagesCount((long) totalPages);
-    returnValue.setTotalItemsCount(totalRecords);
-    returnValue.setPageNumber(input.getPageNumber());
+    returnValue =
+      paginatedQueryExecutor.<TCollection>fetchPage(
+        input.getPageNumber(),
+        input.getPageSize(),
+        () ->
+          jpqlQueryCache
+            .createQuery(dataManager.entityManager(), contentQueryKey)
+            .setParameter("ownerId", ownerId)
+            .setParameter("searchTerm", input.getSearchTerm())
+            .setFirstResult(input.getPageNumber() * input.getPageSize())
+            .setMaxResults(input.getPageSize())
+            .getResultList(),
+        () ->
+          (Long) jpqlQueryCache
+            .createQuery(dataManager.entityManager(), countQueryKey)
+            .setParameter("ownerId", ownerId)
+            .setParameter("searchTerm", input.getSearchTerm())
+            .getSingleResult()
+      );
     if (
       elementCollectionApiHooks != null
     ) elementCollectionApiHooks.postFreeTextSearch(
@@ -506,48 +561,41 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
       input,
       dataManager
     );
-    Page<Map.Entry<TMapKey, TMapValue>> returnValue = new Page<>();
-    val contentQueryString = String.format(
-      "SELECT new dev.sanda.apifi.dto.KeyAndValue(KEY(map), VALUE(map)) " +
-      "FROM %s owner " +
-      "JOIN owner.%s map " +
-      "WHERE owner.%s = :ownerId " +
-      "ORDER BY KEY(map) %s",
-      dataManager.getClazzSimpleName(),
+    val contentQueryKey = QueryKey.sorted(
+      entityName,
+      Operation.MAP_ELEMENT_COLLECTION_PAGE,
       fieldName,
-      idFieldName,
-      input.getSortDirection()
+      null,
+      input.getSortDirection(),
+      false
     );
-    val countQueryString = String.format(
-      "SELECT COUNT(map) FROM %s owner " +
-      "JOIN owner.%s map " +
-      "WHERE owner.%s = :ownerId",
-      dataManager.getClazzSimpleName(),
+    val countQueryKey = QueryKey.of(
+      entityName,
+      Operation.MAP_ELEMENT_COLLECTION_COUNT,
       fieldName,
-      idFieldName
+      false
     );
     Object ownerId = getId(temp, reflectionCache);
 
-    List<Map.Entry<TMapKey, TMapValue>> content =
-      (List<Map.Entry<TMapKey, TMapValue>>) dataManager
-        .entityManager()
-        .createQuery(contentQueryString)
-        .setParameter("ownerId", ownerId)
-        .setFirstResult(input.getPageNumber() * input.getPageSize())
-        .setMaxResults(input.getPageSize())
-        .getResultStream()
-        .map(entry -> ((KeyAndValue) entry).toEntry())
-        .collect(Collectors.toList());
-    val totalRecords = (long) dataManager
-      .entityManager()
-      .createQuery(countQueryString)
-      .setParameter("ownerId", ownerId)
-      .getSingleResult();
-    val totalPages = Math.ceil((double) totalRecords / input.getPageSize());
-    returnValue.setContent(content);
-    returnValue.setTotalPagesCount((long) totalPages);
-    returnValue.setTotalItemsCount(totalRecords);
-    returnValue.setPageNumber(input.getPageNumber());
+    val returnValue =
+      paginatedQueryExecutor.<Map.Entry<TMapKey, TMapValue>>fetchPage(
+        input.getPageNumber(),
+        input.getPageSize(),
+        () ->
+          (List<Map.Entry<TMapKey, TMapValue>>) jpqlQueryCache
+            .createQuery(dataManager.entityManager(), contentQueryKey)
+            .setParameter("ownerId", ownerId)
+            .setFirstResult(input.getPageNumber() * input.getPageSize())
+            .setMaxResults(input.getPageSize())
+            .getResultStream()
+            .map(entry -> ((KeyAndValue) entry).toEntry())
+            .collect(Collectors.toList()),
+        () ->
+          (Long) jpqlQueryCache
+            .createQuery(dataManager.entityManager(), countQueryKey)
+            .setParameter("ownerId", ownerId)
+            .getSingleResult()
+      );
     if (apiHooks != null) apiHooks.postGetPaginatedBatch(
       returnValue,
       input,
@@ -643,6 +691,15 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
       fieldName
     );
     dataManager.save(t);
+    // new instances of the collection type are created along with the association
+    final List<TCollection> created = result
+      .stream()
+      .filter(obj ->
+        !preExistingInstancesIds.contains(getId(obj, reflectionCache))
+      )
+      .collect(Collectors.toList());
+    entityCountersService.onCreated(collectionDataManager.getClazz(), created);
+    freeTextSearchEngine.onSaved(collectionDataManager.getClazz(), result);
     if (
       entityCollectionApiHooks != null
     ) entityCollectionApiHooks.postAssociate(
@@ -653,17 +710,8 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
       collectionDataManager,
       dataManager
     );
-    if (
-      preExistingInstancesIds.size() < result.size()
-    ) fireSubscriptionEvent(() ->
-      collectionSubscriptionsLogicService.onCreateEvent(
-        result
-          .stream()
-          .filter(obj ->
-            !preExistingInstancesIds.contains(getId(obj, reflectionCache))
-          )
-          .collect(Collectors.toList())
-      )
+    if (!created.isEmpty()) fireSubscriptionEvent(() ->
+      collectionSubscriptionsLogicService.onCreateEvent(created)
     );
     fireSubscriptionEvent(() ->
       subscriptionsLogicService.onAssociateWithEvent(
@@ -715,7 +763,6 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
       collectionDataManager
     );
 
-    returnValue = new Page<>();
     validateSortByIfNonNull(
       collectionDataManager.getClazz(),
       input.getSortBy(),
@@ -738,54 +785,40 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
       collectionDataManager.getClazz(),
       reflectionCache
     );
-    val isNonArchivedClause = isArchivable
-      ? "AND embedded.isArchived = false "
-      : "";
-    val searchTermClause = buildSearchTermQuery(fieldName);
-    val contentQueryString = String.format(
-      "SELECT DISTINCT(embedded) FROM %s owner JOIN owner.%s embedded " +
-      "WHERE owner.%s = :ownerId " +
-      "%s" +
-      "%s " +
-      "ORDER BY embedded.%s",
-      dataManager.getClazzSimpleName(),
+    val contentQueryKey = QueryKey.sorted(
+      entityName,
+      Operation.ENTITY_COLLECTION_SEARCH,
       fieldName,
-      idFieldName,
-      isNonArchivedClause,
-      searchTermClause,
-      input.getSortBy()
-    );
-    val countQueryString = String.format(
-      "SELECT COUNT(DISTINCT embedded) FROM %s owner JOIN owner.%s embedded " +
-      "WHERE owner.%s = :ownerId " +
-      "%s" +
-      "%s ",
-      dataManager.getClazzSimpleName(),
+      input.getSortBy(),
+      input.getSortDirection(),
+      isArchivable
+    );
+    val countQueryKey = QueryKey.of(
+      entityName,
+      Operation.ENTITY_COLLECTION_SEARCH_COUNT,
       fieldName,
-      idFieldName,
-      isNonArchivedClause,
-      searchTermClause
+      isArchivable
     );
     val ownerId = getId(owner, reflectionCache);
-    val content = dataManager
-      .entityManager()
-      .createQuery(contentQueryString)
-      .setParameter("searchTerm", input.getSearchTerm())
-      .setParameter("ownerId", ownerId)
-      .setFirstResult(input.getPageNumber() * input.getPageSize())
-      .setMaxResults(input.getPageSize())
-      .getResultList();
-    val totalItems = (long) dataManager
-      .entityManager()
-      .createQuery(countQueryString)
-      .setParameter("searchTerm", input.getSearchTerm())
-      .setParameter("ownerId", ownerId)
-      .getSingleResult();
-    val totalPages = Math.ceil((double) totalItems / input.getPageSize());
-    returnValue.setContent(content);
-    returnValue.setTotalPagesCount((long) totalPages);
-    returnValue.setTotalItemsCount(totalItems);
-    returnValue.setPageNumber(input.getPageNumber());
+    returnValue =
+      paginatedQueryExecutor.<TCollection>fetchPage(
+        input.getPageNumber(),
+        input.getPageSize(),
+        () ->
+          jpqlQueryCache
+            .createQuery(dataManager.entityManager(), contentQueryKey)
+            .setParameter("searchTerm", input.getSearchTerm())
+            .setParameter("ownerId", ownerId)
+            .setFirstResult(input.getPageNumber() * input.getPageSize())
+            .setMaxResults(input.getPageSize())
+            .getResultList(),
+        () ->
+          (Long) jpqlQueryCache
+            .createQuery(dataManager.entityManager(), countQueryKey)
+            .setParameter("searchTerm", input.getSearchTerm())
+            .setParameter("ownerId", ownerId)
+            .getSingleResult()
+      );
     if (
       entityCollectionApiHooks != null
     ) entityCollectionApiHooks.postFreeTextSearch(
@@ -799,44 +832,6 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
     return returnValue;
   }
 
-  private final Map<String, String> searchTermQueryCache = new HashMap<>();
-
-  private String buildSearchTermQuery(String collectionFieldName) {
-    val key =
-      collectionFieldName +
-      "Of" +
-      dataManager.getClazzSimpleName() +
-      "FreeTextSearch";
-    if (searchTermQueryCache.containsKey(key)) return searchTermQueryCache.get(
-      key
-    );
-    val searchFieldNames = Arrays.asList(
-      reflectionCache
-        .getEntitiesCache()
-        .get(dataManager.getClazzSimpleName())
-        .getFields()
-        .get(collectionFieldName)
-        .getField()
-        .getAnnotation(EntityCollectionApi.class)
-        .freeTextSearchFields()
-    );
-    if (searchFieldNames.isEmpty()) return "";
-    val result = new StringBuilder();
-    for (int i = 0; i < searchFieldNames.size(); i++) {
-      val fieldName = searchFieldNames.get(i);
-      val prefix = i == 0 ? "AND " : "OR ";
-      val condition =
-        "lower(embedded." +
-        fieldName +
-        ") LIKE lower(concat('%', :searchTerm, '%')) ";
-      result.append(prefix);
-      result.append(condition);
-    }
-    val resultString = result.toString();
-    searchTermQueryCache.put(key, resultString);
-    return resultString;
-  }
-
   public <
     TCollection, E extends EntityCollectionApiHooks<TCollection, T>
   > Page<TCollection> getPaginatedBatchInEntityCollectionImpl(
@@ -853,67 +848,338 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
     if (
       entityCollectionApiHooks != null
     ) entityCollectionApiHooks.preGetPaginatedBatch(owner, input, dataManager);
-    Page<TCollection> returnValue = new Page<>();
     validateSortByIfNonNull(
       collectionDataManager.getClazz(),
       input.getSortBy(),
       reflectionCache
     );
+    val isArchivable = isClazzArchivable(
+      collectionDataManager.getClazz(),
+      reflectionCache
+    );
+    val contentQueryKey = QueryKey.sorted(
+      entityName,
+      Operation.ENTITY_COLLECTION_PAGE,
+      fieldName,
+      input.getSortBy(),
+      input.getSortDirection(),
+      isArchivable
+    );
+    val countQueryKey = QueryKey.of(
+      entityName,
+      Operation.ENTITY_COLLECTION_COUNT,
+      fieldName,
+      isArchivable
+    );
+    Object ownerId = getId(temp, reflectionCache);
+    val returnValue =
+      paginatedQueryExecutor.<TCollection>fetchPage(
+        input.getPageNumber(),
+        input.getPageSize(),
+        () ->
+          jpqlQueryCache
+            .createQuery(dataManager.entityManager(), contentQueryKey)
+            .setParameter("ownerId", ownerId)
+            .setFirstResult(input.getPageNumber() * input.getPageSize())
+            .setMaxResults(input.getPageSize())
+            .getResultList(),
+        () ->
+          (Long) jpqlQueryCache
+            .createQuery(dataManager.entityManager(), countQueryKey)
+            .setParameter("ownerId", ownerId)
+            .getSingleResult()
+      );
+    if (
+      entityCollectionApiHooks != null
+    ) entityCollectionApiHooks.postGetPaginatedBatch(
+      returnValue,
+      owner,
+      input,
+      collectionDataManager,
+      dataManager
+    );
+    return returnValue;
+  }
+
+  /**
+   * Keyset paginated counterpart of
+   * {@link #getPaginatedBatchInEntityCollectionImpl}, seeking past the
+   * {@code after} cursor within the owner's collection.
+   */
+  public <
+    TCollection, E extends EntityCollectionApiHooks<TCollection, T>
+  > Connection<TCollection> getKeysetPaginatedBatchInEntityCollectionImpl(
+    T owner,
+    ConnectionRequest input,
+    String fieldName,
+    DataManager<TCollection> collectionDataManager,
+    E entityCollectionApiHooks
+  ) {
+    T temp = dataManager.findById(getId(owner, reflectionCache)).orElse(null);
+    if (temp == null) throw_entityNotFound(owner, reflectionCache);
+    owner = temp;
+    val pageRequest = KeysetPagination.toPageRequest(input);
+    if (
+      entityCollectionApiHooks != null
+    ) entityCollectionApiHooks.preGetPaginatedBatch(
+      owner,
+      pageRequest,
+      dataManager
+    );
+    val keyset = new KeysetPagination(
+      collectionDataManager.getClazz(),
+      input,
+      reflectionCache
+    );
     val isNonArchivedClause = isClazzArchivable(
         collectionDataManager.getClazz(),
         reflectionCache
       )
       ? "AND embedded.isArchived = false "
-      : " ";
-    final String ownerEntityName = dataManager.getClazzSimpleName();
+      : "";
+    val seekPredicate = keyset.seekPredicate("embedded");
     val contentQueryString = String.format(
       "SELECT embedded FROM %s owner " +
       "JOIN owner.%s embedded " +
-      "WHERE owner.%s = :ownerId %s" +
-      "ORDER BY owner.%s",
-      ownerEntityName,
+      "WHERE owner.%s = :ownerId %s%s" +
+      "%s",
+      dataManager.getClazzSimpleName(),
       fieldName,
       idFieldName,
       isNonArchivedClause,
-      input.getSortBy()
-    );
-    val countQueryString = String.format(
-      "SELECT COUNT(embedded) FROM %s owner " +
-      "JOIN owner.%s embedded " +
-      "WHERE owner.%s = :ownerId %s",
-      ownerEntityName,
-      fieldName,
-      idFieldName,
-      isNonArchivedClause
-    );
-    Object ownerId = getId(temp, reflectionCache);
-    val content = dataManager
-      .entityManager()
-      .createQuery(contentQueryString)
-      .setParameter("ownerId", ownerId)
-      .setFirstResult(input.getPageNumber() * input.getPageSize())
-      .setMaxResults(input.getPageSize())
+      seekPredicate != null ? "AND " + seekPredicate + " " : "",
+      keyset.orderByClause("embedded")
+    );
+    val rows = (List<TCollection>) keyset
+      .bind(
+        dataManager
+          .entityManager()
+          .createQuery(contentQueryString)
+          .setParameter("ownerId", getId(owner, reflectionCache))
+      )
       .getResultList();
-    val totalRecords = (long) dataManager
-      .entityManager()
-      .createQuery(countQueryString)
-      .setParameter("ownerId", ownerId)
-      .getSingleResult();
-    val totalPages = Math.ceil((double) totalRecords / input.getPageSize());
-    returnValue.setContent(content);
-    returnValue.setTotalPagesCount((long) totalPages);
-    returnValue.setTotalItemsCount(totalRecords);
-    returnValue.setPageNumber(input.getPageNumber());
+    val page = new Page<TCollection>();
+    page.setContent(keyset.nodesOf(rows));
     if (
       entityCollectionApiHooks != null
     ) entityCollectionApiHooks.postGetPaginatedBatch(
-      returnValue,
+      page,
       owner,
+      pageRequest,
+      collectionDataManager,
+      dataManager
+    );
+    return keyset.toConnection(page.getContent(), keyset.hasNextPage(rows));
+  }
+
+  /**
+   * Batched counterpart of {@link #getPaginatedBatchInEntityCollectionImpl},
+   * resolving the same page of the collection for every owner in the batch.
+   * Page contents are selected in a single statement by numbering the rows of
+   * each owner's collection via {@code ROW_NUMBER() OVER (PARTITION BY owner)},
+   * and the total counts of all owners are selected via one grouped query.
+   */
+  public <
+    TCollection, E extends EntityCollectionApiHooks<TCollection, T>
+  > List<Page<TCollection>> getPaginatedBatchInEntityCollectionsImpl(
+    List<T> owners,
+    dev.sanda.datafi.dto.PageRequest input,
+    String fieldName,
+    DataManager<TCollection> collectionDataManager,
+    E entityCollectionApiHooks
+  ) {
+    if (entityCollectionApiHooks != null) owners.forEach(owner ->
+      entityCollectionApiHooks.preGetPaginatedBatch(owner, input, dataManager)
+    );
+    val pages = getWindowedPages(
+      owners,
+      input,
+      fieldName,
+      collectionDataManager,
+      null
+    );
+    if (entityCollectionApiHooks != null) for (
+      int i = 0;
+      i < owners.size();
+      i++
+    ) entityCollectionApiHooks.postGetPaginatedBatch(
+      pages.get(i),
+      owners.get(i),
       input,
       collectionDataManager,
       dataManager
     );
-    return returnValue;
+    return pages;
+  }
+
+  /**
+   * Batched counterpart of {@link #paginatedFreeTextSearchInEntityCollectionImpl}.
+   * Owners for which {@link EntityCollectionApiHooks#executeCustomFreeTextSearch}
+   * returns a result are excluded from the windowed query.
+   */
+  public <
+    TCollection, E extends EntityCollectionApiHooks<TCollection, T>
+  > List<Page<TCollection>> paginatedFreeTextSearchInEntityCollectionsImpl(
+    List<T> owners,
+    dev.sanda.datafi.dto.FreeTextSearchPageRequest input,
+    String fieldName,
+    DataManager<TCollection> collectionDataManager,
+    E entityCollectionApiHooks
+  ) {
+    val searchTerm = input.getSearchTerm();
+    if (
+      searchTerm == null || searchTerm.equals("")
+    ) throw new IllegalArgumentException(
+      "Illegal attempt to search for " +
+      toPlural(collectionDataManager.getClazzSimpleName()) +
+      " with null or blank string"
+    );
+    final Map<Integer, Page<TCollection>> customResults = new HashMap<>();
+    final List<T> toSearch = new ArrayList<>();
+    for (int i = 0; i < owners.size(); i++) {
+      val owner = owners.get(i);
+      val customResult = entityCollectionApiHooks != null
+        ? entityCollectionApiHooks.executeCustomFreeTextSearch(
+          input,
+          owner,
+          dataManager,
+          collectionDataManager
+        )
+        : null;
+      if (customResult != null) {
+        customResults.put(i, customResult);
+        continue;
+      }
+      if (
+        entityCollectionApiHooks != null
+      ) entityCollectionApiHooks.preFreeTextSearch(
+        owner,
+        searchTerm,
+        dataManager,
+        collectionDataManager
+      );
+      toSearch.add(owner);
+    }
+    val searched = getWindowedPages(
+      toSearch,
+      input,
+      fieldName,
+      collectionDataManager,
+      searchTerm
+    ).iterator();
+    final List<Page<TCollection>> result = new ArrayList<>(owners.size());
+    for (int i = 0; i < owners.size(); i++) {
+      if (customResults.containsKey(i)) {
+        result.add(customResults.get(i));
+        continue;
+      }
+      val page = searched.next();
+      if (
+        entityCollectionApiHooks != null
+      ) entityCollectionApiHooks.postFreeTextSearch(
+        page,
+        input,
+        owners.get(i),
+        searchTerm,
+        collectionDataManager,
+        dataManager
+      );
+      result.add(page);
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <TCollection> List<Page<TCollection>> getWindowedPages(
+    List<T> owners,
+    dev.sanda.datafi.dto.PageRequest input,
+    String fieldName,
+    DataManager<TCollection> collectionDataManager,
+    String searchTerm
+  ) {
+    if (owners.isEmpty()) return new ArrayList<>();
+    validateSortByIfNonNull(
+      collectionDataManager.getClazz(),
+      input.getSortBy(),
+      reflectionCache
+    );
+    if (input.getFetchAll()) input.setPageNumber(0);
+    val isArchivable = isClazzArchivable(
+      collectionDataManager.getClazz(),
+      reflectionCache
+    );
+    val isSearch = searchTerm != null;
+    val contentQueryKey = QueryKey.sorted(
+      entityName,
+      isSearch
+        ? Operation.ENTITY_COLLECTIONS_WINDOWED_SEARCH
+        : Operation.ENTITY_COLLECTIONS_WINDOWED_PAGE,
+      fieldName,
+      input.getSortBy(),
+      input.getSortDirection(),
+      isArchivable
+    );
+    val countQueryKey = QueryKey.of(
+      entityName,
+      isSearch
+        ? Operation.ENTITY_COLLECTIONS_WINDOWED_SEARCH_COUNT
+        : Operation.ENTITY_COLLECTIONS_WINDOWED_COUNT,
+      fieldName,
+      isArchivable
+    );
+    val ownerIds = new ArrayList<Object>(
+      new LinkedHashSet<>(getIdList(owners, reflectionCache))
+    );
+    final Map<Object, List<TCollection>> contentByOwnerId = new HashMap<>();
+    final Map<Object, Long> countsByOwnerId = new HashMap<>();
+    val maxInClauseSize = configValues.getMaxInClauseSize();
+    for (int i = 0; i < ownerIds.size(); i += maxInClauseSize) {
+      val chunk = ownerIds.subList(
+        i,
+        Math.min(i + maxInClauseSize, ownerIds.size())
+      );
+      val contentQuery = jpqlQueryCache
+        .createQuery(dataManager.entityManager(), contentQueryKey)
+        .setParameter("ownerIds", chunk);
+      val countQuery = jpqlQueryCache
+        .createQuery(dataManager.entityManager(), countQueryKey)
+        .setParameter("ownerIds", chunk);
+      if (isSearch) {
+        contentQuery.setParameter("searchTerm", searchTerm);
+        countQuery.setParameter("searchTerm", searchTerm);
+      }
+      // fetching all is a window without an upper bound
+      val offset = (long) input.getPageNumber() * input.getPageSize();
+      contentQuery.setParameter("offset", offset);
+      contentQuery.setParameter(
+        "limit",
+        input.getFetchAll() ? Long.MAX_VALUE : offset + input.getPageSize()
+      );
+      for (val row : (List<Object[]>) contentQuery.getResultList()) contentByOwnerId
+        .computeIfAbsent(row[0], ownerId -> new ArrayList<>())
+        .add((TCollection) row[1]);
+      for (val row : (List<Object[]>) countQuery.getResultList()) countsByOwnerId.put(
+        row[0],
+        (Long) row[1]
+      );
+    }
+    return owners
+      .stream()
+      .map(owner -> {
+        val ownerId = getId(owner, reflectionCache);
+        val totalItems = countsByOwnerId.getOrDefault(ownerId, 0L);
+        val page = new Page<TCollection>();
+        page.setContent(
+          contentByOwnerId.getOrDefault(ownerId, new ArrayList<>())
+        );
+        page.setTotalItemsCount(totalItems);
+        page.setTotalPagesCount(
+          (long) Math.ceil((double) totalItems / input.getPageSize())
+        );
+        page.setPageNumber(input.getPageNumber());
+        return page;
+      })
+      .collect(Collectors.toList());
   }
 
   public <
@@ -1031,10 +1297,17 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
     Set<Object> toRemoveIds = new HashSet<>(
       getIdList(toRemove, reflectionCache)
     );
-    currentCollection.removeIf(item ->
-      toRemoveIds.contains(getId(item, reflectionCache))
-    );
+    final List<TCollection> removed = currentCollection
+      .stream()
+      .filter(item -> toRemoveIds.contains(getId(item, reflectionCache)))
+      .collect(Collectors.toList());
+    currentCollection.removeAll(removed);
     dataManager.save(owner);
+    // instances removed from an orphan removing collection are deleted
+    if (isOrphanRemoval(dataManager.getClazz(), toRemoveFieldName)) {
+      entityCountersService.onDeleted(collectionDataManager.getClazz(), removed);
+      freeTextSearchEngine.onDeleted(collectionDataManager.getClazz(), removed);
+    }
     if (entityCollectionApiHooks != null) entityCollectionApiHooks.postRemove(
       toRemove,
       owner,
@@ -1143,4 +1416,19 @@ public class CollectionsCrudService<T> extends BaseCrudService<T> {
     throw_entityNotFound(toCheck, reflectionCache);
     return null;
   }
+
+  private boolean isOrphanRemoval(Class<?> ownerType, String fieldName) {
+    val field = reflectionCache
+      .getEntitiesCache()
+      .get(ownerType.getSimpleName())
+      .getFields()
+      .get(fieldName)
+      .getField();
+    val oneToMany = field.getAnnotation(OneToMany.class);
+    val oneToOne = field.getAnnotation(OneToOne.class);
+    return (
+      (oneToMany != null && oneToMany.orphanRemoval()) ||
+      (oneToOne != null && oneToOne.orphanRemoval())
+    );
+  }
 }
@@ -1,5 +1,6 @@
 package dev.sanda.apifi.service.api_logic;
 
+import dev.sanda.apifi.service.free_text_search.FreeTextSearchEngine;
 import dev.sanda.apifi.service.graphql_config.GraphQLSubscriptionSupport;
 import dev.sanda.apifi.service.graphql_subcriptions.pubsub.AsyncExecutorService;
 import dev.sanda.datafi.persistence.Archivable;
@@ -18,18 +19,36 @@ import static dev.sanda.datafi.DatafiStaticUtils.throwEntityNotFoundException;
 @Scope("prototype")
 public class CrudService<T> extends BaseCrudService<T> {
 
+  private final EntityGraphFactory entityGraphFactory;
+  private final EntityCountersService entityCountersService;
+  private final FreeTextSearchEngine freeTextSearchEngine;
+
   @Autowired
   public CrudService(
     ReflectionCache reflectionCache,
     AsyncExecutorService asyncExecutorService,
-    GraphQLSubscriptionSupport graphQLSubscriptionSupport
+    GraphQLSubscriptionSupport graphQLSubscriptionSupport,
+    EntityGraphFactory entityGraphFactory,
+    EntityCountersService entityCountersService,
+    FreeTextSearchEngine freeTextSearchEngine
   ) {
     super(reflectionCache, asyncExecutorService, graphQLSubscriptionSupport);
+    this.entityGraphFactory = entityGraphFactory;
+    this.entityCountersService = entityCountersService;
+    this.freeTextSearchEngine = freeTextSearchEngine;
   }
 
   public T getByIdImpl(Object id) {
     if (apiHooks != null) apiHooks.preGetById(id, dataManager);
-    T result = dataManager.findById(id).orElse(null);
+    val fetchGraphHints = entityGraphFactory.fetchGraphHints(
+      dataManager.entityManager(),
+      dataManager.getClazz()
+    );
+    T result = fetchGraphHints.isEmpty()
+      ? dataManager.findById(id).orElse(null)
+      : dataManager
+        .entityManager()
+        .find(dataManager.getClazz(), id, fetchGraphHints);
     if (result == null) throwEntityNotFoundException(
       dataManager.getClazzSimpleName(),
       id
@@ -69,6 +88,14 @@ public class CrudService<T> extends BaseCrudService<T> {
   public T createImpl(T input) {
     if (apiHooks != null) apiHooks.preCreate(input, dataManager);
     val result = dataManager.save(input);
+    entityCountersService.onCreated(
+      dataManager.getClazz(),
+      Collections.singletonList(result)
+    );
+    freeTextSearchEngine.onSaved(
+      dataManager.getClazz(),
+      Collections.singletonList(result)
+    );
     if (apiHooks != null) apiHooks.postCreate(input, result, dataManager);
     logInfo(
       "create: Created {} with id #{}",
@@ -96,6 +123,10 @@ public class CrudService<T> extends BaseCrudService<T> {
     if (apiHooks != null) apiHooks.preUpdate(input, toUpdate, dataManager);
     dataManager.cascadeUpdate(toUpdate, input);
     val result = dataManager.save(toUpdate);
+    freeTextSearchEngine.onSaved(
+      dataManager.getClazz(),
+      Collections.singletonList(result)
+    );
     if (apiHooks != null) apiHooks.postUpdate(
       input,
       toUpdate,
@@ -118,6 +149,14 @@ public class CrudService<T> extends BaseCrudService<T> {
     T toDelete = getByIdImpl(id);
     if (apiHooks != null) apiHooks.preDelete(input, toDelete, dataManager);
     dataManager.deleteById(id);
+    entityCountersService.onDeleted(
+      dataManager.getClazz(),
+      Collections.singletonList(toDelete)
+    );
+    freeTextSearchEngine.onDeleted(
+      dataManager.getClazz(),
+      Collections.singletonList(toDelete)
+    );
     if (apiHooks != null) apiHooks.postDelete(input, toDelete, dataManager);
     logInfo(
       "delete: deleted {} with id #{}",
@@ -141,8 +180,17 @@ public class CrudService<T> extends BaseCrudService<T> {
       toArchive,
       dataManager
     );
+    val wasArchived = entityCountersService.isArchived(toArchive);
     input.setIsArchived(true);
     val result = dataManager.save(toArchive);
+    entityCountersService.onArchivedStateChanged(
+      dataManager.getClazz(),
+      archivedDelta(wasArchived, result)
+    );
+    freeTextSearchEngine.onSaved(
+      dataManager.getClazz(),
+      Collections.singletonList(result)
+    );
     if (apiHooks != null) apiHooks.postArchive((T) input, result, dataManager);
     logInfo(
       "archive: Archived {} with id: {}",
@@ -166,8 +214,17 @@ public class CrudService<T> extends BaseCrudService<T> {
       toArchive,
       dataManager
     );
+    val wasArchived = entityCountersService.isArchived(toArchive);
     input.setIsArchived(false);
     val result = dataManager.save(toArchive);
+    entityCountersService.onArchivedStateChanged(
+      dataManager.getClazz(),
+      archivedDelta(wasArchived, result)
+    );
+    freeTextSearchEngine.onSaved(
+      dataManager.getClazz(),
+      Collections.singletonList(result)
+    );
     if (apiHooks != null) apiHooks.postDeArchive(
       (T) input,
       result,
@@ -185,4 +242,9 @@ public class CrudService<T> extends BaseCrudService<T> {
     );
     return result;
   }
+
+  private long archivedDelta(boolean wasArchived, T result) {
+    val isArchived = entityCountersService.isArchived(result);
+    return wasArchived == isArchived ? 0 : isArchived ? 1 : -1;
+  }
 }
@@ -0,0 +1,327 @@
+package dev.sanda.apifi.service.api_logic;
+
+import static dev.sanda.apifi.utils.ApifiStaticUtils.isClazzArchivable;
+import static dev.sanda.apifi.utils.ApifiStaticUtils.runAfterCommit;
+
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.AsyncExecutorService;
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.PubSubMessagingService;
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.PubSubTopicHandler;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.persistence.Archivable;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import dev.sanda.datafi.service.DataManager;
+import dev.sanda.datafi.service.DataManagersCollector;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+/**
+ * Keeps the total archived and non archived counts of each entity in memory,
+ * so that paginated endpoints need not run a COUNT query on every request.
+ * Counters are seeded once on startup, incrementally updated by the crud
+ * services' create, delete, archive and de-archive operations once their
+ * transactions commit, and periodically reconciled against the database to
+ * correct drift caused by writes which bypass apifi. Until an entity's
+ * counters have been seeded, its counts are read from the database.
+ */
+@Slf4j
+@Service
+public class EntityCountersService {
+
+  public static final String SYNC_TOPIC =
+    PubSubMessagingService.INTERNAL_TOPIC_PREFIX + "/entity-counters";
+
+  private final ReflectionCache reflectionCache;
+  private final DataManagersCollector dataManagersCollector;
+  private final AsyncExecutorService asyncExecutorService;
+  private final PubSubMessagingService pubSubMessagingService;
+  private final ConfigValues configValues;
+  private final boolean enabled;
+  private final boolean syncEnabled;
+  private final String nodeId = UUID.randomUUID().toString();
+
+  private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+  @Autowired
+  public EntityCountersService(
+    ReflectionCache reflectionCache,
+    DataManagersCollector dataManagersCollector,
+    AsyncExecutorService asyncExecutorService,
+    PubSubMessagingService pubSubMessagingService,
+    ConfigValues configValues
+  ) {
+    this.reflectionCache = reflectionCache;
+    this.dataManagersCollector = dataManagersCollector;
+    this.asyncExecutorService = asyncExecutorService;
+    this.pubSubMessagingService = pubSubMessagingService;
+    this.configValues = configValues;
+    this.enabled = configValues.getEntityCountersEnabled();
+    this.syncEnabled = enabled && configValues.getEntityCountersSyncEnabled();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    if (!enabled) return;
+    if (syncEnabled) subscribeToRemoteDeltas();
+    asyncExecutorService.executeAsync(this::reconcileAll);
+    val reconcileInterval = configValues.getEntityCountersReconcileInterval();
+    if (reconcileInterval > 0) asyncExecutorService.scheduleAsyncTask(
+      this::reconcileAll,
+      reconcileInterval,
+      true
+    );
+  }
+
+  public Long getNonArchivedCount(Class<?> clazz, Supplier<Long> countQuery) {
+    if (!enabled) return countQuery.get();
+    val entityCounters = counters.get(clazz.getSimpleName());
+    return entityCounters != null && entityCounters.isSeeded
+      ? entityCounters.nonArchived.get()
+      : countQuery.get();
+  }
+
+  public Long getArchivedCount(Class<?> clazz, Supplier<Long> countQuery) {
+    if (!enabled) return countQuery.get();
+    val entityCounters = counters.get(clazz.getSimpleName());
+    return entityCounters != null && entityCounters.isSeeded
+      ? entityCounters.archived.get()
+      : countQuery.get();
+  }
+
+  public void onCreated(Class<?> clazz, Collection<?> created) {
+    if (!enabled) return;
+    val archived = created.stream().filter(this::isArchived).count();
+    applyDelta(clazz.getSimpleName(), created.size() - archived, archived);
+  }
+
+  public void onDeleted(Class<?> clazz, Collection<?> deleted) {
+    if (!enabled) return;
+    val archived = deleted.stream().filter(this::isArchived).count();
+    onDeleted(clazz, deleted.size(), archived);
+  }
+
+  /**
+   * @param archivedCount the number of deleted instances which were archived.
+   */
+  public void onDeleted(Class<?> clazz, long deletedCount, long archivedCount) {
+    if (!enabled) return;
+    applyDelta(
+      clazz.getSimpleName(),
+      archivedCount - deletedCount,
+      -archivedCount
+    );
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param archivedDelta the number of instances which were archived, or if
+   * negative, de-archived.
+   */
+  public void onArchivedStateChanged(Class<?> clazz, long archivedDelta) {
+    if (!enabled || archivedDelta == 0) return;
+    applyDelta(clazz.getSimpleName(), -archivedDelta, archivedDelta);
+  }
+
+  public boolean isArchived(Object entity) {
+    return (
+      entity instanceof Archivable &&
+      Boolean.TRUE.equals(((Archivable) entity).getIsArchived())
+    );
+  }
+
+  /**
+   * Deltas are applied (and published) once the transaction which caused them
+   * commits, so that rolled back writes leave the counters untouched.
+   */
+  private void applyDelta(
+    String entityName,
+    long nonArchivedDelta,
+    long archivedDelta
+  ) {
+    if (nonArchivedDelta == 0 && archivedDelta == 0) return;
+    runAfterCommit(() -> {
+      addToCounters(entityName, nonArchivedDelta, archivedDelta);
+      if (syncEnabled) asyncExecutorService.executeAsync(() ->
+        publishDelta(entityName, nonArchivedDelta, archivedDelta)
+      );
+    });
+  }
+
+  private void addToCounters(
+    String entityName,
+    long nonArchivedDelta,
+    long archivedDelta
+  ) {
+    val entityCounters = counters.get(entityName);
+    if (entityCounters == null) return;
+    synchronized (entityCounters) {
+      if (entityCounters.buffered != null) entityCounters.buffered.add(
+        new BufferedDelta(System.nanoTime(), nonArchivedDelta, archivedDelta)
+      ); else entityCounters.add(nonArchivedDelta, archivedDelta);
+    }
+  }
+
+  private void reconcileAll() {
+    for (val cachedEntity : reflectionCache.getEntitiesCache().values()) {
+      try {
+        reconcile(cachedEntity.getClazz());
+      } catch (Exception e) {
+        log.debug(
+          "skipping entity counters of {}: {}",
+          cachedEntity.getClazz().getSimpleName(),
+          e.toString()
+        );
+      }
+    }
+  }
+
+  /**
+   * The queried counts replace the counters' values. Deltas which arrive while
+   * the counts are being queried are buffered rather than applied, and once
+   * the counts are in, only those which arrived after the corresponding COUNT
+   * statement started are applied on top of them - earlier ones were already
+   * committed, and are therefore included in the count. A write which commits
+   * just before a COUNT statement starts, but whose delta only arrives after
+   * it started (as is more likely for deltas of other nodes), is still counted
+   * twice, so the counters are eventually rather than strictly consistent:
+   * such drift lasts until the next reconciliation.
+   */
+  private <T> void reconcile(Class<T> clazz) {
+    val dataManager = dataManagersCollector.getDataManagerForEntityType(clazz);
+    if (dataManager == null) return;
+    val entityCounters = counters.computeIfAbsent(
+      clazz.getSimpleName(),
+      name -> new Counters()
+    );
+    synchronized (entityCounters) {
+      entityCounters.buffered = new ArrayList<>();
+    }
+    long nonArchived = 0;
+    long archived = 0;
+    long nonArchivedCountStart = System.nanoTime();
+    long archivedCountStart = nonArchivedCountStart;
+    try {
+      if (isClazzArchivable(clazz, reflectionCache)) {
+        nonArchived = countByArchivedState(dataManager, false);
+        archivedCountStart = System.nanoTime();
+        archived = countByArchivedState(dataManager, true);
+      } else nonArchived = dataManager.count();
+    } catch (RuntimeException e) {
+      // the counters are left as they were, along with the buffered deltas
+      synchronized (entityCounters) {
+        entityCounters.buffered.forEach(delta ->
+          entityCounters.add(delta.nonArchived, delta.archived)
+        );
+        entityCounters.buffered = null;
+      }
+      throw e;
+    }
+    synchronized (entityCounters) {
+      entityCounters.nonArchived.set(nonArchived);
+      entityCounters.archived.set(archived);
+      for (val delta : entityCounters.buffered) entityCounters.add(
+        delta.arrivedAt >= nonArchivedCountStart ? delta.nonArchived : 0,
+        delta.arrivedAt >= archivedCountStart ? delta.archived : 0
+      );
+      entityCounters.buffered = null;
+      entityCounters.isSeeded = true;
+    }
+  }
+
+  private static <T> long countByArchivedState(
+    DataManager<T> dataManager,
+    boolean isArchived
+  ) {
+    return dataManager.count(
+      (Specification<T>) (root, query, cb) ->
+        isArchived
+          ? cb.isTrue(root.get("isArchived"))
+          : cb.isFalse(root.get("isArchived"))
+    );
+  }
+
+  private void publishDelta(
+    String entityName,
+    long nonArchivedDelta,
+    long archivedDelta
+  ) {
+    val delta = new HashMap<String, Object>();
+    delta.put("nodeId", nodeId);
+    delta.put("entity", entityName);
+    delta.put("nonArchived", nonArchivedDelta);
+    delta.put("archived", archivedDelta);
+    try {
+      pubSubMessagingService.publishToTopic(SYNC_TOPIC, delta);
+    } catch (Exception e) {
+      log.warn("Could not publish entity counters delta: {}", e.toString());
+    }
+  }
+
+  private void subscribeToRemoteDeltas() {
+    Flux
+      .create(sink ->
+        pubSubMessagingService.registerTopicHandler(
+          SYNC_TOPIC,
+          new PubSubTopicHandler(
+            nodeId,
+            sink,
+            null,
+            reflectionCache,
+            configValues
+          )
+        )
+      )
+      .subscribe(this::applyRemoteDelta);
+  }
+
+  private void applyRemoteDelta(Object payload) {
+    if (!(payload instanceof Map)) return;
+    val delta = (Map<?, ?>) payload;
+    if (nodeId.equals(delta.get("nodeId"))) return;
+    addToCounters(
+      String.valueOf(delta.get("entity")),
+      ((Number) delta.get("nonArchived")).longValue(),
+      ((Number) delta.get("archived")).longValue()
+    );
+  }
+
+  private static class Counters {
+
+    private final AtomicLong nonArchived = new AtomicLong();
+    private final AtomicLong archived = new AtomicLong();
+    private volatile boolean isSeeded;
+    // the deltas which arrived during an ongoing reconciliation, if any
+    private List<BufferedDelta> buffered;
+
+    private void add(long nonArchivedDelta, long archivedDelta) {
+      nonArchived.addAndGet(nonArchivedDelta);
+      archived.addAndGet(archivedDelta);
+    }
+  }
+
+  @Value
+  private static class BufferedDelta {
+
+    long arrivedAt;
+    long nonArchived;
+    long archived;
+  }
+}
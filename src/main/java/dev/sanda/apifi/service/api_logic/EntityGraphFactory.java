@@ -0,0 +1,145 @@
+package dev.sanda.apifi.service.api_logic;
+
+import dev.sanda.apifi.service.graphql_config.SelectionSetInstrumentation;
+import dev.sanda.apifi.utils.ConfigValues;
+import graphql.language.OperationDefinition;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.GraphQLTypeUtil;
+import graphql.schema.SelectedField;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Subgraph;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Translates the selection set of the query field currently being resolved
+ * into a JPA fetch graph. Selected to-one associations are join fetched (up to
+ * the configured depth), and unselected ones are left lazy. Collections are
+ * never join fetched, as they are resolved by {@code @Batched} resolvers.
+ */
+@Component
+public class EntityGraphFactory {
+
+  public static final String FETCH_GRAPH_HINT = "jakarta.persistence.fetchgraph";
+  private static final String PAGE_CONTENT_FIELD = "content";
+  private static final String CONNECTION_NODE_FIELD = "edges/node";
+
+  private final boolean enabled;
+  private final int maxFetchDepth;
+
+  @Autowired
+  public EntityGraphFactory(ConfigValues configValues) {
+    this.enabled = configValues.getSelectionSetProjectionsEnabled();
+    this.maxFetchDepth = configValues.getSelectionSetProjectionsMaxFetchDepth();
+  }
+
+  /**
+   * @return the query hints applying a fetch graph of the currently selected
+   * fields of the given entity type, or an empty map if not within a query
+   * resolver returning that type (or a page or connection of it).
+   */
+  public Map<String, Object> fetchGraphHints(
+    EntityManager entityManager,
+    Class<?> entityClazz
+  ) {
+    if (!enabled) return Collections.emptyMap();
+    val selectionSet = currentEntitySelectionSet(entityClazz);
+    if (selectionSet == null) return Collections.emptyMap();
+    val graph = entityManager.createEntityGraph(entityClazz);
+    addAttributeNodes(
+      selectionSet,
+      entityManager.getMetamodel().managedType(entityClazz),
+      attributeName -> graph.addAttributeNodes(attributeName),
+      graph::addSubgraph,
+      1
+    );
+    return Collections.singletonMap(FETCH_GRAPH_HINT, graph);
+  }
+
+  private DataFetchingFieldSelectionSet currentEntitySelectionSet(
+    Class<?> entityClazz
+  ) {
+    val environment = SelectionSetInstrumentation.currentEnvironment();
+    // mutations load entities in order to write them, so only queries are narrowed
+    if (
+      environment == null ||
+      environment.getOperationDefinition().getOperation() !=
+      OperationDefinition.Operation.QUERY
+    ) return null;
+    val entityTypeName = entityClazz.getSimpleName();
+    if (
+      typeNameOf(environment.getFieldType()).equals(entityTypeName)
+    ) return environment.getSelectionSet();
+    for (val field : environment.getSelectionSet().getImmediateFields()) if (
+      field.getName().equals(PAGE_CONTENT_FIELD) &&
+      typeNameOf(field.getType()).equals(entityTypeName)
+    ) return field.getSelectionSet();
+    for (val field : environment
+      .getSelectionSet()
+      .getFields(CONNECTION_NODE_FIELD)) if (
+      typeNameOf(field.getType()).equals(entityTypeName)
+    ) return field.getSelectionSet();
+    return null;
+  }
+
+  private void addAttributeNodes(
+    DataFetchingFieldSelectionSet selectionSet,
+    ManagedType<?> managedType,
+    Consumer<String> addAttributeNode,
+    Function<String, Subgraph<?>> addSubgraph,
+    int depth
+  ) {
+    for (val field : selectionSet.getImmediateFields()) {
+      val attribute = attributeOf(managedType, field);
+      if (attribute == null) continue;
+      switch (attribute.getPersistentAttributeType()) {
+        case BASIC:
+        case EMBEDDED:
+          addAttributeNode.accept(attribute.getName());
+          break;
+        case MANY_TO_ONE:
+        case ONE_TO_ONE:
+          {
+            val targetType = ((SingularAttribute<?, ?>) attribute).getType();
+            if (
+              depth >= maxFetchDepth || !(targetType instanceof ManagedType)
+            ) break;
+            val subgraph = addSubgraph.apply(attribute.getName());
+            addAttributeNodes(
+              field.getSelectionSet(),
+              (ManagedType<?>) targetType,
+              attributeName -> subgraph.addAttributeNodes(attributeName),
+              subgraph::addSubgraph,
+              depth + 1
+            );
+            break;
+          }
+        default:
+          break;
+      }
+    }
+  }
+
+  private static Attribute<?, ?> attributeOf(
+    ManagedType<?> managedType,
+    SelectedField field
+  ) {
+    try {
+      return managedType.getAttribute(field.getName());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static String typeNameOf(graphql.schema.GraphQLType type) {
+    return GraphQLTypeUtil.unwrapAll(type).getName();
+  }
+}
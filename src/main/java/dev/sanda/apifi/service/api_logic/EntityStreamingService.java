@@ -0,0 +1,196 @@
+package dev.sanda.apifi.service.api_logic;
+
+import static dev.sanda.apifi.utils.ApifiStaticUtils.namedDaemonThreadFactory;
+import static dev.sanda.apifi.utils.ApifiStaticUtils.tryCreateVirtualThreadPerTaskExecutor;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Streams the results of unbounded queries in fixed size chunks, rather than
+ * loading all of them into a single list. Rows are read within a read only
+ * transaction through a forward only cursor (Hibernate backs
+ * {@code getResultStream} with {@code ScrollableResults}) using the chunk size
+ * as the JDBC fetch size, and the persistence context is cleared before each
+ * chunk is read, so that memory usage stays flat regardless of the number of
+ * rows.
+ * <p>
+ * Since chunks are read as they are consumed, the transaction (and its
+ * connection) stays open for as long as the consumer takes, which for a slow
+ * client may be far longer than reading the rows takes. Streams are therefore
+ * bounded by a maximal duration, after which they fail and their transaction
+ * is rolled back.
+ */
+@Slf4j
+@Service
+public class EntityStreamingService {
+
+  public static final String FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+  public static final String READ_ONLY_HINT = "org.hibernate.readOnly";
+
+  private final TransactionTemplate readOnlyTransactionTemplate;
+  private final int chunkSize;
+  private final long maxDurationNanos;
+  private final ExecutorService streamExecutor;
+
+  @Autowired
+  public EntityStreamingService(
+    PlatformTransactionManager transactionManager,
+    ConfigValues configValues
+  ) {
+    this.readOnlyTransactionTemplate =
+      new TransactionTemplate(transactionManager);
+    this.readOnlyTransactionTemplate.setReadOnly(true);
+    this.chunkSize = Math.max(1, configValues.getStreamingChunkSize());
+    val maxDurationSeconds = configValues.getStreamingMaxDurationSeconds();
+    if (maxDurationSeconds > 0) this.readOnlyTransactionTemplate.setTimeout(
+      maxDurationSeconds
+    );
+    this.maxDurationNanos =
+      TimeUnit.SECONDS.toNanos(Math.max(0, maxDurationSeconds));
+    this.streamExecutor = newStreamExecutor();
+  }
+
+  /**
+   * Passes the results of the query to the consumer in chunks. The
+   * persistence context is only cleared once the consumer has returned, so
+   * the instances of a chunk remain managed while it is being consumed, and
+   * are detached thereafter.
+   *
+   * @param query creates the query to stream, and is invoked within the
+   * streaming transaction.
+   * @return the total number of streamed results.
+   */
+  public <T> long stream(
+    EntityManager entityManager,
+    Supplier<TypedQuery<T>> query,
+    Consumer<List<T>> chunkConsumer
+  ) {
+    val startTime = System.nanoTime();
+    val streamed = readOnlyTransactionTemplate.execute(status -> {
+      long count = 0;
+      List<T> chunk = new ArrayList<>(chunkSize);
+      try (
+        Stream<T> rows = query
+          .get()
+          .setHint(FETCH_SIZE_HINT, chunkSize)
+          .setHint(READ_ONLY_HINT, true)
+          .getResultStream()
+      ) {
+        val iterator = rows.iterator();
+        while (iterator.hasNext()) {
+          chunk.add(iterator.next());
+          if (chunk.size() < chunkSize) continue;
+          checkDuration(startTime);
+          chunkConsumer.accept(chunk);
+          count += chunk.size();
+          chunk = new ArrayList<>(chunkSize);
+          entityManager.clear();
+        }
+      }
+      if (!chunk.isEmpty()) {
+        checkDuration(startTime);
+        chunkConsumer.accept(chunk);
+        count += chunk.size();
+      }
+      return count;
+    });
+    return streamed != null ? streamed : 0L;
+  }
+
+  private void checkDuration(long startTime) {
+    if (
+      maxDurationNanos > 0 && System.nanoTime() - startTime > maxDurationNanos
+    ) throw new TransactionTimedOutException(
+      "Stream exceeded its maximal duration of " +
+      TimeUnit.NANOSECONDS.toSeconds(maxDurationNanos) +
+      " seconds"
+    );
+  }
+
+  /**
+   * @param streamer streams chunks to the consumer it is passed, as per
+   * {@link #stream}.
+   * @return a cold {@link Flux} of chunks, which runs the streamer on a
+   * dedicated thread once subscribed to. Chunks are only read as they are
+   * requested by the subscriber, so a slow subscriber does not cause chunks to
+   * pile up in memory.
+   */
+  public <T> Flux<List<T>> publish(Function<Consumer<List<T>>, Long> streamer) {
+    val requestAttributes = RequestContextHolder.getRequestAttributes();
+    val securityContext = SecurityContextHolder.getContext();
+    return Flux.create(sink -> {
+      val demandSignal = new Semaphore(0);
+      sink.onRequest(n -> demandSignal.release());
+      sink.onDispose(demandSignal::release);
+      streamExecutor.execute(() -> {
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+        SecurityContextHolder.setContext(securityContext);
+        try {
+          streamer.apply(chunk -> {
+            awaitDemand(sink, demandSignal);
+            sink.next(chunk);
+          });
+          sink.complete();
+        } catch (CancellationException e) {
+          log.debug("entity stream cancelled by subscriber");
+        } catch (Exception e) {
+          sink.error(e);
+        } finally {
+          SecurityContextHolder.clearContext();
+          RequestContextHolder.resetRequestAttributes();
+        }
+      });
+    });
+  }
+
+  private static void awaitDemand(FluxSink<?> sink, Semaphore demandSignal) {
+    try {
+      while (sink.requestedFromDownstream() == 0 && !sink.isCancelled()) {
+        demandSignal.tryAcquire(1, TimeUnit.SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("interrupted");
+    }
+    if (sink.isCancelled()) throw new CancellationException("cancelled");
+  }
+
+  private static ExecutorService newStreamExecutor() {
+    val virtualThreadsExecutor = tryCreateVirtualThreadPerTaskExecutor();
+    return virtualThreadsExecutor != null
+      ? virtualThreadsExecutor
+      : Executors.newCachedThreadPool(
+        namedDaemonThreadFactory("apifi-entity-stream")
+      );
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    streamExecutor.shutdownNow();
+  }
+}
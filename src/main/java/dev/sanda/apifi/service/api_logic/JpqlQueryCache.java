@@ -0,0 +1,800 @@
+package dev.sanda.apifi.service.api_logic;
+
+import static dev.sanda.apifi.utils.ApifiStaticUtils.isClazzArchivable;
+
+import dev.sanda.apifi.annotations.EntityCollectionApi;
+import dev.sanda.apifi.annotations.WithApiFreeTextSearchByFields;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.code_generator.FreeTextSearchMethodsFactory;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.Version;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+/**
+ * Central registry of the JPQL generated by the crud services. Each distinct
+ * query shape, as identified by its {@link QueryKey}, is rendered once and
+ * cached thereafter, so that requests neither rebuild query strings nor miss
+ * Hibernate's query plan cache, which is keyed by the query string. The sort
+ * independent (and default sorted) queries of every entity are rendered on
+ * startup from the {@link ReflectionCache}, and registered as named queries so
+ * that they are parsed and validated before the first request is served.
+ * Queries first rendered while serving requests are only cached as strings,
+ * since named queries cannot safely be registered concurrently.
+ */
+@Slf4j
+@Component
+public class JpqlQueryCache implements SmartInitializingSingleton {
+
+  public static final String NAMED_QUERY_PREFIX = "apifi.";
+
+  private final ReflectionCache reflectionCache;
+  private final EntityManagerFactory entityManagerFactory;
+
+  private final Map<QueryKey, String> queries = new ConcurrentHashMap<>();
+  private final Map<QueryKey, String> namedQueries = new ConcurrentHashMap<>();
+
+  @Autowired
+  public JpqlQueryCache(
+    ReflectionCache reflectionCache,
+    ObjectProvider<EntityManagerFactory> entityManagerFactory,
+    ConfigValues configValues
+  ) {
+    this.reflectionCache = reflectionCache;
+    this.entityManagerFactory =
+      configValues.getNamedQueriesEnabled()
+        ? entityManagerFactory.getIfUnique()
+        : null;
+  }
+
+  public enum Operation {
+    PAGE,
+    ARCHIVED_PAGE,
+    BATCH_BY_IDS,
+    NON_ARCHIVED_BY_IDS,
+    SET_ARCHIVED_BY_IDS,
+    DELETE_BY_IDS,
+    DELETE_ARCHIVED_BY_IDS,
+    FREE_TEXT_SEARCH,
+    FREE_TEXT_SEARCH_COUNT,
+    ENTITY_COLLECTION_FETCH,
+    FOREIGN_KEY_FETCH,
+    COLLECTION_COUNTS,
+    ELEMENT_COLLECTION_PAGE,
+    ELEMENT_COLLECTION_COUNT,
+    ELEMENT_COLLECTION_SEARCH,
+    ELEMENT_COLLECTION_SEARCH_COUNT,
+    MAP_ELEMENT_COLLECTION_PAGE,
+    MAP_ELEMENT_COLLECTION_COUNT,
+    ENTITY_COLLECTION_PAGE,
+    ENTITY_COLLECTION_COUNT,
+    ENTITY_COLLECTION_SEARCH,
+    ENTITY_COLLECTION_SEARCH_COUNT,
+    ENTITY_COLLECTIONS_WINDOWED_PAGE,
+    ENTITY_COLLECTIONS_WINDOWED_COUNT,
+    ENTITY_COLLECTIONS_WINDOWED_SEARCH,
+    ENTITY_COLLECTIONS_WINDOWED_SEARCH_COUNT,
+  }
+
+  /**
+   * Identifies the shape of a generated query. The archivable flag refers to
+   * the queried type, which for collection queries is the collection's type
+   * rather than the owner's.
+   */
+  @Value
+  public static class QueryKey {
+
+    String entityName;
+    Operation operation;
+    String fieldName;
+    String sortBy;
+    Sort.Direction sortDirection;
+    boolean archivable;
+
+    public static QueryKey of(
+      String entityName,
+      Operation operation,
+      String fieldName,
+      boolean archivable
+    ) {
+      return new QueryKey(
+        entityName,
+        operation,
+        fieldName,
+        null,
+        null,
+        archivable
+      );
+    }
+
+    public static QueryKey sorted(
+      String entityName,
+      Operation operation,
+      String fieldName,
+      String sortBy,
+      Sort.Direction sortDirection,
+      boolean archivable
+    ) {
+      return new QueryKey(
+        entityName,
+        operation,
+        fieldName,
+        sortBy,
+        sortDirection != null ? sortDirection : Sort.Direction.ASC,
+        archivable
+      );
+    }
+  }
+
+  public String jpqlOf(QueryKey key) {
+    return queries.computeIfAbsent(key, this::render);
+  }
+
+  public Query createQuery(EntityManager entityManager, QueryKey key) {
+    val namedQuery = namedQueries.get(key);
+    return namedQuery != null
+      ? entityManager.createNamedQuery(namedQuery)
+      : entityManager.createQuery(jpqlOf(key));
+  }
+
+  public <R> TypedQuery<R> createQuery(
+    EntityManager entityManager,
+    QueryKey key,
+    Class<R> resultClass
+  ) {
+    val namedQuery = namedQueries.get(key);
+    return namedQuery != null
+      ? entityManager.createNamedQuery(namedQuery, resultClass)
+      : entityManager.createQuery(jpqlOf(key), resultClass);
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    val entityManager = entityManagerFactory != null
+      ? entityManagerFactory.createEntityManager()
+      : null;
+    try {
+      for (val cachedEntity : reflectionCache.getEntitiesCache().values()) {
+        val clazz = cachedEntity.getClazz();
+        try {
+          precomputeEntityQueries(entityManager, clazz);
+        } catch (RuntimeException e) {
+          log.debug(
+            "skipping precomputed queries of {}: {}",
+            clazz.getSimpleName(),
+            e.toString()
+          );
+        }
+      }
+    } finally {
+      if (entityManager != null) entityManager.close();
+    }
+    log.info(
+      "Precomputed {} JPQL queries, {} of which were registered as named queries",
+      queries.size(),
+      namedQueries.size()
+    );
+  }
+
+  private void precomputeEntityQueries(
+    EntityManager entityManager,
+    Class<?> clazz
+  ) {
+    val entityName = clazz.getSimpleName();
+    val idFieldName = idFieldNameOf(entityName);
+    val isArchivable = isClazzArchivable(clazz, reflectionCache);
+    precompute(
+      entityManager,
+      QueryKey.sorted(
+        entityName,
+        Operation.PAGE,
+        null,
+        idFieldName,
+        null,
+        isArchivable
+      )
+    );
+    if (isArchivable) precompute(
+      entityManager,
+      QueryKey.sorted(
+        entityName,
+        Operation.ARCHIVED_PAGE,
+        null,
+        idFieldName,
+        null,
+        true
+      )
+    );
+    precompute(
+      entityManager,
+      QueryKey.of(entityName, Operation.BATCH_BY_IDS, null, isArchivable)
+    );
+    precompute(
+      entityManager,
+      QueryKey.of(entityName, Operation.NON_ARCHIVED_BY_IDS, null, isArchivable)
+    );
+    precompute(
+      entityManager,
+      QueryKey.of(entityName, Operation.DELETE_BY_IDS, null, isArchivable)
+    );
+    if (isArchivable) {
+      precompute(
+        entityManager,
+        QueryKey.of(entityName, Operation.SET_ARCHIVED_BY_IDS, null, true)
+      );
+      precompute(
+        entityManager,
+        QueryKey.of(entityName, Operation.DELETE_ARCHIVED_BY_IDS, null, true)
+      );
+    }
+    if (clazz.isAnnotationPresent(WithApiFreeTextSearchByFields.class)) {
+      precompute(
+        entityManager,
+        QueryKey.of(
+          entityName,
+          Operation.FREE_TEXT_SEARCH_COUNT,
+          null,
+          isArchivable
+        )
+      );
+      precompute(
+        entityManager,
+        QueryKey.sorted(
+          entityName,
+          Operation.FREE_TEXT_SEARCH,
+          null,
+          idFieldName,
+          null,
+          isArchivable
+        )
+      );
+    }
+    for (val cachedField : reflectionCache
+      .getEntitiesCache()
+      .get(entityName)
+      .getFields()
+      .values()) {
+      val field = cachedField.getField();
+      val fieldName = field.getName();
+      if (
+        field.isAnnotationPresent(ManyToOne.class) ||
+        field.isAnnotationPresent(OneToOne.class)
+      ) precompute(
+        entityManager,
+        QueryKey.of(entityName, Operation.FOREIGN_KEY_FETCH, fieldName, false)
+      ); else if (field.isAnnotationPresent(ElementCollection.class)) {
+        precompute(
+          entityManager,
+          QueryKey.of(entityName, Operation.COLLECTION_COUNTS, fieldName, false)
+        );
+        if (Map.class.isAssignableFrom(field.getType())) {
+          precompute(
+            entityManager,
+            QueryKey.of(
+              entityName,
+              Operation.MAP_ELEMENT_COLLECTION_COUNT,
+              fieldName,
+              false
+            )
+          );
+          precompute(
+            entityManager,
+            QueryKey.sorted(
+              entityName,
+              Operation.MAP_ELEMENT_COLLECTION_PAGE,
+              fieldName,
+              null,
+              null,
+              false
+            )
+          );
+        } else {
+          precompute(
+            entityManager,
+            QueryKey.of(
+              entityName,
+              Operation.ELEMENT_COLLECTION_PAGE,
+              fieldName,
+              false
+            )
+          );
+          precompute(
+            entityManager,
+            QueryKey.of(
+              entityName,
+              Operation.ELEMENT_COLLECTION_COUNT,
+              fieldName,
+              false
+            )
+          );
+          precompute(
+            entityManager,
+            QueryKey.of(
+              entityName,
+              Operation.ELEMENT_COLLECTION_SEARCH_COUNT,
+              fieldName,
+              false
+            )
+          );
+        }
+      } else if (
+        field.isAnnotationPresent(OneToMany.class) ||
+        field.isAnnotationPresent(ManyToMany.class)
+      ) precomputeEntityCollectionQueries(entityManager, entityName, field);
+    }
+  }
+
+  private void precomputeEntityCollectionQueries(
+    EntityManager entityManager,
+    String entityName,
+    Field field
+  ) {
+    val fieldName = field.getName();
+    val collectionEntityName = collectionEntityNameOf(field);
+    if (
+      !reflectionCache.getEntitiesCache().containsKey(collectionEntityName)
+    ) return;
+    val isArchivable = reflectionCache
+      .getEntitiesCache()
+      .get(collectionEntityName)
+      .isArchivable();
+    val collectionIdFieldName = idFieldNameOf(collectionEntityName);
+    precompute(
+      entityManager,
+      QueryKey.of(
+        entityName,
+        Operation.ENTITY_COLLECTION_FETCH,
+        fieldName,
+        false
+      )
+    );
+    precompute(
+      entityManager,
+      QueryKey.of(
+        entityName,
+        Operation.COLLECTION_COUNTS,
+        fieldName,
+        isArchivable
+      )
+    );
+    precompute(
+      entityManager,
+      QueryKey.of(
+        entityName,
+        Operation.ENTITY_COLLECTION_COUNT,
+        fieldName,
+        isArchivable
+      )
+    );
+    precompute(
+      entityManager,
+      QueryKey.sorted(
+        entityName,
+        Operation.ENTITY_COLLECTION_PAGE,
+        fieldName,
+        collectionIdFieldName,
+        null,
+        isArchivable
+      )
+    );
+    precompute(
+      entityManager,
+      QueryKey.of(
+        entityName,
+        Operation.ENTITY_COLLECTIONS_WINDOWED_COUNT,
+        fieldName,
+        isArchivable
+      )
+    );
+    precompute(
+      entityManager,
+      QueryKey.sorted(
+        entityName,
+        Operation.ENTITY_COLLECTIONS_WINDOWED_PAGE,
+        fieldName,
+        collectionIdFieldName,
+        null,
+        isArchivable
+      )
+    );
+    if (searchTermConditionOf(entityName, fieldName).isEmpty()) return;
+    precompute(
+      entityManager,
+      QueryKey.of(
+        entityName,
+        Operation.ENTITY_COLLECTION_SEARCH_COUNT,
+        fieldName,
+        isArchivable
+      )
+    );
+    precompute(
+      entityManager,
+      QueryKey.of(
+        entityName,
+        Operation.ENTITY_COLLECTIONS_WINDOWED_SEARCH_COUNT,
+        fieldName,
+        isArchivable
+      )
+    );
+  }
+
+  private void precompute(EntityManager entityManager, QueryKey key) {
+    try {
+      val jpql = jpqlOf(key);
+      if (entityManager == null) return;
+      val namedQuery = namedQueryNameOf(key);
+      entityManagerFactory.addNamedQuery(
+        namedQuery,
+        entityManager.createQuery(jpql)
+      );
+      namedQueries.put(key, namedQuery);
+    } catch (RuntimeException e) {
+      log.debug("could not precompute query {}: {}", key, e.toString());
+    }
+  }
+
+  private static String namedQueryNameOf(QueryKey key) {
+    return (
+      NAMED_QUERY_PREFIX +
+      String.join(
+        ".",
+        key.getEntityName(),
+        key.getOperation().name(),
+        String.valueOf(key.getFieldName()),
+        String.valueOf(key.getSortBy()),
+        String.valueOf(key.getSortDirection()),
+        String.valueOf(key.isArchivable())
+      )
+    );
+  }
+
+  private String render(QueryKey key) {
+    val entityName = key.getEntityName();
+    val fieldName = key.getFieldName();
+    val idFieldName = idFieldNameOf(entityName);
+    switch (key.getOperation()) {
+      case PAGE:
+      case ARCHIVED_PAGE:
+        return String.format(
+          "SELECT e FROM %s e %sORDER BY e.%s %s",
+          entityName,
+          key.isArchivable()
+            ? String.format(
+              "WHERE e.isArchived = %s ",
+              key.getOperation() == Operation.ARCHIVED_PAGE
+            )
+            : "",
+          key.getSortBy() != null ? key.getSortBy() : idFieldName,
+          key.getSortDirection()
+        );
+      case BATCH_BY_IDS:
+        return String.format(
+          "SELECT e FROM %s e WHERE e.%s IN :ids",
+          entityName,
+          idFieldName
+        );
+      case NON_ARCHIVED_BY_IDS:
+        return String.format(
+          "SELECT e FROM %s e WHERE e.%s IN :ids%s",
+          entityName,
+          idFieldName,
+          key.isArchivable() ? " AND e.isArchived = false" : ""
+        );
+      case SET_ARCHIVED_BY_IDS:
+        // only instances whose state changes are updated, and versioned ones have their versions incremented
+        return String.format(
+          "UPDATE %s%s e SET e.isArchived = :isArchived WHERE e.%s IN :ids " +
+          "AND (e.isArchived <> :isArchived OR e.isArchived IS NULL)",
+          isVersioned(entityName) ? "VERSIONED " : "",
+          entityName,
+          idFieldName
+        );
+      case DELETE_BY_IDS:
+        return String.format(
+          "DELETE FROM %s e WHERE e.%s IN :ids",
+          entityName,
+          idFieldName
+        );
+      case DELETE_ARCHIVED_BY_IDS:
+        return String.format(
+          "DELETE FROM %s e WHERE e.%s IN :ids AND e.isArchived = true",
+          entityName,
+          idFieldName
+        );
+      case FREE_TEXT_SEARCH:
+      case FREE_TEXT_SEARCH_COUNT:
+        return freeTextSearchQueryOf(key);
+      case ENTITY_COLLECTION_FETCH:
+        return String.format(
+          "SELECT owner, entityCollection " +
+          "FROM %s owner " +
+          "JOIN owner.%s entityCollection " +
+          "WHERE owner.%s IN :ownerIds",
+          entityName,
+          fieldName,
+          idFieldName
+        );
+      case FOREIGN_KEY_FETCH:
+        return String.format(
+          "SELECT owner.%s, foreignKey FROM %s owner " +
+          "LEFT JOIN owner.%s foreignKey " +
+          "WHERE owner.%s IN :ids",
+          idFieldName,
+          entityName,
+          fieldName,
+          idFieldName
+        );
+      case COLLECTION_COUNTS:
+        return String.format(
+          "SELECT owner.%s, COUNT(collection) FROM %s owner " +
+          "JOIN owner.%s collection " +
+          "WHERE owner.%s IN :ownerIds %s" +
+          "GROUP BY owner.%s",
+          idFieldName,
+          entityName,
+          fieldName,
+          idFieldName,
+          key.isArchivable() ? "AND collection.isArchived = false " : "",
+          idFieldName
+        );
+      case ELEMENT_COLLECTION_PAGE:
+      case ELEMENT_COLLECTION_COUNT:
+        return String.format(
+          "SELECT %s FROM %s owner " +
+          "JOIN owner.%s collection " +
+          "WHERE owner.%s = :ownerId",
+          key.getOperation() == Operation.ELEMENT_COLLECTION_COUNT
+            ? "COUNT(collection)"
+            : "collection",
+          entityName,
+          fieldName,
+          idFieldName
+        );
+      case ELEMENT_COLLECTION_SEARCH:
+      case ELEMENT_COLLECTION_SEARCH_COUNT:
+        return String.format(
+          "SELECT %s FROM %s owner " +
+          "JOIN owner.%s collection " +
+          "WHERE owner.%s = :ownerId AND " +
+          "LOWER(collection) LIKE LOWER(CONCAT('%%', :searchTerm, '%%'))%s",
+          key.getOperation() == Operation.ELEMENT_COLLECTION_SEARCH_COUNT
+            ? "COUNT(collection)"
+            : "collection",
+          entityName,
+          fieldName,
+          idFieldName,
+          key.getOperation() == Operation.ELEMENT_COLLECTION_SEARCH
+            ? " ORDER BY collection " + key.getSortDirection()
+            : ""
+        );
+      case MAP_ELEMENT_COLLECTION_PAGE:
+        return String.format(
+          "SELECT new dev.sanda.apifi.dto.KeyAndValue(KEY(map), VALUE(map)) " +
+          "FROM %s owner " +
+          "JOIN owner.%s map " +
+          "WHERE owner.%s = :ownerId " +
+          "ORDER BY KEY(map) %s",
+          entityName,
+          fieldName,
+          idFieldName,
+          key.getSortDirection()
+        );
+      case MAP_ELEMENT_COLLECTION_COUNT:
+        return String.format(
+          "SELECT COUNT(map) FROM %s owner " +
+          "JOIN owner.%s map " +
+          "WHERE owner.%s = :ownerId",
+          entityName,
+          fieldName,
+          idFieldName
+        );
+      case ENTITY_COLLECTION_PAGE:
+      case ENTITY_COLLECTION_COUNT:
+      case ENTITY_COLLECTION_SEARCH:
+      case ENTITY_COLLECTION_SEARCH_COUNT:
+        return entityCollectionQueryOf(key, idFieldName);
+      case ENTITY_COLLECTIONS_WINDOWED_PAGE:
+      case ENTITY_COLLECTIONS_WINDOWED_SEARCH:
+        return windowedContentQueryOf(key, idFieldName);
+      case ENTITY_COLLECTIONS_WINDOWED_COUNT:
+      case ENTITY_COLLECTIONS_WINDOWED_SEARCH_COUNT:
+        return String.format(
+          "SELECT owner.%s, COUNT(embedded) FROM %s owner " +
+          "JOIN owner.%s embedded " +
+          "WHERE owner.%s IN :ownerIds %s" +
+          "GROUP BY owner.%s",
+          idFieldName,
+          entityName,
+          fieldName,
+          idFieldName,
+          entityCollectionConditionsOf(key),
+          idFieldName
+        );
+      default:
+        throw new IllegalArgumentException(
+          "Unsupported query operation: " + key.getOperation()
+        );
+    }
+  }
+
+  private String freeTextSearchQueryOf(QueryKey key) {
+    val clazz = reflectionCache
+      .getEntitiesCache()
+      .get(key.getEntityName())
+      .getClazz();
+    val searchFieldNames = Arrays.asList(
+      clazz.getAnnotation(WithApiFreeTextSearchByFields.class).value()
+    );
+    val isCount = key.getOperation() == Operation.FREE_TEXT_SEARCH_COUNT;
+    val query = FreeTextSearchMethodsFactory.freeTextSearchQuery(
+      key.getEntityName(),
+      searchFieldNames,
+      key.isArchivable(),
+      isCount
+    );
+    return isCount
+      ? query
+      : query + " ORDER BY " + key.getSortBy() + " " + key.getSortDirection();
+  }
+
+  private String entityCollectionQueryOf(QueryKey key, String idFieldName) {
+    val operation = key.getOperation();
+    val isCount =
+      operation == Operation.ENTITY_COLLECTION_COUNT ||
+      operation == Operation.ENTITY_COLLECTION_SEARCH_COUNT;
+    val isSearch =
+      operation == Operation.ENTITY_COLLECTION_SEARCH ||
+      operation == Operation.ENTITY_COLLECTION_SEARCH_COUNT;
+    val selection = isSearch
+      ? (isCount ? "COUNT(DISTINCT embedded)" : "DISTINCT(embedded)")
+      : (isCount ? "COUNT(embedded)" : "embedded");
+    return String.format(
+      "SELECT %s FROM %s owner " +
+      "JOIN owner.%s embedded " +
+      "WHERE owner.%s = :ownerId %s%s",
+      selection,
+      key.getEntityName(),
+      key.getFieldName(),
+      idFieldName,
+      entityCollectionConditionsOf(key),
+      isCount
+        ? ""
+        : String.format(
+          "ORDER BY embedded.%s %s",
+          key.getSortBy(),
+          key.getSortDirection()
+        )
+    );
+  }
+
+  private String windowedContentQueryOf(QueryKey key, String idFieldName) {
+    val collectionEntityName = collectionEntityNameOf(fieldOf(key));
+    val collectionIdFieldName = idFieldNameOf(collectionEntityName);
+    return String.format(
+      "SELECT ranked.ownerId, item FROM (" +
+      "SELECT owner.%s AS ownerId, embedded.%s AS itemId, " +
+      "ROW_NUMBER() OVER (PARTITION BY owner.%s ORDER BY embedded.%s %s) AS rowNumber " +
+      "FROM %s owner JOIN owner.%s embedded " +
+      "WHERE owner.%s IN :ownerIds %s" +
+      ") ranked " +
+      "JOIN %s item ON item.%s = ranked.itemId " +
+      "WHERE ranked.rowNumber > :offset AND ranked.rowNumber <= :limit " +
+      "ORDER BY ranked.ownerId, ranked.rowNumber",
+      idFieldName,
+      collectionIdFieldName,
+      idFieldName,
+      key.getSortBy(),
+      key.getSortDirection(),
+      key.getEntityName(),
+      key.getFieldName(),
+      idFieldName,
+      entityCollectionConditionsOf(key),
+      collectionEntityName,
+      collectionIdFieldName
+    );
+  }
+
+  private String entityCollectionConditionsOf(QueryKey key) {
+    val operation = key.getOperation();
+    val isSearch =
+      operation == Operation.ENTITY_COLLECTION_SEARCH ||
+      operation == Operation.ENTITY_COLLECTION_SEARCH_COUNT ||
+      operation == Operation.ENTITY_COLLECTIONS_WINDOWED_SEARCH ||
+      operation == Operation.ENTITY_COLLECTIONS_WINDOWED_SEARCH_COUNT;
+    return (
+      (key.isArchivable() ? "AND embedded.isArchived = false " : "") +
+      (
+        isSearch
+          ? searchTermConditionOf(key.getEntityName(), key.getFieldName())
+          : ""
+      )
+    );
+  }
+
+  /**
+   * @return a condition matching collection items any of whose free text
+   * search fields (as per {@link EntityCollectionApi#freeTextSearchFields})
+   * contain the search term, or an empty string if there are none.
+   */
+  private String searchTermConditionOf(String entityName, String fieldName) {
+    val apiConfig = reflectionCache
+      .getEntitiesCache()
+      .get(entityName)
+      .getFields()
+      .get(fieldName)
+      .getField()
+      .getAnnotation(EntityCollectionApi.class);
+    if (
+      apiConfig == null || apiConfig.freeTextSearchFields().length == 0
+    ) return "";
+    val condition = new StringBuilder("AND (");
+    val searchFieldNames = apiConfig.freeTextSearchFields();
+    for (int i = 0; i < searchFieldNames.length; i++) {
+      if (i > 0) condition.append("OR ");
+      condition
+        .append("lower(embedded.")
+        .append(searchFieldNames[i])
+        .append(") LIKE lower(concat('%', :searchTerm, '%')) ");
+    }
+    return condition.append(") ").toString();
+  }
+
+  private Field fieldOf(QueryKey key) {
+    return reflectionCache
+      .getEntitiesCache()
+      .get(key.getEntityName())
+      .getFields()
+      .get(key.getFieldName())
+      .getField();
+  }
+
+  private boolean isVersioned(String entityName) {
+    for (
+      Class<?> type = reflectionCache
+        .getEntitiesCache()
+        .get(entityName)
+        .getClazz();
+      type != null && type != Object.class;
+      type = type.getSuperclass()
+    ) {
+      for (val field : type.getDeclaredFields()) if (
+        field.isAnnotationPresent(Version.class)
+      ) return true;
+    }
+    return false;
+  }
+
+  private String idFieldNameOf(String entityName) {
+    return reflectionCache
+      .getEntitiesCache()
+      .get(entityName)
+      .getIdField()
+      .getName();
+  }
+
+  private static String collectionEntityNameOf(Field collectionField) {
+    val genericType = (ParameterizedType) collectionField.getGenericType();
+    val elementType = genericType.getActualTypeArguments()[0];
+    return ((Class<?>) elementType).getSimpleName();
+  }
+}
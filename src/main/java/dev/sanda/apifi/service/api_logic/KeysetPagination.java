@@ -0,0 +1,254 @@
+package dev.sanda.apifi.service.api_logic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.sanda.apifi.dto.Connection;
+import dev.sanda.apifi.dto.ConnectionRequest;
+import dev.sanda.apifi.dto.Edge;
+import dev.sanda.apifi.dto.PageInfo;
+import dev.sanda.datafi.dto.PageRequest;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Embedded;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Query;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import lombok.val;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Opaque cursors and seek predicates of keyset paginated connections. A cursor
+ * is the base64url encoded JSON pair of the sort key and id of an item, and the
+ * page following it is selected by seeking past that pair in
+ * {@code ORDER BY sortKey, id} order rather than by skipping an offset of rows,
+ * so that deep pages cost the same as the first one given an index on
+ * {@code (sortKey, id)}.
+ * <p>
+ * Only basic (i.e. non relationship, non collection) fields may be sorted by.
+ * Rows whose sort key is null are ordered after all others in either
+ * direction ({@code NULLS LAST}), and are reached by explicit
+ * {@code IS NULL} branches of the seek predicate, since comparisons with null
+ * never hold.
+ */
+public class KeysetPagination {
+
+  public static final int DEFAULT_FIRST = 25;
+
+  private static final ObjectMapper mapper = new ObjectMapper()
+    .findAndRegisterModules();
+
+  private final Field sortKeyField;
+  private final Field idField;
+  private final String sortBy;
+  private final String idFieldName;
+  private final boolean isAscending;
+  private final boolean isSortKeyNullable;
+  private final int first;
+  private final Object[] after;
+
+  public KeysetPagination(
+    Class<?> clazz,
+    ConnectionRequest request,
+    ReflectionCache reflectionCache
+  ) {
+    val cachedEntity = reflectionCache
+      .getEntitiesCache()
+      .get(clazz.getSimpleName());
+    this.idField = cachedEntity.getIdField();
+    this.idFieldName = idField.getName();
+    this.sortBy =
+      request.getSortBy() != null ? request.getSortBy() : idFieldName;
+    val cachedSortKeyField = cachedEntity.getFields().get(sortBy);
+    if (cachedSortKeyField == null) throw new IllegalArgumentException(
+      "Cannot sort " + clazz.getSimpleName() + " by unknown field " + sortBy
+    );
+    this.sortKeyField = cachedSortKeyField.getField();
+    if (!isBasic(sortKeyField)) throw new IllegalArgumentException(
+      "Cannot sort " +
+      clazz.getSimpleName() +
+      " by " +
+      sortBy +
+      ", only basic fields may be sorted by"
+    );
+    this.isSortKeyNullable =
+      !sortBy.equals(idFieldName) && isNullable(sortKeyField);
+    this.sortKeyField.setAccessible(true);
+    this.idField.setAccessible(true);
+    this.isAscending = request.getSortDirection() != Sort.Direction.DESC;
+    this.first =
+      request.getFirst() != null ? request.getFirst() : DEFAULT_FIRST;
+    if (first < 0) throw new IllegalArgumentException(
+      "first must not be negative"
+    );
+    this.after =
+      request.getAfter() != null ? decodeCursor(request.getAfter()) : null;
+  }
+
+  /**
+   * @return the predicate selecting the rows of {@code alias} strictly past the
+   * {@code after} cursor, or null if there is none. The redundant leading range
+   * condition on the sort key lets the database seek the (sortKey, id) index.
+   */
+  public String seekPredicate(String alias) {
+    if (after == null) return null;
+    val op = isAscending ? ">" : "<";
+    val id = alias + "." + idFieldName;
+    if (sortBy.equals(idFieldName)) return String.format(
+      "%s %s :cursorId",
+      id,
+      op
+    );
+    val sortKey = alias + "." + sortBy;
+    // null sort keys come last, so past a null key are only null keys
+    if (after[0] == null) return String.format(
+      "(%s IS NULL AND %s %s :cursorId)",
+      sortKey,
+      id,
+      op
+    );
+    val seek = String.format(
+      "(%s %s= :cursorKey AND (%s %s :cursorKey OR %s %s :cursorId))",
+      sortKey,
+      op,
+      sortKey,
+      op,
+      id,
+      op
+    );
+    return isSortKeyNullable
+      ? String.format("(%s OR %s IS NULL)", seek, sortKey)
+      : seek;
+  }
+
+  public String orderByClause(String alias) {
+    val direction = isAscending ? "ASC" : "DESC";
+    val id = alias + "." + idFieldName;
+    if (sortBy.equals(idFieldName)) return "ORDER BY " + id + " " + direction;
+    return String.format(
+      "ORDER BY %s.%s %s%s, %s %s",
+      alias,
+      sortBy,
+      direction,
+      isSortKeyNullable ? " NULLS LAST" : "",
+      id,
+      direction
+    );
+  }
+
+  /**
+   * Binds the cursor parameters of the {@link #seekPredicate}, and limits the
+   * query to one row more than requested in order to detect a following page.
+   */
+  public <Q extends Query> Q bind(Q query) {
+    if (after != null) {
+      if (
+        !sortBy.equals(idFieldName) && after[0] != null
+      ) query.setParameter("cursorKey", after[0]);
+      query.setParameter("cursorId", after[1]);
+    }
+    query.setMaxResults(first + 1);
+    return query;
+  }
+
+  /**
+   * @param rows the results of a query bound via {@link #bind}
+   */
+  public boolean hasNextPage(List<?> rows) {
+    return rows.size() > first;
+  }
+
+  /**
+   * @param rows the results of a query bound via {@link #bind}
+   * @return the rows without the one used to detect a following page
+   */
+  public <T> List<T> nodesOf(List<T> rows) {
+    return hasNextPage(rows) ? rows.subList(0, first) : rows;
+  }
+
+  public <T> Connection<T> toConnection(List<T> nodes, boolean hasNextPage) {
+    val edges = new ArrayList<Edge<T>>(nodes.size());
+    for (val node : nodes) edges.add(new Edge<>(node, encodeCursor(node)));
+    val pageInfo = new PageInfo(
+      hasNextPage,
+      edges.isEmpty() ? null : edges.get(0).getCursor(),
+      edges.isEmpty() ? null : edges.get(edges.size() - 1).getCursor()
+    );
+    return new Connection<>(edges, pageInfo);
+  }
+
+  /**
+   * @return the offset paginated equivalent of the request, as passed to api
+   * hooks shared by both pagination modes.
+   */
+  public static PageRequest toPageRequest(ConnectionRequest request) {
+    val pageRequest = new PageRequest();
+    pageRequest.setPageNumber(0);
+    pageRequest.setPageSize(
+      request.getFirst() != null ? request.getFirst() : DEFAULT_FIRST
+    );
+    pageRequest.setSortBy(request.getSortBy());
+    pageRequest.setSortDirection(request.getSortDirection());
+    return pageRequest;
+  }
+
+  public String encodeCursor(Object node) {
+    try {
+      val json = mapper.writeValueAsBytes(
+        new Object[] { sortKeyField.get(node), idField.get(node) }
+      );
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+    } catch (Exception e) {
+      throw new RuntimeException("Could not encode cursor of " + node, e);
+    }
+  }
+
+  private static boolean isBasic(Field field) {
+    return (
+      !Collection.class.isAssignableFrom(field.getType()) &&
+      !Map.class.isAssignableFrom(field.getType()) &&
+      !field.isAnnotationPresent(OneToOne.class) &&
+      !field.isAnnotationPresent(ManyToOne.class) &&
+      !field.isAnnotationPresent(OneToMany.class) &&
+      !field.isAnnotationPresent(ManyToMany.class) &&
+      !field.isAnnotationPresent(ElementCollection.class) &&
+      !field.isAnnotationPresent(Embedded.class)
+    );
+  }
+
+  private static boolean isNullable(Field field) {
+    if (field.getType().isPrimitive()) return false;
+    val column = field.getAnnotation(Column.class);
+    val basic = field.getAnnotation(Basic.class);
+    return (
+      (column == null || column.nullable()) &&
+      (basic == null || basic.optional())
+    );
+  }
+
+  private Object[] decodeCursor(String cursor) {
+    try {
+      val tree = mapper.readTree(
+        new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+      );
+      if (!tree.isArray() || tree.size() != 2) throw new IllegalArgumentException(
+        "malformed cursor"
+      );
+      return new Object[] {
+        mapper.treeToValue(tree.get(0), sortKeyField.getType()),
+        mapper.treeToValue(tree.get(1), idField.getType()),
+      };
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+    }
+  }
+}
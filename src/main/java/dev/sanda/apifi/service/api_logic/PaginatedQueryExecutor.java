@@ -0,0 +1,76 @@
+package dev.sanda.apifi.service.api_logic;
+
+import dev.sanda.apifi.service.graphql_config.SelectionSetInstrumentation;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.dto.Page;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLTypeUtil;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the content and count queries of offset paginated endpoints. The count
+ * query is skipped when the resolver's selection set reads neither
+ * {@code totalItemsCount} nor {@code totalPagesCount}.
+ */
+@Component
+public class PaginatedQueryExecutor {
+
+  public static final String TOTAL_ITEMS_COUNT = "totalItemsCount";
+  public static final String TOTAL_PAGES_COUNT = "totalPagesCount";
+
+  private final boolean skipUnselectedCounts;
+
+  @Autowired
+  public PaginatedQueryExecutor(ConfigValues configValues) {
+    this.skipUnselectedCounts =
+      configValues.getPaginationSkipUnselectedCounts();
+  }
+
+  /**
+   * @return a page of the results of the content query, along with the total
+   * counts if selected. The content query is expected to apply the page's
+   * offset and limit itself.
+   */
+  public <C> Page<C> fetchPage(
+    int pageNumber,
+    int pageSize,
+    Supplier<List<C>> contentQuery,
+    Supplier<Long> countQuery
+  ) {
+    val page = new Page<C>();
+    page.setPageNumber(pageNumber);
+    page.setContent(contentQuery.get());
+    if (!isCountSelected()) return page;
+    long totalItems = countQuery.get();
+    page.setTotalItemsCount(totalItems);
+    page.setTotalPagesCount(
+      pageSize > 0 ? (long) Math.ceil((double) totalItems / pageSize) : 1L
+    );
+    return page;
+  }
+
+  /**
+   * @return false if the field currently being resolved returns a page whose
+   * count fields have not been selected, true otherwise (including when no
+   * resolver environment is available, as with {@code @Batched} resolvers).
+   */
+  public boolean isCountSelected() {
+    if (!skipUnselectedCounts) return true;
+    val environment = SelectionSetInstrumentation.currentEnvironment();
+    if (environment == null) return true;
+    val type = GraphQLTypeUtil.unwrapAll(environment.getFieldType());
+    if (
+      !(type instanceof GraphQLObjectType) ||
+      ((GraphQLObjectType) type).getFieldDefinition(TOTAL_ITEMS_COUNT) == null
+    ) return true;
+    val selectionSet = environment.getSelectionSet();
+    return (
+      selectionSet.contains(TOTAL_ITEMS_COUNT) ||
+      selectionSet.contains(TOTAL_PAGES_COUNT)
+    );
+  }
+}
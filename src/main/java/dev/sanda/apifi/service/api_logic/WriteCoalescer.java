@@ -0,0 +1,331 @@
+package dev.sanda.apifi.service.api_logic;
+
+import static dev.sanda.datafi.DatafiStaticUtils.getId;
+import static dev.sanda.datafi.DatafiStaticUtils.toPlural;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Coalesces concurrent single instance creates and updates of an entity type
+ * into batches, which are written by the {@link BatchedCrudService} in a
+ * single transaction (group commit). A write which arrives while no other
+ * write of the same principal is in flight is written right away, and writes
+ * which arrive in the meantime queue up behind it. Once it completes, the
+ * first queued write takes over, and writes the queued writes as a batch on
+ * behalf of all of their callers, each of which receives its own result. If a
+ * batch fails, its inputs are written one by one, so that an invalid input
+ * only fails its own caller.
+ * <p>
+ * Since batches are written on the thread of one of their callers, only the
+ * writes of callers with the same {@link Authentication} are coalesced, so
+ * that auditing, entity listeners and api hooks see the right principal.
+ * Batches invoke the batch api hooks, so mutations are only coalesced if the
+ * entity's api hooks do not override the corresponding single instance hooks.
+ * Mutations issued within a transaction are never coalesced, since they must
+ * take part in it, and are written directly in that transaction. Otherwise,
+ * each batch (or uncoalesced write) is written in a transaction of its own,
+ * which is committed before its callers receive their results. The
+ * subscription events, counters and index updates of coalesced writes are
+ * only applied once they commit, so those of a failed batch are never
+ * applied, and retrying its inputs does not apply them twice.
+ * <p>
+ * Only the endpoints of entities annotated with
+ * {@code @WithCRUDEndpoints(coalesceWrites = true)} run outside of a
+ * transaction, so the writes of other entities are never coalesced.
+ */
+@Slf4j
+@Component
+@Scope("prototype")
+public class WriteCoalescer<T> {
+
+  private static final Object ANONYMOUS = new Object();
+
+  private final ReflectionCache reflectionCache;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final int maxBatchSize;
+
+  private CrudService<T> crudService;
+  private BatchedCrudService<T> batchedCrudService;
+  private Coalescer creates;
+  private Coalescer updates;
+
+  @Autowired
+  public WriteCoalescer(
+    ReflectionCache reflectionCache,
+    PlatformTransactionManager transactionManager,
+    ConfigValues configValues
+  ) {
+    this.reflectionCache = reflectionCache;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.enabled = configValues.getWriteCoalescingEnabled();
+    this.maxBatchSize = configValues.getWriteCoalescingMaxBatchSize();
+  }
+
+  public void init(
+    CrudService<T> crudService,
+    BatchedCrudService<T> batchedCrudService
+  ) {
+    this.crudService = crudService;
+    this.batchedCrudService = batchedCrudService;
+    if (!enabled || maxBatchSize < 2) return;
+    if (
+      !crudService.overridesAnyApiHook("preCreate", "postCreate")
+    ) this.creates =
+      new Coalescer("create", crudService::createImpl, this::batchCreate);
+    if (
+      !crudService.overridesAnyApiHook(
+        "preUpdate",
+        "postUpdate",
+        "preGetById",
+        "postGetById"
+      )
+    ) this.updates =
+      new Coalescer("update", crudService::updateImpl, this::batchUpdate);
+  }
+
+  public T create(T input) {
+    return creates != null && isCoalescable(input)
+      ? creates.submit(input)
+      : transactionTemplate.execute(status -> crudService.createImpl(input));
+  }
+
+  public T update(T input) {
+    return updates != null && isCoalescable(input)
+      ? updates.submit(input)
+      : transactionTemplate.execute(status -> crudService.updateImpl(input));
+  }
+
+  private static boolean isCoalescable(Object input) {
+    return (
+      input != null &&
+      !TransactionSynchronizationManager.isActualTransactionActive()
+    );
+  }
+
+  /**
+   * Ids assigned to new instances by a failed batch are reset, so that they
+   * are still treated as new when retried individually.
+   */
+  private List<T> batchCreate(List<T> inputs) {
+    val idField = idField();
+    final List<T> newInstances = new ArrayList<>();
+    for (val input : inputs) if (
+      getId(input, reflectionCache) == null
+    ) newInstances.add(input);
+    try {
+      return batchedCrudService.batchCreateImpl(inputs);
+    } catch (RuntimeException e) {
+      if (!idField.getType().isPrimitive()) {
+        for (val instance : newInstances) {
+          try {
+            idField.set(instance, null);
+          } catch (IllegalAccessException illegalAccessException) {
+            throw new RuntimeException(illegalAccessException);
+          }
+        }
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * The updated instances are not necessarily in the order of the inputs, so
+   * they are matched to their inputs by id.
+   */
+  private List<T> batchUpdate(List<T> inputs) {
+    final Map<Object, T> updatedById = new HashMap<>();
+    for (val updated : batchedCrudService.batchUpdateImpl(
+      inputs
+    )) updatedById.put(getId(updated, reflectionCache), updated);
+    final List<T> results = new ArrayList<>(inputs.size());
+    for (val input : inputs) results.add(
+      updatedById.get(getId(input, reflectionCache))
+    );
+    return results;
+  }
+
+  private Field idField() {
+    val idField = reflectionCache
+      .getEntitiesCache()
+      .get(crudService.entityName)
+      .getIdField();
+    idField.setAccessible(true);
+    return idField;
+  }
+
+  private class PendingWrite {
+
+    private final T input;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    // completed once it is this write's turn to write the queued writes
+    private final CompletableFuture<Void> promotion = new CompletableFuture<>();
+
+    private PendingWrite(T input) {
+      this.input = input;
+    }
+  }
+
+  /**
+   * Coalesces the invocations of a single operation, queueing the writes of
+   * each principal separately.
+   */
+  private class Coalescer {
+
+    private final String operationName;
+    private final UnaryOperator<T> write;
+    private final Function<List<T>, List<T>> batchWrite;
+    // the queued writes of each principal with a write in flight
+    private final Map<Object, Deque<PendingWrite>> queues = new HashMap<>();
+
+    private Coalescer(
+      String operationName,
+      UnaryOperator<T> write,
+      Function<List<T>, List<T>> batchWrite
+    ) {
+      this.operationName = operationName;
+      this.write = write;
+      this.batchWrite = batchWrite;
+    }
+
+    private T submit(T input) {
+      val pendingWrite = new PendingWrite(input);
+      val principal = principalOf(
+        SecurityContextHolder.getContext().getAuthentication()
+      );
+      final boolean isInFlight;
+      synchronized (this) {
+        isInFlight = queues.containsKey(principal);
+        queues
+          .computeIfAbsent(principal, key -> new ArrayDeque<>())
+          .add(pendingWrite);
+      }
+      if (!isInFlight || awaitPromotion(pendingWrite)) writeQueued(principal);
+      return resultOf(pendingWrite);
+    }
+
+    /**
+     * @return true if the write was promoted to write the queued writes, or
+     * false if another write has already written it.
+     */
+    private boolean awaitPromotion(PendingWrite pendingWrite) {
+      CompletableFuture
+        .anyOf(pendingWrite.result, pendingWrite.promotion)
+        .exceptionally(e -> null)
+        .join();
+      return !pendingWrite.result.isDone();
+    }
+
+    /**
+     * Writes the first of the principal's queued writes as a batch, and then
+     * promotes the next queued write, if any, to write the rest.
+     */
+    private void writeQueued(Object principal) {
+      final List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+      synchronized (this) {
+        val queue = queues.get(principal);
+        while (!queue.isEmpty() && batch.size() < maxBatchSize) batch.add(
+          queue.poll()
+        );
+      }
+      try {
+        execute(batch);
+      } finally {
+        for (val pendingWrite : batch) if (
+          !pendingWrite.result.isDone()
+        ) pendingWrite.result.completeExceptionally(
+          new IllegalStateException(
+            "Coalesced " + operationName + " was not executed"
+          )
+        );
+        synchronized (this) {
+          val queue = queues.get(principal);
+          if (queue.isEmpty()) queues.remove(principal); else queue
+            .peek()
+            .promotion.complete(null);
+        }
+      }
+    }
+
+    private void execute(List<PendingWrite> pendingWrites) {
+      if (pendingWrites.size() > 1) {
+        final List<T> inputs = new ArrayList<>(pendingWrites.size());
+        pendingWrites.forEach(pendingWrite -> inputs.add(pendingWrite.input));
+        try {
+          val results = transactionTemplate.execute(status ->
+            BaseCrudService.asCoalescedWrite(() -> batchWrite.apply(inputs))
+          );
+          for (int i = 0; i < pendingWrites.size(); i++) pendingWrites
+            .get(i)
+            .result.complete(results.get(i));
+          log.debug(
+            "coalesced {} {} of {}",
+            pendingWrites.size(),
+            operationName + "s",
+            toPlural(crudService.entityName)
+          );
+          return;
+        } catch (RuntimeException e) {
+          log.debug(
+            "coalesced {} of {} {} failed, retrying individually: {}",
+            operationName,
+            pendingWrites.size(),
+            toPlural(crudService.entityName),
+            e.toString()
+          );
+        }
+      }
+      for (val pendingWrite : pendingWrites) {
+        try {
+          pendingWrite.result.complete(
+            transactionTemplate.execute(status ->
+              BaseCrudService.asCoalescedWrite(() ->
+                write.apply(pendingWrite.input)
+              )
+            )
+          );
+        } catch (RuntimeException | Error e) {
+          pendingWrite.result.completeExceptionally(e);
+        }
+      }
+    }
+  }
+
+  // anonymous callers share a single queue
+  private static Object principalOf(Authentication authentication) {
+    return authentication != null ? authentication : ANONYMOUS;
+  }
+
+  private T resultOf(PendingWrite pendingWrite) {
+    try {
+      return pendingWrite.result.join();
+    } catch (CompletionException e) {
+      val cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw e;
+    }
+  }
+}
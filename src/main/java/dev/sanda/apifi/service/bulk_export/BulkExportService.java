@@ -0,0 +1,324 @@
+package dev.sanda.apifi.service.bulk_export;
+
+import static dev.sanda.datafi.DatafiStaticUtils.toPlural;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import io.leangen.graphql.annotations.GraphQLIgnore;
+import jakarta.persistence.Transient;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Exports entity instances as NDJSON or CSV, writing each chunk read by the
+ * streaming query to the output before the next one is read, so that memory
+ * use is bounded by the chunk size rather than the number of exported rows.
+ * <p>
+ * Only scalar fields (numbers, strings, booleans, enums, dates, uuids and the
+ * like) are exported, since relationships and collections would require a
+ * query per row. Fields hidden from the GraphQL schema by
+ * {@link GraphQLIgnore} are not exported either.
+ */
+@Slf4j
+@Service
+public class BulkExportService {
+
+  private final ObjectMapper mapper = new ObjectMapper()
+    .findAndRegisterModules()
+    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+    .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+  private final Map<Class<?>, Map<String, Field>> exportableFields =
+    new ConcurrentHashMap<>();
+
+  private final ObjectProvider<EntityExporter<?>> entityExporters;
+  private final ReflectionCache reflectionCache;
+  private final boolean enabled;
+
+  @Autowired
+  public BulkExportService(
+    ObjectProvider<EntityExporter<?>> entityExporters,
+    ReflectionCache reflectionCache,
+    ConfigValues configValues
+  ) {
+    this.entityExporters = entityExporters;
+    this.reflectionCache = reflectionCache;
+    this.enabled = configValues.getExportEnabled();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the exporter of the entity with the given simple name, if it is
+   * exportable.
+   */
+  public Optional<EntityExporter<?>> exporterOf(String entityName) {
+    return entityExporters
+      .orderedStream()
+      .filter(exporter ->
+        exporter.getExportedType().getSimpleName().equals(entityName)
+      )
+      .findFirst();
+  }
+
+  /**
+   * @param fields the names of the fields to export, in order, or null or
+   * empty to export all exportable fields.
+   * @param streamer streams the exported instances to the chunk consumer it is
+   * passed, returning their number.
+   * @return the number of exported instances.
+   */
+  public <T> long exportAll(
+    Class<T> clazz,
+    OutputStream output,
+    ExportFormat format,
+    List<String> fields,
+    Function<Consumer<List<T>>, Long> streamer
+  ) {
+    val exported = projectionOf(clazz, fields);
+    try {
+      val exportedCount = format == ExportFormat.CSV
+        ? exportCsv(output, exported, streamer)
+        : exportNdjson(output, exported, streamer);
+      log.info(
+        "export: Exported {} {} as {}",
+        exportedCount,
+        toPlural(clazz.getSimpleName()),
+        format
+      );
+      return exportedCount;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private <T> long exportNdjson(
+    OutputStream output,
+    List<Field> fields,
+    Function<Consumer<List<T>>, Long> streamer
+  ) throws IOException {
+    val generator = mapper
+      .getFactory()
+      .createGenerator(output)
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      // lines are terminated explicitly, rather than separated by spaces
+      .setRootValueSeparator(null);
+    final long count;
+    try {
+      count =
+        streamer.apply(chunk -> {
+          try {
+            for (val instance : chunk) {
+              generator.writeStartObject();
+              for (val field : fields) {
+                generator.writeFieldName(field.getName());
+                generator.writeObject(valueOf(field, instance));
+              }
+              generator.writeEndObject();
+              generator.writeRaw('\n');
+            }
+            generator.flush();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+    } finally {
+      generator.close();
+    }
+    return count;
+  }
+
+  private <T> long exportCsv(
+    OutputStream output,
+    List<Field> fields,
+    Function<Consumer<List<T>>, Long> streamer
+  ) throws IOException {
+    final Writer writer = new BufferedWriter(
+      new OutputStreamWriter(output, StandardCharsets.UTF_8)
+    );
+    final List<String> header = new ArrayList<>(fields.size());
+    fields.forEach(field -> header.add(field.getName()));
+    writeCsvRecord(writer, header);
+    final List<String> record = new ArrayList<>(fields.size());
+    final long count = streamer.apply(chunk -> {
+      try {
+        for (val instance : chunk) {
+          record.clear();
+          for (val field : fields) record.add(
+            csvValueOf(valueOf(field, instance))
+          );
+          writeCsvRecord(writer, record);
+        }
+        writer.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    writer.flush();
+    return count;
+  }
+
+  /**
+   * Writes an RFC 4180 record, quoting fields which contain separators,
+   * quotes or line breaks. Null values are written as empty unquoted fields.
+   */
+  private static void writeCsvRecord(Writer writer, List<String> record)
+    throws IOException {
+    for (int i = 0; i < record.size(); i++) {
+      if (i > 0) writer.write(',');
+      val value = record.get(i);
+      if (value == null) continue;
+      if (
+        value.isEmpty() ||
+        value.indexOf(',') >= 0 ||
+        value.indexOf('"') >= 0 ||
+        value.indexOf('\n') >= 0 ||
+        value.indexOf('\r') >= 0
+      ) {
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+      } else writer.write(value);
+    }
+    writer.write("\r\n");
+  }
+
+  private String csvValueOf(Object value) {
+    if (value == null || value instanceof String) return (String) value;
+    return mapper.convertValue(value, String.class);
+  }
+
+  private static Object valueOf(Field field, Object instance) {
+    try {
+      return field.get(instance);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private List<Field> projectionOf(Class<?> clazz, List<String> fieldNames) {
+    val exportable = exportableFields.computeIfAbsent(
+      clazz,
+      this::exportableFieldsOf
+    );
+    if (fieldNames == null || fieldNames.isEmpty()) return new ArrayList<>(
+      exportable.values()
+    );
+    final List<Field> projection = new ArrayList<>(fieldNames.size());
+    for (val fieldName : fieldNames) {
+      val field = exportable.get(fieldName.trim());
+      if (field == null) throw new IllegalArgumentException(
+        "Cannot export field '" +
+        fieldName +
+        "' of " +
+        clazz.getSimpleName() +
+        ", exportable fields are: " +
+        String.join(", ", exportable.keySet())
+      );
+      projection.add(field);
+    }
+    return projection;
+  }
+
+  /**
+   * @return the exportable fields of the entity, in declaration order,
+   * starting with those of its super classes.
+   */
+  private Map<String, Field> exportableFieldsOf(Class<?> clazz) {
+    val cachedFields = reflectionCache
+      .getEntitiesCache()
+      .get(clazz.getSimpleName())
+      .getFields();
+    final List<Class<?>> hierarchy = new ArrayList<>();
+    for (
+      Class<?> type = clazz;
+      type != null && type != Object.class;
+      type = type.getSuperclass()
+    ) hierarchy.add(0, type);
+    final Map<String, Field> result = new LinkedHashMap<>();
+    for (val type : hierarchy) {
+      for (val field : type.getDeclaredFields()) {
+        if (
+          cachedFields.containsKey(field.getName()) &&
+          !result.containsKey(field.getName()) &&
+          isExportable(clazz, field)
+        ) {
+          ReflectionUtils.makeAccessible(field);
+          result.put(field.getName(), field);
+        }
+      }
+    }
+    log.debug(
+      "export: {} fields are exportable: {}",
+      clazz.getSimpleName(),
+      String.join(", ", result.keySet())
+    );
+    return result;
+  }
+
+  private static boolean isExportable(Class<?> clazz, Field field) {
+    val modifiers = field.getModifiers();
+    if (
+      Modifier.isStatic(modifiers) ||
+      Modifier.isTransient(modifiers) ||
+      field.isAnnotationPresent(Transient.class) ||
+      field.isAnnotationPresent(GraphQLIgnore.class) ||
+      !isScalar(field.getType())
+    ) return false;
+    val capitalized =
+      Character.toUpperCase(field.getName().charAt(0)) +
+      field.getName().substring(1);
+    for (val getterName : new String[] {
+      "get" + capitalized,
+      "is" + capitalized,
+    }) {
+      val getter = ReflectionUtils.findMethod(clazz, getterName);
+      if (
+        getter != null && getter.isAnnotationPresent(GraphQLIgnore.class)
+      ) return false;
+    }
+    return true;
+  }
+
+  private static boolean isScalar(Class<?> type) {
+    return (
+      ClassUtils.isPrimitiveOrWrapper(type) ||
+      CharSequence.class.isAssignableFrom(type) ||
+      Number.class.isAssignableFrom(type) ||
+      type.isEnum() ||
+      TemporalAccessor.class.isAssignableFrom(type) ||
+      Date.class.isAssignableFrom(type) ||
+      UUID.class.equals(type)
+    );
+  }
+}
@@ -0,0 +1,24 @@
+package dev.sanda.apifi.service.bulk_export;
+
+import dev.sanda.datafi.dto.PageRequest;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Implemented by the generated GraphQL services of entities which expose a
+ * paginated batch endpoint, so that exports are subject to the same security
+ * annotations and api hooks as the paginated batch query.
+ */
+public interface EntityExporter<T> {
+  Class<T> getExportedType();
+
+  /**
+   * @return the number of exported instances.
+   */
+  long exportAll(
+    OutputStream output,
+    ExportFormat format,
+    List<String> fields,
+    PageRequest request
+  );
+}
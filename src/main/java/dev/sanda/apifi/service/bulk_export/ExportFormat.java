@@ -0,0 +1,20 @@
+package dev.sanda.apifi.service.bulk_export;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+  NDJSON("application/x-ndjson"),
+  CSV("text/csv");
+
+  private final String contentType;
+
+  /**
+   * @return the format of the given accept header, defaulting to NDJSON.
+   */
+  public static ExportFormat of(String accept) {
+    return accept != null && accept.contains(CSV.contentType) ? CSV : NDJSON;
+  }
+}
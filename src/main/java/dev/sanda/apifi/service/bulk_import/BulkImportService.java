@@ -0,0 +1,264 @@
+package dev.sanda.apifi.service.bulk_import;
+
+import static dev.sanda.apifi.service.graphql_subcriptions.pubsub.PubSubMessagingService.INTERNAL_TOPIC_PREFIX;
+import static dev.sanda.datafi.DatafiStaticUtils.toPlural;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.sanda.apifi.dto.ImportProgress;
+import dev.sanda.apifi.dto.ImportStatus;
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.PubSubMessagingService;
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.PubSubTopicHandler;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import dev.sanda.datafi.service.DataManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+/**
+ * Imports NDJSON or CSV streams of entity instances. Instances are parsed one
+ * at a time and passed to the batch create logic in chunks of the configured
+ * size, each of which is written (in its own transaction) before the next is
+ * read from the input, so that memory use is bounded by the chunk size rather
+ * than the size of the upload, and slow writes throttle the upload rather than
+ * buffer it. The progress of each import is published after every chunk, to an
+ * internal per entity topic observed by the generated import progress
+ * subscriptions.
+ */
+@Slf4j
+@Service
+public class BulkImportService {
+
+  public static final String PROGRESS_TOPIC_PREFIX =
+    INTERNAL_TOPIC_PREFIX + "/import-progress/";
+
+  private final ObjectMapper mapper = new ObjectMapper()
+    .findAndRegisterModules();
+
+  private final ObjectProvider<EntityImporter<?>> entityImporters;
+  private final PubSubMessagingService pubSubMessagingService;
+  private final ReflectionCache reflectionCache;
+  private final ConfigValues configValues;
+  private final boolean enabled;
+  private final int chunkSize;
+
+  @Autowired
+  public BulkImportService(
+    ObjectProvider<EntityImporter<?>> entityImporters,
+    PubSubMessagingService pubSubMessagingService,
+    ReflectionCache reflectionCache,
+    ConfigValues configValues
+  ) {
+    this.entityImporters = entityImporters;
+    this.pubSubMessagingService = pubSubMessagingService;
+    this.reflectionCache = reflectionCache;
+    this.configValues = configValues;
+    this.enabled = configValues.getImportEnabled();
+    this.chunkSize = Math.max(1, configValues.getImportChunkSize());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the importer of the entity with the given simple name, if it is
+   * importable.
+   */
+  public Optional<EntityImporter<?>> importerOf(String entityName) {
+    return entityImporters
+      .orderedStream()
+      .filter(importer ->
+        importer.getImportedType().getSimpleName().equals(entityName)
+      )
+      .findFirst();
+  }
+
+  public <T> ImportProgress importAll(
+    DataManager<T> dataManager,
+    InputStream input,
+    ImportFormat format,
+    String importId,
+    Function<List<T>, List<T>> batchCreate
+  ) {
+    val entityName = dataManager.getClazzSimpleName();
+    val resolvedImportId = importId != null && !importId.isBlank()
+      ? importId
+      : UUID.randomUUID().toString();
+    val imported = new long[1];
+    final Consumer<List<T>> writeChunk = chunk -> {
+      imported[0] += batchCreate.apply(chunk).size();
+      // the open session in view pattern would otherwise retain every chunk
+      dataManager.entityManager().clear();
+      chunk.clear();
+      publish(
+        new ImportProgress(
+          resolvedImportId,
+          entityName,
+          ImportStatus.RUNNING,
+          imported[0],
+          null
+        )
+      );
+    };
+    ImportProgress result;
+    try {
+      if (format == ImportFormat.CSV) readCsv(
+        input,
+        dataManager.getClazz(),
+        writeChunk
+      ); else readNdjson(input, dataManager.getClazz(), writeChunk);
+      result =
+        new ImportProgress(
+          resolvedImportId,
+          entityName,
+          ImportStatus.COMPLETED,
+          imported[0],
+          null
+        );
+      log.info(
+        "import: Imported {} {} from {}",
+        imported[0],
+        toPlural(entityName),
+        format
+      );
+    } catch (Exception e) {
+      result =
+        new ImportProgress(
+          resolvedImportId,
+          entityName,
+          ImportStatus.FAILED,
+          imported[0],
+          e.getMessage() != null ? e.getMessage() : e.toString()
+        );
+      log.warn(
+        "import: Import of {} failed after {} were imported: {}",
+        toPlural(entityName),
+        imported[0],
+        e.toString()
+      );
+    }
+    publish(result);
+    return result;
+  }
+
+  private <T> void readNdjson(
+    InputStream input,
+    Class<T> clazz,
+    Consumer<List<T>> writeChunk
+  ) throws IOException {
+    final List<T> chunk = new ArrayList<>(chunkSize);
+    try (JsonParser parser = mapper.getFactory().createParser(input)) {
+      for (
+        JsonToken token = parser.nextToken();
+        token != null;
+        token = parser.nextToken()
+      ) {
+        if (token != JsonToken.START_OBJECT) throw new IOException(
+          "Expected a JSON object at line " +
+          parser.getCurrentLocation().getLineNr()
+        );
+        chunk.add(mapper.readValue(parser, clazz));
+        if (chunk.size() >= chunkSize) writeChunk.accept(chunk);
+      }
+    }
+    if (!chunk.isEmpty()) writeChunk.accept(chunk);
+  }
+
+  /**
+   * The first record is the header, which names the field of each column.
+   * Values are converted to the types of their fields by Jackson.
+   */
+  private <T> void readCsv(
+    InputStream input,
+    Class<T> clazz,
+    Consumer<List<T>> writeChunk
+  ) throws IOException {
+    final List<T> chunk = new ArrayList<>(chunkSize);
+    val reader = new CsvRecordReader(
+      new InputStreamReader(input, StandardCharsets.UTF_8)
+    );
+    val header = reader.next();
+    if (header == null) return;
+    long recordNumber = 1;
+    for (List<String> record; (record = reader.next()) != null;) {
+      recordNumber++;
+      if (record.size() != header.size()) throw new IOException(
+        "Expected " +
+        header.size() +
+        " fields in CSV record " +
+        recordNumber +
+        ", found " +
+        record.size()
+      );
+      final Map<String, String> fields = new LinkedHashMap<>();
+      for (int i = 0; i < header.size(); i++) if (
+        record.get(i) != null
+      ) fields.put(header.get(i), record.get(i));
+      chunk.add(mapper.convertValue(fields, clazz));
+      if (chunk.size() >= chunkSize) writeChunk.accept(chunk);
+    }
+    if (!chunk.isEmpty()) writeChunk.accept(chunk);
+  }
+
+  /**
+   * @return the progress of the given import, until it completes or fails.
+   * Subscribers should subscribe before starting the import, since past
+   * progress is not replayed.
+   */
+  public Flux<ImportProgress> progressOf(String entityName, String importId) {
+    val topic = progressTopicOf(entityName);
+    val handlerId = UUID.randomUUID().toString();
+    return Flux
+      .create(sink ->
+        pubSubMessagingService.registerTopicHandler(
+          topic,
+          new PubSubTopicHandler(
+            handlerId,
+            sink,
+            null,
+            reflectionCache,
+            configValues
+          )
+        )
+      )
+      .map(payload -> mapper.convertValue(payload, ImportProgress.class))
+      .filter(progress -> importId.equals(progress.getImportId()))
+      .takeUntil(progress -> progress.getStatus() != ImportStatus.RUNNING)
+      .doFinally(signal ->
+        pubSubMessagingService.removeTopicHandler(topic, handlerId)
+      );
+  }
+
+  private void publish(ImportProgress progress) {
+    try {
+      pubSubMessagingService.publishToTopic(
+        progressTopicOf(progress.getEntityName()),
+        mapper.convertValue(progress, Map.class)
+      );
+    } catch (Exception e) {
+      log.warn("Could not publish import progress: {}", e.toString());
+    }
+  }
+
+  private static String progressTopicOf(String entityName) {
+    return PROGRESS_TOPIC_PREFIX + entityName;
+  }
+}
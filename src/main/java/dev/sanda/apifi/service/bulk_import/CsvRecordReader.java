@@ -0,0 +1,81 @@
+package dev.sanda.apifi.service.bulk_import;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 records one at a time, so that only the current record is
+ * held in memory. Fields may be quoted, in which case they may contain
+ * commas, line breaks and escaped ({@code ""}) quotes.
+ */
+final class CsvRecordReader {
+
+  private final Reader reader;
+  private final StringBuilder field = new StringBuilder();
+  private int lookahead = -2;
+
+  CsvRecordReader(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * @return the next record, or null once the input has been exhausted.
+   */
+  List<String> next() throws IOException {
+    int c = read();
+    while (c == '\r' || c == '\n') c = read();
+    if (c == -1) return null;
+    final List<String> record = new ArrayList<>();
+    boolean isQuoted = false;
+    boolean wasQuoted = false;
+    field.setLength(0);
+    for (;; c = read()) {
+      if (isQuoted) {
+        if (c == -1) throw new IOException("Unterminated quoted CSV field");
+        if (c == '"') {
+          if (peek() == '"') {
+            read();
+            field.append('"');
+          } else isQuoted = false;
+        } else field.append((char) c);
+      } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+        isQuoted = true;
+        wasQuoted = true;
+      } else if (c == ',') {
+        record.add(fieldValue(wasQuoted));
+        wasQuoted = false;
+      } else if (c == '\r' || c == '\n' || c == -1) {
+        if (c == '\r' && peek() == '\n') read();
+        record.add(fieldValue(wasQuoted));
+        return record;
+      } else field.append((char) c);
+    }
+  }
+
+  /**
+   * Unquoted empty fields are read as null, and quoted ones as empty strings.
+   */
+  private String fieldValue(boolean wasQuoted) {
+    final String value = field.length() > 0 || wasQuoted
+      ? field.toString()
+      : null;
+    field.setLength(0);
+    return value;
+  }
+
+  private int read() throws IOException {
+    if (lookahead != -2) {
+      final int c = lookahead;
+      lookahead = -2;
+      return c;
+    }
+    return reader.read();
+  }
+
+  private int peek() throws IOException {
+    if (lookahead == -2) lookahead = reader.read();
+    return lookahead;
+  }
+}
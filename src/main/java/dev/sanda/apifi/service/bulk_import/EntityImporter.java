@@ -0,0 +1,19 @@
+package dev.sanda.apifi.service.bulk_import;
+
+import dev.sanda.apifi.dto.ImportProgress;
+import java.io.InputStream;
+
+/**
+ * Implemented by the generated GraphQL services of entities which expose a
+ * batch create endpoint, so that streaming imports are subject to the same
+ * security annotations and api hooks as the batch create mutation.
+ */
+public interface EntityImporter<T> {
+  Class<T> getImportedType();
+
+  ImportProgress importAll(
+    InputStream input,
+    ImportFormat format,
+    String importId
+  );
+}
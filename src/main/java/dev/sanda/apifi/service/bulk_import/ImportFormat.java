@@ -0,0 +1,22 @@
+package dev.sanda.apifi.service.bulk_import;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ImportFormat {
+  NDJSON("application/x-ndjson"),
+  CSV("text/csv");
+
+  private final String contentType;
+
+  /**
+   * @return the format of the given content type, defaulting to NDJSON.
+   */
+  public static ImportFormat of(String contentType) {
+    return contentType != null && contentType.startsWith(CSV.contentType)
+      ? CSV
+      : NDJSON;
+  }
+}
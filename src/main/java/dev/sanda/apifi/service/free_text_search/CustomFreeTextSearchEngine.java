@@ -0,0 +1,3 @@
+package dev.sanda.apifi.service.free_text_search;
+
+public interface CustomFreeTextSearchEngine extends FreeTextSearchEngine {}
@@ -0,0 +1,44 @@
+package dev.sanda.apifi.service.free_text_search;
+
+import java.util.Collection;
+
+/**
+ * Serves the free text searches of entities annotated with
+ * {@code @WithApiFreeTextSearchByFields}, in place of the default JPQL LIKE
+ * queries. Engines return ranked pages of ids, which are then hydrated from
+ * the database.
+ */
+public interface FreeTextSearchEngine {
+  /**
+   * @return whether searches over the given entity type can currently be
+   * served by this engine. If not, the database is searched instead.
+   */
+  boolean isSearchable(Class<?> entityType);
+
+  /**
+   * @return whether this engine keeps an index of the given entity type, in
+   * which case {@link #onSaved} must be invoked with fully loaded instances.
+   */
+  boolean isIndexed(Class<?> entityType);
+
+  FreeTextSearchHits search(
+    Class<?> entityType,
+    String searchTerm,
+    int offset,
+    int limit
+  );
+
+  /**
+   * Invoked with instances which were created or updated, including those
+   * whose archived state changed.
+   */
+  void onSaved(Class<?> entityType, Collection<?> entities);
+
+  void onDeleted(Class<?> entityType, Collection<?> entities);
+
+  /**
+   * Invoked with the ids of instances which were deleted or archived without
+   * having been loaded.
+   */
+  void onRemoved(Class<?> entityType, Collection<?> ids);
+}
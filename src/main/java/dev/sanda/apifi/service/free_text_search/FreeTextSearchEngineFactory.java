@@ -0,0 +1,32 @@
+package dev.sanda.apifi.service.free_text_search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class FreeTextSearchEngineFactory {
+
+  private final CustomFreeTextSearchEngine customFreeTextSearchEngine;
+  private final NGramFreeTextSearchEngine nGramFreeTextSearchEngine;
+
+  @Autowired
+  public FreeTextSearchEngineFactory(
+    @Autowired(
+      required = false
+    ) CustomFreeTextSearchEngine customFreeTextSearchEngine,
+    NGramFreeTextSearchEngine nGramFreeTextSearchEngine
+  ) {
+    this.customFreeTextSearchEngine = customFreeTextSearchEngine;
+    this.nGramFreeTextSearchEngine = nGramFreeTextSearchEngine;
+  }
+
+  @Bean
+  @Primary
+  public FreeTextSearchEngine freeTextSearchEngine() {
+    return customFreeTextSearchEngine != null
+      ? customFreeTextSearchEngine
+      : nGramFreeTextSearchEngine;
+  }
+}
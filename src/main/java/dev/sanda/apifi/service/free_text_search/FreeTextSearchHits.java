@@ -0,0 +1,15 @@
+package dev.sanda.apifi.service.free_text_search;
+
+import java.util.List;
+import lombok.Value;
+
+@Value
+public class FreeTextSearchHits {
+
+  /**
+   * The ids of the requested page of matches, in order of relevance.
+   */
+  List<Object> ids;
+
+  long totalHits;
+}
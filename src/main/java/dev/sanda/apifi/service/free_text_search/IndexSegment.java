@@ -0,0 +1,175 @@
+package dev.sanda.apifi.service.free_text_search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import lombok.val;
+
+/**
+ * Reads and writes the documents of an {@link NGramIndex} to a segment file,
+ * so that the index can be served on startup before it has been rebuilt from
+ * the database. Segments are read sequentially into a heap resident index,
+ * so they shorten the time until searches are served by the index on
+ * startup, but do not reduce its memory footprint. Postings are not
+ * persisted, and are rebuilt from the documents on load.
+ * <p>
+ * Layout: magic, version, field count and document count ints, followed by
+ * each document's id (a type tag byte and a string) and field values. Strings
+ * are written as a byte length int (-1 for null) followed by UTF-8 bytes.
+ */
+final class IndexSegment {
+
+  private static final int MAGIC = 0x41504654;
+  private static final int VERSION = 1;
+  private static final long DOCUMENT_COUNT_POSITION = 3 * Integer.BYTES;
+
+  private static final byte LONG_ID = 'L';
+  private static final byte INTEGER_ID = 'I';
+  private static final byte STRING_ID = 'S';
+  private static final byte UUID_ID = 'U';
+
+  private IndexSegment() {}
+
+  static boolean isSupportedIdType(Class<?> idType) {
+    return (
+      idType == Long.class ||
+      idType == long.class ||
+      idType == Integer.class ||
+      idType == int.class ||
+      idType == String.class ||
+      idType == UUID.class
+    );
+  }
+
+  /**
+   * Writes to a temporary file which then replaces the segment, so that a
+   * partially written segment is never read. The document count is written
+   * once all documents have been, since the index may be concurrently updated.
+   */
+  static void write(Path segment, NGramIndex index, int fieldCount)
+    throws IOException {
+    val temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+    val documentCount = new int[1];
+    try (
+      DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temp))
+      )
+    ) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(fieldCount);
+      out.writeInt(0);
+      val failure = new IOException[1];
+      index.forEach((id, values) -> {
+        if (failure[0] != null) return;
+        try {
+          writeDocument(out, id, values);
+          documentCount[0]++;
+        } catch (IOException e) {
+          failure[0] = e;
+        }
+      });
+      if (failure[0] != null) throw failure[0];
+    }
+    try (
+      FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)
+    ) {
+      channel.write(
+        ByteBuffer.allocate(Integer.BYTES).putInt(0, documentCount[0]),
+        DOCUMENT_COUNT_POSITION
+      );
+    }
+    Files.move(
+      temp,
+      segment,
+      StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE
+    );
+  }
+
+  /**
+   * @return the index stored in the segment, or null if the segment does not
+   * exist or was written for a different number of fields.
+   */
+  static NGramIndex read(Path segment, int fieldCount) throws IOException {
+    if (!Files.isRegularFile(segment)) return null;
+    try (
+      DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(segment))
+      )
+    ) {
+      if (
+        in.readInt() != MAGIC ||
+        in.readInt() != VERSION ||
+        in.readInt() != fieldCount
+      ) return null;
+      val documentCount = in.readInt();
+      val index = new NGramIndex();
+      for (int i = 0; i < documentCount; i++) {
+        val id = readId(in);
+        val values = new String[fieldCount];
+        for (int j = 0; j < fieldCount; j++) values[j] = readString(in);
+        index.put(id, values);
+      }
+      return index;
+    }
+  }
+
+  private static void writeDocument(
+    DataOutputStream out,
+    Object id,
+    String[] values
+  ) throws IOException {
+    if (id instanceof Long) out.writeByte(LONG_ID); else if (
+      id instanceof Integer
+    ) out.writeByte(INTEGER_ID); else if (id instanceof UUID) out.writeByte(
+      UUID_ID
+    ); else out.writeByte(STRING_ID);
+    writeString(out, id.toString());
+    for (val value : values) writeString(out, value);
+  }
+
+  private static Object readId(DataInputStream in) throws IOException {
+    val type = in.readByte();
+    val value = readString(in);
+    switch (type) {
+      case LONG_ID:
+        return Long.valueOf(value);
+      case INTEGER_ID:
+        return Integer.valueOf(value);
+      case UUID_ID:
+        return UUID.fromString(value);
+      default:
+        return value;
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value)
+    throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    val bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    val length = in.readInt();
+    if (length < 0) return null;
+    val bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
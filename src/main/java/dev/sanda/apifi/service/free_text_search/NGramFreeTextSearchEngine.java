@@ -0,0 +1,367 @@
+package dev.sanda.apifi.service.free_text_search;
+
+import static dev.sanda.apifi.utils.ApifiStaticUtils.runAfterCommit;
+import static dev.sanda.datafi.DatafiStaticUtils.getId;
+import static dev.sanda.datafi.DatafiStaticUtils.toPlural;
+
+import dev.sanda.apifi.annotations.WithApiFreeTextSearchByFields;
+import dev.sanda.apifi.service.api_logic.EntityStreamingService;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.Operation;
+import dev.sanda.apifi.service.api_logic.JpqlQueryCache.QueryKey;
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.AsyncExecutorService;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.persistence.Archivable;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import dev.sanda.datafi.service.DataManagersCollector;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * The embedded {@link FreeTextSearchEngine}, which keeps an in memory
+ * {@link NGramIndex} of the non archived instances of every entity annotated
+ * with {@link WithApiFreeTextSearchByFields}. Indexes are built on startup by
+ * streaming each table, kept current by the crud services' write operations
+ * once their transactions commit, and periodically rebuilt to correct drift
+ * caused by writes which bypass apifi or which are served by other nodes.
+ * Since an index may therefore lag behind the database, search results are
+ * hydrated by a query which excludes archived instances.
+ * Until an entity's index has been built, its searches are served by the
+ * database.
+ * <p>
+ * If a segment directory is configured, each rebuilt index is also written to
+ * an {@link IndexSegment}, from which it is loaded on the next startup, so
+ * that searches are served by the index while it is being rebuilt.
+ */
+@Slf4j
+@Service
+public class NGramFreeTextSearchEngine implements FreeTextSearchEngine {
+
+  public static final String SEGMENT_FILE_EXTENSION = ".segment";
+
+  private final ReflectionCache reflectionCache;
+  private final DataManagersCollector dataManagersCollector;
+  private final AsyncExecutorService asyncExecutorService;
+  private final EntityStreamingService entityStreamingService;
+  private final JpqlQueryCache jpqlQueryCache;
+  private final boolean enabled;
+  private final long rebuildInterval;
+  private final Path segmentDir;
+
+  private final Map<Class<?>, Optional<Field[]>> searchFields =
+    new ConcurrentHashMap<>();
+  private final Map<Class<?>, NGramIndex> indexes = new ConcurrentHashMap<>();
+  private final Map<Class<?>, NGramIndex> pendingIndexes =
+    new ConcurrentHashMap<>();
+
+  @Autowired
+  public NGramFreeTextSearchEngine(
+    ReflectionCache reflectionCache,
+    DataManagersCollector dataManagersCollector,
+    AsyncExecutorService asyncExecutorService,
+    EntityStreamingService entityStreamingService,
+    JpqlQueryCache jpqlQueryCache,
+    ConfigValues configValues
+  ) {
+    this.reflectionCache = reflectionCache;
+    this.dataManagersCollector = dataManagersCollector;
+    this.asyncExecutorService = asyncExecutorService;
+    this.entityStreamingService = entityStreamingService;
+    this.jpqlQueryCache = jpqlQueryCache;
+    this.enabled = configValues.getFreeTextSearchIndexEnabled();
+    this.rebuildInterval = configValues.getFreeTextSearchIndexRebuildInterval();
+    val segmentDirConfig = configValues.getFreeTextSearchIndexSegmentDir();
+    this.segmentDir =
+      segmentDirConfig != null && !segmentDirConfig.isEmpty()
+        ? Paths.get(segmentDirConfig)
+        : null;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    if (!enabled) return;
+    if (segmentDir != null) indexedTypes().forEach(this::loadSegment);
+    asyncExecutorService.executeAsync(this::rebuildAll);
+    if (rebuildInterval > 0) asyncExecutorService.scheduleAsyncTask(
+      this::rebuildAll,
+      rebuildInterval,
+      true
+    );
+  }
+
+  @Override
+  public boolean isSearchable(Class<?> entityType) {
+    return enabled && indexes.containsKey(entityType);
+  }
+
+  @Override
+  public boolean isIndexed(Class<?> entityType) {
+    return enabled && searchFieldsOf(entityType) != null;
+  }
+
+  @Override
+  public FreeTextSearchHits search(
+    Class<?> entityType,
+    String searchTerm,
+    int offset,
+    int limit
+  ) {
+    val index = indexes.get(entityType);
+    return index != null
+      ? index.search(searchTerm, offset, limit)
+      : new FreeTextSearchHits(new ArrayList<>(), 0);
+  }
+
+  /**
+   * The indexed values are read immediately, but only applied to the index
+   * once the current transaction commits.
+   */
+  @Override
+  public void onSaved(Class<?> entityType, Collection<?> entities) {
+    if (!enabled) return;
+    val fields = searchFieldsOf(entityType);
+    if (fields == null) return;
+    final List<Consumer<NGramIndex>> updates = new ArrayList<>();
+    for (val entity : entities) {
+      val id = getId(entity, reflectionCache);
+      if (isArchived(entity)) updates.add(index -> index.remove(id)); else {
+        val values = valuesOf(entity, fields);
+        updates.add(index -> index.put(id, values));
+      }
+    }
+    applyAfterCommit(entityType, updates);
+  }
+
+  @Override
+  public void onDeleted(Class<?> entityType, Collection<?> entities) {
+    if (!enabled || searchFieldsOf(entityType) == null) return;
+    final List<Object> ids = new ArrayList<>(entities.size());
+    for (val entity : entities) ids.add(getId(entity, reflectionCache));
+    onRemoved(entityType, ids);
+  }
+
+  @Override
+  public void onRemoved(Class<?> entityType, Collection<?> ids) {
+    if (!enabled || searchFieldsOf(entityType) == null) return;
+    final List<Consumer<NGramIndex>> updates = new ArrayList<>(ids.size());
+    for (val id : ids) updates.add(index -> index.remove(id));
+    applyAfterCommit(entityType, updates);
+  }
+
+  private void applyAfterCommit(
+    Class<?> entityType,
+    List<Consumer<NGramIndex>> updates
+  ) {
+    if (!updates.isEmpty()) runAfterCommit(() ->
+      updates.forEach(update -> applyToIndexes(entityType, update))
+    );
+  }
+
+  /**
+   * Updates are applied to the index being rebuilt as well, so that they are
+   * not lost when it replaces the current one.
+   */
+  private void applyToIndexes(
+    Class<?> entityType,
+    Consumer<NGramIndex> update
+  ) {
+    val index = indexes.get(entityType);
+    if (index != null) update.accept(index);
+    val pendingIndex = pendingIndexes.get(entityType);
+    if (pendingIndex != null) update.accept(pendingIndex);
+  }
+
+  private List<Class<?>> indexedTypes() {
+    final List<Class<?>> indexedTypes = new ArrayList<>();
+    for (val cachedEntity : reflectionCache.getEntitiesCache().values()) {
+      val clazz = cachedEntity.getClazz();
+      if (searchFieldsOf(clazz) != null) indexedTypes.add(clazz);
+    }
+    return indexedTypes;
+  }
+
+  private void rebuildAll() {
+    for (val clazz : indexedTypes()) {
+      try {
+        rebuild(clazz);
+      } catch (Exception e) {
+        log.warn(
+          "Could not build free text search index of {}: {}",
+          toPlural(clazz.getSimpleName()),
+          e.toString()
+        );
+      }
+    }
+  }
+
+  private <T> void rebuild(Class<T> clazz) {
+    val dataManager = dataManagersCollector.getDataManagerForEntityType(clazz);
+    if (dataManager == null) return;
+    val fields = searchFieldsOf(clazz);
+    val entityName = clazz.getSimpleName();
+    val cachedEntity = reflectionCache.getEntitiesCache().get(entityName);
+    val queryKey = QueryKey.sorted(
+      entityName,
+      Operation.PAGE,
+      null,
+      cachedEntity.getIdField().getName(),
+      null,
+      cachedEntity.isArchivable()
+    );
+    val index = new NGramIndex();
+    pendingIndexes.put(clazz, index);
+    try {
+      entityStreamingService.stream(
+        dataManager.entityManager(),
+        () ->
+          jpqlQueryCache.createQuery(
+            dataManager.entityManager(),
+            queryKey,
+            clazz
+          ),
+        chunk ->
+          chunk.forEach(entity ->
+            index.put(getId(entity, reflectionCache), valuesOf(entity, fields))
+          )
+      );
+      indexes.put(clazz, index);
+    } finally {
+      pendingIndexes.remove(clazz, index);
+    }
+    log.info(
+      "Indexed {} {} for free text search",
+      index.size(),
+      toPlural(entityName)
+    );
+    writeSegment(clazz, index, fields.length);
+  }
+
+  private void loadSegment(Class<?> clazz) {
+    try {
+      val index = IndexSegment.read(
+        segmentOf(clazz),
+        searchFieldsOf(clazz).length
+      );
+      if (index == null) return;
+      indexes.putIfAbsent(clazz, index);
+      log.info(
+        "Loaded free text search index of {} {} from segment",
+        index.size(),
+        toPlural(clazz.getSimpleName())
+      );
+    } catch (IOException | RuntimeException e) {
+      log.warn(
+        "Could not load free text search index segment of {}: {}",
+        toPlural(clazz.getSimpleName()),
+        e.toString()
+      );
+    }
+  }
+
+  private void writeSegment(Class<?> clazz, NGramIndex index, int fieldCount) {
+    if (segmentDir == null) return;
+    val idType = reflectionCache
+      .getEntitiesCache()
+      .get(clazz.getSimpleName())
+      .getIdField()
+      .getType();
+    if (!IndexSegment.isSupportedIdType(idType)) {
+      log.debug(
+        "skipping free text search index segment of {}: unsupported id type {}",
+        toPlural(clazz.getSimpleName()),
+        idType.getName()
+      );
+      return;
+    }
+    try {
+      Files.createDirectories(segmentDir);
+      IndexSegment.write(segmentOf(clazz), index, fieldCount);
+    } catch (IOException e) {
+      log.warn(
+        "Could not write free text search index segment of {}: {}",
+        toPlural(clazz.getSimpleName()),
+        e.toString()
+      );
+    }
+  }
+
+  private Path segmentOf(Class<?> clazz) {
+    return segmentDir.resolve(clazz.getName() + SEGMENT_FILE_EXTENSION);
+  }
+
+  /**
+   * @return the fields listed by the entity's
+   * {@link WithApiFreeTextSearchByFields} annotation, or null if it is not
+   * annotated or lists a field which cannot be resolved.
+   */
+  private Field[] searchFieldsOf(Class<?> clazz) {
+    return searchFields
+      .computeIfAbsent(
+        clazz,
+        type -> {
+          val annotation = type.getAnnotation(
+            WithApiFreeTextSearchByFields.class
+          );
+          val cachedEntity = reflectionCache
+            .getEntitiesCache()
+            .get(type.getSimpleName());
+          if (
+            annotation == null || cachedEntity == null
+          ) return Optional.empty();
+          val fieldNames = annotation.value();
+          val fields = new Field[fieldNames.length];
+          for (int i = 0; i < fieldNames.length; i++) {
+            val cachedField = cachedEntity.getFields().get(fieldNames[i]);
+            if (cachedField == null) {
+              log.warn(
+                "Not indexing {} for free text search: unknown field \"{}\"",
+                toPlural(type.getSimpleName()),
+                fieldNames[i]
+              );
+              return Optional.empty();
+            }
+            fields[i] = cachedField.getField();
+            fields[i].setAccessible(true);
+          }
+          return Optional.of(fields);
+        }
+      )
+      .orElse(null);
+  }
+
+  private static String[] valuesOf(Object entity, Field[] fields) {
+    val values = new String[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      try {
+        val value = fields[i].get(entity);
+        values[i] = value != null ? value.toString() : null;
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return values;
+  }
+
+  private static boolean isArchived(Object entity) {
+    return (
+      entity instanceof Archivable &&
+      Boolean.TRUE.equals(((Archivable) entity).getIsArchived())
+    );
+  }
+}
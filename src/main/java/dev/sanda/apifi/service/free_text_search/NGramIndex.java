@@ -0,0 +1,205 @@
+package dev.sanda.apifi.service.free_text_search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import lombok.val;
+
+/**
+ * An inverted index of the trigrams of the searchable field values of one
+ * entity type. Matches are the same as those of the case insensitive
+ * {@code LIKE '%term%'} queries it replaces: the posting lists of the search
+ * term's trigrams narrow down the candidates, each of which is then verified
+ * to contain the term. Terms shorter than a trigram are verified against
+ * every document.
+ */
+final class NGramIndex {
+
+  static final int GRAM_LENGTH = 3;
+
+  private final Map<Object, Document> documents = new HashMap<>();
+  private final Map<String, Set<Object>> postings = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private long sequence;
+
+  /**
+   * @param values the searchable field values of the document, any of which
+   * may be null.
+   */
+  void put(Object id, String[] values) {
+    val normalized = new String[values.length];
+    for (int i = 0; i < values.length; i++) normalized[i] =
+      values[i] != null ? values[i].toLowerCase(Locale.ROOT) : null;
+    lock.writeLock().lock();
+    try {
+      val previous = documents.get(id);
+      if (previous != null) removePostings(previous);
+      val document = new Document(
+        id,
+        normalized,
+        previous != null ? previous.sequence : sequence++
+      );
+      documents.put(id, document);
+      for (val gram : gramsOf(normalized)) postings
+        .computeIfAbsent(gram, g -> new HashSet<>())
+        .add(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  void remove(Object id) {
+    lock.writeLock().lock();
+    try {
+      val previous = documents.remove(id);
+      if (previous != null) removePostings(previous);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return documents.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the page of matches at the given offset, ranked by relevance and
+   * thereafter by the order in which documents were first indexed.
+   */
+  FreeTextSearchHits search(String searchTerm, int offset, int limit) {
+    val term = searchTerm.toLowerCase(Locale.ROOT);
+    final List<ScoredDocument> matches = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      for (val document : candidatesOf(term)) {
+        val score = scoreOf(document, term);
+        if (score > 0) matches.add(new ScoredDocument(document, score));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    matches.sort(
+      Comparator
+        .comparingDouble((ScoredDocument match) -> -match.score)
+        .thenComparingLong(match -> match.document.sequence)
+    );
+    val from = Math.min(Math.max(offset, 0), matches.size());
+    val to = Math.min(from + Math.max(limit, 0), matches.size());
+    return new FreeTextSearchHits(
+      matches
+        .subList(from, to)
+        .stream()
+        .map(match -> match.document.id)
+        .collect(Collectors.toList()),
+      matches.size()
+    );
+  }
+
+  /**
+   * Passes the id and normalized values of every document to the consumer,
+   * while holding the read lock.
+   */
+  void forEach(BiConsumer<Object, String[]> consumer) {
+    lock.readLock().lock();
+    try {
+      documents.values().forEach(doc -> consumer.accept(doc.id, doc.values));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Collection<Document> candidatesOf(String term) {
+    if (term.length() < GRAM_LENGTH) return documents.values();
+    Set<Object> smallest = null;
+    val grams = gramsOf(new String[] { term });
+    for (val gram : grams) {
+      val posting = postings.get(gram);
+      if (posting == null) return new ArrayList<>();
+      if (smallest == null || posting.size() < smallest.size()) smallest =
+        posting;
+    }
+    final List<Document> candidates = new ArrayList<>();
+    for (val id : smallest) {
+      boolean inAll = true;
+      for (val gram : grams) if (!postings.get(gram).contains(id)) {
+        inAll = false;
+        break;
+      }
+      if (inAll) candidates.add(documents.get(id));
+    }
+    return candidates;
+  }
+
+  /**
+   * Scores matches in more fields higher, as well as matches which are a
+   * prefix of, or make up a larger share of, the field's value.
+   */
+  private static double scoreOf(Document document, String term) {
+    double score = 0;
+    for (val value : document.values) {
+      if (value == null || !value.contains(term)) continue;
+      score += 1 + (double) term.length() / value.length();
+      if (value.startsWith(term)) score += 1;
+    }
+    return score;
+  }
+
+  private void removePostings(Document document) {
+    for (val gram : gramsOf(document.values)) {
+      val posting = postings.get(gram);
+      if (posting == null) continue;
+      posting.remove(document.id);
+      if (posting.isEmpty()) postings.remove(gram);
+    }
+  }
+
+  private static Set<String> gramsOf(String[] values) {
+    final Set<String> grams = new HashSet<>();
+    for (val value : values) {
+      if (value == null) continue;
+      for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) grams.add(
+        value.substring(i, i + GRAM_LENGTH)
+      );
+    }
+    return grams;
+  }
+
+  private static class Document {
+
+    private final Object id;
+    private final String[] values;
+    private final long sequence;
+
+    private Document(Object id, String[] values, long sequence) {
+      this.id = id;
+      this.values = values;
+      this.sequence = sequence;
+    }
+  }
+
+  private static class ScoredDocument {
+
+    private final Document document;
+    private final double score;
+
+    private ScoredDocument(Document document, double score) {
+      this.document = document;
+      this.score = score;
+    }
+  }
+}
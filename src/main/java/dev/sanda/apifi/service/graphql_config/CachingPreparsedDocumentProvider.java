@@ -0,0 +1,136 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches parsed and validated GraphQL documents keyed by their query text, so
+ * that repeated queries skip the parse and validation phases entirely.
+ * The cache is bounded both by number of entries and by total query text
+ * length, and evicts least recently used documents first.
+ */
+@Slf4j
+@Component
+public class CachingPreparsedDocumentProvider
+  implements PreparsedDocumentProvider {
+
+  private final int maxEntries;
+  private final long maxWeight;
+
+  private final LinkedHashMap<String, PreparsedDocumentEntry> cache = new LinkedHashMap<>(
+    16,
+    0.75f,
+    true
+  );
+  private long weight = 0L;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  @Autowired
+  public CachingPreparsedDocumentProvider(ConfigValues configValues) {
+    this.maxEntries = configValues.getPreparsedDocumentCacheMaxEntries();
+    this.maxWeight = configValues.getPreparsedDocumentCacheMaxWeight();
+    log.info(
+      "preparsed document cache {}",
+      isEnabled()
+        ? "enabled with max " + maxEntries + " entries, max weight " + maxWeight
+        : "disabled"
+    );
+  }
+
+  @Override
+  public PreparsedDocumentEntry getDocument(
+    ExecutionInput executionInput,
+    Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction
+  ) {
+    if (!isEnabled()) return parseAndValidateFunction.apply(executionInput);
+    val query = executionInput.getQuery();
+    PreparsedDocumentEntry entry;
+    synchronized (cache) {
+      entry = cache.get(query);
+    }
+    if (entry != null) {
+      hitCount.increment();
+      return entry;
+    }
+    missCount.increment();
+    // parse outside of the lock - concurrent misses on the same query may
+    // both parse it, which is cheaper than serializing all misses
+    entry = parseAndValidateFunction.apply(executionInput);
+    put(query, entry);
+    return entry;
+  }
+
+  private void put(String query, PreparsedDocumentEntry entry) {
+    val entryWeight = weightOf(query);
+    if (entryWeight > maxWeight) return;
+    synchronized (cache) {
+      val previous = cache.put(query, entry);
+      if (previous == null) weight += entryWeight;
+      evictIfNecessary();
+    }
+  }
+
+  private void evictIfNecessary() {
+    Iterator<Map.Entry<String, PreparsedDocumentEntry>> eldest = cache
+      .entrySet()
+      .iterator();
+    while ((cache.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+      weight -= weightOf(eldest.next().getKey());
+      eldest.remove();
+      evictionCount.increment();
+    }
+  }
+
+  private static long weightOf(String query) {
+    return query.length();
+  }
+
+  public boolean isEnabled() {
+    return maxEntries > 0 && maxWeight > 0;
+  }
+
+  public void clear() {
+    synchronized (cache) {
+      cache.clear();
+      weight = 0L;
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  public int getSize() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  public long getWeight() {
+    synchronized (cache) {
+      return weight;
+    }
+  }
+}
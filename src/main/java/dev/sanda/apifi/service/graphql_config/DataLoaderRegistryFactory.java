@@ -0,0 +1,117 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import static dev.sanda.datafi.DatafiStaticUtils.getId;
+
+import dev.sanda.apifi.service.metrics.MetricType;
+import dev.sanda.apifi.service.metrics.MetricsRecorder;
+import dev.sanda.apifi.utils.ConfigValues;
+import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.dataloader.BatchLoaderWithContext;
+import org.dataloader.CacheKey;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
+import org.dataloader.stats.SimpleStatisticsCollector;
+import org.dataloader.stats.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates a fresh {@link DataLoaderRegistry} for every GraphQL execution, so
+ * that DataLoader caches are scoped to a single request rather than living for
+ * the lifetime of the application. Per loader statistics are aggregated across
+ * all requests.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class DataLoaderRegistryFactory {
+
+  private final ConfigValues configValues;
+  private final MetricsRecorder metricsRecorder;
+  private final ReflectionCache reflectionCache;
+
+  private final Map<String, SimpleStatisticsCollector> statisticsCollectors = new ConcurrentHashMap<>();
+
+  /*
+   * @Batched resolvers are keyed by their owning entities, which are commonly
+   * distinct instances of the same row. Keying the cache by entity type and id
+   * deduplicates these within a batch, regardless of entity equals/hashCode.
+   */
+  private final CacheKey<Object> entityIdCacheKey = key -> {
+    if (key == null) return null;
+    val entityType = reflectionCache
+      .getEntitiesCache()
+      .get(key.getClass().getSimpleName());
+    if (entityType == null) return key;
+    return Arrays.asList(key.getClass(), getId(key, reflectionCache));
+  };
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public DataLoaderRegistry newDataLoaderRegistry(
+    Map<String, BatchLoaderWithContext<?, ?>> batchLoaders
+  ) {
+    val registry = new DataLoaderRegistry();
+    batchLoaders.forEach((loaderName, batchLoader) ->
+      registry.register(
+        loaderName,
+        DataLoader.newDataLoader(
+          (BatchLoaderWithContext) recordingBatchSizes(loaderName, batchLoader),
+          dataLoaderOptions(loaderName)
+        )
+      )
+    );
+    return registry;
+  }
+
+  private <K, V> BatchLoaderWithContext<K, V> recordingBatchSizes(
+    String loaderName,
+    BatchLoaderWithContext<K, V> batchLoader
+  ) {
+    if (!metricsRecorder.isEnabled()) return batchLoader;
+    return (keys, environment) -> {
+      metricsRecorder.recordValue(
+        MetricType.DATALOADER_BATCH_SIZE,
+        loaderName,
+        keys.size()
+      );
+      return batchLoader.load(keys, environment);
+    };
+  }
+
+  private DataLoaderOptions dataLoaderOptions(String loaderName) {
+    val maxBatchSize = configValues.getDataLoaderMaxBatchSize();
+    val options = DataLoaderOptions
+      .newOptions()
+      .setCachingEnabled(configValues.getDataLoaderCachingEnabled())
+      .setMaxBatchSize(maxBatchSize > 0 ? maxBatchSize : -1)
+      .setCacheKeyFunction(entityIdCacheKey);
+    if (configValues.getDataLoaderStatisticsEnabled()) options.setStatisticsCollector(
+      () ->
+        statisticsCollectors.computeIfAbsent(
+          loaderName,
+          name -> new SimpleStatisticsCollector()
+        )
+    );
+    return options;
+  }
+
+  /**
+   * @return per loader statistics aggregated across all requests, including
+   * batch invocation count, keys per batch ({@link Statistics#getBatchLoadRatio()})
+   * and cache hit ratio ({@link Statistics#getCacheHitRatio()}).
+   */
+  public Map<String, Statistics> getStatistics() {
+    val result = new TreeMap<String, Statistics>();
+    statisticsCollectors.forEach((loaderName, collector) ->
+      result.put(loaderName, collector.getStatistics())
+    );
+    return Collections.unmodifiableMap(result);
+  }
+}
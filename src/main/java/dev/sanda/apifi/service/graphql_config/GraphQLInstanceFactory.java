@@ -5,5 +5,5 @@ import org.dataloader.DataLoaderRegistry;
 
 public interface GraphQLInstanceFactory {
   GraphQL getGraphQLInstance();
-  DataLoaderRegistry getDataLoaderRegistry();
+  DataLoaderRegistry newDataLoaderRegistry();
 }
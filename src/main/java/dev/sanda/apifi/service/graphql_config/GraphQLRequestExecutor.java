@@ -6,28 +6,41 @@ import graphql.ExecutionResult;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface GraphQLRequestExecutor<R> {
   default ExecutionResult executeQuery(GraphQLRequest requestRaw, R request) {
+    return getGraphQLService()
+      .getGraphQLInstance()
+      .execute(
+              toExecutionInput(requestRaw, request)
+      );
+  }
+
+  default CompletableFuture<ExecutionResult> executeQueryAsync(
+    GraphQLRequest requestRaw,
+    R request
+  ) {
+    return getGraphQLService()
+      .getGraphQLInstance()
+      .executeAsync(toExecutionInput(requestRaw, request));
+  }
+
+  default ExecutionInput toExecutionInput(GraphQLRequest requestRaw, R request) {
     Map<String, Object> variables = new HashMap<>();
     String operationName = "";
     if (requestRaw.getVariables() != null) variables =
       requestRaw.getVariables();
     if (requestRaw.getOperationName() != null) operationName =
       requestRaw.getOperationName();
-    ExecutionInput executionInput = ExecutionInput
+    return ExecutionInput
             .newExecutionInput()
             .query(requestRaw.getQuery())
             .operationName(operationName)
             .variables(variables)
-            .dataLoaderRegistry(getGraphQLService().getDataLoaderRegistry())
+            .dataLoaderRegistry(getGraphQLService().newDataLoaderRegistry())
             .context(request)
             .build();
-    return getGraphQLService()
-      .getGraphQLInstance()
-      .execute(
-              executionInput
-      );
   }
 
   GraphQLInstanceFactory getGraphQLService();
@@ -0,0 +1,24 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+
+/**
+ * Signals a use of {@code @defer} which cannot be delivered incrementally, and
+ * which is therefore rejected rather than resolved as part of its enclosing
+ * payload.
+ */
+public class IncrementalDeliveryException extends RuntimeException {
+
+  public IncrementalDeliveryException(String message) {
+    super(message);
+  }
+
+  public ExecutionResult toExecutionResult() {
+    return ExecutionResultImpl
+      .newExecutionResult()
+      .addError(GraphqlErrorBuilder.newError().message(getMessage()).build())
+      .build();
+  }
+}
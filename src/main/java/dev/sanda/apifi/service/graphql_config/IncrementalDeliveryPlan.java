@@ -0,0 +1,27 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import dev.sanda.apifi.dto.GraphQLRequest;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * A query split along its {@code @defer}-ed root fragments into an initial
+ * request, and one request per deferred fragment.
+ */
+@Value
+public class IncrementalDeliveryPlan {
+
+  GraphQLRequest initialRequest;
+  List<DeferredRequest> deferredRequests;
+
+  public boolean isIncremental() {
+    return !deferredRequests.isEmpty();
+  }
+
+  @Value
+  public static class DeferredRequest {
+
+    String label;
+    GraphQLRequest request;
+  }
+}
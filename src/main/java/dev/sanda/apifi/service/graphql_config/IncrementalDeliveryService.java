@@ -0,0 +1,474 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import dev.sanda.apifi.dto.GraphQLRequest;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryPlan.DeferredRequest;
+import dev.sanda.apifi.utils.ConfigValues;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+import graphql.Scalars;
+import graphql.introspection.Introspection.DirectiveLocation;
+import graphql.language.AstPrinter;
+import graphql.language.BooleanValue;
+import graphql.language.Definition;
+import graphql.language.Directive;
+import graphql.language.DirectivesContainer;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.Node;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.language.StringValue;
+import graphql.language.VariableDefinition;
+import graphql.language.VariableReference;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLDirective;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLSchema;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Incremental delivery of query results via {@code @defer}. Fragments on the
+ * root query type marked with {@code @defer} are split off into separate
+ * requests, which are executed concurrently with the rest of the query on the
+ * resolver executor. The initial payload is delivered as soon as it is ready,
+ * followed by a subsequent payload per deferred fragment in order of
+ * completion, using the payload format of the GraphQL incremental delivery
+ * proposal. Nested {@code @defer} fragments, and {@code @defer} in mutations,
+ * are rejected with an {@link IncrementalDeliveryException} rather than
+ * silently resolved as part of their enclosing payload. {@code @stream} is not
+ * declared at all, so queries using it fail validation.
+ * <p>
+ * Deferring a root field amounts to executing it as a separate request, with
+ * its own context, DataLoaders and transactions, so it only pays off for slow,
+ * independent root fields. Nested {@code @defer} with path addressed patches,
+ * and {@code @stream}, would require execution strategy support which the
+ * graphql-java version in use does not provide, so incremental delivery is
+ * disabled by default.
+ */
+@Slf4j
+@Service
+public class IncrementalDeliveryService {
+
+  public static final String DEFER = "defer";
+
+  private final ResolverExecutorService resolverExecutorService;
+  private final boolean enabled;
+
+  @Autowired
+  public IncrementalDeliveryService(
+    ResolverExecutorService resolverExecutorService,
+    ConfigValues configValues
+  ) {
+    this.resolverExecutorService = resolverExecutorService;
+    this.enabled = configValues.getIncrementalDeliveryEnabled();
+  }
+
+  /**
+   * @return the given schema along with the {@code @defer} directive declaration
+   */
+  public static GraphQLSchema withIncrementalDeliveryDirectives(
+    GraphQLSchema schema
+  ) {
+    val ifArgument = GraphQLArgument
+      .newArgument()
+      .name("if")
+      .type(GraphQLNonNull.nonNull(Scalars.GraphQLBoolean))
+      .defaultValueProgrammatic(true);
+    val labelArgument = GraphQLArgument
+      .newArgument()
+      .name("label")
+      .type(Scalars.GraphQLString);
+    val deferDirective = GraphQLDirective
+      .newDirective()
+      .name(DEFER)
+      .validLocations(
+        DirectiveLocation.FRAGMENT_SPREAD,
+        DirectiveLocation.INLINE_FRAGMENT
+      )
+      .argument(ifArgument)
+      .argument(labelArgument)
+      .build();
+    return GraphQLSchema
+      .newSchema(schema)
+      .additionalDirective(deferDirective)
+      .build();
+  }
+
+  /**
+   * @throws IncrementalDeliveryException if the request defers a fragment which
+   * is not directly on the root query type.
+   */
+  public IncrementalDeliveryPlan plan(GraphQLRequest request) {
+    val notIncremental = new IncrementalDeliveryPlan(
+      request,
+      Collections.emptyList()
+    );
+    if (
+      !enabled ||
+      request.getQuery() == null ||
+      !request.getQuery().contains("@" + DEFER)
+    ) return notIncremental;
+    final Document document;
+    try {
+      document = Parser.parse(request.getQuery());
+    } catch (Exception e) {
+      return notIncremental; // let the regular execution path report the syntax error
+    }
+    val operation = findOperation(document, request.getOperationName());
+    if (operation == null) return notIncremental;
+    val variables = request.getVariables() != null
+      ? request.getVariables()
+      : Collections.<String, Object>emptyMap();
+    val fragments = fragmentsOf(document);
+    val visitedFragments = new HashSet<String>();
+    if (operation.getOperation() != OperationDefinition.Operation.QUERY) {
+      rejectDefers(
+        operation.getSelectionSet(),
+        fragments,
+        visitedFragments,
+        variables
+      );
+      return notIncremental;
+    }
+    val initialSelections = new ArrayList<Selection>();
+    val deferredRequests = new ArrayList<DeferredRequest>();
+    for (val selection : operation.getSelectionSet().getSelections()) {
+      val nestedSelectionSet = selectionSetOf(
+        selection,
+        fragments,
+        visitedFragments
+      );
+      if (nestedSelectionSet != null) rejectDefers(
+        nestedSelectionSet,
+        fragments,
+        visitedFragments,
+        variables
+      );
+      val defer = deferDirective(selection);
+      if (defer == null || !isActive(defer, variables)) {
+        initialSelections.add(selection);
+        continue;
+      }
+      val deferredOperation = withSelections(
+        operation,
+        Collections.singletonList(withoutDefer(selection))
+      );
+      deferredRequests.add(
+        new DeferredRequest(
+          label(defer),
+          toRequest(document, deferredOperation, request)
+        )
+      );
+    }
+    if (deferredRequests.isEmpty()) return notIncremental;
+    if (initialSelections.isEmpty()) initialSelections.add(
+      new Field("__typename")
+    );
+    return new IncrementalDeliveryPlan(
+      toRequest(document, withSelections(operation, initialSelections), request),
+      deferredRequests
+    );
+  }
+
+  /**
+   * Executes the plan, passing the initial payload and then each subsequent
+   * payload to the given consumer as soon as it is ready, one at a time.
+   *
+   * @return a future which completes once every payload has been consumed.
+   */
+  public <R> CompletableFuture<Void> execute(
+    IncrementalDeliveryPlan plan,
+    R context,
+    GraphQLRequestExecutor<R> requestExecutor,
+    Consumer<Map<String, Object>> payloadConsumer
+  ) {
+    val remaining = new AtomicInteger(plan.getDeferredRequests().size());
+    val initialDelivery = executeAsync(
+      plan.getInitialRequest(),
+      context,
+      requestExecutor
+    )
+      .thenAccept(result -> {
+        val initialPayload = new LinkedHashMap<>(result.toSpecification());
+        initialPayload.put("hasNext", remaining.get() > 0);
+        synchronized (payloadConsumer) {
+          payloadConsumer.accept(initialPayload);
+        }
+      });
+    val deliveries = new ArrayList<CompletableFuture<Void>>();
+    deliveries.add(initialDelivery);
+    for (val deferred : plan.getDeferredRequests()) {
+      deliveries.add(
+        executeAsync(deferred.getRequest(), context, requestExecutor)
+          .thenCombine(
+            initialDelivery,
+            (result, initialDelivered) -> subsequentPayload(deferred, result)
+          )
+          .thenAccept(payload -> {
+            synchronized (payloadConsumer) {
+              payload.put("hasNext", remaining.decrementAndGet() > 0);
+              payloadConsumer.accept(payload);
+            }
+          })
+      );
+    }
+    return CompletableFuture.allOf(
+      deliveries.toArray(new CompletableFuture[0])
+    );
+  }
+
+  private <R> CompletableFuture<ExecutionResult> executeAsync(
+    GraphQLRequest request,
+    R context,
+    GraphQLRequestExecutor<R> requestExecutor
+  ) {
+    return resolverExecutorService
+      .supplyAsync(() -> requestExecutor.executeQueryAsync(request, context))
+      .exceptionally(e ->
+        ExecutionResultImpl
+          .newExecutionResult()
+          .addError(
+            GraphqlErrorBuilder.newError().message(e.getMessage()).build()
+          )
+          .build()
+      );
+  }
+
+  private static Map<String, Object> subsequentPayload(
+    DeferredRequest deferred,
+    ExecutionResult result
+  ) {
+    val incremental = new LinkedHashMap<String, Object>(
+      result.toSpecification()
+    );
+    incremental.put("path", Collections.emptyList());
+    if (deferred.getLabel() != null) incremental.put(
+      "label",
+      deferred.getLabel()
+    );
+    val payload = new LinkedHashMap<String, Object>();
+    payload.put("incremental", Collections.singletonList(incremental));
+    return payload;
+  }
+
+  private static OperationDefinition findOperation(
+    Document document,
+    String operationName
+  ) {
+    val operations = document.getDefinitionsOfType(OperationDefinition.class);
+    if (
+      operationName == null || operationName.isEmpty()
+    ) return operations.size() == 1 ? operations.get(0) : null;
+    return operations
+      .stream()
+      .filter(operation -> operationName.equals(operation.getName()))
+      .findFirst()
+      .orElse(null);
+  }
+
+  private static Directive deferDirective(Selection<?> selection) {
+    if (
+      !(selection instanceof InlineFragment) &&
+      !(selection instanceof FragmentSpread)
+    ) return null;
+    val directives = ((DirectivesContainer<?>) selection).getDirectives(DEFER);
+    return directives.isEmpty() ? null : directives.get(0);
+  }
+
+  /**
+   * Only fragments directly on the root query type can be deferred, so any
+   * other active {@code @defer} within the given selection set is rejected.
+   */
+  private static void rejectDefers(
+    SelectionSet selectionSet,
+    Map<String, FragmentDefinition> fragments,
+    Set<String> visitedFragments,
+    Map<String, Object> variables
+  ) {
+    for (val selection : selectionSet.getSelections()) {
+      val defer = deferDirective(selection);
+      if (
+        defer != null && isActive(defer, variables)
+      ) throw new IncrementalDeliveryException(
+        "@defer is only supported on fragments directly on the root query type"
+      );
+      val nestedSelectionSet = selectionSetOf(
+        selection,
+        fragments,
+        visitedFragments
+      );
+      if (nestedSelectionSet != null) rejectDefers(
+        nestedSelectionSet,
+        fragments,
+        visitedFragments,
+        variables
+      );
+    }
+  }
+
+  // the selection set of a fragment is only returned the first time it's spread, so as to terminate on cycles
+  private static SelectionSet selectionSetOf(
+    Selection<?> selection,
+    Map<String, FragmentDefinition> fragments,
+    Set<String> visitedFragments
+  ) {
+    if (selection instanceof Field) return (
+      (Field) selection
+    ).getSelectionSet();
+    if (selection instanceof InlineFragment) return (
+      (InlineFragment) selection
+    ).getSelectionSet();
+    val name = ((FragmentSpread) selection).getName();
+    val fragment = fragments.get(name);
+    return fragment != null && visitedFragments.add(name)
+      ? fragment.getSelectionSet()
+      : null;
+  }
+
+  private static Map<String, FragmentDefinition> fragmentsOf(
+    Document document
+  ) {
+    return document
+      .getDefinitionsOfType(FragmentDefinition.class)
+      .stream()
+      .collect(
+        Collectors.toMap(
+          FragmentDefinition::getName,
+          fragment -> fragment,
+          (first, duplicate) -> first
+        )
+      );
+  }
+
+  private static boolean isActive(
+    Directive defer,
+    Map<String, Object> variables
+  ) {
+    val ifArgument = defer.getArgument("if");
+    if (ifArgument == null) return true;
+    val value = ifArgument.getValue();
+    if (value instanceof BooleanValue) return ((BooleanValue) value).isValue();
+    if (value instanceof VariableReference) return !Boolean.FALSE.equals(
+      variables.get(((VariableReference) value).getName())
+    );
+    return true;
+  }
+
+  private static String label(Directive defer) {
+    val labelArgument = defer.getArgument("label");
+    return labelArgument != null &&
+      labelArgument.getValue() instanceof StringValue
+      ? ((StringValue) labelArgument.getValue()).getValue()
+      : null;
+  }
+
+  private static Selection withoutDefer(Selection selection) {
+    if (selection instanceof InlineFragment) {
+      val fragment = (InlineFragment) selection;
+      return fragment.transform(builder ->
+        builder.directives(withoutDefer(fragment.getDirectives()))
+      );
+    }
+    val spread = (FragmentSpread) selection;
+    return spread.transform(builder ->
+      builder.directives(withoutDefer(spread.getDirectives()))
+    );
+  }
+
+  private static List<Directive> withoutDefer(List<Directive> directives) {
+    return directives
+      .stream()
+      .filter(directive -> !directive.getName().equals(DEFER))
+      .collect(Collectors.toList());
+  }
+
+  private static OperationDefinition withSelections(
+    OperationDefinition operation,
+    List<Selection> selections
+  ) {
+    return operation.transform(builder ->
+      builder.selectionSet(
+        SelectionSet.newSelectionSet().selections(selections).build()
+      )
+    );
+  }
+
+  // keeps only the fragments and variables which the operation actually uses, so as to pass validation
+  private static GraphQLRequest toRequest(
+    Document document,
+    OperationDefinition operation,
+    GraphQLRequest original
+  ) {
+    val fragments = fragmentsOf(document);
+    val usedFragments = new LinkedHashMap<String, FragmentDefinition>();
+    val usedVariables = new HashSet<String>();
+    collectUsages(
+      operation.getSelectionSet(),
+      fragments,
+      usedFragments,
+      usedVariables
+    );
+    val variableDefinitions = operation
+      .getVariableDefinitions()
+      .stream()
+      .filter(definition -> usedVariables.contains(definition.getName()))
+      .collect(Collectors.<VariableDefinition>toList());
+    val prunedOperation = operation.transform(builder ->
+      builder.variableDefinitions(variableDefinitions)
+    );
+    val definitions = new ArrayList<Definition>();
+    definitions.add(prunedOperation);
+    definitions.addAll(usedFragments.values());
+    val prunedDocument = Document.newDocument().definitions(definitions).build();
+    return new GraphQLRequest(
+      AstPrinter.printAstCompact(prunedDocument),
+      operation.getName(),
+      original.getVariables(),
+      original.getExtensions()
+    );
+  }
+
+  private static void collectUsages(
+    Node<?> node,
+    Map<String, FragmentDefinition> fragments,
+    Map<String, FragmentDefinition> usedFragments,
+    Set<String> usedVariables
+  ) {
+    if (node instanceof VariableReference) usedVariables.add(
+      ((VariableReference) node).getName()
+    ); else if (node instanceof FragmentSpread) {
+      val name = ((FragmentSpread) node).getName();
+      val fragment = fragments.get(name);
+      if (fragment != null && !usedFragments.containsKey(name)) {
+        usedFragments.put(name, fragment);
+        collectUsages(fragment, fragments, usedFragments, usedVariables);
+      }
+    }
+    for (val child : node.getChildren()) collectUsages(
+      child,
+      fragments,
+      usedFragments,
+      usedVariables
+    );
+  }
+}
@@ -0,0 +1,40 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+import java.util.Collections;
+import lombok.Getter;
+
+/**
+ * Signals an automatic persisted query which could not be resolved, using the
+ * error codes expected by Apollo compatible clients.
+ */
+@Getter
+public class PersistedQueryException extends RuntimeException {
+
+  public static final String NOT_FOUND = "PERSISTED_QUERY_NOT_FOUND";
+  public static final String NOT_SUPPORTED = "PERSISTED_QUERY_NOT_SUPPORTED";
+  public static final String HASH_MISMATCH = "PERSISTED_QUERY_HASH_MISMATCH";
+  public static final String BAD_REQUEST = "BAD_REQUEST";
+
+  private final String code;
+
+  public PersistedQueryException(String code, String message) {
+    super(message);
+    this.code = code;
+  }
+
+  public ExecutionResult toExecutionResult() {
+    return ExecutionResultImpl
+      .newExecutionResult()
+      .addError(
+        GraphqlErrorBuilder
+          .newError()
+          .message(getMessage())
+          .extensions(Collections.singletonMap("code", code))
+          .build()
+      )
+      .build();
+  }
+}
@@ -0,0 +1,337 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import static dev.sanda.apifi.service.graphql_config.PersistedQueryException.*;
+
+import dev.sanda.apifi.dto.GraphQLRequest;
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.AsyncExecutorService;
+import dev.sanda.apifi.utils.ConfigValues;
+import graphql.ExecutionInput;
+import graphql.ParseAndValidate;
+import graphql.language.OperationDefinition;
+import graphql.parser.Parser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry for Apollo style automatic persisted queries. Queries are keyed by
+ * the hex encoded SHA-256 hash of their text and held in a bounded in-memory
+ * LRU cache, optionally backed by a directory of {@code <hash>.graphql} files
+ * which is used to warm the cache on startup and to recover evicted entries.
+ * The directory is bounded as well, with the oldest files deleted first.
+ * <p>
+ * Since any client may register queries, a query is only registered once it
+ * has passed validation against the schema, and, when sent over HTTP GET,
+ * once it has been found to be read only.
+ */
+@Slf4j
+@Component
+public class PersistedQueryRegistry {
+
+  private static final Pattern SHA_256_HEX = Pattern.compile("^[a-f0-9]{64}$");
+  private static final String STORE_FILE_SUFFIX = ".graphql";
+
+  private final AsyncExecutorService asyncExecutorService;
+  private final ObjectProvider<GraphQLInstanceFactory> graphQLInstanceFactory;
+  private final boolean enabled;
+  private final int maxEntries;
+  private final int maxStoredEntries;
+  private final Path storeDir;
+
+  private final LinkedHashMap<String, PersistedQuery> cache;
+  // the hashes of the stored queries, oldest first
+  private final LinkedHashSet<String> storedHashes = new LinkedHashSet<>();
+
+  @Autowired
+  public PersistedQueryRegistry(
+    ConfigValues configValues,
+    AsyncExecutorService asyncExecutorService,
+    ObjectProvider<GraphQLInstanceFactory> graphQLInstanceFactory
+  ) {
+    this.asyncExecutorService = asyncExecutorService;
+    this.graphQLInstanceFactory = graphQLInstanceFactory;
+    this.enabled = configValues.getPersistedQueriesEnabled();
+    this.maxEntries = configValues.getPersistedQueriesMaxEntries();
+    this.maxStoredEntries =
+      Math.max(1, configValues.getPersistedQueriesStoreMaxEntries());
+    val storeDirPath = configValues.getPersistedQueriesStoreDir();
+    this.storeDir =
+      storeDirPath != null && !storeDirPath.isBlank()
+        ? Paths.get(storeDirPath)
+        : null;
+    this.cache =
+      new LinkedHashMap<String, PersistedQuery>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+          Map.Entry<String, PersistedQuery> eldest
+        ) {
+          return size() > maxEntries;
+        }
+      };
+    if (enabled && storeDir != null) warmUpFromStore();
+  }
+
+  /**
+   * Resolves the query text of a request carrying an
+   * {@code extensions.persistedQuery} entry. Hash only requests are looked up,
+   * while requests carrying both the hash and the full query text are verified
+   * and, if valid, registered. Requests without the extension are returned as
+   * is.
+   *
+   * @param readOnly whether the request may only contain query operations, as
+   * is the case for requests sent over HTTP GET.
+   * @throws PersistedQueryException if the hash is unknown, malformed, or does not match the query text,
+   * or if a read only request contains other operations
+   */
+  public GraphQLRequest resolve(GraphQLRequest request, boolean readOnly) {
+    if (!request.hasPersistedQueryExtension()) {
+      if (readOnly && !isReadOnly(request.getQuery())) throw notReadOnly();
+      return request;
+    }
+    if (!enabled) throw new PersistedQueryException(
+      NOT_SUPPORTED,
+      "PersistedQueryNotSupported"
+    );
+    val hash = extractHash(request);
+    val query = request.getQuery();
+    if (query == null || query.isBlank()) {
+      val persisted = lookup(hash);
+      if (persisted == null) throw new PersistedQueryException(
+        NOT_FOUND,
+        "PersistedQueryNotFound"
+      );
+      if (readOnly && !persisted.isReadOnly()) throw notReadOnly();
+      return new GraphQLRequest(
+        persisted.getQuery(),
+        request.getOperationName(),
+        request.getVariables(),
+        request.getExtensions()
+      );
+    }
+    if (!hash.equals(sha256Hex(query))) throw new PersistedQueryException(
+      HASH_MISMATCH,
+      "provided sha does not match query"
+    );
+    val isReadOnly = isReadOnly(query);
+    if (readOnly && !isReadOnly) throw notReadOnly();
+    register(hash, query, isReadOnly);
+    return request;
+  }
+
+  public GraphQLRequest resolve(GraphQLRequest request) {
+    return resolve(request, false);
+  }
+
+  private static PersistedQueryException notReadOnly() {
+    return new PersistedQueryException(
+      BAD_REQUEST,
+      "Only query operations may be sent over HTTP GET"
+    );
+  }
+
+  private String extractHash(GraphQLRequest request) {
+    val persistedQuery = (Map<?, ?>) request
+      .getExtensions()
+      .get("persistedQuery");
+    val version = persistedQuery.get("version");
+    if (
+      version != null && !"1".equals(version.toString())
+    ) throw new PersistedQueryException(
+      NOT_SUPPORTED,
+      "Unsupported persisted query version " + version
+    );
+    val hash = persistedQuery.get("sha256Hash");
+    if (
+      !(hash instanceof String) || !SHA_256_HEX.matcher((String) hash).matches()
+    ) throw new PersistedQueryException(
+      BAD_REQUEST,
+      "Invalid persisted query sha256Hash"
+    );
+    return (String) hash;
+  }
+
+  private PersistedQuery lookup(String hash) {
+    synchronized (cache) {
+      val cached = cache.get(hash);
+      if (cached != null) return cached;
+    }
+    val stored = readFromStore(hash);
+    if (stored == null) return null;
+    val persisted = new PersistedQuery(stored, isReadOnly(stored));
+    synchronized (cache) {
+      cache.put(hash, persisted);
+    }
+    return persisted;
+  }
+
+  private void register(String hash, String query, boolean isReadOnly) {
+    synchronized (cache) {
+      if (cache.get(hash) != null) return;
+    }
+    if (!isValid(query)) return;
+    synchronized (cache) {
+      cache.put(hash, new PersistedQuery(query, isReadOnly));
+    }
+    if (storeDir != null) asyncExecutorService.executeAsync(() ->
+      writeToStore(hash, query)
+    );
+  }
+
+  // invalid queries are left to the regular execution path to report
+  private boolean isValid(String query) {
+    val instanceFactory = graphQLInstanceFactory.getIfAvailable();
+    if (instanceFactory == null) return false;
+    return !ParseAndValidate
+      .parseAndValidate(
+        instanceFactory.getGraphQLInstance().getGraphQLSchema(),
+        ExecutionInput.newExecutionInput().query(query).build()
+      )
+      .isFailure();
+  }
+
+  private void warmUpFromStore() {
+    if (!Files.isDirectory(storeDir)) return;
+    try (Stream<Path> files = Files.list(storeDir)) {
+      val stored = files
+        .filter(file ->
+          file.getFileName().toString().endsWith(STORE_FILE_SUFFIX)
+        )
+        .sorted(Comparator.comparing(PersistedQueryRegistry::lastModified))
+        .collect(Collectors.toList());
+      for (val file : stored) {
+        val fileName = file.getFileName().toString();
+        val hash = fileName.substring(
+          0,
+          fileName.length() - STORE_FILE_SUFFIX.length()
+        );
+        if (SHA_256_HEX.matcher(hash).matches()) storedHashes.add(hash);
+      }
+      evictFromStore();
+      // the most recently stored queries are loaded last, so evicted last
+      val toLoad = new ArrayList<>(storedHashes);
+      for (val hash : toLoad.subList(
+        Math.max(0, toLoad.size() - maxEntries),
+        toLoad.size()
+      )) {
+        val query = readFromStore(hash);
+        if (query != null) cache.put(
+          hash,
+          new PersistedQuery(query, isReadOnly(query))
+        );
+      }
+      log.info(
+        "loaded {} persisted queries from \"{}\"",
+        cache.size(),
+        storeDir
+      );
+    } catch (IOException e) {
+      log.error("Could not load persisted queries from " + storeDir, e);
+    }
+  }
+
+  private static FileTime lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private String readFromStore(String hash) {
+    if (storeDir == null) return null;
+    val file = storeDir.resolve(hash + STORE_FILE_SUFFIX);
+    if (!Files.isRegularFile(file)) return null;
+    try {
+      return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      log.error("Could not read persisted query " + hash, e);
+      return null;
+    }
+  }
+
+  private void writeToStore(String hash, String query) {
+    synchronized (storedHashes) {
+      try {
+        Files.createDirectories(storeDir);
+        val file = storeDir.resolve(hash + STORE_FILE_SUFFIX);
+        if (!Files.exists(file)) Files.write(
+          file,
+          query.getBytes(StandardCharsets.UTF_8)
+        );
+        storedHashes.add(hash);
+        evictFromStore();
+      } catch (IOException e) {
+        log.error("Could not store persisted query " + hash, e);
+      }
+    }
+  }
+
+  // deletes the oldest stored queries until the store is within its bounds
+  private void evictFromStore() {
+    synchronized (storedHashes) {
+      val iterator = storedHashes.iterator();
+      while (storedHashes.size() > maxStoredEntries && iterator.hasNext()) {
+        val hash = iterator.next();
+        iterator.remove();
+        try {
+          Files.deleteIfExists(storeDir.resolve(hash + STORE_FILE_SUFFIX));
+        } catch (IOException e) {
+          log.error("Could not evict persisted query " + hash, e);
+        }
+      }
+    }
+  }
+
+  private static boolean isReadOnly(String query) {
+    try {
+      return Parser
+        .parse(query)
+        .getDefinitionsOfType(OperationDefinition.class)
+        .stream()
+        .allMatch(operation ->
+          operation.getOperation() == OperationDefinition.Operation.QUERY
+        );
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  public static String sha256Hex(String query) {
+    try {
+      val digest = MessageDigest
+        .getInstance("SHA-256")
+        .digest(query.getBytes(StandardCharsets.UTF_8));
+      val hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) hex.append(String.format("%02x", b));
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Value
+  private static class PersistedQuery {
+
+    String query;
+    boolean readOnly;
+  }
+}
@@ -0,0 +1,132 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import graphql.analysis.FieldComplexityCalculator;
+import graphql.analysis.FieldComplexityEnvironment;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.QueryComplexityInfo;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLTypeUtil;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates the cost of a query before it is executed, weighting the
+ * generated endpoints by the amount of data they are likely to load:
+ * <ul>
+ *   <li>paginated batches multiply the cost of their selection by the requested page size</li>
+ *   <li>paginated batches with {@code fetchAll} multiply it by a (large) configurable penalty</li>
+ *   <li>unpaginated lists, such as entity collections, multiply it by a configurable fan-out factor</li>
+ * </ul>
+ * Every other field costs 1. Queries exceeding the configured budget are
+ * rejected before execution.
+ */
+@Slf4j
+@Component
+public class QueryCostCalculator implements FieldComplexityCalculator {
+
+  private static final String PAGE_CONTENT_FIELD = "content";
+  private static final String PAGE_TOTAL_ITEMS_FIELD = "totalItemsCount";
+  private static final String PAGE_SIZE_ARG = "pageSize";
+  private static final String FETCH_ALL_ARG = "fetchAll";
+
+  private final int maxCost;
+  private final boolean rejectOverBudget;
+  private final int defaultPageSize;
+  private final int fetchAllPenalty;
+  private final int collectionFanOut;
+
+  @Autowired
+  public QueryCostCalculator(ConfigValues configValues) {
+    this.maxCost = configValues.getQueryCostMaxCost();
+    this.rejectOverBudget = configValues.getQueryCostRejectOverBudget();
+    this.defaultPageSize = configValues.getQueryCostDefaultPageSize();
+    this.fetchAllPenalty = configValues.getQueryCostFetchAllPenalty();
+    this.collectionFanOut = configValues.getQueryCostCollectionFanOut();
+  }
+
+  public boolean isEnabled() {
+    return maxCost > 0;
+  }
+
+  public Instrumentation newInstrumentation() {
+    return new MaxQueryComplexityInstrumentation(
+      maxCost,
+      this,
+      this::onBudgetExceeded
+    );
+  }
+
+  @Override
+  public int calculate(FieldComplexityEnvironment environment, int childCost) {
+    val multiplier = isPageContent(environment)
+      ? 1 // already accounted for by the paginated field owning the page
+      : pageRequestMultiplier(environment.getArguments());
+    if (multiplier > 0) return saturatedAdd(
+      1,
+      saturatedMultiply(multiplier, childCost)
+    );
+    if (
+      GraphQLTypeUtil.isList(
+        GraphQLTypeUtil.unwrapNonNull(environment.getFieldDefinition().getType())
+      )
+    ) return saturatedAdd(1, saturatedMultiply(collectionFanOut, childCost));
+    return saturatedAdd(1, childCost);
+  }
+
+  // returns 0 if none of the field's arguments is a page request
+  private int pageRequestMultiplier(Map<String, Object> arguments) {
+    for (val argument : arguments.values()) {
+      if (!(argument instanceof Map)) continue;
+      val pageRequest = (Map<?, ?>) argument;
+      if (
+        !pageRequest.containsKey(PAGE_SIZE_ARG) &&
+        !pageRequest.containsKey(FETCH_ALL_ARG)
+      ) continue;
+      if (
+        Boolean.TRUE.equals(pageRequest.get(FETCH_ALL_ARG))
+      ) return fetchAllPenalty;
+      val pageSize = pageRequest.get(PAGE_SIZE_ARG);
+      return pageSize instanceof Number && ((Number) pageSize).intValue() > 0
+        ? ((Number) pageSize).intValue()
+        : defaultPageSize;
+    }
+    return 0;
+  }
+
+  private boolean isPageContent(FieldComplexityEnvironment environment) {
+    if (
+      !environment.getField().getName().equals(PAGE_CONTENT_FIELD)
+    ) return false;
+    val parentType = environment.getParentType();
+    return (
+      parentType instanceof GraphQLFieldsContainer &&
+      ((GraphQLFieldsContainer) parentType).getFieldDefinition(
+          PAGE_TOTAL_ITEMS_FIELD
+        ) !=
+      null
+    );
+  }
+
+  private Boolean onBudgetExceeded(QueryComplexityInfo info) {
+    log.warn(
+      "query cost of {} exceeds the maximum of {}{}",
+      info.getComplexity(),
+      maxCost,
+      rejectOverBudget ? " - rejecting query" : ""
+    );
+    return rejectOverBudget;
+  }
+
+  private static int saturatedAdd(int a, int b) {
+    return (int) Math.min(Integer.MAX_VALUE, (long) a + b);
+  }
+
+  private static int saturatedMultiply(int a, int b) {
+    return (int) Math.min(Integer.MAX_VALUE, (long) a * b);
+  }
+}
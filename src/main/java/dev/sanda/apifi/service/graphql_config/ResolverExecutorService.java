@@ -0,0 +1,96 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import static dev.sanda.apifi.utils.ApifiStaticUtils.namedDaemonThreadFactory;
+import static dev.sanda.apifi.utils.ApifiStaticUtils.tryCreateVirtualThreadPerTaskExecutor;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Executor on which asynchronously handled graphql http requests are resolved,
+ * so that servlet worker threads are not held for the duration of the
+ * resolver tree. Uses a virtual thread per task on JDK 21+ when enabled, and
+ * a fixed size platform thread pool otherwise.
+ */
+@Slf4j
+@Service
+public class ResolverExecutorService {
+
+  @Getter
+  private final ExecutorService executorService;
+
+  @Getter
+  private final boolean virtualThreads;
+
+  @Autowired
+  public ResolverExecutorService(ConfigValues configValues) {
+    ExecutorService virtualThreadsExecutor = null;
+    if (configValues.getResolverVirtualThreadsEnabled()) {
+      virtualThreadsExecutor = tryCreateVirtualThreadPerTaskExecutor();
+      if (virtualThreadsExecutor != null) log.info(
+        "resolving asynchronous graphql requests on virtual threads"
+      );
+    }
+    this.virtualThreads = virtualThreadsExecutor != null;
+    this.executorService =
+      virtualThreadsExecutor != null
+        ? virtualThreadsExecutor
+        : newResolverThreadPool(configValues.getResolverThreads());
+  }
+
+  /**
+   * Runs the given supplier on the resolver executor, carrying over the
+   * calling thread's request attributes and security context.
+   */
+  public <T> CompletableFuture<T> supplyAsync(
+    Supplier<CompletableFuture<T>> supplier
+  ) {
+    val requestAttributes = RequestContextHolder.getRequestAttributes();
+    val securityContext = SecurityContextHolder.getContext();
+    return CompletableFuture
+      .supplyAsync(
+        () -> {
+          RequestContextHolder.setRequestAttributes(requestAttributes);
+          SecurityContextHolder.setContext(securityContext);
+          try {
+            return supplier.get();
+          } finally {
+            SecurityContextHolder.clearContext();
+            RequestContextHolder.resetRequestAttributes();
+          }
+        },
+        executorService
+      )
+      .thenCompose(future -> future);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdown();
+  }
+
+  private static ExecutorService newResolverThreadPool(int threads) {
+    val poolSize = threads > 0
+      ? threads
+      : Runtime.getRuntime().availableProcessors() * 4;
+    log.info(
+      "resolving asynchronous graphql requests on {} platform threads",
+      poolSize
+    );
+    return Executors.newFixedThreadPool(
+      poolSize,
+      namedDaemonThreadFactory("apifi-resolver")
+    );
+  }
+}
@@ -0,0 +1,65 @@
+package dev.sanda.apifi.service.graphql_config;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the environment of the resolver currently executing on the calling
+ * thread, so that the service layer may tailor its queries to the selection
+ * set of the field being resolved. {@code @Batched} resolvers are dispatched
+ * outside of their data fetchers, and therefore see no environment.
+ */
+@Component
+public class SelectionSetInstrumentation
+  extends SimplePerformantInstrumentation {
+
+  private static final ThreadLocal<DataFetchingEnvironment> currentEnvironment = new ThreadLocal<>();
+
+  private final boolean enabled;
+
+  @Autowired
+  public SelectionSetInstrumentation(ConfigValues configValues) {
+    this.enabled =
+      configValues.getSelectionSetProjectionsEnabled() ||
+      configValues.getPaginationSkipUnselectedCounts() ||
+      configValues.getSetBasedWritesEnabled();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the environment of the resolver executing on the calling thread, or null if there is none
+   */
+  public static DataFetchingEnvironment currentEnvironment() {
+    return currentEnvironment.get();
+  }
+
+  @Override
+  public DataFetcher<?> instrumentDataFetcher(
+    DataFetcher<?> dataFetcher,
+    InstrumentationFieldFetchParameters parameters,
+    InstrumentationState state
+  ) {
+    if (parameters.isTrivialDataFetcher()) return dataFetcher;
+    return environment -> {
+      val previous = currentEnvironment.get();
+      currentEnvironment.set(environment);
+      try {
+        return dataFetcher.get(environment);
+      } finally {
+        if (previous == null) currentEnvironment.remove(); else currentEnvironment.set(
+          previous
+        );
+      }
+    };
+  }
+}
@@ -11,6 +11,8 @@ public enum SubscriptionEndpoints {
   ON_DELETE("Delete"),
   ON_ARCHIVE("Archive"),
   ON_DE_ARCHIVE("DeArchive"),
+  STREAM_ALL("StreamAll"),
+  IMPORT_PROGRESS("ImportProgress"),
   NONE("DUMMY_VALUE");
 
   private final String stringValue;
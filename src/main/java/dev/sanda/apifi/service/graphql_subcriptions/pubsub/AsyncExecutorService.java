@@ -1,39 +1,297 @@
 package dev.sanda.apifi.service.graphql_subcriptions.pubsub;
 
-import static dev.sanda.apifi.utils.ApifiStaticUtils.generateOptimalScheduledExecutorService;
+import static dev.sanda.apifi.utils.ApifiStaticUtils.namedDaemonThreadFactory;
+import static dev.sanda.apifi.utils.ApifiStaticUtils.tryCreateVirtualThreadPerTaskExecutor;
 
-import java.util.concurrent.ScheduledExecutorService;
+import dev.sanda.apifi.utils.ConfigValues;
+import jakarta.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Getter;
-import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+/**
+ * Runs apifi's background work on separate, independently sized pools:
+ * a scheduler which only keeps time for delayed and repeating tasks, an
+ * event delivery pool for I/O bound work such as subscription fan-out, and a
+ * logging pool. Submission is lock-free, and each pool keeps queue depth
+ * and active thread gauges.
+ */
+@Slf4j
 @Service
 public class AsyncExecutorService {
 
+  public enum Pool {
+    SCHEDULING,
+    EVENT_DELIVERY,
+    LOGGING,
+  }
+
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final ExecutorService eventDeliveryExecutor;
+  private final ExecutorService loggingExecutor;
+
   @Getter
-  @Setter
-  private ScheduledExecutorService executorService = generateOptimalScheduledExecutorService();
+  private final boolean virtualThreads;
+
+  private final Map<Pool, PoolGauges> gauges = new EnumMap<>(Pool.class);
+
+  @Autowired
+  public AsyncExecutorService(ConfigValues configValues) {
+    val availableProcessors = Runtime.getRuntime().availableProcessors();
+    this.scheduler =
+      new ScheduledThreadPoolExecutor(
+        Math.max(1, configValues.getAsyncSchedulerThreads()),
+        namedDaemonThreadFactory("apifi-scheduler")
+      );
+    this.scheduler.setRemoveOnCancelPolicy(true);
+    val virtualThreadsExecutor = configValues.getAsyncVirtualThreadsEnabled()
+      ? tryCreateVirtualThreadPerTaskExecutor()
+      : null;
+    this.virtualThreads = virtualThreadsExecutor != null;
+    if (virtualThreads) {
+      log.info("delivering events and logs on virtual threads");
+      this.eventDeliveryExecutor = virtualThreadsExecutor;
+      this.loggingExecutor = virtualThreadsExecutor;
+    } else {
+      val eventDeliveryThreads = configValues.getAsyncEventDeliveryThreads();
+      this.eventDeliveryExecutor =
+        Executors.newFixedThreadPool(
+          eventDeliveryThreads > 0
+            ? eventDeliveryThreads
+            : availableProcessors * 2,
+          namedDaemonThreadFactory("apifi-event-delivery")
+        );
+      this.loggingExecutor =
+        Executors.newFixedThreadPool(
+          Math.max(1, configValues.getAsyncLoggingThreads()),
+          namedDaemonThreadFactory("apifi-logging")
+        );
+    }
+    for (val pool : Pool.values()) gauges.put(pool, new PoolGauges());
+  }
 
-  public synchronized ScheduledFuture scheduleAsyncTask(
+  /**
+   * Schedules a task, to be run on the event delivery pool once its delay
+   * elapses so as to keep the scheduler's threads free for timekeeping.
+   * Repeating tasks are run with a fixed delay between the end of one run and
+   * the start of the next, so runs never overlap. As with
+   * {@link ScheduledThreadPoolExecutor}, a run which throws suppresses any
+   * subsequent ones, and the returned future tracks the dispatched runs
+   * rather than their dispatch.
+   */
+  public ScheduledFuture<?> scheduleAsyncTask(
     Runnable runnable,
     long delayIntervalMs,
     boolean repeat
   ) {
-    if (repeat) return executorService.scheduleWithFixedDelay(
-      runnable,
-      delayIntervalMs,
-      delayIntervalMs,
-      TimeUnit.MILLISECONDS
-    ); else return executorService.schedule(
-      runnable,
-      delayIntervalMs,
-      TimeUnit.MILLISECONDS
-    );
-  }
-
-  public synchronized void executeAsync(Runnable runnable) {
-    executorService.execute(runnable);
+    val task = new ScheduledTask(runnable, delayIntervalMs, repeat);
+    task.schedule();
+    return task;
+  }
+
+  public void executeAsync(Runnable runnable) {
+    submit(Pool.EVENT_DELIVERY, eventDeliveryExecutor, runnable);
+  }
+
+  public void logAsync(Runnable runnable) {
+    submit(Pool.LOGGING, loggingExecutor, runnable);
+  }
+
+  private void submit(Pool pool, ExecutorService executor, Runnable runnable) {
+    val poolGauges = gauges.get(pool);
+    poolGauges.queued.incrementAndGet();
+    try {
+      executor.execute(poolGauges.track(runnable));
+    } catch (RuntimeException e) {
+      poolGauges.queued.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of tasks submitted to the given pool which have not started yet.
+   * For the scheduling pool, these are the pending scheduled dispatches.
+   */
+  public int getQueueDepth(Pool pool) {
+    return pool == Pool.SCHEDULING
+      ? scheduler.getQueue().size()
+      : gauges.get(pool).queued.get();
+  }
+
+  /**
+   * @return the number of tasks currently being run by the given pool.
+   */
+  public int getActiveThreadCount(Pool pool) {
+    return gauges.get(pool).active.get();
+  }
+
+  /**
+   * Blocks until the event delivery and logging pools have no queued or running tasks.
+   */
+  @SneakyThrows
+  public void awaitIdle() {
+    while (!isIdle(Pool.EVENT_DELIVERY) || !isIdle(Pool.LOGGING)) {
+      Thread.sleep(1);
+    }
+  }
+
+  private boolean isIdle(Pool pool) {
+    return getQueueDepth(pool) == 0 && getActiveThreadCount(pool) == 0;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdown();
+    eventDeliveryExecutor.shutdown();
+    if (loggingExecutor != eventDeliveryExecutor) loggingExecutor.shutdown();
+  }
+
+  /**
+   * A task whose runs are dispatched from the scheduler to the event delivery
+   * pool. The next run of a repeating task is only scheduled once the current
+   * one returns, and cancelling the task cancels its pending dispatch and, if
+   * requested, interrupts its current run.
+   */
+  private class ScheduledTask implements ScheduledFuture<Object> {
+
+    private final Runnable runnable;
+    private final long delayIntervalMs;
+    private final boolean repeat;
+    private final CompletableFuture<Object> done = new CompletableFuture<>();
+
+    // guarded by this
+    private ScheduledFuture<?> timer;
+    private Thread runner;
+
+    private ScheduledTask(
+      Runnable runnable,
+      long delayIntervalMs,
+      boolean repeat
+    ) {
+      this.runnable = runnable;
+      this.delayIntervalMs = delayIntervalMs;
+      this.repeat = repeat;
+    }
+
+    private synchronized void schedule() {
+      if (done.isDone()) return;
+      timer =
+        scheduler.schedule(
+          gauges.get(Pool.SCHEDULING).trackActive(this::dispatch),
+          delayIntervalMs,
+          TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void dispatch() {
+      try {
+        executeAsync(this::runOnce);
+      } catch (RuntimeException e) {
+        done.completeExceptionally(e);
+      }
+    }
+
+    private void runOnce() {
+      synchronized (this) {
+        if (done.isDone()) return;
+        runner = Thread.currentThread();
+      }
+      try {
+        runnable.run();
+      } catch (Throwable e) {
+        done.completeExceptionally(e);
+        throw e;
+      } finally {
+        synchronized (this) {
+          runner = null;
+          // don't leak an interrupt from cancel() to the pool's next task
+          Thread.interrupted();
+        }
+      }
+      if (repeat) schedule(); else done.complete(null);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      synchronized (this) {
+        if (done.isDone() || !done.cancel(false)) return false;
+        if (timer != null) timer.cancel(false);
+        if (mayInterruptIfRunning && runner != null) runner.interrupt();
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return done.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return done.isDone();
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      return done.get();
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+      return done.get(timeout, unit);
+    }
+
+    @Override
+    public synchronized long getDelay(TimeUnit unit) {
+      return timer.getDelay(unit);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(
+        getDelay(TimeUnit.NANOSECONDS),
+        other.getDelay(TimeUnit.NANOSECONDS)
+      );
+    }
+  }
+
+  private static class PoolGauges {
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private Runnable track(Runnable runnable) {
+      return () -> {
+        queued.decrementAndGet();
+        trackActive(runnable).run();
+      };
+    }
+
+    private Runnable trackActive(Runnable runnable) {
+      return () -> {
+        active.incrementAndGet();
+        try {
+          runnable.run();
+        } finally {
+          active.decrementAndGet();
+        }
+      };
+    }
   }
 }
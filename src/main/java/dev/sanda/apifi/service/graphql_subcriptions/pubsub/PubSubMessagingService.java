@@ -4,6 +4,12 @@ import static dev.sanda.apifi.service.graphql_subcriptions.EntityCollectionSubsc
 import static dev.sanda.apifi.service.graphql_subcriptions.SubscriptionEndpoints.ON_DELETE;
 
 public interface PubSubMessagingService {
+  /**
+   * Prefix of topics used by apifi itself to coordinate nodes, whose payloads
+   * are plain JSON values rather than entities.
+   */
+  String INTERNAL_TOPIC_PREFIX = "apifi-internal";
+
   void publishToTopic(String topic, Object payload);
   void registerTopicHandler(String topic, PubSubTopicHandler messageHandler);
   void removeTopicHandler(String topic, String handlerId);
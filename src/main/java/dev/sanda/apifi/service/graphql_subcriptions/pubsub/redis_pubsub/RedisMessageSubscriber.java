@@ -4,6 +4,7 @@ import static dev.sanda.datafi.DatafiStaticUtils.toSingular;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.sanda.apifi.service.graphql_subcriptions.pubsub.PubSubMessagingService;
 import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
 import java.util.ArrayList;
 import lombok.Data;
@@ -34,6 +35,9 @@ public class RedisMessageSubscriber implements MessageListener {
   }
 
   private Class getTargetEntityType(ReflectionCache reflectionCache) {
+    if (
+      topic.getTopic().startsWith(PubSubMessagingService.INTERNAL_TOPIC_PREFIX)
+    ) return null;
     try {
       val topicPrefix = topic
         .getTopic()
@@ -71,6 +75,10 @@ public class RedisMessageSubscriber implements MessageListener {
     try {
       val mapper = new ObjectMapper();
       val tree = mapper.readTree(getSerializedPayload(message));
+      if (targetEntityType == null) return mapper.treeToValue(
+        tree,
+        Object.class
+      );
       if (tree.isArray()) {
         val resultList = new ArrayList<>();
         for (val obj : tree) resultList.add(
@@ -2,6 +2,9 @@ package dev.sanda.apifi.service.graphql_subcriptions.sse;
 
 import dev.sanda.apifi.dto.GraphQLRequest;
 import dev.sanda.apifi.service.graphql_config.GraphQLRequestExecutor;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryException;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryPlan;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryService;
 import dev.sanda.apifi.utils.ConfigValues;
 import graphql.ExecutionResult;
 import java.util.Map;
@@ -9,6 +12,7 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.reactivestreams.Publisher;
@@ -23,6 +27,7 @@ public class SseSubscriptionsHandler {
 
   private final GraphQLRequestExecutor<HttpServletRequest> requestExecutor;
   private final ConfigValues configValues;
+  private final IncrementalDeliveryService incrementalDeliveryService;
 
   public SseEmitter handleSubscriptionRequest(
     GraphQLRequest graphQLRequest,
@@ -35,6 +40,17 @@ public class SseSubscriptionsHandler {
       ? timeoutParam
       : configValues.getSseTimeout();
     val emitter = new SseEmitter(timeout);
+    final IncrementalDeliveryPlan plan;
+    try {
+      plan = incrementalDeliveryService.plan(graphQLRequest);
+    } catch (IncrementalDeliveryException e) {
+      rejectIncrementalDelivery(e, emitter);
+      return emitter;
+    }
+    if (plan.isIncremental()) {
+      handleIncrementalDelivery(plan, emitter, httpServletRequest);
+      return emitter;
+    }
     val executionResult = requestExecutor.executeQuery(
       graphQLRequest,
       httpServletRequest
@@ -48,6 +64,62 @@ public class SseSubscriptionsHandler {
     return emitter;
   }
 
+  // @defer - each payload is sent as an EXECUTION_RESULT event, followed by a COMPLETE event
+  private void handleIncrementalDelivery(
+    IncrementalDeliveryPlan plan,
+    SseEmitter emitter,
+    HttpServletRequest httpServletRequest
+  ) {
+    log.info("handling incremental delivery request");
+    incrementalDeliveryService
+      .execute(
+        plan,
+        httpServletRequest,
+        requestExecutor,
+        payload -> sendEvent(emitter, "EXECUTION_RESULT", payload)
+      )
+      .thenRun(() ->
+        sendEvent(emitter, "COMPLETE", "{\"name\": \"COMPLETED_STREAM\"}")
+      )
+      .whenComplete((completed, e) -> {
+        if (e == null) {
+          emitter.complete();
+          return;
+        }
+        log.error("incremental delivery failed", e);
+        emitter.completeWithError(e);
+      });
+  }
+
+  // unsupported uses of @defer are answered with a single EXECUTION_RESULT event carrying the error
+  private void rejectIncrementalDelivery(
+    IncrementalDeliveryException exception,
+    SseEmitter emitter
+  ) {
+    try {
+      sendEvent(
+        emitter,
+        "EXECUTION_RESULT",
+        exception.toExecutionResult().toSpecification()
+      );
+      sendEvent(emitter, "COMPLETE", "{\"name\": \"COMPLETED_STREAM\"}");
+      emitter.complete();
+    } catch (Exception e) {
+      emitter.completeWithError(e);
+    }
+  }
+
+  @SneakyThrows
+  private static void sendEvent(SseEmitter emitter, String name, Object data) {
+    emitter.send(
+      SseEmitter
+        .event()
+        .id(String.valueOf(System.currentTimeMillis()))
+        .name(name)
+        .data(data)
+    );
+  }
+
   private void handleSubscription(ExecutionResult result, SseEmitter emitter) {
     log.info("handling subscription request");
     val publisher = (Publisher<ExecutionResult>) result.getData();
@@ -13,7 +13,6 @@ import dev.sanda.datafi.reflection.runtime_services.ReflectionCache;
 import dev.sanda.datafi.service.DataManager;
 import graphql.ExecutionResult;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -174,15 +173,7 @@ public class TestSubscriberImplementation
     return this;
   }
 
-  @SneakyThrows
-  @SuppressWarnings("ResultOfMethodCallIgnored")
   private void waitForActiveThreads() {
-    asyncExecutorService.getExecutorService().shutdown();
-    asyncExecutorService
-      .getExecutorService()
-      .awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-    asyncExecutorService.setExecutorService(
-      generateOptimalScheduledExecutorService()
-    );
+    asyncExecutorService.awaitIdle();
   }
 }
@@ -88,7 +88,7 @@ public class TestSubscriptionsHandler {
       .execute(
         ExecutionInput
           .newExecutionInput()
-          .dataLoaderRegistry(graphQLService.getDataLoaderRegistry())
+          .dataLoaderRegistry(graphQLService.newDataLoaderRegistry())
           .query(request.getQuery())
           .variables(request.getVariables())
           .build()
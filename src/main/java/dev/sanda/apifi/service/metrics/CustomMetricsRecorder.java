@@ -0,0 +1,3 @@
+package dev.sanda.apifi.service.metrics;
+
+public interface CustomMetricsRecorder extends MetricsRecorder {}
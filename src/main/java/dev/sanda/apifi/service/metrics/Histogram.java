@@ -0,0 +1,96 @@
+package dev.sanda.apifi.service.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.val;
+
+/**
+ * Lock-free log-linear histogram of non-negative long values, in the spirit
+ * of HdrHistogram. Values below 64 are counted exactly, and larger values
+ * are counted in 32 linear sub-buckets per power of two, bounding the
+ * relative error of reported percentiles to about 3%.
+ */
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int EXACT_VALUES = SUB_BUCKETS * 2;
+  private static final int BUCKETS =
+    EXACT_VALUES + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder totalCount = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong max = new AtomicLong(0);
+
+  public void record(long value) {
+    if (value < 0) value = 0;
+    counts.incrementAndGet(bucketIndex(value));
+    totalCount.increment();
+    sum.add(value);
+    if (value < min.get()) min.accumulateAndGet(value, Math::min);
+    if (value > max.get()) max.accumulateAndGet(value, Math::max);
+  }
+
+  public long getCount() {
+    return totalCount.sum();
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the (approximate) value at the given percentile, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    val count = getCount();
+    if (count == 0) return 0;
+    val rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) return Math.min(bucketValue(i), max.get());
+    }
+    return max.get();
+  }
+
+  /**
+   * @param unitDivisor divides each reported value, e.g. 1_000_000 to report nanoseconds as milliseconds
+   */
+  public Map<String, Object> snapshot(double unitDivisor) {
+    val snapshot = new LinkedHashMap<String, Object>();
+    val count = getCount();
+    snapshot.put("count", count);
+    if (count == 0) return snapshot;
+    snapshot.put("mean", sum.sum() / (double) count / unitDivisor);
+    snapshot.put("min", min.get() / unitDivisor);
+    snapshot.put("p50", getValueAtPercentile(50) / unitDivisor);
+    snapshot.put("p90", getValueAtPercentile(90) / unitDivisor);
+    snapshot.put("p99", getValueAtPercentile(99) / unitDivisor);
+    snapshot.put("p999", getValueAtPercentile(99.9) / unitDivisor);
+    snapshot.put("max", max.get() / unitDivisor);
+    return snapshot;
+  }
+
+  private static int bucketIndex(long value) {
+    if (value < EXACT_VALUES) return (int) value;
+    val magnitude = 63 - Long.numberOfLeadingZeros(value);
+    val shift = magnitude - SUB_BUCKET_BITS;
+    val subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return (
+      EXACT_VALUES + (magnitude - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket
+    );
+  }
+
+  // the midpoint of the range of values counted by the bucket
+  private static long bucketValue(int index) {
+    if (index < EXACT_VALUES) return index;
+    val offset = index - EXACT_VALUES;
+    val magnitude = offset / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+    val shift = magnitude - SUB_BUCKET_BITS;
+    val lowerBound = ((long) (offset % SUB_BUCKETS + SUB_BUCKETS)) << shift;
+    return lowerBound + ((1L << shift) >> 1);
+  }
+}
@@ -0,0 +1,79 @@
+package dev.sanda.apifi.service.metrics;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.val;
+
+/**
+ * The default {@link MetricsRecorder}, keeping an in-memory {@link Histogram}
+ * per metric type and name. Latencies are reported in milliseconds. Since
+ * names such as operation names may be chosen by clients, the number of
+ * distinct names per metric type is capped, and recordings of any further
+ * names are added to a single {@value #OVERFLOW_NAME} histogram.
+ */
+public class HistogramMetricsRecorder implements MetricsRecorder {
+
+  public static final String OVERFLOW_NAME = "<other>";
+
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  private final int maxNamesPerType;
+
+  private final Map<MetricType, ConcurrentHashMap<String, Histogram>> histograms = new EnumMap<>(
+    MetricType.class
+  );
+
+  public HistogramMetricsRecorder(int maxNamesPerType) {
+    this.maxNamesPerType = Math.max(1, maxNamesPerType);
+    for (val type : MetricType.values()) histograms.put(
+      type,
+      new ConcurrentHashMap<>()
+    );
+  }
+
+  @Override
+  public void recordLatency(MetricType type, String name, long durationNanos) {
+    histogram(type, name).record(durationNanos);
+  }
+
+  @Override
+  public void recordValue(MetricType type, String name, long value) {
+    histogram(type, name).record(value);
+  }
+
+  @Override
+  public Map<String, Object> snapshot() {
+    val snapshot = new LinkedHashMap<String, Object>();
+    histograms.forEach(
+      (type, byName) -> {
+        val unitDivisor = type == MetricType.DATALOADER_BATCH_SIZE
+          ? 1.0
+          : NANOS_PER_MILLI;
+        val typeSnapshot = new TreeMap<String, Object>();
+        byName.forEach(
+          (name, histogram) ->
+            typeSnapshot.put(name, histogram.snapshot(unitDivisor))
+        );
+        snapshot.put(type.name(), typeSnapshot);
+      }
+    );
+    return snapshot;
+  }
+
+  public Histogram getHistogram(MetricType type, String name) {
+    return histograms.get(type).get(name);
+  }
+
+  private Histogram histogram(MetricType type, String name) {
+    val byName = histograms.get(type);
+    val histogram = byName.get(name);
+    if (histogram != null) return histogram;
+    return byName.computeIfAbsent(
+      byName.size() < maxNamesPerType ? name : OVERFLOW_NAME,
+      key -> new Histogram()
+    );
+  }
+}
@@ -0,0 +1,10 @@
+package dev.sanda.apifi.service.metrics;
+
+public enum MetricType {
+  OPERATION_LATENCY,
+  FIELD_LATENCY,
+  DATALOADER_BATCH_SIZE,
+  API_LOGIC_LATENCY,
+  API_PRE_HOOK_LATENCY,
+  API_POST_HOOK_LATENCY
+}
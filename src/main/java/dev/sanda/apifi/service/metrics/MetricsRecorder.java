@@ -0,0 +1,28 @@
+package dev.sanda.apifi.service.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Receives the timings and sizes recorded along the request path. Implement
+ * {@link CustomMetricsRecorder} in order to forward these to a metrics
+ * backend of choice, instead of the built in {@link HistogramMetricsRecorder}.
+ */
+public interface MetricsRecorder {
+  void recordLatency(MetricType type, String name, long durationNanos);
+  void recordValue(MetricType type, String name, long value);
+
+  /**
+   * @return whether anything is being recorded at all, so that callers may skip taking timings when not
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * @return a JSON serializable view of the recorded metrics, as served by the metrics endpoint
+   */
+  default Map<String, Object> snapshot() {
+    return Collections.emptyMap();
+  }
+}
@@ -0,0 +1,55 @@
+package dev.sanda.apifi.service.metrics;
+
+import dev.sanda.apifi.utils.ConfigValues;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class MetricsRecorderFactory {
+
+  private final CustomMetricsRecorder customMetricsRecorder;
+  private final ConfigValues configValues;
+
+  @Autowired
+  public MetricsRecorderFactory(
+    @Autowired(required = false) CustomMetricsRecorder customMetricsRecorder,
+    ConfigValues configValues
+  ) {
+    this.customMetricsRecorder = customMetricsRecorder;
+    this.configValues = configValues;
+  }
+
+  @Bean
+  @Primary
+  public MetricsRecorder metricsRecorder() {
+    if (customMetricsRecorder != null) {
+      return customMetricsRecorder;
+    } else if (configValues.getMetricsEnabled()) {
+      return new HistogramMetricsRecorder(
+        configValues.getMetricsMaxNamesPerType()
+      );
+    } else {
+      return new NoOpMetricsRecorder();
+    }
+  }
+
+  private static class NoOpMetricsRecorder implements MetricsRecorder {
+
+    @Override
+    public void recordLatency(
+      MetricType type,
+      String name,
+      long durationNanos
+    ) {}
+
+    @Override
+    public void recordValue(MetricType type, String name, long value) {}
+
+    @Override
+    public boolean isEnabled() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package dev.sanda.apifi.service.metrics;
+
+import dev.sanda.apifi.service.api_hooks.ApiHooks;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+/**
+ * Wraps {@link ApiHooks} so as to record the time spent in each pre and post
+ * hook, keyed by {@code Entity.hookName}.
+ */
+public abstract class TimedApiHooks {
+
+  @SuppressWarnings("unchecked")
+  public static <T> ApiHooks<T> wrap(
+    ApiHooks<T> apiHooks,
+    String entityName,
+    MetricsRecorder metricsRecorder
+  ) {
+    if (apiHooks == null || !metricsRecorder.isEnabled()) return apiHooks;
+    return (ApiHooks<T>) Proxy.newProxyInstance(
+      ApiHooks.class.getClassLoader(),
+      new Class<?>[] { ApiHooks.class },
+      new TimingInvocationHandler(apiHooks, entityName, metricsRecorder)
+    );
+  }
+
+  /**
+   * @return the hooks wrapped by {@link #wrap}, or the given hooks if they are
+   * not wrapped.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> ApiHooks<T> unwrap(ApiHooks<T> apiHooks) {
+    if (
+      apiHooks == null || !Proxy.isProxyClass(apiHooks.getClass())
+    ) return apiHooks;
+    val handler = Proxy.getInvocationHandler(apiHooks);
+    return handler instanceof TimingInvocationHandler
+      ? (ApiHooks<T>) ((TimingInvocationHandler) handler).apiHooks
+      : apiHooks;
+  }
+
+  @RequiredArgsConstructor
+  private static class TimingInvocationHandler implements InvocationHandler {
+
+    private final ApiHooks<?> apiHooks;
+    private final String entityName;
+    private final MetricsRecorder metricsRecorder;
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+      val methodName = method.getName();
+      val type = methodName.startsWith("pre")
+        ? MetricType.API_PRE_HOOK_LATENCY
+        : methodName.startsWith("post")
+          ? MetricType.API_POST_HOOK_LATENCY
+          : null;
+      val start = System.nanoTime();
+      try {
+        return method.invoke(apiHooks, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      } finally {
+        if (type != null) metricsRecorder.recordLatency(
+          type,
+          entityName + "." + methodName,
+          System.nanoTime() - start
+        );
+      }
+    }
+  }
+}
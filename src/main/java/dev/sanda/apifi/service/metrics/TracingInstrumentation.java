@@ -0,0 +1,77 @@
+package dev.sanda.apifi.service.metrics;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the latency of every validated operation keyed by its name, and of
+ * every non trivial field fetch (i.e. resolver invocation) keyed by its
+ * {@code Type.field} coordinates. Operations are only recorded once they have
+ * passed validation, so that requests which fail to parse or validate cannot
+ * add histograms.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class TracingInstrumentation extends SimplePerformantInstrumentation {
+
+  private static final String ANONYMOUS_OPERATION = "<anonymous>";
+
+  private final MetricsRecorder metricsRecorder;
+
+  public boolean isEnabled() {
+    return metricsRecorder.isEnabled();
+  }
+
+  @Override
+  public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+    InstrumentationExecuteOperationParameters parameters,
+    InstrumentationState state
+  ) {
+    val operationName = parameters
+      .getExecutionContext()
+      .getOperationDefinition()
+      .getName();
+    val name = operationName == null || operationName.isEmpty()
+      ? ANONYMOUS_OPERATION
+      : operationName;
+    val start = System.nanoTime();
+    return SimpleInstrumentationContext.whenCompleted(
+      (result, throwable) ->
+        metricsRecorder.recordLatency(
+          MetricType.OPERATION_LATENCY,
+          name,
+          System.nanoTime() - start
+        )
+    );
+  }
+
+  @Override
+  public InstrumentationContext<Object> beginFieldFetch(
+    InstrumentationFieldFetchParameters parameters,
+    InstrumentationState state
+  ) {
+    if (parameters.isTrivialDataFetcher()) return SimpleInstrumentationContext.noOp();
+    val coordinates =
+      parameters.getExecutionStepInfo().getObjectType().getName() +
+      "." +
+      parameters.getField().getName();
+    val start = System.nanoTime();
+    return SimpleInstrumentationContext.whenCompleted(
+      (result, throwable) ->
+        metricsRecorder.recordLatency(
+          MetricType.FIELD_LATENCY,
+          coordinates,
+          System.nanoTime() - start
+        )
+    );
+  }
+}
@@ -8,6 +8,7 @@ import dev.sanda.apifi.annotations.ElementCollectionApi;
 import dev.sanda.apifi.annotations.EntityCollectionApi;
 import dev.sanda.apifi.annotations.MapElementCollectionApi;
 import dev.sanda.apifi.code_generator.entity.element_api_spec.EntityGraphQLApiSpec;
+import dev.sanda.apifi.dto.Connection;
 import dev.sanda.apifi.service.api_hooks.*;
 import dev.sanda.datafi.annotations.EntityApiSpec;
 import dev.sanda.datafi.dto.Page;
@@ -22,6 +23,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.val;
 import org.atteo.evo.inflector.English;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import reactor.core.publisher.FluxSink;
 
 import javax.annotation.processing.ProcessingEnvironment;
@@ -38,8 +41,11 @@ import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -288,6 +294,23 @@ public abstract class ApifiStaticUtils {
     );
   }
 
+  public static ParameterizedTypeName connectionType(TypeElement entity) {
+    return ParameterizedTypeName.get(
+      ClassName.get(Connection.class),
+      ClassName.get(entity)
+    );
+  }
+
+  public static ParameterizedTypeName connectionType(
+    VariableElement collection
+  ) {
+    val collectionType = getCollectionType(collection);
+    return ParameterizedTypeName.get(
+      ClassName.get(Connection.class),
+      ClassName.bestGuess(collectionType)
+    );
+  }
+
   public static ParameterizedTypeName mapPageType(VariableElement map) {
     val collectionType = getMapValueType(map);
     return ParameterizedTypeName.get(
@@ -871,6 +894,52 @@ public abstract class ApifiStaticUtils {
     );
   }
 
+  /**
+   * @return a virtual thread per task executor if running on JDK 21+, or null otherwise.
+   * Looked up reflectively so as to remain compatible with older runtimes.
+   */
+  public static ExecutorService tryCreateVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+        .getMethod("newVirtualThreadPerTaskExecutor")
+        .invoke(null);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  public static ThreadFactory namedDaemonThreadFactory(String namePrefix) {
+    val threadCount = new AtomicInteger();
+    return runnable -> {
+      val thread = new Thread(
+        runnable,
+        namePrefix + "-" + threadCount.incrementAndGet()
+      );
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Runs the action once the current transaction has committed, and not at
+   * all if it rolls back. Outside of a synchronized transaction, the action is
+   * run immediately.
+   */
+  public static void runAfterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+      new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      }
+    );
+  }
+
   public static <T> ArrayList<T> tryReloadCollection(
     Collection<T> collection,
     DataManager<T> dataManager,
@@ -13,6 +13,192 @@ public class ConfigValues {
   @Value("#{new Boolean('${datafi.logging-enabled:false}')}")
   private Boolean datafiLoggingEnabled;
 
+  // parsed & validated graphql documents cache
+  @Value(
+    "#{new Integer('${apifi.preparsed-document-cache.max-entries:1000}')}"
+  )
+  private Integer preparsedDocumentCacheMaxEntries;
+
+  @Value(
+    "#{new Long('${apifi.preparsed-document-cache.max-weight:4194304}')}"
+  )
+  private Long preparsedDocumentCacheMaxWeight;
+
+  // per request dataloaders
+  @Value("#{new Integer('${apifi.dataloader.max-batch-size:0}')}")
+  private Integer dataLoaderMaxBatchSize;
+
+  @Value("#{new Boolean('${apifi.dataloader.caching-enabled:true}')}")
+  private Boolean dataLoaderCachingEnabled;
+
+  @Value("#{new Boolean('${apifi.dataloader.statistics-enabled:true}')}")
+  private Boolean dataLoaderStatisticsEnabled;
+
+  @Value("#{new Integer('${apifi.dataloader.max-in-clause-size:1000}')}")
+  private Integer maxInClauseSize;
+
+  // automatic persisted queries
+  @Value("#{new Boolean('${apifi.persisted-queries.enabled:false}')}")
+  private Boolean persistedQueriesEnabled;
+
+  @Value("#{new Integer('${apifi.persisted-queries.max-entries:5000}')}")
+  private Integer persistedQueriesMaxEntries;
+
+  @Value("${apifi.persisted-queries.store-dir:}")
+  private String persistedQueriesStoreDir;
+
+  @Value(
+    "#{new Integer('${apifi.persisted-queries.store-max-entries:10000}')}"
+  )
+  private Integer persistedQueriesStoreMaxEntries;
+
+  // http responses
+  @Value("#{new Boolean('${apifi.streaming-response.enabled:false}')}")
+  private Boolean streamingResponseEnabled;
+
+  // batched multi-operation http requests
+  @Value("#{new Boolean('${apifi.batched-requests.enabled:true}')}")
+  private Boolean batchedRequestsEnabled;
+
+  @Value("#{new Integer('${apifi.batched-requests.max-batch-size:20}')}")
+  private Integer batchedRequestsMaxBatchSize;
+
+  // incremental delivery via @defer
+  @Value("#{new Boolean('${apifi.incremental-delivery.enabled:false}')}")
+  private Boolean incrementalDeliveryEnabled;
+
+  // query cost analysis
+  @Value("#{new Integer('${apifi.query-cost.max-cost:0}')}")
+  private Integer queryCostMaxCost;
+
+  @Value("#{new Boolean('${apifi.query-cost.reject-over-budget:true}')}")
+  private Boolean queryCostRejectOverBudget;
+
+  @Value("#{new Integer('${apifi.query-cost.default-page-size:25}')}")
+  private Integer queryCostDefaultPageSize;
+
+  @Value("#{new Integer('${apifi.query-cost.fetch-all-penalty:1000}')}")
+  private Integer queryCostFetchAllPenalty;
+
+  @Value("#{new Integer('${apifi.query-cost.collection-fan-out:10}')}")
+  private Integer queryCostCollectionFanOut;
+
+  // asynchronous http request execution
+  @Value("#{new Boolean('${apifi.async-execution.enabled:false}')}")
+  private Boolean asyncExecutionEnabled;
+
+  @Value("#{new Integer('${apifi.async-execution.resolver-threads:0}')}")
+  private Integer resolverThreads;
+
+  @Value("#{new Boolean('${apifi.async-execution.virtual-threads:true}')}")
+  private Boolean resolverVirtualThreadsEnabled;
+
+  // background task execution pools
+  @Value("#{new Integer('${apifi.async.scheduler-threads:1}')}")
+  private Integer asyncSchedulerThreads;
+
+  @Value("#{new Integer('${apifi.async.event-delivery-threads:0}')}")
+  private Integer asyncEventDeliveryThreads;
+
+  @Value("#{new Integer('${apifi.async.logging-threads:1}')}")
+  private Integer asyncLoggingThreads;
+
+  @Value("#{new Boolean('${apifi.async.virtual-threads:false}')}")
+  private Boolean asyncVirtualThreadsEnabled;
+
+  // selection set aware fetch graphs
+  @Value(
+    "#{new Boolean('${apifi.selection-set-projections.enabled:false}')}"
+  )
+  private Boolean selectionSetProjectionsEnabled;
+
+  @Value(
+    "#{new Integer('${apifi.selection-set-projections.max-fetch-depth:2}')}"
+  )
+  private Integer selectionSetProjectionsMaxFetchDepth;
+
+  // offset pagination count queries
+  @Value(
+    "#{new Boolean('${apifi.pagination.skip-unselected-counts:true}')}"
+  )
+  private Boolean paginationSkipUnselectedCounts;
+
+  // chunked streaming of unbounded queries
+  @Value("#{new Integer('${apifi.streaming.chunk-size:500}')}")
+  private Integer streamingChunkSize;
+
+  @Value("#{new Integer('${apifi.streaming.max-duration-seconds:600}')}")
+  private Integer streamingMaxDurationSeconds;
+
+  @Value("#{new Boolean('${apifi.streaming.ndjson.enabled:true}')}")
+  private Boolean ndjsonStreamingEnabled;
+
+  // generated jpql query cache
+  @Value("#{new Boolean('${apifi.query-cache.named-queries.enabled:true}')}")
+  private Boolean namedQueriesEnabled;
+
+  // embedded free text search index
+  @Value("#{new Boolean('${apifi.free-text-search.index.enabled:false}')}")
+  private Boolean freeTextSearchIndexEnabled;
+
+  @Value(
+    "#{new Long('${apifi.free-text-search.index.rebuild-interval-ms:3600000}')}"
+  )
+  private Long freeTextSearchIndexRebuildInterval;
+
+  @Value("${apifi.free-text-search.index.segment-dir:}")
+  private String freeTextSearchIndexSegmentDir;
+
+  // jdbc batched bulk writes
+  @Value("#{new Boolean('${apifi.bulk-writes.enabled:false}')}")
+  private Boolean bulkWritesEnabled;
+
+  @Value("#{new Integer('${apifi.bulk-writes.batch-size:500}')}")
+  private Integer bulkWritesBatchSize;
+
+  @Value("#{new Integer('${apifi.bulk-writes.threshold:100}')}")
+  private Integer bulkWritesThreshold;
+
+  @Value("#{new Boolean('${apifi.bulk-writes.set-based.enabled:false}')}")
+  private Boolean setBasedWritesEnabled;
+
+  // coalescing of concurrent single instance writes
+  @Value("#{new Boolean('${apifi.write-coalescing.enabled:false}')}")
+  private Boolean writeCoalescingEnabled;
+
+  @Value("#{new Integer('${apifi.write-coalescing.max-batch-size:100}')}")
+  private Integer writeCoalescingMaxBatchSize;
+
+  // streaming imports
+  @Value("#{new Boolean('${apifi.import.enabled:false}')}")
+  private Boolean importEnabled;
+
+  @Value("#{new Integer('${apifi.import.chunk-size:500}')}")
+  private Integer importChunkSize;
+
+  // streaming exports
+  @Value("#{new Boolean('${apifi.export.enabled:false}')}")
+  private Boolean exportEnabled;
+
+  // in memory entity counters
+  @Value("#{new Boolean('${apifi.entity-counters.enabled:false}')}")
+  private Boolean entityCountersEnabled;
+
+  @Value(
+    "#{new Long('${apifi.entity-counters.reconcile-interval-ms:300000}')}"
+  )
+  private Long entityCountersReconcileInterval;
+
+  @Value("#{new Boolean('${apifi.entity-counters.sync-enabled:false}')}")
+  private Boolean entityCountersSyncEnabled;
+
+  // resolver latency metrics
+  @Value("#{new Boolean('${apifi.metrics.enabled:false}')}")
+  private Boolean metricsEnabled;
+
+  @Value("#{new Integer('${apifi.metrics.max-names-per-type:1000}')}")
+  private Integer metricsMaxNamesPerType;
+
   // graphql subscriptions over apollo websockets
   @Value("#{new Boolean('${apifi.subscriptions.ws.enabled:true}')}")
   private Boolean wsEnabled;
@@ -7,6 +7,16 @@ public class ControllerEndpointsConstants {
     "${apifi.subscriptions.sse-endpoint:/graphql/sse}";
   public static final String WS_ENDPOINT =
     "${apifi.subscriptions.ws-endpoint:/graphql}";
+  public static final String METRICS_ENDPOINT =
+    "${apifi.metrics.endpoint:/graphql/metrics}";
+  public static final String METRICS_ENDPOINT_ENABLED =
+    "apifi.metrics.endpoint-enabled";
+  public static final String IMPORT_ENDPOINT =
+    "${apifi.import.endpoint:/graphql/import}";
+  public static final String IMPORT_ENABLED = "apifi.import.enabled";
+  public static final String EXPORT_ENDPOINT =
+    "${apifi.export.endpoint:/graphql/export}";
+  public static final String EXPORT_ENABLED = "apifi.export.enabled";
   public static final String WS_ENABLED = "apifi.subscriptions.ws.enabled";
   public static final String[] WS_HEADERS = {
     "Connection!=Upgrade",
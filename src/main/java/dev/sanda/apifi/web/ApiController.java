@@ -1,25 +1,53 @@
 package dev.sanda.apifi.web;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import dev.sanda.apifi.dto.GraphQLRequest;
 import dev.sanda.apifi.service.graphql_config.GraphQLRequestExecutor;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryException;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryPlan;
+import dev.sanda.apifi.service.graphql_config.IncrementalDeliveryService;
+import dev.sanda.apifi.service.graphql_config.PersistedQueryException;
+import dev.sanda.apifi.service.graphql_config.PersistedQueryRegistry;
+import dev.sanda.apifi.service.graphql_config.ResolverExecutorService;
 import dev.sanda.apifi.service.graphql_subcriptions.sse.SseSubscriptionsHandler;
+import dev.sanda.apifi.utils.ConfigValues;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.val;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
 
+import java.io.OutputStream;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static dev.sanda.apifi.utils.ControllerEndpointsConstants.*;
+import static dev.sanda.apifi.web.ExecutionResultWriter.MULTIPART_CONTENT_TYPE;
+import static dev.sanda.apifi.web.ExecutionResultWriter.NDJSON_CONTENT_TYPE;
 
 @RestController
 @AllArgsConstructor(onConstructor_ = @Autowired)
@@ -28,17 +56,275 @@ public class ApiController {
   private final GraphQLRequestExecutor<HttpServletRequest> httpGraphQLRequestExecutor;
   private final GraphQLRequestExecutor<WebSocketSession> webSocketGraphQLRequestExecutor;
   private final SseSubscriptionsHandler sseSubscriptionsHandler;
+  private final PersistedQueryRegistry persistedQueryRegistry;
+  private final ResolverExecutorService resolverExecutorService;
+  private final ConfigValues configValues;
+  private final ExecutionResultWriter executionResultWriter;
+  private final IncrementalDeliveryService incrementalDeliveryService;
 
+  // returns either the result itself or a CompletableFuture thereof, depending on whether async execution is enabled.
+  // if streaming responses are enabled, the ExecutionResult is returned as is, and serialized by the
+  // ExecutionResultHttpMessageConverter. newline delimited JSON is written straight to the response instead.
+  // a JSON array of requests is executed as a batch, and answered with an array of results in the same order.
   @PostMapping(PRIMARY_ENDPOINT)
-  public Map<String, Object> httpEndpoint(
-    @RequestBody GraphQLRequest graphQLRequest,
+  public Object httpEndpoint(
+    @RequestBody JsonNode requestBody,
+    HttpServletRequest httpServletRequest,
+    HttpServletResponse httpServletResponse
+  ) {
+    if (requestBody.isArray()) return executeBatch(
+      (ArrayNode) requestBody,
+      httpServletRequest
+    );
+    try {
+      val graphQLRequest = persistedQueryRegistry.resolve(
+        toGraphQLRequest(requestBody)
+      );
+      if (acceptsNdjson(httpServletRequest)) {
+        writeNdjsonResponse(
+          graphQLRequest,
+          httpServletRequest,
+          httpServletResponse
+        );
+        return null;
+      }
+      if (acceptsMultipart(httpServletRequest)) {
+        val plan = incrementalDeliveryService.plan(graphQLRequest);
+        if (plan.isIncremental()) return multipartResponse(
+          plan,
+          httpServletRequest
+        );
+      }
+      return execute(graphQLRequest, httpServletRequest);
+    } catch (PersistedQueryException e) {
+      return e.toExecutionResult().toSpecification();
+    } catch (IncrementalDeliveryException e) {
+      return e.toExecutionResult().toSpecification();
+    }
+  }
+
+  // automatic persisted queries - hash only read queries may be sent over GET so as to be cacheable
+  @GetMapping(value = PRIMARY_ENDPOINT, params = "extensions")
+  public Object httpGetEndpoint(
+    @RequestParam(required = false) String query,
+    @RequestParam(required = false) String operationName,
+    @RequestParam(required = false) String variables,
+    @RequestParam String extensions,
+    HttpServletRequest httpServletRequest
+  ) {
+    try {
+      val graphQLRequest = new GraphQLRequest(
+        query,
+        operationName,
+        parseJsonParam(variables),
+        parseJsonParam(extensions)
+      );
+      return execute(
+        persistedQueryRegistry.resolve(graphQLRequest, true),
+        httpServletRequest
+      );
+    } catch (PersistedQueryException e) {
+      return e.toExecutionResult().toSpecification();
+    }
+  }
+
+  private Object execute(
+    GraphQLRequest graphQLRequest,
     HttpServletRequest httpServletRequest
   ) {
+    if (!configValues.getAsyncExecutionEnabled()) return toResponse(
+      httpGraphQLRequestExecutor.executeQuery(
+        graphQLRequest,
+        httpServletRequest
+      )
+    );
+    return resolverExecutorService
+      .supplyAsync(() ->
+        httpGraphQLRequestExecutor.executeQueryAsync(
+          graphQLRequest,
+          httpServletRequest
+        )
+      )
+      .thenApply(this::toResponse);
+  }
 
-    Map<String, Object> specification = httpGraphQLRequestExecutor
-            .executeQuery(graphQLRequest, httpServletRequest)
-            .toSpecification();
-    return specification;
+  private static boolean acceptsMultipart(
+    HttpServletRequest httpServletRequest
+  ) {
+    val accept = httpServletRequest.getHeader(HttpHeaders.ACCEPT);
+    return accept != null && accept.contains("multipart/mixed");
+  }
+
+  private boolean acceptsNdjson(HttpServletRequest httpServletRequest) {
+    val accept = httpServletRequest.getHeader(HttpHeaders.ACCEPT);
+    return (
+      configValues.getNdjsonStreamingEnabled() &&
+      accept != null &&
+      accept.contains(NDJSON_CONTENT_TYPE)
+    );
+  }
+
+  // subscriptions (e.g. streamed queries) as newline delimited JSON - each event is requested only once the
+  // previous one has been written, and the subscription is cancelled if the client disconnects. the events are
+  // written on the servlet thread, as with exports, so the stream is not cut short by the async request timeout.
+  @SuppressWarnings("unchecked")
+  @SneakyThrows
+  private void writeNdjsonResponse(
+    GraphQLRequest graphQLRequest,
+    HttpServletRequest httpServletRequest,
+    HttpServletResponse httpServletResponse
+  ) {
+    val result = httpGraphQLRequestExecutor.executeQuery(
+      graphQLRequest,
+      httpServletRequest
+    );
+    httpServletResponse.setContentType(NDJSON_CONTENT_TYPE);
+    httpServletResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    val outputStream = httpServletResponse.getOutputStream();
+    if (!(result.getData() instanceof Publisher)) {
+      executionResultWriter.writeNdjsonLine(
+        result.toSpecification(),
+        outputStream
+      );
+      outputStream.flush();
+      return;
+    }
+    try (
+      Stream<ExecutionResult> events = Flux
+        .from((Publisher<ExecutionResult>) result.getData())
+        .toStream(1)
+    ) {
+      val iterator = events.iterator();
+      while (iterator.hasNext()) executionResultWriter.writeNdjsonEvent(
+        iterator.next(),
+        outputStream
+      );
+    }
+  }
+
+  // @defer - the initial payload is flushed as soon as it is ready, followed by the deferred payloads
+  private ResponseEntity<StreamingResponseBody> multipartResponse(
+    IncrementalDeliveryPlan plan,
+    HttpServletRequest httpServletRequest
+  ) {
+    StreamingResponseBody body = outputStream -> {
+      incrementalDeliveryService
+        .execute(
+          plan,
+          httpServletRequest,
+          httpGraphQLRequestExecutor,
+          payload -> writeMultipartPart(payload, outputStream)
+        )
+        .join();
+      executionResultWriter.writeMultipartEnd(outputStream);
+    };
+    return ResponseEntity
+      .ok()
+      .header(HttpHeaders.CONTENT_TYPE, MULTIPART_CONTENT_TYPE)
+      .body(body);
+  }
+
+  @SneakyThrows
+  private void writeMultipartPart(
+    Map<String, Object> payload,
+    OutputStream outputStream
+  ) {
+    executionResultWriter.writeMultipartPart(payload, outputStream);
+  }
+
+  // the operations of a batch are independent of one another, and are executed concurrently on the resolver executor
+  private Object executeBatch(
+    ArrayNode operations,
+    HttpServletRequest httpServletRequest
+  ) {
+    if (
+      !configValues.getBatchedRequestsEnabled()
+    ) throw new ResponseStatusException(
+      HttpStatus.BAD_REQUEST,
+      "Batched requests are not enabled"
+    );
+    if (
+      operations.size() > configValues.getBatchedRequestsMaxBatchSize()
+    ) throw new ResponseStatusException(
+      HttpStatus.BAD_REQUEST,
+      "Batch size of " +
+      operations.size() +
+      " exceeds the maximum of " +
+      configValues.getBatchedRequestsMaxBatchSize()
+    );
+    val results = new ArrayList<CompletableFuture<Map<String, Object>>>();
+    for (val operation : operations) results.add(
+      executeBatchedOperation(operation, httpServletRequest)
+    );
+    val batchResult = CompletableFuture
+      .allOf(results.toArray(new CompletableFuture[0]))
+      .thenApply(ignored ->
+        results
+          .stream()
+          .map(CompletableFuture::join)
+          .collect(Collectors.toList())
+      );
+    return configValues.getAsyncExecutionEnabled()
+      ? batchResult
+      : batchResult.join();
+  }
+
+  private CompletableFuture<Map<String, Object>> executeBatchedOperation(
+    JsonNode operation,
+    HttpServletRequest httpServletRequest
+  ) {
+    try {
+      val graphQLRequest = persistedQueryRegistry.resolve(
+        toGraphQLRequest(operation)
+      );
+      return resolverExecutorService
+        .supplyAsync(() ->
+          httpGraphQLRequestExecutor.executeQueryAsync(
+            graphQLRequest,
+            httpServletRequest
+          )
+        )
+        .thenApply(ExecutionResult::toSpecification)
+        .exceptionally(e -> errorSpecification(e.getMessage()));
+    } catch (PersistedQueryException e) {
+      return CompletableFuture.completedFuture(
+        e.toExecutionResult().toSpecification()
+      );
+    } catch (ResponseStatusException e) {
+      return CompletableFuture.completedFuture(
+        errorSpecification(e.getReason())
+      );
+    }
+  }
+
+  private static Map<String, Object> errorSpecification(String message) {
+    return ExecutionResultImpl
+      .newExecutionResult()
+      .addError(GraphqlErrorBuilder.newError().message(message).build())
+      .build()
+      .toSpecification();
+  }
+
+  private GraphQLRequest toGraphQLRequest(JsonNode requestNode) {
+    if (!requestNode.isObject()) throw new ResponseStatusException(
+      HttpStatus.BAD_REQUEST,
+      "Malformed GraphQL request"
+    );
+    try {
+      return objectMapper.treeToValue(requestNode, GraphQLRequest.class);
+    } catch (Exception e) {
+      throw new ResponseStatusException(
+        HttpStatus.BAD_REQUEST,
+        "Malformed GraphQL request"
+      );
+    }
+  }
+
+  // streamed results are written by the ExecutionResultHttpMessageConverter, rather than converted into a map first
+  private Object toResponse(ExecutionResult result) {
+    return configValues.getStreamingResponseEnabled()
+      ? result
+      : result.toSpecification();
   }
 
   @CrossOrigin("*")
@@ -56,6 +342,20 @@ public class ApiController {
   }
 
   private final ObjectMapper objectMapper = new ObjectMapper();
+  private static final TypeReference<Map<String, Object>> jsonParamTypeRef =
+    new TypeReference<Map<String, Object>>() {};
+
+  private Map<String, Object> parseJsonParam(String jsonParam) {
+    if (jsonParam == null || jsonParam.isBlank()) return null;
+    try {
+      return objectMapper.readValue(jsonParam, jsonParamTypeRef);
+    } catch (Exception e) {
+      throw new ResponseStatusException(
+        HttpStatus.BAD_REQUEST,
+        "Malformed JSON request parameter"
+      );
+    }
+  }
 
   @SneakyThrows
   private GraphQLRequest parseEncodedRequest(String encodedQueryString) {
@@ -0,0 +1,64 @@
+package dev.sanda.apifi.web;
+
+import graphql.ExecutionResult;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes {@link ExecutionResult}s returned by the {@link ApiController} (when
+ * {@code apifi.streaming-response.enabled} is set) as JSON with the
+ * {@link ExecutionResultWriter}, so that they take part in Spring's regular
+ * response handling rather than being written to the servlet response by the
+ * controller itself. Spring Boot registers message converter beans ahead of
+ * its default converters.
+ */
+@Component
+public class ExecutionResultHttpMessageConverter
+  extends AbstractHttpMessageConverter<ExecutionResult> {
+
+  private final ExecutionResultWriter executionResultWriter;
+
+  @Autowired
+  public ExecutionResultHttpMessageConverter(
+    ExecutionResultWriter executionResultWriter
+  ) {
+    super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON);
+    this.executionResultWriter = executionResultWriter;
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return ExecutionResult.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected ExecutionResult readInternal(
+    Class<? extends ExecutionResult> clazz,
+    HttpInputMessage inputMessage
+  ) {
+    throw new HttpMessageNotReadableException(
+      "Execution results cannot be read",
+      inputMessage
+    );
+  }
+
+  @Override
+  protected void writeInternal(
+    ExecutionResult result,
+    HttpOutputMessage outputMessage
+  ) throws IOException {
+    executionResultWriter.write(result, outputMessage.getBody());
+  }
+}
@@ -0,0 +1,130 @@
+package dev.sanda.apifi.web;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes execution results and incremental payloads with a copy of the
+ * application's {@link ObjectMapper}. An {@link ExecutionResult} can be
+ * written straight to an output stream with a Jackson {@link JsonGenerator},
+ * rather than first copied into the map returned by
+ * {@link ExecutionResult#toSpecification()}. Its data has already been
+ * resolved in full, so this saves the copy, not the materialization of the
+ * result.
+ */
+@Component
+public class ExecutionResultWriter {
+
+  private final ObjectMapper objectMapper;
+
+  @Autowired
+  public ExecutionResultWriter(ObjectMapper objectMapper) {
+    // a copy, so as not to reconfigure the application's mapper
+    val mapper = objectMapper.copy();
+    mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    mapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    this.objectMapper = mapper;
+  }
+
+  // multipart/mixed incremental delivery, as per the GraphQL over HTTP incremental delivery proposal
+  public static final String MULTIPART_CONTENT_TYPE =
+    "multipart/mixed; boundary=\"-\"; deferSpec=20220824";
+  private static final byte[] MULTIPART_PART_HEADER =
+    "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n".getBytes(
+        StandardCharsets.UTF_8
+      );
+  private static final byte[] MULTIPART_END = "\r\n-----\r\n".getBytes(
+    StandardCharsets.UTF_8
+  );
+
+  /**
+   * Writes a single part of a multipart/mixed response and flushes it, so
+   * that the client receives each payload as soon as it is ready.
+   */
+  public void writeMultipartPart(
+    Map<String, Object> payload,
+    OutputStream outputStream
+  ) throws IOException {
+    outputStream.write(MULTIPART_PART_HEADER);
+    objectMapper.writeValue(outputStream, payload);
+    outputStream.flush();
+  }
+
+  public void writeMultipartEnd(OutputStream outputStream)
+    throws IOException {
+    outputStream.write(MULTIPART_END);
+    outputStream.flush();
+  }
+
+  // newline delimited JSON streaming of subscription events
+  public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+  /**
+   * Writes a subscription event as newline delimited JSON, and flushes it.
+   * Events whose data consists of a single list valued field, such as the
+   * chunks of streamed queries, are written as one line per list item. All
+   * other events are written as a single line holding the entire result.
+   */
+  public void writeNdjsonEvent(ExecutionResult event, OutputStream outputStream)
+    throws IOException {
+    List<?> items = null;
+    if (event.getErrors().isEmpty() && event.getData() instanceof Map) {
+      Map<?, ?> data = event.getData();
+      if (data.size() == 1) {
+        Object value = data.values().iterator().next();
+        if (value instanceof List) items = (List<?>) value;
+      }
+    }
+    if (items == null) writeNdjsonLine(
+      event.toSpecification(),
+      outputStream
+    ); else for (Object item : items) writeNdjsonLine(item, outputStream);
+    outputStream.flush();
+  }
+
+  public void writeNdjsonLine(Object value, OutputStream outputStream)
+    throws IOException {
+    objectMapper.writeValue(outputStream, value);
+    outputStream.write('\n');
+  }
+
+  public void write(ExecutionResult result, OutputStream outputStream)
+    throws IOException {
+    try (
+      JsonGenerator generator = objectMapper
+        .getFactory()
+        .createGenerator(outputStream, JsonEncoding.UTF8)
+    ) {
+      generator.writeStartObject();
+      if (!result.getErrors().isEmpty()) {
+        generator.writeArrayFieldStart("errors");
+        for (GraphQLError error : result.getErrors()) objectMapper.writeValue(
+          generator,
+          error.toSpecification()
+        );
+        generator.writeEndArray();
+      }
+      if (result.isDataPresent()) {
+        generator.writeFieldName("data");
+        objectMapper.writeValue(generator, result.getData());
+      }
+      if (result.getExtensions() != null) {
+        generator.writeFieldName("extensions");
+        objectMapper.writeValue(generator, result.getExtensions());
+      }
+      generator.writeEndObject();
+    }
+  }
+}
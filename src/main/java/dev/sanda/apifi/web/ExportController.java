@@ -0,0 +1,67 @@
+package dev.sanda.apifi.web;
+
+import static dev.sanda.apifi.utils.ControllerEndpointsConstants.EXPORT_ENABLED;
+import static dev.sanda.apifi.utils.ControllerEndpointsConstants.EXPORT_ENDPOINT;
+
+import dev.sanda.apifi.service.bulk_export.BulkExportService;
+import dev.sanda.apifi.service.bulk_export.ExportFormat;
+import dev.sanda.datafi.dto.PageRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exports all non archived instances of the entity named by the path as NDJSON
+ * or CSV (depending on the accept header), optionally projected onto the
+ * given fields. Rows are written to the response as they are read from the
+ * database, rather than collected into a page first.
+ */
+@RestController
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ConditionalOnProperty(name = EXPORT_ENABLED, havingValue = "true")
+public class ExportController {
+
+  private final BulkExportService bulkExportService;
+
+  @GetMapping(EXPORT_ENDPOINT + "/{entityName}")
+  public void exportEndpoint(
+    @PathVariable String entityName,
+    @RequestParam(required = false) List<String> fields,
+    @RequestParam(required = false) String sortBy,
+    @RequestParam(defaultValue = "ASC") Sort.Direction sortDirection,
+    @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+    HttpServletResponse response
+  ) throws IOException {
+    val exporter = bulkExportService
+      .exporterOf(entityName)
+      .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    val format = ExportFormat.of(accept);
+    val request = new PageRequest();
+    request.setSortBy(sortBy);
+    request.setSortDirection(sortDirection);
+    response.setContentType(format.getContentType());
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    try {
+      exporter.exportAll(response.getOutputStream(), format, fields, request);
+    } catch (IllegalArgumentException e) {
+      // invalid projections and sort keys are rejected before any output
+      if (response.isCommitted()) throw e;
+      response.reset();
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+}
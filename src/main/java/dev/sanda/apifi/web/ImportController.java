@@ -0,0 +1,60 @@
+package dev.sanda.apifi.web;
+
+import static dev.sanda.apifi.utils.ControllerEndpointsConstants.IMPORT_ENABLED;
+import static dev.sanda.apifi.utils.ControllerEndpointsConstants.IMPORT_ENDPOINT;
+
+import dev.sanda.apifi.dto.ImportProgress;
+import dev.sanda.apifi.dto.ImportStatus;
+import dev.sanda.apifi.service.bulk_import.BulkImportService;
+import dev.sanda.apifi.service.bulk_import.ImportFormat;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Imports the NDJSON or CSV request body (depending on its content type) into
+ * the entity named by the path. The body is read as it arrives rather than
+ * buffered, and the response is sent once the import completes or fails. Its
+ * progress can be observed by subscribing to the entity's import progress
+ * subscription with the same import id before starting the upload.
+ */
+@RestController
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ConditionalOnProperty(name = IMPORT_ENABLED, havingValue = "true")
+public class ImportController {
+
+  private final BulkImportService bulkImportService;
+
+  @PostMapping(IMPORT_ENDPOINT + "/{entityName}")
+  public ResponseEntity<ImportProgress> importEndpoint(
+    @PathVariable String entityName,
+    @RequestParam(required = false) String importId,
+    HttpServletRequest request
+  ) throws IOException {
+    val importer = bulkImportService.importerOf(entityName);
+    if (importer.isEmpty()) return ResponseEntity.notFound().build();
+    val progress = importer
+      .get()
+      .importAll(
+        request.getInputStream(),
+        ImportFormat.of(request.getContentType()),
+        importId
+      );
+    return ResponseEntity
+      .status(
+        progress.getStatus() == ImportStatus.COMPLETED
+          ? HttpStatus.OK
+          : HttpStatus.UNPROCESSABLE_ENTITY
+      )
+      .body(progress);
+  }
+}
@@ -0,0 +1,43 @@
+package dev.sanda.apifi.web;
+
+import static dev.sanda.apifi.utils.ControllerEndpointsConstants.METRICS_ENDPOINT;
+import static dev.sanda.apifi.utils.ControllerEndpointsConstants.METRICS_ENDPOINT_ENABLED;
+
+import dev.sanda.apifi.service.graphql_config.DataLoaderRegistryFactory;
+import dev.sanda.apifi.service.metrics.MetricsRecorder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves the recorded operation, resolver, api logic and hook latency
+ * histograms alongside the aggregated DataLoader statistics as JSON. Disabled
+ * by default, as it exposes the shape of the API and its usage.
+ */
+@RestController
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ConditionalOnProperty(name = METRICS_ENDPOINT_ENABLED, havingValue = "true")
+public class MetricsController {
+
+  private final MetricsRecorder metricsRecorder;
+  private final DataLoaderRegistryFactory dataLoaderRegistryFactory;
+
+  @GetMapping(METRICS_ENDPOINT)
+  public Map<String, Object> metrics() {
+    val metrics = new LinkedHashMap<String, Object>(metricsRecorder.snapshot());
+    val dataLoaderStatistics = new TreeMap<String, Object>();
+    dataLoaderRegistryFactory
+      .getStatistics()
+      .forEach((loaderName, statistics) ->
+        dataLoaderStatistics.put(loaderName, statistics.toMap())
+      );
+    metrics.put("DATALOADER_STATISTICS", dataLoaderStatistics);
+    return metrics;
+  }
+}